@@ -94,6 +94,57 @@ void ROT3U::setClamp(float degrees) {
   pLastServoAngles[SERVO_CLAMP] = degrees;
 }
 
+/*
+ * Moves all servos together, one degree per servo every DEFAULT_MOVE_DELAY
+ * milliseconds, so that the whole movement lasts as long as the longest one
+ * instead of the sum of all of them.
+ * degrees is indexed by channel; an invalid value leaves its servo where it is.
+ */
+void ROT3U::moveAll(const float* degrees) {
+  float from[NUM_OF_SERVOS];
+  float to[NUM_OF_SERVOS];
+  for (int channel = 0; channel < NUM_OF_SERVOS; channel++) {
+    from[channel] = pLastServoAngles[channel];
+    to[channel] = isValid(degrees[channel]) ? degrees[channel] : from[channel];
+  }
+  if (from[SERVO_CLAMP] < CLAMP_MIN) {
+    from[SERVO_CLAMP] = CLAMP_MIN;
+  }
+  if (to[SERVO_CLAMP] < CLAMP_MIN) {
+    to[SERVO_CLAMP] = CLAMP_MIN;
+  }
+#ifdef DEBUG
+  for (int channel = 0; channel < NUM_OF_SERVOS; channel++) {
+    Serial.print("Channel ");
+    Serial.print(channel);
+    Serial.print(" - from ");
+    Serial.print(from[channel]);
+    Serial.print(" - to ");
+    Serial.println(to[channel]);
+  }
+#else //  DEBUG
+  bool moving = true;
+  while (moving) {
+    moving = false;
+    delay(DEFAULT_MOVE_DELAY);
+    for (int channel = 0; channel < NUM_OF_SERVOS; channel++) {
+      if (from[channel] < to[channel]) {
+        from[channel] = min(from[channel] + 1.0f, to[channel]);
+      } else if (from[channel] > to[channel]) {
+        from[channel] = max(from[channel] - 1.0f, to[channel]);
+      } else {
+        continue;
+      }
+      driver.setChannelPWM(channel, pwmServo.pwmForAngle(from[channel]));
+      moving = true;
+    }
+  }
+#endif  //  DEBUG
+  for (int channel = 0; channel < NUM_OF_SERVOS; channel++) {
+    pLastServoAngles[channel] = to[channel];
+  }
+}
+
 void ROT3U::move(int channel, float from, float to) {
   if (isValid(from) && isValid(to)) {
     if (to <= -90.0f) {
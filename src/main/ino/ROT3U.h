@@ -40,6 +40,7 @@ public:
   void closeClamp();
   void openClamp();
   void setClamp(float degrees);
+  void moveAll(const float* degrees);
 
   static bool isValid(float degrees);
 };
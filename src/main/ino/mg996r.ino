@@ -22,8 +22,11 @@
 #define CMD_MOVE_TO_DEFAULT_POSITION "DP"
 #define CMD_MOVE_YAKULT "MY"
 #define CMD_MOVE_QUEEN "MQ"
+#define CMD_MOVE_JOINTS "MJ"
+#define CMD_BAUD_RATE "BR"
 
 #define ACKNOWLEDGE "ACK"
+#define FRAMING_BINARY "FRAMING BINARY"
 
 #define ERROR_NO_COMMAND_FOUND "No command found."
 #define ERROR_INVALID_DEGREES "Invalid degrees."
@@ -31,6 +34,27 @@
 #define ERROR_NO_ID_FOUND "No id found."
 #define ERROR_NO_CLOSING_BRAKET "No closing braket."
 
+//  Error codes of the binary framing, in the same order as the messages
+#define ERROR_CODE_NO_COMMAND_FOUND 0
+#define ERROR_CODE_INVALID_DEGREES 1
+#define ERROR_CODE_NO_ID_FOUND 3
+#define ERROR_CODE_CORRUPTED_FRAME 5
+
+/*
+ * Binary framing: payload followed by its CRC-8 (polynomial 0x07), COBS 
+ * encoded and terminated by a zero byte.
+ * Command payload: <opcode> <varint id> <angles>, where the opcode is the 
+ * index in FRAME_ACTIONS plus one, the id is an unsigned LEB128 varint and 
+ * every angle is a 16 bits little-endian integer in tenths of degree.
+ * Response payload: FRAME_ACK <varint id> or FRAME_ERROR <error code>.
+ */
+#define FRAME_DELIMITER 0x00
+#define FRAME_MAX_LENGTH 32
+#define FRAME_ACK 0x80
+#define FRAME_ERROR 0x81
+#define CRC8_POLYNOMIAL 0x07
+#define ANGLE_SCALE 10.0f
+
 #define ACTION_VALID_CHARS "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
 #define SPACES " \t"
 #define DIGITS "0123456789"
@@ -43,14 +67,39 @@
 
 #define END_COMMAND CHAR_LF
 
+#define DEFAULT_BAUD_RATE 9600
+//  Time waited for a command at a new baud rate before going back to the previous one
+#define BAUD_CONFIRM_TIMEOUT 2000
+
 char inChar;
 String buffer = "", command, val, id;
 bool done = false;
 ROT3U* pArm;
 float deg;
+float degs[NUM_OF_SERVOS];
+int nDegrees;
+bool binaryFraming = false;
+const long BAUD_RATES[] = {75, 110, 300, 1200, 2400, 4800, 9600, 19200, 38400, 57600, 115200};
+#define NUM_OF_BAUD_RATES (sizeof(BAUD_RATES) / sizeof(BAUD_RATES[0]))
+long baudRate = DEFAULT_BAUD_RATE;
+long fallbackBaudRate = DEFAULT_BAUD_RATE;
+unsigned long baudDeadline = 0;
+bool baudPending = false;
+byte frame[FRAME_MAX_LENGTH];
+unsigned int frameLength = 0;
+unsigned long long frameId;
+
+const char* const FRAME_ACTIONS[] = {
+  CMD_TEST_RESPONSE, CMD_SHOULDER_MOVE_HORIZONTALLY, CMD_SHOULDER_MOVE_VERTICALLY,
+  CMD_ELBOW_MOVE_VERTICALLY, CMD_WRIST_ROTATE, CMD_WRIST_MOVE_VERTICALLY,
+  CMD_CLAMP_OPEN, CMD_CLAMP_CLOSE, CMD_CLAMP_SET, CMD_MOVE_TO_DEFAULT_POSITION,
+  CMD_MOVE_YAKULT, CMD_MOVE_QUEEN, CMD_MOVE_JOINTS, CMD_BAUD_RATE
+};
+const byte FRAME_ANGLES[] = {1, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 6, 1};
+#define NUM_OF_FRAME_ACTIONS (sizeof(FRAME_ANGLES) / sizeof(FRAME_ANGLES[0]))
 
 void setup() {
-  Serial.begin(9600);
+  Serial.begin(DEFAULT_BAUD_RATE);
   while (!Serial) {
     ; // wait for serial port to connect. Needed for native USB port only
   }
@@ -63,6 +112,11 @@ void setup() {
 }
 
 void loop() {
+  //  No command received at the new baud rate: go back to the previous one
+  if (baudPending && (long)(millis() - baudDeadline) >= 0) {
+    setBaudRate(fallbackBaudRate);
+    baudPending = false;
+  }
   while (Serial.available() > 0) {
     int inChar = Serial.read();
 /*
@@ -76,61 +130,26 @@ void loop() {
  * CS - Clamp Set < 0, > 0
  * DP - Default Position
  * MY - Move Yakult
+ * MJ - Move all Joints: SH SV EV WV WR CS
+ * TR - Test Response: TR1 switches to the binary framing, TR0 back to text
+ * BR - Baud Rate: index in BAUD_RATES, confirmed by the next command
  */
-    if (inChar == END_COMMAND) {
-      if (parseCommand(buffer)) {
-        if (command.compareTo(CMD_SHOULDER_MOVE_HORIZONTALLY) == 0) {
-          Serial.println(CMD_SHOULDER_MOVE_HORIZONTALLY);
-          pArm->moveShoulderHorizontally(deg);
-        } else if (command.compareTo(CMD_SHOULDER_MOVE_VERTICALLY) == 0) {
-          Serial.println(CMD_SHOULDER_MOVE_VERTICALLY);
-          pArm->moveShoulderVertically(deg);
-        } else if (command.compareTo(CMD_ELBOW_MOVE_VERTICALLY) == 0) {
-          Serial.println(CMD_ELBOW_MOVE_VERTICALLY);
-          pArm->moveElbowVertically(deg);
-        } else if (command.compareTo(CMD_WRIST_MOVE_VERTICALLY) == 0) {
-          Serial.println(CMD_WRIST_MOVE_VERTICALLY);
-          pArm->moveWristVertically(deg);
-        } else if (command.compareTo(CMD_WRIST_ROTATE) == 0) {
-          Serial.println(CMD_WRIST_ROTATE);
-          pArm->rotateWrist(deg);
-        } else if (command.compareTo(CMD_CLAMP_OPEN) == 0) {
-          Serial.println(CMD_CLAMP_OPEN);
-          pArm->openClamp();
-        } else if (command.compareTo(CMD_CLAMP_CLOSE) == 0) {
-          Serial.println(CMD_CLAMP_CLOSE);
-          pArm->closeClamp();
-        } else if (command.compareTo(CMD_CLAMP_SET) == 0) {
-          Serial.println(CMD_CLAMP_SET);
-          pArm->setClamp(deg);
-        } else if (command.compareTo(CMD_MOVE_YAKULT) == 0) {
-          Serial.println(CMD_MOVE_YAKULT);
-          moveYakult();
-        } else if (command.compareTo(CMD_MOVE_QUEEN) == 0) {
-          Serial.println(CMD_MOVE_QUEEN);
-          moveQueen();
-        } else if (command.compareTo(CMD_MOVE_TO_DEFAULT_POSITION) == 0) {
-          Serial.println(CMD_MOVE_TO_DEFAULT_POSITION);
-          moveToDefaultPosition();
-        } else {
-          Serial.print("unknown command: ");
-          Serial.println(command);
+    if (binaryFraming) {
+      if (inChar == FRAME_DELIMITER) {
+        if (frameLength > 0 && parseFrame()) {
+          execute();
         }
-#ifdef DEBUG_ADVANCED
-        Serial.print("Loop Command: ");
-        Serial.println(command);
-
-        Serial.print("Loop Degrees: ");
-        Serial.println(deg);
-        
-        Serial.print("Loop id: ");
-        Serial.println(id);
-#endif  //  DEBUG_ADVANCED
-        Serial.print(ACKNOWLEDGE);
-        Serial.print((char)CHAR_SPACE);
-        Serial.print(ID_OPEN);
-        Serial.print(id);
-        Serial.println(ID_CLOSE);
+        frameLength = 0;
+      } else if (frameLength <= FRAME_MAX_LENGTH) {
+        //  A frame longer than FRAME_MAX_LENGTH is detected by parseFrame()
+        if (frameLength < FRAME_MAX_LENGTH) {
+          frame[frameLength] = inChar;
+        }
+        frameLength++;
+      }
+    } else if (inChar == END_COMMAND) {
+      if (parseCommand(buffer)) {
+        execute();
       }
       buffer = "";
     } else {
@@ -139,6 +158,248 @@ void loop() {
   }
 }
 
+/*
+ * Executes the command parsed, echoing its action and acknowledging it.
+ */
+void execute() {
+  bool switchFraming = false;
+  long newBaudRate = 0;
+  //  Any command received confirms the current baud rate
+  baudPending = false;
+  if (command.compareTo(CMD_SHOULDER_MOVE_HORIZONTALLY) == 0) {
+    echo(CMD_SHOULDER_MOVE_HORIZONTALLY);
+    pArm->moveShoulderHorizontally(deg);
+  } else if (command.compareTo(CMD_SHOULDER_MOVE_VERTICALLY) == 0) {
+    echo(CMD_SHOULDER_MOVE_VERTICALLY);
+    pArm->moveShoulderVertically(deg);
+  } else if (command.compareTo(CMD_ELBOW_MOVE_VERTICALLY) == 0) {
+    echo(CMD_ELBOW_MOVE_VERTICALLY);
+    pArm->moveElbowVertically(deg);
+  } else if (command.compareTo(CMD_WRIST_MOVE_VERTICALLY) == 0) {
+    echo(CMD_WRIST_MOVE_VERTICALLY);
+    pArm->moveWristVertically(deg);
+  } else if (command.compareTo(CMD_WRIST_ROTATE) == 0) {
+    echo(CMD_WRIST_ROTATE);
+    pArm->rotateWrist(deg);
+  } else if (command.compareTo(CMD_CLAMP_OPEN) == 0) {
+    echo(CMD_CLAMP_OPEN);
+    pArm->openClamp();
+  } else if (command.compareTo(CMD_CLAMP_CLOSE) == 0) {
+    echo(CMD_CLAMP_CLOSE);
+    pArm->closeClamp();
+  } else if (command.compareTo(CMD_CLAMP_SET) == 0) {
+    echo(CMD_CLAMP_SET);
+    pArm->setClamp(deg);
+  } else if (command.compareTo(CMD_MOVE_YAKULT) == 0) {
+    echo(CMD_MOVE_YAKULT);
+    moveYakult();
+  } else if (command.compareTo(CMD_MOVE_QUEEN) == 0) {
+    echo(CMD_MOVE_QUEEN);
+    moveQueen();
+  } else if (command.compareTo(CMD_MOVE_TO_DEFAULT_POSITION) == 0) {
+    echo(CMD_MOVE_TO_DEFAULT_POSITION);
+    moveToDefaultPosition();
+  } else if (command.compareTo(CMD_TEST_RESPONSE) == 0) {
+    echo(CMD_TEST_RESPONSE);
+    if (!binaryFraming && deg == 1.0f) {
+      Serial.println(FRAMING_BINARY);
+      switchFraming = true;
+    } else if (binaryFraming && deg == 0.0f) {
+      switchFraming = true;
+    }
+  } else if (command.compareTo(CMD_MOVE_JOINTS) == 0) {
+    echo(CMD_MOVE_JOINTS);
+    moveJoints();
+  } else if (command.compareTo(CMD_BAUD_RATE) == 0) {
+    echo(CMD_BAUD_RATE);
+    if (deg >= 0.0f && deg < NUM_OF_BAUD_RATES) {
+      newBaudRate = BAUD_RATES[(int)deg];
+    }
+  } else {
+    Serial.print("unknown command: ");
+    Serial.println(command);
+  }
+#ifdef DEBUG_ADVANCED
+  Serial.print("Loop Command: ");
+  Serial.println(command);
+
+  Serial.print("Loop Degrees: ");
+  Serial.println(deg);
+  
+  Serial.print("Loop id: ");
+  Serial.println(id);
+#endif  //  DEBUG_ADVANCED
+  acknowledge();
+  if (switchFraming) {
+    binaryFraming = !binaryFraming;
+    frameLength = 0;
+    buffer = "";
+  }
+  if (newBaudRate > 0 && newBaudRate != baudRate) {
+    fallbackBaudRate = baudRate;
+    setBaudRate(newBaudRate);
+    baudDeadline = millis() + BAUD_CONFIRM_TIMEOUT;
+    baudPending = true;
+  }
+}
+
+/*
+ * Changes the baud rate, once the pending output has been sent.  Any partial 
+ * command is discarded.
+ */
+void setBaudRate(long rate) {
+  Serial.flush();
+  Serial.end();
+  Serial.begin(rate);
+  baudRate = rate;
+  buffer = "";
+  frameLength = 0;
+}
+
+/*
+ * Echoes the action of the command about to be executed.  Nothing is echoed 
+ * with the binary framing.
+ */
+void echo(const char* action) {
+  if (!binaryFraming) {
+    Serial.println(action);
+  }
+}
+
+/*
+ * Acknowledges the execution of the command.
+ */
+void acknowledge() {
+  if (binaryFraming) {
+    byte payload[1 + 10];
+    unsigned int length = 0;
+    unsigned long long value = frameId;
+    payload[length++] = FRAME_ACK;
+    while (value >= 0x80) {
+      payload[length++] = (byte)(value | 0x80);
+      value >>= 7;
+    }
+    payload[length++] = (byte)value;
+    sendFrame(payload, length);
+  } else {
+    Serial.print(ACKNOWLEDGE);
+    Serial.print((char)CHAR_SPACE);
+    Serial.print(ID_OPEN);
+    Serial.print(id);
+    Serial.println(ID_CLOSE);
+  }
+}
+
+/*
+ * Sends the error of a refused binary frame.
+ */
+void sendError(byte code) {
+  byte payload[] = {FRAME_ERROR, code};
+  sendFrame(payload, sizeof(payload));
+}
+
+byte crc8(const byte* data, unsigned int length) {
+  byte crc = 0;
+  for (unsigned int i = 0; i < length; i++) {
+    crc ^= data[i];
+    for (byte bit = 0; bit < 8; bit++) {
+      crc = (crc & 0x80) ? (crc << 1) ^ CRC8_POLYNOMIAL : crc << 1;
+    }
+  }
+  return crc;
+}
+
+/*
+ * Sends a payload followed by its CRC-8, COBS encoded and terminated by 
+ * FRAME_DELIMITER.  The payload must be shorter than 254 bytes.
+ */
+void sendFrame(const byte* payload, unsigned int length) {
+  byte out[FRAME_MAX_LENGTH + 3];
+  byte crc = crc8(payload, length);
+  unsigned int codePos = 0, pos = 1;
+  byte code = 1;
+  for (unsigned int i = 0; i <= length; i++) {
+    byte b = i < length ? payload[i] : crc;
+    if (b == FRAME_DELIMITER) {
+      out[codePos] = code;
+      codePos = pos++;
+      code = 1;
+    } else {
+      out[pos++] = b;
+      code++;
+    }
+  }
+  out[codePos] = code;
+  out[pos++] = FRAME_DELIMITER;
+  Serial.write(out, pos);
+}
+
+/*
+ * Decodes the binary frame received, in place, and parses the command it 
+ * carries.  The errors are sent back as error frames.
+ * 
+ * In the command global variable will put the action of the opcode
+ * In the degs global variable will put the angles, and their number in nDegrees
+ * In the frameId global variable will put the command id
+ */
+bool parseFrame() {
+  unsigned int read = 0, length = 0;
+  bool valid = frameLength <= FRAME_MAX_LENGTH;
+
+  //  Remove the COBS encoding
+  while (valid && read < frameLength) {
+    byte code = frame[read++];
+    if (read + code - 1 > frameLength) {
+      valid = false;
+      break;
+    }
+    for (byte i = 1; i < code; i++) {
+      frame[length++] = frame[read++];
+    }
+    if (code < 0xFF && read < frameLength) {
+      frame[length++] = FRAME_DELIMITER;
+    }
+  }
+  if (!valid || length < 3 || crc8(frame, length - 1) != frame[length - 1]) {
+    sendError(ERROR_CODE_CORRUPTED_FRAME);
+    return false;
+  }
+  length--;
+
+  byte opcode = frame[0];
+  if (opcode < 1 || opcode > NUM_OF_FRAME_ACTIONS) {
+    sendError(ERROR_CODE_NO_COMMAND_FOUND);
+    return false;
+  }
+  command = FRAME_ACTIONS[opcode - 1];
+
+  //  Get the id
+  unsigned int pos = 1;
+  byte shift = 0, b;
+  frameId = 0;
+  do {
+    if (pos >= length || shift > 63) {
+      sendError(ERROR_CODE_NO_ID_FOUND);
+      return false;
+    }
+    b = frame[pos++];
+    frameId |= (unsigned long long)(b & 0x7F) << shift;
+    shift += 7;
+  } while (b & 0x80);
+
+  //  Get the angles
+  nDegrees = FRAME_ANGLES[opcode - 1];
+  if (pos + 2 * nDegrees != length) {
+    sendError(ERROR_CODE_INVALID_DEGREES);
+    return false;
+  }
+  for (int i = 0; i < nDegrees; i++, pos += 2) {
+    degs[i] = (int16_t)(frame[pos] | (frame[pos + 1] << 8)) / ANGLE_SCALE;
+  }
+  deg = nDegrees > 0 ? degs[0] : 0.0f;
+  return true;
+}
+
 /**
  * Parse a command that should be in the following RegEx form:
  * 
@@ -152,6 +413,10 @@ void loop() {
  * 
  * <action><[-]value>
  * 
+ * or, for the multi-joint command, a space separated list of values:
+ * 
+ * MJ <sh> <sv> <ev> <wv> <wr> <cs>
+ * 
  * where action is one of the following:
  * 
  * SH - Shoulder Horizontal
@@ -164,17 +429,20 @@ void loop() {
  * CS - Clamp Set
  * DP - Set the arm to the default Position
  * MY - Move a Yakult jar
+ * MJ - Move all Joints together
  * 
  * and the value may or may not have a leading minus sign.
  * 
  * Valid data:
  *     SV-20 [123456]
+ * MJ 0 -20 15 0 -90 20 [123]
  * WR50 [12345]
  * 
  *   WR [1234567]
  * WV [12345678]
  * 
  * In the command global variable will put the arm command itself (e.g. SV-20, WR50, etc.)
+ * In the degs global variable will put the values, and their number in nDegrees
  * In the id global variable will put the command id 
  * 
  * Ideally, the id represents the computer's milloseconds with appended an incremental number.  
@@ -210,32 +478,56 @@ bool parseCommand(String data) {
   }
 
   if (command.length() > 0) {
-    //  Check whether there is a minus '-' char
-    if (inChar == CHAR_MINUS) {
-      minus = true;
-      start++;
-    }
-    
-    //  Get the degrees, if any
-    for(; start < len; start++) {
-      inChar = data.charAt(start);
-      if (strchr(DIGITS, inChar) == nullptr) {
-        break;
+    //  Get the degrees, if any: either a single value attached to the action
+    //  or a list of values, each one preceded by a space
+    nDegrees = 0;
+    bool next = true;
+    while (next) {
+      minus = false;
+      degrees = "";
+      //  Check whether there is a minus '-' char
+      if (start < len && data.charAt(start) == CHAR_MINUS) {
+        minus = true;
+        start++;
+      }
+
+      for(; start < len; start++) {
+        inChar = data.charAt(start);
+        if (strchr(DIGITS, inChar) == nullptr) {
+          break;
+        }
+        degrees += (char)data.charAt(start);
+      }
+
+      if (degrees.length() > 0) {
+        if (nDegrees < NUM_OF_SERVOS) {
+          degs[nDegrees] = minus ? -degrees.toInt() : degrees.toInt();
+        }
+        nDegrees++;
+      } else if (minus) {
+        valid = false;
       }
-      degrees += (char)data.charAt(start);
-    }
 
-    if (!minus || degrees.length() > 0) {
-      String dgs = "";
-      if (minus) {
-        dgs = "-";
+      //  Another value follows if there is a space followed by '-' or a digit
+      next = valid && start+1 < len && strchr(SPACES, data.charAt(start)) != nullptr
+          && (data.charAt(start+1) == CHAR_MINUS || strchr(DIGITS, data.charAt(start+1)) != nullptr);
+      if (next) {
+        start++;
       }
-      dgs += degrees;
+    }
+
+    if (command.compareTo(CMD_MOVE_JOINTS) == 0) {
+      valid = valid && nDegrees == NUM_OF_SERVOS;
+    } else {
+      valid = valid && nDegrees <= 1;
+    }
+
+    if (valid) {
+      deg = nDegrees > 0 ? degs[0] : 0.0f;
 #ifdef DEBUG_ADVANCED
       Serial.print("parseCommand degrees: ");
-      Serial.println(dgs);
+      Serial.println(deg);
 #endif  //  DEBUG_ADVANCED
-      deg = dgs.toInt();
 
       //  Get the id. Before the id there must be a space and an open square braket.
       if (start+2 < len && strchr(SPACES, data.charAt(start)) != nullptr && data.charAt(start+1) == ID_OPEN) {
@@ -357,6 +649,17 @@ void oldLoop() {
   }
 }
 
+void moveJoints() {
+  float target[NUM_OF_SERVOS];
+  target[SERVO_SHOULDER_X] = degs[0];
+  target[SERVO_SHOULDER_Y] = degs[1];
+  target[SERVO_ELBOW] = degs[2];
+  target[SERVO_WRIST_Y] = degs[3];
+  target[SERVO_WRIST_X] = degs[4];
+  target[SERVO_CLAMP] = degs[5];
+  pArm->moveAll(target);
+}
+
 void moveToDefaultPosition() {
   pArm->moveShoulderHorizontally(0.0f);
   delay(500);
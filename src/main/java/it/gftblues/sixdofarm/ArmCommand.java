@@ -19,12 +19,22 @@ package it.gftblues.sixdofarm;
  *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import it.gftblues.sixdofarm.controllers.FrameCodec;
 import java.util.Objects;
 
 /**
  * {@code ArmCommand} contains a command that has to be sent to the arm along 
  * with a unique id.
  * 
+ * The commands created by the {@code Dispatcher} are identified by a numeric 
+ * sequence number, which is written directly into the outgoing byte buffer by
+ * {@code encode()}: no {@code String} is created for their id unless 
+ * {@code getId()} is called.
+ * 
+ * With the binary framing, the command is encoded by {@code encodeBinary()} 
+ * as the payload of a frame: the opcode of the action, the varint id and the
+ * angles as 16 bits little-endian integers, in tenths of degree.
+ * 
  * @author Gabriele Tafuro
  *
  * @since 1.0
@@ -32,16 +42,70 @@ import java.util.Objects;
  */
 public class ArmCommand implements Comparable<ArmCommand>{
   
+  /**
+   * The actions known by the firmware: the opcode of an action is its index 
+   * plus one.
+   */
+  private static final String[] BINARY_ACTIONS = {
+    "TR", "SH", "SV", "EV", "WR", "WV", "CO", "CC", "CS", "DP", "MY", "MQ", "MJ",
+    "BR"
+  };
+
+  /**
+   * The number of angles of each one of the {@code BINARY_ACTIONS}.
+   */
+  private static final int[] BINARY_ANGLES = {
+    1, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 6, 1
+  };
+
+  /**
+   * The number of tenths of degree in a degree, the unit of the angles of the
+   * binary encoding.
+   */
+  public static final int BINARY_ANGLE_SCALE = 10;
+
+  /**
+   * The maximum number of bytes written by {@code encodeBinary()}: opcode, id
+   * and six angles.
+   */
+  public static final int MAX_BINARY_LENGTH = 
+          1+FrameCodec.MAX_VARINT_LENGTH+6*2;
+
   /**
    * The command to be sent to the robotic arm.
    */
   private final String command;
   
   /**
-   * The id which should be unique for each {@code command} issued.
+   * The id which should be unique for each {@code command} issued, or 
+   * {@code null} if the {@code sequence} is used as id.
    */
   private final String id;
 
+  /**
+   * The sequence number assigned by the {@code Dispatcher}, or {@code -1} if
+   * the command has not been created by a {@code Dispatcher}.
+   */
+  private final long sequence;
+
+  /**
+   * The {@code System.nanoTime()} when the command has been queued by the 
+   * {@code Dispatcher}.
+   */
+  private long enqueuedNanos = 0L;
+
+  /**
+   * The {@code System.nanoTime()} when the command has been written to the 
+   * serial port for the last time.
+   */
+  private long sentNanos = 0L;
+
+  /**
+   * Whether the {@code Dispatcher} can drop the command when too many are 
+   * waiting to be sent.
+   */
+  private boolean droppable = false;
+
   /**
    * Constructor
    * @param command
@@ -53,6 +117,21 @@ public class ArmCommand implements Comparable<ArmCommand>{
   public ArmCommand(String command, String id) {
     this.command = command;
     this.id = id;
+    this.sequence = -1L;
+  }
+
+  /**
+   * Constructor
+   * @param command
+   *        The command that has to be sent to the robotic arm.
+   * @param sequence
+   *        A unique, non negative, sequence number that identifies the 
+   *        command.  It is also used as {@code id}.
+   */
+  public ArmCommand(String command, long sequence) {
+    this.command = command;
+    this.id = null;
+    this.sequence = sequence;
   }
   
   /**
@@ -64,6 +143,7 @@ public class ArmCommand implements Comparable<ArmCommand>{
   private ArmCommand() {
     this.command = null;
     this.id = null;
+    this.sequence = -1L;
   }
 
   /**
@@ -81,6 +161,9 @@ public class ArmCommand implements Comparable<ArmCommand>{
   private ArmCommand(ArmCommand rhs) {
     this.command = rhs.command;
     this.id = rhs.id;
+    this.sequence = rhs.sequence;
+    this.enqueuedNanos = rhs.enqueuedNanos;
+    this.sentNanos = rhs.sentNanos;
   }
 
   /**
@@ -97,7 +180,7 @@ public class ArmCommand implements Comparable<ArmCommand>{
   @Override
   public int hashCode() {
     int hash = 7;
-    hash = 97 * hash + Objects.hashCode(this.id);
+    hash = 97 * hash + Objects.hashCode(getId());
     return hash;
   }
 
@@ -120,7 +203,10 @@ public class ArmCommand implements Comparable<ArmCommand>{
       return false;
     }
     final ArmCommand other = (ArmCommand) obj;
-    return Objects.equals(this.id, other.id);
+    if (this.id == null && other.id == null) {
+      return this.sequence == other.sequence;
+    }
+    return Objects.equals(getId(), other.getId());
   }
 
   /**
@@ -138,7 +224,71 @@ public class ArmCommand implements Comparable<ArmCommand>{
    * @return {@code command}
    */
   public String getId() {
-    return id;
+    return id != null ? id : Long.toString(sequence);
+  }
+
+  /**
+   * Gets when the command has been queued.
+   * @return The {@code System.nanoTime()} when queued.
+   */
+  public long getEnqueuedNanos() {
+    return enqueuedNanos;
+  }
+
+  /**
+   * Sets when the command has been queued.
+   * @param enqueuedNanos
+   *        The {@code System.nanoTime()} when queued.
+   */
+  public void setEnqueuedNanos(long enqueuedNanos) {
+    this.enqueuedNanos = enqueuedNanos;
+  }
+
+  /**
+   * Gets when the command has been written to the serial port for the last 
+   * time.
+   * @return The {@code System.nanoTime()} when written.
+   */
+  public long getSentNanos() {
+    return sentNanos;
+  }
+
+  /**
+   * Sets when the command has been written to the serial port.
+   * @param sentNanos
+   *        The {@code System.nanoTime()} when written.
+   */
+  public void setSentNanos(long sentNanos) {
+    this.sentNanos = sentNanos;
+  }
+
+  /**
+   * Gets whether the command can be dropped when too many are waiting to be
+   * sent.
+   * @return {@code true} if it can be dropped, {@code false} otherwise.
+   */
+  public boolean isDroppable() {
+    return droppable;
+  }
+
+  /**
+   * Sets whether the command can be dropped when too many are waiting to be
+   * sent.
+   * @param droppable
+   *        {@code true} if it can be dropped, {@code false} otherwise.
+   */
+  public void setDroppable(boolean droppable) {
+    this.droppable = droppable;
+  }
+
+  /**
+   * returns the sequence number of the {@code command}.
+   * 
+   * @return The sequence number or {@code -1} if not created by a
+   *         {@code Dispatcher}.
+   */
+  public long getSequence() {
+    return sequence;
   }
 
   /**
@@ -156,7 +306,10 @@ public class ArmCommand implements Comparable<ArmCommand>{
     if (o == null) {
       throw new NullPointerException();
     }
-    return id.compareTo(o.id);
+    if (id == null && o.id == null) {
+      return Long.compare(sequence, o.sequence);
+    }
+    return getId().compareTo(o.getId());
   }
 
   /**
@@ -166,11 +319,237 @@ public class ArmCommand implements Comparable<ArmCommand>{
    * @return a formatted {@code String} ready to be consumed.
    */
   public String getMessage() {
-    return String.format("%s [%s]", command, id); 
+    return String.format("%s [%s]", command, getId()); 
+  }
+
+  /**
+   * Gets the maximum number of bytes written by {@code encode()} or 
+   * {@code encodeBinary()}.
+   * @return The number of bytes.
+   */
+  public int getMaxEncodedLength() {
+    //  command, space, brackets, line-feed and up to 19 digits for the id.
+    return Math.max(
+            command.length()+4+(id != null ? id.length() : 19), 
+            MAX_BINARY_LENGTH
+    );
+  }
+
+  /**
+   * Writes the message returned by {@code getMessage()}, followed by a 
+   * line-feed, into {@code buffer} as ASCII bytes, without creating any 
+   * {@code String}.
+   * @param buffer
+   *        The buffer where the message is written.  It must have room for at 
+   *        least {@code getMaxEncodedLength()} bytes after {@code offset}.
+   * @param offset
+   *        The position of the first byte written.
+   * @return The position following the last byte written.
+   */
+  public int encode(byte[] buffer, int offset) {
+    int pos = offset;
+    int len = command.length();
+    for (int i = 0; i < len; i++) {
+      buffer[pos++] = (byte)command.charAt(i);
+    }
+    buffer[pos++] = ' ';
+    buffer[pos++] = '[';
+    if (id != null) {
+      len = id.length();
+      for (int i = 0; i < len; i++) {
+        buffer[pos++] = (byte)id.charAt(i);
+      }
+    } else {
+      pos = encodeDecimal(sequence, buffer, pos);
+    }
+    buffer[pos++] = ']';
+    buffer[pos++] = '\n';
+    return pos;
+  }
+
+  /**
+   * Writes the command as the payload of a binary frame into {@code buffer}, 
+   * without creating any object.
+   * 
+   * The command must be an action known by the firmware followed by its 
+   * values: none, one (e.g. {@code SV-20}) or, for the multi-joint command, 
+   * six separated by spaces.  A missing single value is encoded as zero, as 
+   * the firmware does.  The id must be numeric.
+   * 
+   * @param buffer
+   *        The buffer where the payload is written.  It must have room for at 
+   *        least {@code MAX_BINARY_LENGTH} bytes after {@code offset}.
+   * @param offset
+   *        The position of the first byte written.
+   * @return The position following the last byte written, or {@code -1} if 
+   *         the command cannot be encoded.
+   */
+  public int encodeBinary(byte[] buffer, int offset) {
+    int len = command.length();
+    int pos = 0;
+    while (pos < len && command.charAt(pos) >= 'A' && command.charAt(pos) <= 'Z') {
+      pos++;
+    }
+    int opcode = getOpcode(pos);
+    long value = id != null ? parseId(id) : sequence;
+    if (opcode < 0 || value < 0L) {
+      return -1;
+    }
+    int out = offset;
+    buffer[out++] = (byte)(opcode+1);
+    out = FrameCodec.putVarint(value, buffer, out);
+    int angles = BINARY_ANGLES[opcode];
+    for (int i = 0; i < angles; i++) {
+      if (angles > 1 || (pos < len && command.charAt(pos) == ' ')) {
+        if (pos >= len || command.charAt(pos) != ' ') {
+          return -1;
+        }
+        pos++;
+      }
+      boolean minus = pos < len && command.charAt(pos) == '-';
+      if (minus) {
+        pos++;
+      }
+      int start = pos;
+      int angle = 0;
+      for (; pos < len && command.charAt(pos) >= '0' 
+              && command.charAt(pos) <= '9'; pos++) {
+        angle = angle*10+(command.charAt(pos)-'0');
+        if (angle*BINARY_ANGLE_SCALE > Short.MAX_VALUE) {
+          return -1;
+        }
+      }
+      if (pos == start && (minus || angles > 1 || pos < len)) {
+        return -1;
+      }
+      angle = (minus ? -angle : angle)*BINARY_ANGLE_SCALE;
+      buffer[out++] = (byte)angle;
+      buffer[out++] = (byte)(angle >> 8);
+    }
+    return pos == len ? out : -1;
+  }
+
+  /**
+   * Reads the angles of a payload written by {@code encodeBinary()}.
+   * @param buffer
+   *        The buffer containing the payload.
+   * @param offset
+   *        The position of the opcode.
+   * @param limit
+   *        The position following the last byte of the payload.
+   * @param degrees
+   *        The array receiving the angles, in degrees.  It must have room for
+   *        six values.
+   * @return The opcode, see {@code getBinaryAction()}, or {@code -1} if the
+   *         payload is not valid.
+   */
+  public static int decodeBinary(
+          byte[] buffer,
+          int offset,
+          int limit,
+          float[] degrees
+  ) {
+    if (offset >= limit) {
+      return -1;
+    }
+    int opcode = buffer[offset] & 0xFF;
+    if (opcode < 1 || opcode > BINARY_ACTIONS.length
+            || FrameCodec.getVarint(buffer, offset+1, limit) < 0L) {
+      return -1;
+    }
+    int pos = offset+1;
+    while ((buffer[pos++] & 0x80) != 0) {
+    }
+    int angles = BINARY_ANGLES[opcode-1];
+    if (pos+2*angles != limit) {
+      return -1;
+    }
+    for (int i = 0; i < angles; i++, pos += 2) {
+      degrees[i] = (short)((buffer[pos] & 0xFF) | (buffer[pos+1] << 8))
+              / (float)BINARY_ANGLE_SCALE;
+    }
+    return opcode;
+  }
+
+  /**
+   * Gets the action of a binary opcode, as written by {@code encodeBinary()}.
+   * @param opcode
+   *        The opcode.
+   * @return The action, e.g. {@code SV}, or {@code null} if unknown.
+   */
+  public static String getBinaryAction(int opcode) {
+    if (opcode < 1 || opcode > BINARY_ACTIONS.length) {
+      return null;
+    }
+    return BINARY_ACTIONS[opcode-1];
+  }
+
+  /**
+   * Gets the index in {@code BINARY_ACTIONS} of the action of the command.
+   * @param length
+   *        The length of the action.
+   * @return The index or {@code -1} if unknown.
+   */
+  private int getOpcode(int length) {
+    for (int i = 0; i < BINARY_ACTIONS.length; i++) {
+      if (BINARY_ACTIONS[i].length() == length 
+              && command.startsWith(BINARY_ACTIONS[i])
+      ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses a numeric id.
+   * @param id
+   *        The id.
+   * @return The number or {@code -1} if the id is not a non negative number 
+   *         of up to 18 digits.
+   */
+  private static long parseId(String id) {
+    int len = id.length();
+    if (len == 0 || len > 18) {
+      return -1L;
+    }
+    long value = 0L;
+    for (int i = 0; i < len; i++) {
+      char c = id.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1L;
+      }
+      value = value*10L+(c-'0');
+    }
+    return value;
+  }
+
+  /**
+   * Writes the decimal digits of a non negative number into {@code buffer}.
+   * @param value
+   *        The number.
+   * @param buffer
+   *        The buffer.
+   * @param offset
+   *        The position of the first digit.
+   * @return The position following the last digit.
+   */
+  static int encodeDecimal(long value, byte[] buffer, int offset) {
+    int digits = 1;
+    for (long v = value / 10L; v > 0L; v /= 10L) {
+      digits++;
+    }
+    int pos = offset+digits;
+    long v = value;
+    do {
+      buffer[--pos] = (byte)('0'+(int)(v % 10L));
+      v /= 10L;
+    } while (v > 0L);
+    return offset+digits;
   }
   
   @Override
   public String toString() {
-    return String.format("Command:%s id:%s", command, id); 
+    return String.format("Command:%s id:%s", command, getId()); 
   }
 }
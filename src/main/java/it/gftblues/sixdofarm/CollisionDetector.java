@@ -37,6 +37,44 @@ package it.gftblues.sixdofarm;
  */
 public class CollisionDetector {
 
+  /**
+   * The index of the horizontal distance in the array filled by
+   * {@code distances()}.
+   */
+  public static final int HORIZONTAL = 0;
+
+  /**
+   * The index of the vertical distance in the array filled by
+   * {@code distances()}.
+   */
+  public static final int VERTICAL = 1;
+
+  /**
+   * The largest angle in degrees, positive or negative, found in the tables.
+   * The sum of the angles of the three joints never exceeds it.
+   */
+  private static final int TABLE_DEGREES = 360;
+
+  /**
+   * The sines of the integer angles from {@code -TABLE_DEGREES} to
+   * {@code TABLE_DEGREES}, indexed by the angle plus {@code TABLE_DEGREES}.
+   */
+  private static final double[] SIN = new double[2*TABLE_DEGREES+1];
+
+  /**
+   * The cosines of the integer angles from {@code -TABLE_DEGREES} to
+   * {@code TABLE_DEGREES}, indexed by the angle plus {@code TABLE_DEGREES}.
+   */
+  private static final double[] COS = new double[2*TABLE_DEGREES+1];
+
+  static {
+    // Computed as before, so that the distances do not change at all.
+    for (int deg = -TABLE_DEGREES; deg <= TABLE_DEGREES; deg++) {
+      SIN[deg+TABLE_DEGREES] = Math.sin(Math.toRadians(deg));
+      COS[deg+TABLE_DEGREES] = Math.cos(Math.toRadians(deg));
+    }
+  }
+
   /**
    * The height of the base.
    */
@@ -56,6 +94,11 @@ public class CollisionDetector {
    * The length of the clamp.
    */
   private double clampLength = 0.155d;
+
+  /**
+   * The answers for the poses in the map, {@code null} until available.
+   */
+  private volatile CollisionMap map = null;
   
   /**
    * Default constructor.
@@ -78,6 +121,7 @@ public class CollisionDetector {
    */
   public void setBaseHeight(double baseHeight) {
     this.baseHeight = baseHeight;
+    map = null;
   }
 
   /**
@@ -95,6 +139,7 @@ public class CollisionDetector {
    */
   public void setShoulderLength(double shoulderLength) {
     this.shoulderLength = shoulderLength;
+    map = null;
   }
 
   /**
@@ -112,6 +157,7 @@ public class CollisionDetector {
    */
   public void setElbowLength(double elbowLength) {
     this.elbowLength = elbowLength;
+    map = null;
   }
 
   /**
@@ -129,8 +175,28 @@ public class CollisionDetector {
    */
   public void setClampLength(double clampLength) {
     this.clampLength = clampLength;
+    map = null;
   }
   
+  /**
+   * Gets the map answering for the poses in it.
+   * @return The {@code CollisionMap}, or {@code null} if not available.
+   */
+  public CollisionMap getCollisionMap() {
+    return map;
+  }
+
+  /**
+   * Sets the map answering for the poses in it.  It is dropped when the
+   * geometry changes.
+   * @param map
+   *        The {@code CollisionMap}, ignored if built for another geometry, 
+   *        or {@code null} to compute every answer.
+   */
+  public void setCollisionMap(CollisionMap map) {
+    this.map = map != null && map.matches(this) ? map : null;
+  }
+
   /**
    * Calculates the horizontal distance of the clamp's tip.
    * @param shDeg
@@ -142,13 +208,12 @@ public class CollisionDetector {
    * @return The horizontal distance from the centre of the arm.
    */
   public double horizontalDistance(int shDeg, int elDeg, int wrDeg) {
-    double shSin = Math.sin(Math.toRadians(shDeg));
-    double elSin = Math.sin(Math.toRadians(shDeg+elDeg));
-    double weSin = Math.sin(Math.toRadians(shDeg+elDeg+wrDeg));
+    int el = shDeg+elDeg;
+    int wr = el+wrDeg;
 
-    return   shoulderLength*shSin
-            +elbowLength*elSin
-            +clampLength*weSin;
+    return   shoulderLength*SIN[index(shDeg)]
+            +elbowLength*SIN[index(el)]
+            +clampLength*SIN[index(wr)];
   }
   
   /**
@@ -164,14 +229,76 @@ public class CollisionDetector {
    *         robotic arm lies.
    */
   public double verticalDistance(int shDeg, int elDeg, int wrDeg) {
-    double shCos = Math.cos(Math.toRadians(shDeg));
-    double elCos = Math.cos(Math.toRadians(shDeg+elDeg));
-    double wrCos = Math.cos(Math.toRadians(shDeg+elDeg+wrDeg));
+    int el = shDeg+elDeg;
+    int wr = el+wrDeg;
   
     return   baseHeight
-            +shoulderLength*shCos
-            +elbowLength*elCos
-            +clampLength*wrCos;
+            +shoulderLength*COS[index(shDeg)]
+            +elbowLength*COS[index(el)]
+            +clampLength*COS[index(wr)];
+  }
+
+  /**
+   * Calculates both the horizontal and the vertical distance of the clamp's 
+   * tip in one pass, without allocating anything.
+   * @param shDeg
+   *        The angle where the shoulder should be moved to.
+   * @param elDeg
+   *        The angle where the elbow should be moved to.
+   * @param wrDeg
+   *        The angle where the wrist should be moved to.
+   * @param distances
+   *        The array receiving the horizontal distance at {@code HORIZONTAL}
+   *        and the vertical distance at {@code VERTICAL}.
+   */
+  public void distances(int shDeg, int elDeg, int wrDeg, double[] distances) {
+    int sh = index(shDeg);
+    int el = index(shDeg+elDeg);
+    int wr = index(shDeg+elDeg+wrDeg);
+
+    distances[HORIZONTAL] =   shoulderLength*SIN[sh]
+                             +elbowLength*SIN[el]
+                             +clampLength*SIN[wr];
+    distances[VERTICAL] =   baseHeight
+                           +shoulderLength*COS[sh]
+                           +elbowLength*COS[el]
+                           +clampLength*COS[wr];
+  }
+
+  /**
+   * Gets the sine of an integer angle from the table.
+   * @param deg
+   *        The angle in degrees.
+   * @return The sine, the same as {@code Math.sin(Math.toRadians(deg))} 
+   *         within the table.
+   */
+  public static double sin(int deg) {
+    return SIN[index(deg)];
+  }
+
+  /**
+   * Gets the cosine of an integer angle from the table.
+   * @param deg
+   *        The angle in degrees.
+   * @return The cosine, the same as {@code Math.cos(Math.toRadians(deg))} 
+   *         within the table.
+   */
+  public static double cos(int deg) {
+    return COS[index(deg)];
+  }
+
+  /**
+   * Gets the index of an angle in the tables of sines and cosines.
+   * @param deg
+   *        The angle in degrees.
+   * @return The index of the angle, or of the equivalent angle between 0 and 
+   *         359 if out of the tables.
+   */
+  private static int index(int deg) {
+    if (deg < -TABLE_DEGREES || deg > TABLE_DEGREES) {
+      deg = Math.floorMod(deg, 360);
+    }
+    return deg+TABLE_DEGREES;
   }
 
   /**
@@ -199,9 +326,29 @@ public class CollisionDetector {
           int elTo,
           int wrTo
   ) {
-    double ver = verticalDistance(shTo, elTo, wrTo);
+    CollisionMap m = map;
+    if (
+            m != null && 
+            CollisionMap.contains(shFrom) && 
+            CollisionMap.contains(elFrom) && 
+            CollisionMap.contains(wrFrom) && 
+            CollisionMap.contains(shTo) && 
+            CollisionMap.contains(elTo) && 
+            CollisionMap.contains(wrTo)
+    ) {
+      return m.collision(shFrom, elFrom, wrFrom, shTo, elTo, wrTo);
+    }
+    int sh = index(shTo);
+    int el = index(shTo+elTo);
+    int wr = index(shTo+elTo+wrTo);
+    double ver =   baseHeight
+                  +shoulderLength*COS[sh]
+                  +elbowLength*COS[el]
+                  +clampLength*COS[wr];
     if (ver > 0) {
-      double hor = horizontalDistance(shTo, elTo, wrTo);
+      double hor =   shoulderLength*SIN[sh]
+                    +elbowLength*SIN[el]
+                    +clampLength*SIN[wr];
       double prevHor = horizontalDistance(shFrom, elFrom, wrFrom);
 /*      System.out.println(String.format(
               "----------\n"+
@@ -238,6 +385,58 @@ public class CollisionDetector {
     return true;
   }
   
+  /**
+   * Simulates the moving of the robotic arm from a position to another along
+   * the path the firmware takes, and forecasts a possible collision at any 
+   * point of it.
+   * 
+   * <p>As {@code ROT3U} does, every joint moves by one degree at every step, 
+   * all together for a multi-joint command, until it reaches its angle, so 
+   * a single-joint command moves that joint alone.  Every step is checked 
+   * as {@code collision()} checks a move, so that a pose crossed on the way 
+   * cannot hit the arm or the plane even if the pose reached is safe.</p>
+   * @param shFrom
+   *        The present angle where the shoulder is currently positioned.
+   * @param elFrom
+   *        The present angle where the elbow is currently positioned.
+   * @param wrFrom
+   *        The present angle where the wrist is currently positioned.
+   * @param shTo
+   *        The angle where the shoulder should be moved to.
+   * @param elTo
+   *        The angle where the elbow should be moved to.
+   * @param wrTo
+   *        The angle where the wrist should be moved to.
+   * @return {@code true} if there will be a collision, {@code false} otherwise. 
+   */
+  public boolean sweptCollision(
+          int shFrom, 
+          int elFrom, 
+          int wrFrom, 
+          int shTo,
+          int elTo,
+          int wrTo
+  ) {
+    int sh = shFrom;
+    int el = elFrom;
+    int wr = wrFrom;
+    if (sh == shTo && el == elTo && wr == wrTo) {
+      return collision(sh, el, wr, shTo, elTo, wrTo);
+    }
+    while (sh != shTo || el != elTo || wr != wrTo) {
+      int shNext = sh+Integer.signum(shTo-sh);
+      int elNext = el+Integer.signum(elTo-el);
+      int wrNext = wr+Integer.signum(wrTo-wr);
+      if (collision(sh, el, wr, shNext, elNext, wrNext)) {
+        return true;
+      }
+      sh = shNext;
+      el = elNext;
+      wr = wrNext;
+    }
+    return false;
+  }
+  
   /**
    * Ignore.  Not a real entry point.  Used only for testing reasons.
    * @param args
@@ -0,0 +1,467 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The answers of the {@code CollisionDetector} for every integer pose of the
+ * shoulder, the elbow and the wrist between {@code MIN_ANGLE} and
+ * {@code MAX_ANGLE}, so that checking a move costs a few bit tests.
+ *
+ * <p>Whether a move causes a collision depends on the pose reached and, when
+ * the clamp's tip stays below the base, on the side of the pose left, so
+ * three bits are kept for every pose, in three packed bitsets: the tip is on
+ * or below the plane, the tip is as high as the base or higher, the tip is
+ * in front of the centre of the arm.</p>
+ *
+ * <p>The bitsets are built in parallel on the common {@code ForkJoinPool}
+ * and saved to a file named after a hash of the geometry of the arm, so that
+ * they are built again only when the geometry changes.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class CollisionMap {
+
+  /**
+   * The smallest angle of a joint in the map.
+   */
+  public static final int MIN_ANGLE = -90;
+
+  /**
+   * The largest angle of a joint in the map.
+   */
+  public static final int MAX_ANGLE = 90;
+
+  /**
+   * The number of angles of a joint in the map.
+   */
+  public static final int SIDE = MAX_ANGLE-MIN_ANGLE+1;
+
+  /**
+   * The number of poses in the map.
+   */
+  public static final int POSES = SIDE*SIDE*SIDE;
+
+  /**
+   * The magic number starting a saved map, {@code PCMP} in ASCII.
+   */
+  public static final int MAGIC = 0x504d4350;
+
+  /**
+   * The version of the format of a saved map.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The size in bytes of the header of a saved map: the magic number, the
+   * version and the four lengths of the geometry.
+   */
+  private static final int HEADER_SIZE = 40;
+
+  /**
+   * The number of {@code long} words of a bitset.
+   */
+  private static final int WORDS = (POSES+63) >>> 6;
+
+  /**
+   * The number of words filled by a single task when building.
+   */
+  private static final int TASK_WORDS = 1024;
+
+  /**
+   * The prefix of the name of a saved map.
+   */
+  private static final String FILE_PREFIX = "Pierin-oh.collision.";
+
+  /**
+   * The suffix of the name of a saved map.
+   */
+  private static final String FILE_SUFFIX = ".bin";
+
+  /**
+   * The height of the base the map has been built for.
+   */
+  private final double baseHeight;
+
+  /**
+   * The length of the shoulder the map has been built for.
+   */
+  private final double shoulderLength;
+
+  /**
+   * The length of the elbow the map has been built for.
+   */
+  private final double elbowLength;
+
+  /**
+   * The length of the clamp the map has been built for.
+   */
+  private final double clampLength;
+
+  /**
+   * The poses whose clamp's tip is on or below the plane.
+   */
+  private final long[] floor;
+
+  /**
+   * The poses whose clamp's tip is as high as the base or higher.
+   */
+  private final long[] clear;
+
+  /**
+   * The poses whose clamp's tip is in front of the centre of the arm.
+   */
+  private final long[] ahead;
+
+  /**
+   * Constructor.
+   * @param geometry
+   *        The values of the geometry: the height of the base, the lengths
+   *        of the shoulder, of the elbow and of the clamp.
+   * @param floor
+   *        The poses whose clamp's tip is on or below the plane.
+   * @param clear
+   *        The poses whose clamp's tip is as high as the base or higher.
+   * @param ahead
+   *        The poses whose clamp's tip is in front of the centre of the arm.
+   */
+  private CollisionMap(
+          double[] geometry, long[] floor, long[] clear, long[] ahead
+  ) {
+    baseHeight = geometry[0];
+    shoulderLength = geometry[1];
+    elbowLength = geometry[2];
+    clampLength = geometry[3];
+    this.floor = floor;
+    this.clear = clear;
+    this.ahead = ahead;
+  }
+
+  /**
+   * Gets the values of the geometry of a {@code CollisionDetector}.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   * @return The height of the base, the lengths of the shoulder, of the
+   *         elbow and of the clamp.
+   */
+  private static double[] geometry(CollisionDetector cd) {
+    return new double[] {
+      cd.getBaseHeight(),
+      cd.getShoulderLength(),
+      cd.getElbowLength(),
+      cd.getClampLength()
+    };
+  }
+
+  /**
+   * Gets the hash of the geometry of a {@code CollisionDetector}, naming the
+   * file where its map is saved.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   * @return The hash, in hexadecimal.
+   */
+  public static String getGeometryHash(CollisionDetector cd) {
+    long hash = 1125899906842597L;
+    for (double value : geometry(cd)) {
+      hash = 31L*hash+Double.doubleToLongBits(value);
+    }
+    return String.format("%016x", hash);
+  }
+
+  /**
+   * Gets the file where the map of a {@code CollisionDetector} is saved.
+   * @param directory
+   *        The directory of the saved maps.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   * @return The path of the file.
+   */
+  public static Path getPath(Path directory, CollisionDetector cd) {
+    return directory.resolve(FILE_PREFIX+getGeometryHash(cd)+FILE_SUFFIX);
+  }
+
+  /**
+   * Builds the map of a {@code CollisionDetector} in parallel.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   * @return The map.
+   */
+  public static CollisionMap build(CollisionDetector cd) {
+    CollisionMap map = new CollisionMap(
+            geometry(cd), new long[WORDS], new long[WORDS], new long[WORDS]
+    );
+    ForkJoinPool.commonPool().invoke(map.new Builder(cd, 0, WORDS));
+    return map;
+  }
+
+  /**
+   * Loads a map from a file.
+   * @param path
+   *        The file.
+   * @param cd
+   *        The {@code CollisionDetector} the map has to match.
+   * @return The map, or {@code null} if the file does not exist, is not
+   *         valid or has been built for another geometry.
+   */
+  public static CollisionMap load(Path path, CollisionDetector cd) {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.READ
+    )) {
+      if (channel.size() != HEADER_SIZE+3L*WORDS*Long.BYTES) {
+        return null;
+      }
+      ByteBuffer buffer = channel.map(
+              FileChannel.MapMode.READ_ONLY, 0L, channel.size()
+      ).order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return null;
+      }
+      double[] geometry = new double[4];
+      for (int i = 0; i < geometry.length; i++) {
+        geometry[i] = buffer.getDouble();
+      }
+      if (!Arrays.equals(geometry, geometry(cd))) {
+        return null;
+      }
+      long[][] bitsets = new long[3][WORDS];
+      for (long[] bitset : bitsets) {
+        buffer.asLongBuffer().get(bitset);
+        buffer.position(buffer.position()+WORDS*Long.BYTES);
+      }
+      return new CollisionMap(geometry, bitsets[0], bitsets[1], bitsets[2]);
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Saves the map to a file, replacing it atomically.
+   * @param path
+   *        The file.
+   * @throws IOException
+   *         If the map could not be saved.
+   */
+  public void save(Path path) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(
+            HEADER_SIZE+3*WORDS*Long.BYTES
+    ).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putDouble(baseHeight);
+    buffer.putDouble(shoulderLength);
+    buffer.putDouble(elbowLength);
+    buffer.putDouble(clampLength);
+    for (long[] bitset : new long[][] {floor, clear, ahead}) {
+      buffer.asLongBuffer().put(bitset);
+      buffer.position(buffer.position()+WORDS*Long.BYTES);
+    }
+    buffer.flip();
+    Path temp = path.resolveSibling(path.getFileName()+".tmp");
+    try (FileChannel channel = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+    )) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Checks whether the map has been built for the geometry of a
+   * {@code CollisionDetector}.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   * @return {@code true} if the geometry is the same, {@code false}
+   *         otherwise.
+   */
+  public boolean matches(CollisionDetector cd) {
+    return baseHeight == cd.getBaseHeight()
+            && shoulderLength == cd.getShoulderLength()
+            && elbowLength == cd.getElbowLength()
+            && clampLength == cd.getClampLength();
+  }
+
+  /**
+   * Checks whether an angle is in the map.
+   * @param deg
+   *        The angle.
+   * @return {@code true} if in the map, {@code false} otherwise.
+   */
+  public static boolean contains(int deg) {
+    return deg >= MIN_ANGLE && deg <= MAX_ANGLE;
+  }
+
+  /**
+   * Gets the index of a pose in the bitsets.
+   * @param shDeg
+   *        The angle of the shoulder.
+   * @param elDeg
+   *        The angle of the elbow.
+   * @param wrDeg
+   *        The angle of the wrist.
+   * @return The index of the pose.
+   */
+  private static int index(int shDeg, int elDeg, int wrDeg) {
+    return ((shDeg-MIN_ANGLE)*SIDE+(elDeg-MIN_ANGLE))*SIDE+(wrDeg-MIN_ANGLE);
+  }
+
+  /**
+   * Tests a bit of a bitset.
+   * @param bitset
+   *        The bitset.
+   * @param index
+   *        The index of the bit.
+   * @return {@code true} if set, {@code false} otherwise.
+   */
+  private static boolean get(long[] bitset, int index) {
+    return (bitset[index >>> 6] & (1L << index)) != 0L;
+  }
+
+  /**
+   * Forecasts a possible collision moving the robotic arm from a pose to
+   * another, as {@code CollisionDetector.collision()} does.  All the angles
+   * have to be in the map.
+   * @param shFrom
+   *        The present angle where the shoulder is currently positioned.
+   * @param elFrom
+   *        The present angle where the elbow is currently positioned.
+   * @param wrFrom
+   *        The present angle where the wrist is currently positioned.
+   * @param shTo
+   *        The angle where the shoulder should be moved to.
+   * @param elTo
+   *        The angle where the elbow should be moved to.
+   * @param wrTo
+   *        The angle where the wrist should be moved to.
+   * @return {@code true} if there will be a collision, {@code false} otherwise.
+   */
+  public boolean collision(
+          int shFrom,
+          int elFrom,
+          int wrFrom,
+          int shTo,
+          int elTo,
+          int wrTo
+  ) {
+    int to = index(shTo, elTo, wrTo);
+    if (get(floor, to)) {
+      return true;
+    }
+    if (get(clear, to)) {
+      return false;
+    }
+    return get(ahead, to) != get(ahead, index(shFrom, elFrom, wrFrom));
+  }
+
+  /**
+   * Fills a range of the words of the bitsets.
+   */
+  private class Builder extends RecursiveAction {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The {@code CollisionDetector} computing the distances.
+     */
+    private final CollisionDetector cd;
+
+    /**
+     * The first word filled.
+     */
+    private final int from;
+
+    /**
+     * The word following the last one filled.
+     */
+    private final int to;
+
+    /**
+     * Constructor.
+     * @param cd
+     *        The {@code CollisionDetector} computing the distances.
+     * @param from
+     *        The first word filled.
+     * @param to
+     *        The word following the last one filled.
+     */
+    Builder(CollisionDetector cd, int from, int to) {
+      this.cd = cd;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Fills the words, splitting them in two tasks if too many.
+     */
+    @Override
+    protected void compute() {
+      if (to-from > TASK_WORDS) {
+        int middle = (from+to) >>> 1;
+        invokeAll(
+                new Builder(cd, from, middle),
+                new Builder(cd, middle, to)
+        );
+        return;
+      }
+      double[] distances = new double[2];
+      int end = Math.min(to << 6, POSES);
+      for (int index = from << 6; index < end; index++) {
+        int wr = index%SIDE+MIN_ANGLE;
+        int el = (index/SIDE)%SIDE+MIN_ANGLE;
+        int sh = index/(SIDE*SIDE)+MIN_ANGLE;
+        cd.distances(sh, el, wr, distances);
+        double ver = distances[CollisionDetector.VERTICAL];
+        long bit = 1L << index;
+        // The same comparisons as CollisionDetector.collision().
+        if (!(ver > 0)) {
+          floor[index >>> 6] |= bit;
+        } else if (ver >= baseHeight) {
+          clear[index >>> 6] |= bit;
+        }
+        if (distances[CollisionDetector.HORIZONTAL] >= 0) {
+          ahead[index >>> 6] |= bit;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,281 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import it.gftblues.sixdofarm.controllers.SerialCommunicator;
+import it.gftblues.sixdofarm.controllers.SerialCommunicatorListener;
+import java.nio.ByteBuffer;
+
+/**
+ * Restores the connection with the robotic arm when it is lost, e.g. when
+ * the USB link drops or the board resets.
+ *
+ * <p>The {@code SerialCommunicator} notices the loss from a failed write,
+ * from the port disappearing or from the end of its stream, and the
+ * {@code Dispatcher} from the silence of the arm, through the
+ * {@code Reconnect} {@code Escalation}.  The supervisor then suspends the
+ * {@code Dispatcher}, holding the commands, and calls its
+ * {@code Reconnector} until it succeeds, waiting {@code INITIAL_BACKOFF}
+ * milliseconds before the first attempt and twice as long before every
+ * following one, up to {@code MAX_BACKOFF}.  The {@code Reconnector} resumes
+ * the {@code Dispatcher} once the connection and the pose of the arm are
+ * restored.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class ConnectionSupervisor implements SerialCommunicatorListener {
+
+  /**
+   * Restores the connection.
+   */
+  public static interface Reconnector {
+
+    /**
+     * Connects again and restores the state of the arm.  It is called by the
+     * thread of the supervisor.
+     * @return {@code true} if connected, {@code false} to try again later.
+     */
+    public boolean reconnect();
+  }
+
+  /**
+   * The time in milliseconds waited before the first attempt.
+   */
+  public static final long INITIAL_BACKOFF = 250L;
+
+  /**
+   * The maximum time in milliseconds waited between two attempts.
+   */
+  public static final long MAX_BACKOFF = 8000L;
+
+  /**
+   * The maximum time in milliseconds waited by {@code stop()} for the 
+   * supervising thread to terminate.
+   */
+  private static final long STOP_TIMEOUT = 250L;
+
+  /**
+   * The communicator whose connection is supervised.
+   */
+  private final SerialCommunicator comm;
+
+  /**
+   * The dispatcher suspended while reconnecting.
+   */
+  private final Dispatcher dispatcher;
+
+  /**
+   * Restores the connection.
+   */
+  private final Reconnector reconnector;
+
+  /**
+   * {@code true} if the connection has been lost since the last attempt to
+   * restore it.
+   */
+  private boolean lost = false;
+
+  /**
+   * {@code true} while the connection is being restored.
+   */
+  private boolean reconnecting = false;
+
+  /**
+   * The number of attempts of the current reconnection.
+   */
+  private int attempts = 0;
+
+  /**
+   * The supervising thread, {@code null} if stopped.
+   */
+  private Thread thread = null;
+
+  /**
+   * Constructor, adding the supervisor as a listener of the communicator.
+   * @param comm
+   *        The communicator whose connection is supervised.
+   * @param dispatcher
+   *        The dispatcher suspended while reconnecting.
+   * @param reconnector
+   *        Restores the connection.
+   */
+  public ConnectionSupervisor(
+          SerialCommunicator comm,
+          Dispatcher dispatcher,
+          Reconnector reconnector
+  ) {
+    this.comm = comm;
+    this.dispatcher = dispatcher;
+    this.reconnector = reconnector;
+    comm.addListener(this);
+  }
+
+  /**
+   * Starts supervising the connection, e.g. once connected.
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    lost = false;
+    thread = new Thread(this::supervise, "connection-supervisor");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops supervising the connection, e.g. when disconnecting on purpose.  A
+   * reconnection in progress is abandoned: the supervising thread is 
+   * interrupted and waited for only {@code STOP_TIMEOUT} milliseconds, so 
+   * that the caller, e.g. the Event Dispatch Thread, is not stalled by an 
+   * attempt in progress, which closes the connection it restores.
+   */
+  public void stop() {
+    Thread t;
+    synchronized (this) {
+      t = thread;
+      thread = null;
+      lost = false;
+      reconnecting = false;
+      notifyAll();
+    }
+    if (t != null) {
+      t.interrupt();
+      if (t != Thread.currentThread()) {
+        try {
+          t.join(STOP_TIMEOUT);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether the connection is being restored.
+   * @return {@code true} if reconnecting, {@code false} otherwise.
+   */
+  public synchronized boolean isReconnecting() {
+    return reconnecting;
+  }
+
+  /**
+   * Gets the number of attempts of the current or last reconnection.
+   * @return The number of attempts.
+   */
+  public synchronized int getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * Receives the notification that the connection has been lost, holding the
+   * commands and waking up the supervising thread, if supervising.
+   */
+  @Override
+  public void notifyConnectionLost() {
+    synchronized (this) {
+      if (thread == null) {
+        return;
+      }
+      dispatcher.suspend();
+      lost = true;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Ignores the errors, reported by the controller.
+   * @param error
+   *        The error.
+   */
+  @Override
+  public void notifyError(String error) {
+  }
+
+  /**
+   * Ignores the messages, handled by the {@code Dispatcher}.
+   * @param message
+   *        The message.
+   */
+  @Override
+  public void notifyMessage(String message) {
+  }
+
+  /**
+   * Ignores the data, handled by the {@code Dispatcher}, without decoding it
+   * into a message.
+   * @param data
+   *        The data, from the position to the limit of the buffer.
+   */
+  @Override
+  public void notifyData(ByteBuffer data) {
+  }
+
+  /**
+   * The supervising thread body: waits for the connection to be lost, then
+   * tries to restore it with an exponential backoff.
+   */
+  private void supervise() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!lost) {
+            wait();
+          }
+          reconnecting = true;
+          attempts = 0;
+        }
+        long backoff = INITIAL_BACKOFF;
+        boolean restored = false;
+        while (!restored) {
+          Thread.sleep(backoff);
+          synchronized (this) {
+            if (thread != Thread.currentThread()) {
+              return;
+            }
+            attempts++;
+            // A loss noticed from now on needs another reconnection.
+            lost = false;
+          }
+          restored = reconnector.reconnect();
+          boolean stopped;
+          synchronized (this) {
+            stopped = thread != Thread.currentThread();
+          }
+          if (stopped) {
+            // The connection restored meanwhile is no more wanted.
+            if (restored) {
+              comm.close();
+            }
+            return;
+          }
+          backoff = Math.min(backoff*2L, MAX_BACKOFF);
+        }
+        synchronized (this) {
+          reconnecting = false;
+        }
+      }
+    } catch (InterruptedException ex) {
+      // Stopped.
+    }
+  }
+}
@@ -19,12 +19,22 @@ package it.gftblues.sixdofarm;
  *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import it.gftblues.sixdofarm.controllers.ArmModel;
 import it.gftblues.sixdofarm.controllers.SerialCommunicator;
 import it.gftblues.sixdofarm.controllers.SerialCommunicatorListener;
-import java.util.LinkedList;
+import it.gftblues.sixdofarm.joints.Clamp;
+import it.gftblues.sixdofarm.joints.Elbow;
+import it.gftblues.sixdofarm.joints.Shoulder;
+import it.gftblues.sixdofarm.joints.Wrist;
+import java.awt.EventQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,11 +52,291 @@ import java.util.logging.Logger;
  *     1.  write it to the log file;
  *     2.  signal it to the listeners.
  * 
+ * The commands are not sent on the caller's thread: they are queued and a 
+ * dedicated sender thread sends them, waiting at least 
+ * {@code timeBetweenCommands} milliseconds between two of them.  When there
+ * are already {@code maxPendingCommands} commands added with {@code coalesce}
+ * set to {@code true}, as the ones streamed by the UI and by the game 
+ * controllers, the {@code DropPolicy} establishes what has to be done with the
+ * new one.  The other commands, as the ones of a program, are never dropped.
+ * 
+ * A command added with {@code coalesce} set to {@code true} replaces, in its 
+ * position, the command for the same joint still waiting to be sent: only the
+ * latest position of a joint matters.  Not to change the sequence of poses 
+ * checked by the {@code CollisionDetector}, a command for a joint moving in the
+ * vertical plane (SV, EV, WV) is replaced only if no other command for such 
+ * joints has been queued after it, and no command is ever moved across a 
+ * command that cannot be coalesced.
+ * 
+ * With the {@code Acknowledged} {@code FlowControl}, instead of waiting a fixed
+ * time, the sender thread keeps at most {@code ackWindow} commands not yet
+ * acknowledged and sends the next one as soon as an acknowledge frees a 
+ * credit.
+ * 
+ * Every command sent has a deadline for its acknowledge, kept in a 
+ * {@code TimingWheel} advanced by the sender thread.  When the deadline 
+ * expires, the command is sent again, up to {@code maxRetries} times, waiting 
+ * longer each time if the {@code RetryBackoff} is {@code Exponential}; then 
+ * the {@code Dispatcher} gives up on the command and applies the 
+ * {@code Escalation}.  A lost acknowledge is usually noticed earlier, as the 
+ * acknowledge of a following command sweeps the previous ones away; the 
+ * deadlines are there for the last commands sent, which would otherwise stall
+ * the arm.
+ * 
+ * While the connection is being restored, the {@code Dispatcher} is 
+ * suspended: the commands are held and, once resumed, sent after the ones
+ * restoring the pose of the arm.
+ * 
+ * The commands are added from several threads (the UI, the game controllers, 
+ * the face recognition and the program runner), while the data coming from the
+ * arm is notified on the thread of the {@code SerialCommunicator}.  None of 
+ * them takes a lock: the commands are appended to a lock-free 
+ * {@code MpscQueue} and the acknowledges and errors, once parsed on the serial
+ * thread which alone owns the {@code ResponseParser}, to a lock-free 
+ * {@code LongRingBuffer}.  The sender thread is the only one reading them and 
+ * the only owner of the queue of the commands waiting to be sent, of the 
+ * coalescing state, of the in-flight table and of the deadlines.  Only the 
+ * callers blocked by the {@code Block} {@code DropPolicy} wait on a monitor.
+ * 
  * @author Gabriele Tafuro
  *
  * @since 1.0
  */
-public class Dispatcher implements SerialCommunicatorListener {
+public class Dispatcher 
+        implements SerialCommunicatorListener, ResponseListener {
+
+  /**
+   * Where the {@code Dispatcher} logs what happens to the commands, e.g. the
+   * arm controller.
+   */
+  public static interface Log {
+
+    /**
+     * Logs a message.
+     * @param level
+     *        The level of the message.
+     * @param msg
+     *        The message.
+     */
+    public void log(Level level, String msg);
+
+    /**
+     * Logs a message of the resources with a parameter.
+     * @param level
+     *        The level of the message.
+     * @param msg
+     *        The key of the message in the resources.
+     * @param param1
+     *        The parameter.
+     */
+    public void log(Level level, String msg, Object param1);
+
+    /**
+     * Logs a message of the resources with two parameters.
+     * @param level
+     *        The level of the message.
+     * @param msg
+     *        The key of the message in the resources.
+     * @param param1
+     *        The first parameter.
+     * @param param2
+     *        The second parameter.
+     */
+    public void log(Level level, String msg, Object param1, Object param2);
+
+    /**
+     * Gets the {@code String} of the resources associated to a label.
+     * @param label
+     *        The label.
+     * @return The {@code String}.
+     */
+    public String getExistingLabel(String label);
+  }
+
+  /**
+   * What to do with a command added with coalescing when there are already 
+   * {@code maxPendingCommands} of them waiting to be sent.  The commands 
+   * added without coalescing are never dropped nor wait.
+   */
+  public static enum DropPolicy {
+    /**
+     * The oldest command added with coalescing waiting to be sent is dropped.
+     */
+    DropOldest,
+    /**
+     * The new command is dropped.
+     */
+    DropNewest,
+    /**
+     * The caller waits until there is room for the new command, but the Event
+     * Dispatch Thread, for which the oldest command is dropped.
+     */
+    Block
+  };
+
+  /**
+   * How the sender thread establishes when the next command can be sent.
+   */
+  public static enum FlowControl {
+    /**
+     * At least {@code timeBetweenCommands} milliseconds between two commands.
+     */
+    Timed,
+    /**
+     * At most {@code ackWindow} commands not yet acknowledged by the arm.
+     */
+    Acknowledged
+  };
+
+  /**
+   * How the time waited for an acknowledge grows at every retransmission.
+   */
+  public static enum RetryBackoff {
+    /**
+     * Every retransmission waits {@code ackTimeout} milliseconds.
+     */
+    Fixed,
+    /**
+     * Every retransmission waits twice as the previous one.
+     */
+    Exponential
+  };
+
+  /**
+   * What to do when a command is given up, i.e. it has not been acknowledged
+   * after {@code maxRetries} retransmissions.
+   */
+  public static enum Escalation {
+    /**
+     * The command is logged as not executed and the following ones are sent.
+     */
+    None,
+    /**
+     * The commands waiting to be sent are discarded as well, so that a 
+     * program does not go on from an unknown position.
+     */
+    FlushPending,
+    /**
+     * The commands waiting to be sent are discarded and the serial port is 
+     * closed.
+     */
+    Disconnect,
+    /**
+     * The connection is considered lost: the commands waiting to be sent are
+     * held while a {@code ConnectionSupervisor}, if any, reconnects.
+     */
+    Reconnect
+  };
+
+  /**
+   * The intervals of the life of a command whose latency is measured.
+   */
+  public static enum Latency {
+    /**
+     * From when the command is queued to when it is handed to the serial 
+     * communicator.
+     */
+    Queued,
+    /**
+     * From when the command is handed to the serial communicator to when its
+     * writer thread has written it to the serial port.
+     */
+    Written,
+    /**
+     * From when the command is written to the serial port to when it is 
+     * acknowledged, i.e. the transmission and the execution on the arm.
+     */
+    RoundTrip,
+    /**
+     * From when the command is queued to when it is acknowledged.
+     */
+    Total
+  };
+
+  /**
+   * The action moving all the servos together with a single command.
+   */
+  public static final String ACTION_MJ = "MJ";
+
+  /**
+   * The test-response action.  No other command is sent until it is 
+   * acknowledged, since it can switch the framing used by the robotic arm.
+   */
+  public static final String ACTION_TR = "TR";
+
+  /**
+   * The value of the test-response command asking for the binary framing.
+   */
+  private static final int TR_BINARY_FRAMING = 1;
+
+  /**
+   * Default time in milliseconds waited for the acknowledge of a command 
+   * before sending it again.  It has to cover the slowest command, moving a 
+   * servo by 180 degrees, plus the ones sent before it and not yet executed.
+   */
+  public static final int DEFAULT_ACK_TIMEOUT = 5000;
+
+  /**
+   * Default number of times a command not acknowledged is sent again.
+   */
+  public static final int DEFAULT_MAX_RETRIES = 2;
+
+  /**
+   * The maximum number of times the timeout is doubled by the 
+   * {@code Exponential} {@code RetryBackoff}.
+   */
+  private static final int MAX_BACKOFF_SHIFT = 6;
+
+  /**
+   * Default number of commands that can be sent without being acknowledged, 
+   * when the {@code FlowControl} is {@code Acknowledged}.
+   * 
+   * With two commands the arm can receive the next one while it is still 
+   * executing the current one.
+   */
+  public static final int DEFAULT_ACK_WINDOW = 2;
+
+  /**
+   * No command, e.g. to be sent before the held ones.
+   */
+  private static final String[] NO_COMMANDS = {};
+
+  /**
+   * The actions that can be coalesced.
+   */
+  private static final String[] COALESCED_ACTIONS = {
+    Shoulder.ACTION_SH, Shoulder.ACTION_SV, Elbow.ACTION_EV, Wrist.ACTION_WV,
+    Wrist.ACTION_WR, Clamp.ACTION_CS, Clamp.ACTION_CO, Clamp.ACTION_CC
+  };
+
+  /**
+   * The servo moved by each one of the {@code COALESCED_ACTIONS} (the same 
+   * numbering used by the firmware).
+   */
+  private static final int[] COALESCED_SERVOS = {0, 1, 2, 3, 4, 5, 5, 5};
+
+  /**
+   * Whether each servo moves a joint in the vertical plane, which is the one 
+   * checked by the {@code CollisionDetector}.
+   */
+  private static final boolean[] PLANAR_SERVOS = {
+    false, true, true, true, false, false
+  };
+
+  /**
+   * Default maximum number of commands waiting to be sent.
+   */
+  public static final int DEFAULT_MAX_PENDING_COMMANDS = 64;
+
+  /**
+   * Maximum distance between the sequence numbers of the oldest and of the 
+   * newest command waiting for their acknowledge.
+   * 
+   * A command never acknowledged, e.g. because the firmware dropped it, is 
+   * discarded when this distance is reached, so that the in-flight table does
+   * not grow without bound behind it.
+   */
+  public static final int MAX_IN_FLIGHT_COMMANDS = 256;
 
   private static final String INFO_IGNORED_DATA_FROM_ARM =
           "INFO_IGNORED_DATA_FROM_ARM";
@@ -55,132 +345,345 @@ public class Dispatcher implements SerialCommunicatorListener {
           "LOG_COMMAND_NOT_EXECUTED";
   private static final String LOG_COMMAND_NOT_FOUND = "LOG_COMMAND_NOT_FOUND";
   private static final String LOG_COMMAND_SENT = "LOG_COMMAND_SENT";
+  private static final String LOG_COMMAND_DROPPED = "LOG_COMMAND_DROPPED";
+  private static final String LOG_COMMAND_REFUSED = "LOG_COMMAND_REFUSED";
+  private static final String LOG_COMMAND_RETRANSMITTED = 
+          "LOG_COMMAND_RETRANSMITTED";
+  private static final String LOG_COMMAND_GIVEN_UP = "LOG_COMMAND_GIVEN_UP";
   private static final String LOG_WRONG_DATA = "LOG_WRONG_DATA";
   private static final String LOG_CORRUPTED_DATA = "LOG_CORRUPTED_DATA";
+  private static final String LOG_CORRUPTED_FRAME = "LOG_CORRUPTED_FRAME";
+  private static final String LOG_COMMAND_NOT_ENCODABLE = 
+          "LOG_COMMAND_NOT_ENCODABLE";
+  private static final String LOG_BINARY_FRAMING = "LOG_BINARY_FRAMING";
   private static final String SYS_SIMULATING_COMMAND = "SYS_SIMULATING_COMMAND";
 
   /**
-   * The initial {@code inFlow} capacity.
+   * The time in milliseconds {@code stop()} waits for the sender thread to 
+   * terminate.
    */
-  private static final int INITIAL_IN_FLOW_CAPACITY = 256;
-  
+  private static final long STOP_TIMEOUT = 1000L;
+
   /**
-   * Opening bracket character.
+   * The capacity of the queue of the responses coming from the robotic arm.
    */
-  private static final char ID_OPENING_CHAR = '[';
-  
+  private static final int RESPONSES_CAPACITY = 1024;
+
   /**
-   * Closing bracket character.
+   * The capacity of the queue of the write completions, two values each.
    */
-  private static final char ID_CLOSING_CHAR = ']';
-  
+  private static final int WRITTEN_CAPACITY = 1024;
+
   /**
-   * Line feed character.
+   * The errors of the firmware, indexed by the ordinal.
    */
-  private static final char LF = '\n';
+  private static final ResponseParser.FirmwareError[] FIRMWARE_ERRORS =
+          ResponseParser.FirmwareError.values();
+
+  /**
+   * A command added by a producer thread and not yet taken by the sender 
+   * thread.
+   */
+  private static class Submission extends MpscQueue.Node {
+
+    /**
+     * The command.
+     */
+    private final String command;
+
+    /**
+     * Whether the command can replace one for the same joint.
+     */
+    private final boolean coalesce;
+
+    /**
+     * The {@code System.nanoTime()} when the command has been added.
+     */
+    private final long enqueuedNanos;
+
+    /**
+     * Constructor.
+     * @param command
+     *        The command.
+     * @param coalesce
+     *        Whether the command can replace one for the same joint.
+     */
+    private Submission(String command, boolean coalesce) {
+      this.command = command;
+      this.coalesce = coalesce;
+      this.enqueuedNanos = System.nanoTime();
+    }
+  }
 
   /**
-   * Carriage Return character.
+   * The initial {@code outBuffer} capacity.
    */
-  private static final char CR = '\r';
+  private static final int INITIAL_OUT_BUFFER_CAPACITY = 64;
 
   /**
    * The arm controller;
    */
-  private final SixDOFArmController armController;
+  private final Log armController;
   
   /**
    * The minimum time that has to pass between two commands to avoid to overrun 
    * the micro-controller speed in executing them.
    */
-  private int timeBetweenCommands;
+  private volatile int timeBetweenCommands;
 
   /**
-   * The id counter that will be appended to the next id.  The ids are computed
-   * using the system milliseconds but, to make sure that all ids are unique,
-   * the {@code nextIdCounter} is appended.
+   * The maximum number of commands added with coalescing waiting to be sent.
    */
-  private static long nextIdCounter = 1L;
+  private volatile int maxPendingCommands = DEFAULT_MAX_PENDING_COMMANDS;
 
   /**
-   * The FIFO list used to store all the commands in the issuing order.
+   * What to do when there are already {@code maxPendingCommands} added with 
+   * coalescing waiting to be sent.
    */
-  private final LinkedList<ArmCommand> queue;
-  
+  private volatile DropPolicy dropPolicy = DropPolicy.DropOldest;
+
   /**
-   * The serial communicator connected to the robotic arm.
+   * The commands added by the producer threads, in the order they have been 
+   * added, and not yet taken by the sender thread.
    */
-  private SerialCommunicator comm;
-  
+  private final MpscQueue<Submission> submissions = new MpscQueue<>();
+
   /**
-   * The flow of data coming from the robotic arm.
+   * The number of commands added and not yet sent nor discarded, i.e. in 
+   * {@code submissions} or in {@code pending}.
    */
-  private final StringBuilder inFlow;
-  
+  private final AtomicInteger queued = new AtomicInteger();
+
   /**
-   * The data coming from the {@code inFlow} which is ignored.
+   * The number of commands among the {@code queued} ones that have been added
+   * with coalescing, the only ones bounded by {@code maxPendingCommands}.
    */
-  private final StringBuilder ignored;
-  
+  private final AtomicInteger droppable = new AtomicInteger();
+
+  /**
+   * The monitor the callers of {@code addCommand()} wait on when the queue is 
+   * full and the {@code DropPolicy} is {@code Block}.
+   */
+  private final Object space = new Object();
+
+  /**
+   * The number of callers of {@code addCommand()} waiting on {@code space}.
+   */
+  private final AtomicInteger blockedProducers = new AtomicInteger();
+
+  /**
+   * The acknowledged ids, not negative, and the errors, encoded as 
+   * {@code -1-ordinal}, coming from the robotic arm and not yet handled by the
+   * sender thread.
+   */
+  private final LongRingBuffer responses = 
+          new LongRingBuffer(RESPONSES_CAPACITY);
+
+  /**
+   * The sequence numbers of the commands written to the serial port, each one
+   * followed by the {@code System.nanoTime()} of the write, coming from the 
+   * writer thread of the {@code SerialCommunicator} and not yet handled by 
+   * the sender thread.
+   */
+  private final LongRingBuffer written = new LongRingBuffer(WRITTEN_CAPACITY);
+
+  /**
+   * Set to {@code true} to ask the sender thread to discard the commands in 
+   * flight.
+   */
+  private volatile boolean clearRequested = false;
+
+  /**
+   * {@code true} while the commands are held, e.g. while reconnecting.
+   */
+  private volatile boolean suspended = false;
+
+  /**
+   * The commands to be sent before the held ones when resuming, or 
+   * {@code null} if no resume has been requested.
+   */
+  private volatile String[] resumePreamble = null;
+
+  /**
+   * The FIFO queue of the commands waiting to be sent.  It is owned by the 
+   * sender thread.
+   */
+  private final InFlightTable pending;
+
+  /**
+   * For each servo, the command waiting to be sent that can be replaced by a 
+   * newer one, or {@code null}.  It is owned by the sender thread.
+   */
+  private final ArmCommand[] coalescible = new ArmCommand[PLANAR_SERVOS.length];
+
+  /**
+   * The last command queued for a joint moving in the vertical plane.  It is
+   * owned by the sender thread.
+   */
+  private ArmCommand lastPlanar = null;
+
+  /**
+   * No command waiting to be sent before this sequence number can be dropped,
+   * so that {@code dropOldestPending()} does not scan them again.  It is 
+   * owned by the sender thread.
+   */
+  private long droppableSequence = 0L;
+
+  /**
+   * The thread sending the commands to the robotic arm.
+   */
+  private volatile Thread sender = null;
+
+  /**
+   * Set to {@code true} while the sender thread has to run.
+   */
+  private volatile boolean running = false;
+
+  /**
+   * The {@code System.nanoTime()} before which no other command can be sent.
+   */
+  private long nextSendNanos = 0L;
+
+  /**
+   * How the sender thread establishes when the next command can be sent.
+   */
+  private volatile FlowControl flowControl = FlowControl.Timed;
+
+  /**
+   * The maximum number of commands not yet acknowledged, when the 
+   * {@code flowControl} is {@code Acknowledged}.
+   */
+  private volatile int ackWindow = DEFAULT_ACK_WINDOW;
+
+  /**
+   * The number of commands in {@code inFlight}, readable from any thread.
+   */
+  private volatile int inFlightCount = 0;
+
+  /**
+   * The time in milliseconds waited for the acknowledge of a command before 
+   * sending it again.  Zero disables the deadlines.
+   */
+  private volatile int ackTimeout = DEFAULT_ACK_TIMEOUT;
+
+  /**
+   * The number of times a command not acknowledged is sent again.
+   */
+  private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+  /**
+   * How the time waited for an acknowledge grows at every retransmission.
+   */
+  private volatile RetryBackoff retryBackoff = RetryBackoff.Exponential;
+
+  /**
+   * What to do when a command is given up.
+   */
+  private volatile Escalation escalation = Escalation.Reconnect;
+
+  /**
+   * The latency histograms, one for each {@code Latency}.
+   */
+  private final LatencyHistogram[] latencies;
+
+  /**
+   * The deadlines of the commands in {@code inFlight}.  It is owned by the 
+   * sender thread.
+   */
+  private final TimingWheel<ArmCommand> timeouts;
+
+  /**
+   * The sequence number of the next command, used as its id.  It starts from
+   * zero at every connection, when the commands in flight are discarded, so 
+   * that the ids take one or two bytes.  It is owned by the sender thread, so
+   * that the ids follow the order in which the commands are queued.
+   */
+  private long nextSequence = 0L;
+
+  /**
+   * The test-response command sent and not yet acknowledged, which holds back
+   * the following commands.  It is owned by the sender thread.
+   */
+  private ArmCommand barrier = null;
+
   /**
-   * The current id coming from the robotic arm.
+   * Whether the robotic arm has announced that it switches to the binary 
+   * framing after acknowledging the {@code barrier}.
    */
-  private StringBuilder currentId;
+  private volatile boolean binaryFramingOffered = false;
+
+  /**
+   * The buffer where the sender thread encodes the commands.
+   */
+  private byte[] outBuffer = new byte[INITIAL_OUT_BUFFER_CAPACITY];
+
+  /**
+   * The commands sent to the robotic arm, indexed by their sequence number, in
+   * the issuing order.  It is owned by the sender thread.
+   */
+  private final InFlightTable inFlight;
   
   /**
-   * Set to {@code true} when reading an id, {@code false} otherwise.
+   * The serial communicator connected to the robotic arm.  It can be replaced
+   * while the sender thread runs, which reads it once for every command.
    */
-  private boolean composingId = false;
+  private volatile SerialCommunicator comm;
   
   /**
-   * The current pos in the {@code inFlow}.
+   * The parser of the data coming from the robotic arm.
    */
-  private int pos = 0;
+  private final ResponseParser parser;
   
   /**
    * If set to {@code true}, no actual data is sent to the serial communicator, 
    * {@code false} otherwise.
    */
-  private boolean simulation = false;
+  private volatile boolean simulation = false;
 
   /**
-   * When the robotic arm completes a command, it returns an acknowledge message
-   * with the id of the executed command.  As the data flows in in chunks, the 
-   * {@code inFlow} has to be analysed one character at the time and {@code ack}
-   * serves as a 'sentinel' and to mark every step toward an acknowledge message 
-   * completion.
-   * 
-   * The acknowledge message format is:<br>
-   * ^ACK\s\[[0-9]+\]$
-   * 
-   * <p>When the character in {@code inFlow} pointed from {@code pos} is a 
-   * line-feed {@code ack} becomes 1.</p>
-   * <p>When the character in {@code inFlow} pointed from {@code pos} is a 
-   * 'A' and {@code ack} is 1 then {@code ack} becomes 2.</p>
-   * <p>When the character in {@code inFlow} pointed from {@code pos} is a 
-   * 'C' and {@code ack} is 2 then {@code ack} becomes 3.</p>
-   * <p>When the character in {@code inFlow} pointed from {@code pos} is a 
-   * 'K' and {@code ack} is 3 then {@code ack} becomes 4.</p>
-    * <p>When the character in {@code inFlow} pointed from {@code pos} is a 
-   * space and {@code ack} is 4 then {@code ack} becomes 5.</p>
-   * 
-   * If, in any point of the chain the sequence is not respected, the ack
-   * returns to 0.
-   * 
+   * The servos moved by the commands while simulating.
+   */
+  private final ArmModel simulatedArm = new ArmModel();
+
+  /**
+   * The values of the command being simulated, reused.
+   */
+  private final float[] simulatedValues = new float[ArmModel.NUM_OF_SERVOS];
+
+  /**
+   * The virtual time, in nanoseconds since {@code resetSimulation()}, when 
+   * the next command would be sent with the {@code Timed} 
+   * {@code FlowControl}.  It is owned by the sender thread.
    */
-  private int ack = 0;
+  private long simulatedSendNanos = 0L;
+
+  /**
+   * The virtual time, in nanoseconds since {@code resetSimulation()}, when 
+   * the arm would finish executing the commands simulated so far.
+   */
+  private volatile long simulatedNanos = 0L;
+
+  /**
+   * Set to {@code true} to ask the sender thread to reset the virtual clock.
+   */
+  private volatile boolean simulationResetRequested = false;
 
   /**
    * Constructor.
    * @param armController
    *        The arm controller.
    */
-  public Dispatcher(SixDOFArmController armController) {
+  public Dispatcher(Log armController) {
     this.armController = armController;
     comm = null;
-    queue = new LinkedList<>();
-    inFlow = new StringBuilder(INITIAL_IN_FLOW_CAPACITY);
-    ignored = new StringBuilder(INITIAL_IN_FLOW_CAPACITY);
+    inFlight = new InFlightTable();
+    timeouts = new TimingWheel<>(System.nanoTime());
+    latencies = new LatencyHistogram[Latency.values().length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyHistogram();
+    }
+    pending = new InFlightTable(DEFAULT_MAX_PENDING_COMMANDS);
+    parser = new ResponseParser(this);
   }
 
   /**
@@ -197,8 +700,9 @@ public class Dispatcher implements SerialCommunicatorListener {
    *        The {code @SerialCommunicator} to be used.
    */
   public void setComm(SerialCommunicator comm) {
-    if (this.comm != null) {
-      this.comm.removeListener(this);
+    SerialCommunicator old = this.comm;
+    if (old != null) {
+      old.removeListener(this);
     }
     this.comm = comm;
     if (comm != null) {
@@ -223,6 +727,51 @@ public class Dispatcher implements SerialCommunicatorListener {
     this.simulation = simulation;
   }
 
+  /**
+   * Resets the virtual clock of the simulation.  The simulated servos stay 
+   * where they are.
+   */
+  public void resetSimulation() {
+    simulationResetRequested = true;
+    wakeUpSender();
+  }
+
+  /**
+   * Gets the time the arm would take to execute the commands simulated since
+   * {@code resetSimulation()}, sent as the {@code FlowControl} allows.
+   * @return The time in nanoseconds.
+   */
+  public long getSimulatedNanos() {
+    return simulatedNanos;
+  }
+
+  /**
+   * Gets the servos moved by the commands while simulating.
+   * @return The {@code ArmModel}.
+   */
+  public ArmModel getSimulatedArm() {
+    return simulatedArm;
+  }
+
+  /**
+   * Waits until all the commands queued have been sent or simulated.
+   * @param timeout
+   *        The maximum time to wait in milliseconds.
+   * @return {@code true} if no command is left, {@code false} if timed out.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  public boolean awaitSent(long timeout) throws InterruptedException {
+    long deadline = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(timeout);
+    while (queued.get() > 0 || simulationResetRequested) {
+      if (System.nanoTime()-deadline >= 0L) {
+        return false;
+      }
+      Thread.sleep(1L);
+    }
+    return true;
+  }
+
   /**
    * Gets the minimum time that has to pass between commands sent to the robotic
    * arm.
@@ -242,180 +791,1352 @@ public class Dispatcher implements SerialCommunicatorListener {
   }
 
   /**
-   * Adds a new command to be sent to the robotic arm.
-   * @param command
-   *        The command to be sent.
-   * @return The newly generated id for the passed command.
+   * Gets the maximum number of commands added with coalescing waiting to be 
+   * sent.
+   * @return The maximum number of commands.
    */
-  public String addCommand(String command) {
-    long millis = System.currentTimeMillis();
-    String id = String.format("%d%d", millis, nextIdCounter++);
-    ArmCommand ac = new ArmCommand(command, id);
-    queue.add(ac);
-//    System.out.println("Sending command: "+ac.getMessage());
-    if (!simulation && comm != null && comm.isConnected()) {
-      try {
-        TimeUnit.MILLISECONDS.sleep(timeBetweenCommands);
-      } catch (InterruptedException ex) {
-        Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex);
-      }
-      comm.writeToPort(ac.getMessage()+LF);
-      armController.log(Level.INFO, LOG_COMMAND_SENT, ac.getMessage());
-    } else {
-      System.out.println(
-              String.format(armController.getExistingLabel(
-                      SYS_SIMULATING_COMMAND
-              ), 
-              ac.getMessage())
-      );
-    }
-    return id;
+  public int getMaxPendingCommands() {
+    return maxPendingCommands;
   }
 
   /**
-   * Receives the notification of an error from the {@code SerialCommunicator}.
-   * @param error
-   *        The error message.
+   * Sets the maximum number of commands added with coalescing waiting to be 
+   * sent.
+   * @param maxPendingCommands
+   *        The maximum number of commands (at least 1).
    */
-  @Override
-  public void notifyError(String error) {
-    throw new UnsupportedOperationException("Not supported yet.");
+  public void setMaxPendingCommands(int maxPendingCommands) {
+    this.maxPendingCommands = Math.max(1, maxPendingCommands);
+    wakeUpProducers();
   }
 
   /**
-   * Receives the notification of a message from the {@code SerialCommunicator}.
-   * @param message
-   *        The message.
+   * Gets what is done when the queue of the commands waiting to be sent is 
+   * full.
+   * @return The {@code DropPolicy}.
    */
-  @Override
-  public void notifyMessage(String message) {
-//    System.out.println("notifyMessage() >"+message+"<");
-    inFlow.append(message);
-    processIncomingFlow();
+  public DropPolicy getDropPolicy() {
+    return dropPolicy;
   }
 
   /**
-   * Processes the data present in {@code inFlow}.
-   * 
-   * As the data flows in in chunks and the operation could require more than 
-   * one call of this method to complete, the seek for acknowledge messages is 
-   * done one character at the time
+   * Sets what is done when the queue of the commands waiting to be sent is 
+   * full.
+   * @param dropPolicy
+   *        The {@code DropPolicy}.
    */
-  private void processIncomingFlow() {
-    int start = pos;
-    char curr;
+  public void setDropPolicy(DropPolicy dropPolicy) {
+    this.dropPolicy = dropPolicy == null ? DropPolicy.DropOldest : dropPolicy;
+    wakeUpProducers();
+  }
 
-    for (; pos < inFlow.length(); pos++) {
-      curr = inFlow.charAt(pos);
-      if (curr == LF) {
-        if (ignored.length() > 0) {
-          armController.log(
-                  Level.INFO, 
-                  INFO_IGNORED_DATA_FROM_ARM, 
-                  ignored.toString());
-          ignored.delete(0, ignored.length());
-        }
-        ack = 1;
-      } else if (ack == 1 && curr == 'A') {
-        ack = 2;
-      } else if (ack == 2 && curr == 'C') {
-        ack = 3;
-      } else if (ack == 3 && curr == 'K') {
-        ack = 4;
-      } else if (ack == 4 && curr == 0x20) {
-        ack = 5;
-      } else if (ack == 5 && curr == ID_OPENING_CHAR) {
-        start = pos;
-        if (composingId) {
-          ack = 0;
-          System.out.println(
-                  armController.getExistingLabel(LOG_CORRUPTED_DATA)
-          );
-        } else {
-          composingId = true;
-          currentId = new StringBuilder();
-        }
-      } else if (ack == 5 && curr == ID_CLOSING_CHAR) {
-        ack = 0;
-        if (composingId) {
-          composingId = false;
-          removeId(currentId.toString());
-//          String prefix = inFlow.substring(0, start);
-//          armController.log(Level.SEVERE, prefix);
-//          inFlow.replace(0, start+pos+1, "");
-//          pos = 0;
-//          System.out.println(String.format("command %s", prefix));
-//          System.out.println(String.format("id: %s", currentId.toString()));
-        } else {
-          String wrongData = inFlow.substring(0, pos+1);
-//          inFlow.replace(0, pos+1, "");
-//          pos = 0;
-          armController.log(Level.SEVERE, LOG_WRONG_DATA, wrongData);
-        }        
-      } else if (composingId) {
-        if (curr >= '0' && curr <= '9') {
-          currentId.append(curr);
-        } else {
-          ack = 0;
-          armController.log(Level.SEVERE, LOG_CORRUPTED_DATA);
-        }
-      } else if (curr != CR) {
-        ignored.append(curr);
-      }
-    }
-    inFlow.delete(0, pos);
-    pos = 0;
+  /**
+   * Gets how the sender thread establishes when the next command can be sent.
+   * @return The {@code FlowControl}.
+   */
+  public FlowControl getFlowControl() {
+    return flowControl;
   }
 
- /**
-   * Removes the id from the FIFO queue.
-   * @param id 
-   *        The id of the command to be removed.
+  /**
+   * Sets how the sender thread establishes when the next command can be sent.
+   * @param flowControl
+   *        The {@code FlowControl}.
    */
-  private void removeId(String id) {
-    ListIterator<ArmCommand> iter = queue.listIterator();
-    ArmCommand item = null;
-    String itemId;
-    boolean first = true;
-    boolean found = false;
-    List skipped = new LinkedList<ArmCommand>();
-    while(iter.hasNext()) {
-      item = iter.next();
-      itemId = item.getId();
-      if (itemId.compareTo(id) == 0) {
-        found = true;
-        break;
-      }
-      first = false;
-      skipped.add(item);
-    }
-    
-    if (found) {
-      armController.log(Level.INFO, LOG_COMMAND_EXECUTED, item);
-      queue.remove(item);
+  public void setFlowControl(FlowControl flowControl) {
+    this.flowControl = flowControl == null ? FlowControl.Timed : flowControl;
+    wakeUpSender();
+  }
+
+  /**
+   * Gets the maximum number of commands not yet acknowledged, when the 
+   * {@code FlowControl} is {@code Acknowledged}.
+   * @return The number of commands.
+   */
+  public int getAckWindow() {
+    return ackWindow;
+  }
+
+  /**
+   * Sets the maximum number of commands not yet acknowledged, when the 
+   * {@code FlowControl} is {@code Acknowledged}.
+   * @param ackWindow
+   *        The number of commands (at least 1).
+   */
+  public void setAckWindow(int ackWindow) {
+    this.ackWindow = Math.max(1, ackWindow);
+    wakeUpSender();
+  }
+
+  /**
+   * Gets the number of commands sent and not yet acknowledged.
+   * @return The number of commands.
+   */
+  public int getInFlightCommands() {
+    return inFlightCount;
+  }
+
+  /**
+   * Gets the time waited for the acknowledge of a command before sending it 
+   * again.
+   * @return The time in milliseconds; zero if the deadlines are disabled.
+   */
+  public int getAckTimeout() {
+    return ackTimeout;
+  }
+
+  /**
+   * Sets the time waited for the acknowledge of a command before sending it 
+   * again.
+   * @param ackTimeout
+   *        The time in milliseconds; zero disables the deadlines.
+   */
+  public void setAckTimeout(int ackTimeout) {
+    this.ackTimeout = Math.max(0, ackTimeout);
+  }
+
+  /**
+   * Gets the number of times a command not acknowledged is sent again.
+   * @return The number of retransmissions.
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Sets the number of times a command not acknowledged is sent again.
+   * @param maxRetries
+   *        The number of retransmissions.
+   */
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = Math.max(0, maxRetries);
+  }
+
+  /**
+   * Gets how the time waited for an acknowledge grows at every 
+   * retransmission.
+   * @return The {@code RetryBackoff}.
+   */
+  public RetryBackoff getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  /**
+   * Sets how the time waited for an acknowledge grows at every 
+   * retransmission.
+   * @param retryBackoff
+   *        The {@code RetryBackoff}.
+   */
+  public void setRetryBackoff(RetryBackoff retryBackoff) {
+    this.retryBackoff = retryBackoff;
+  }
+
+  /**
+   * Gets what is done when a command is given up.
+   * @return The {@code Escalation}.
+   */
+  public Escalation getEscalation() {
+    return escalation;
+  }
+
+  /**
+   * Sets what is done when a command is given up.
+   * @param escalation
+   *        The {@code Escalation}.
+   */
+  public void setEscalation(Escalation escalation) {
+    this.escalation = escalation;
+  }
+
+  /**
+   * Gets the histogram of the latency of an interval of the life of the 
+   * commands.  It is updated while the commands are sent and acknowledged.
+   * @param latency
+   *        The interval.
+   * @return The histogram.
+   */
+  public LatencyHistogram getLatency(Latency latency) {
+    return latencies[latency.ordinal()];
+  }
+
+  /**
+   * Removes the values recorded in all the latency histograms.
+   */
+  public void resetLatencies() {
+    for (LatencyHistogram histogram : latencies) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * Discards all the commands sent and not yet acknowledged, e.g. when the 
+   * connection with the arm is reset.  They are logged as not executed by the
+   * sender thread, before it sends any command added after this call, and the
+   * ids of the commands waiting to be sent start again from zero.
+   */
+  public void clearInFlight() {
+    clearRequested = true;
+    wakeUpSender();
+  }
+
+  /**
+   * Holds the commands waiting to be sent, e.g. when the connection is lost,
+   * and discards the ones sent and not yet acknowledged, logging them as not
+   * executed.  The commands added meanwhile are held as well.
+   */
+  public void suspend() {
+    suspended = true;
+    clearInFlight();
+  }
+
+  /**
+   * Checks whether the commands are held.
+   * @return {@code true} if suspended, {@code false} otherwise.
+   */
+  public boolean isSuspended() {
+    return suspended;
+  }
+
+  /**
+   * Sends the held commands again, after some others, e.g. the ones 
+   * restoring the pose of the arm after reconnecting.  The held commands are
+   * renumbered after the new ones.
+   * @param binaryFraming
+   *        If {@code true}, the binary framing is negotiated first, as 
+   *        {@code negotiateBinaryFraming()} does.
+   * @param preamble
+   *        The commands to be sent before the held ones.
+   */
+  public void resume(boolean binaryFraming, String... preamble) {
+    String[] commands = preamble;
+    if (binaryFraming) {
+      commands = new String[preamble.length+1];
+      commands[0] = ACTION_TR+TR_BINARY_FRAMING;
+      System.arraycopy(preamble, 0, commands, 1, preamble.length);
+      binaryFramingOffered = false;
+    }
+    queued.addAndGet(commands.length);
+    resumePreamble = commands;
+    if (!running) {
+      start();
+    }
+    wakeUpSender();
+  }
+
+  /**
+   * Queues the preamble of a resume before the held commands, renumbering 
+   * them so that they are still sent in the order of their ids, and stops
+   * holding them.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param preamble
+   *        The commands to be sent first.
+   */
+  private void resumeWith(String[] preamble) {
+    restartSequence(preamble);
+    suspended = false;
+  }
+
+  /**
+   * Numbers again from zero the commands waiting to be sent, after some 
+   * others, so that the ids of a connection remain short.  The renumbered 
+   * commands can still be coalesced and dropped.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread, when no command is in 
+   * flight.</p>
+   * 
+   * @param preamble
+   *        The commands to be sent first.
+   */
+  private void restartSequence(String[] preamble) {
+    takeSubmissions();
+    List<ArmCommand> held = new ArrayList<>(pending.size());
+    ArmCommand ac;
+    while ((ac = pending.pollOldest()) != null) {
+      held.add(ac);
+    }
+    nextSequence = 0L;
+    long now = System.nanoTime();
+    for (String command : preamble) {
+      ac = new ArmCommand(command, nextSequence++);
+      ac.setEnqueuedNanos(now);
+      pending.add(ac);
+    }
+    for (ArmCommand item : held) {
+      ac = new ArmCommand(item.getCommand(), nextSequence++);
+      ac.setEnqueuedNanos(item.getEnqueuedNanos());
+      ac.setDroppable(item.isDroppable());
+      pending.add(ac);
+      int servo = getServo(ac.getCommand());
+      if (servo >= 0 && coalescible[servo] == item) {
+        coalescible[servo] = ac;
+      }
+      if (lastPlanar == item) {
+        lastPlanar = ac;
+      }
+    }
+    droppableSequence = 0L;
+  }
+
+  /**
+   * Discards all the commands sent and not yet acknowledged, logging them as
+   * not executed.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   */
+  private void discardInFlight() {
+    ArmCommand item;
+    while ((item = inFlight.pollOldest()) != null) {
+      armController.log(Level.SEVERE, LOG_COMMAND_NOT_EXECUTED, item);
+    }
+    timeouts.clear();
+    inFlightCount = 0;
+    barrier = null;
+  }
+
+  /**
+   * Wakes up the sender thread, e.g. when a command has been added or a 
+   * credit has been freed.
+   */
+  private void wakeUpSender() {
+    Thread thread = sender;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Wakes up the callers of {@code addCommand()} waiting for room in the 
+   * queue, if any.
+   */
+  private void wakeUpProducers() {
+    if (blockedProducers.get() > 0) {
+      synchronized (space) {
+        space.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of commands waiting to be sent.
+   * @return The number of commands.
+   */
+  public int getPendingCommands() {
+    return queued.get();
+  }
+
+  /**
+   * Builds a multi-joint command, moving all the servos together to the given
+   * angles, as they are expected by the firmware.
+   * 
+   * The firmware moves every servo by one degree at each step, so the command
+   * lasts as long as the longest of the six movements.  It is never coalesced
+   * and it cannot be coalesced with the single-joint commands.
+   * 
+   * @param sh
+   *        The horizontal shoulder angle.
+   * @param sv
+   *        The vertical shoulder angle.
+   * @param ev
+   *        The vertical elbow angle.
+   * @param wv
+   *        The vertical wrist angle.
+   * @param wr
+   *        The wrist rotation.
+   * @param cs
+   *        The clamp aperture.
+   * @return The command.
+   */
+  public static String encodeMultiJoint(
+          int sh, int sv, int ev, int wv, int wr, int cs
+  ) {
+    return new StringBuilder(32)
+            .append(ACTION_MJ)
+            .append(' ').append(sh)
+            .append(' ').append(sv)
+            .append(' ').append(ev)
+            .append(' ').append(wv)
+            .append(' ').append(wr)
+            .append(' ').append(cs)
+            .toString();
+  }
+
+  /**
+   * Asks the robotic arm to switch to the binary framing, through the 
+   * test-response command.  The firmware supporting it announces the switch 
+   * before acknowledging the command; then both sides use the binary frames.
+   * With an older firmware the command is just acknowledged, and the text 
+   * lines remain in use.
+   * 
+   * It should be called right after connecting, before any other command.
+   */
+  public void negotiateBinaryFraming() {
+    binaryFramingOffered = false;
+    addCommand(ACTION_TR+TR_BINARY_FRAMING);
+  }
+
+  /**
+   * Adds a new command to be sent to the robotic arm.
+   * 
+   * The method does not wait for the command to be sent, unless the queue is
+   * full and the {@code DropPolicy} is {@code Block}.
+   * 
+   * @param command
+   *        The command to be sent.
+   */
+  public void addCommand(String command) {
+    addCommand(command, false);
+  }
+
+  /**
+   * Adds a new command to be sent to the robotic arm.
+   * 
+   * The method does not wait for the command to be sent, unless it is added
+   * with coalescing, there are already {@code maxPendingCommands} such 
+   * commands waiting to be sent, the {@code DropPolicy} is {@code Block} and 
+   * the caller is not the Event Dispatch Thread.  Without coalescing, the 
+   * command is never dropped.  It can be called by any
+   * thread; the commands added by the same thread are sent in the order they 
+   * are added.  The id of the command is assigned by the sender thread.
+   * 
+   * @param command
+   *        The command to be sent.
+   * @param coalesce
+   *        If {@code true}, the command replaces the one for the same joint 
+   *        still waiting to be sent, if any.
+   */
+  public void addCommand(String command, boolean coalesce) {
+    Submission submission = new Submission(command, coalesce);
+    if (!reserve(coalesce)) {
+      armController.log(Level.WARNING, LOG_COMMAND_DROPPED, command);
+      return;
+    }
+    submissions.offer(submission);
+    if (!running) {
+      start();
+    }
+    wakeUpSender();
+  }
+
+  /**
+   * Reserves the room for a new command in the queue of the commands waiting 
+   * to be sent, applying the {@code DropPolicy} when it is full.
+   * 
+   * A command added without coalescing always finds room.  The count of the 
+   * ones added with coalescing is only incremented when it is still below 
+   * {@code maxPendingCommands}, so that concurrent producers cannot exceed 
+   * it, but with the {@code DropOldest} {@code DropPolicy}, whose excess is 
+   * dropped by the sender thread.  The {@code Block} {@code DropPolicy} never
+   * blocks the Event Dispatch Thread, which drops the oldest commands instead.
+   * 
+   * @param coalesce
+   *        Whether the command is added with coalescing.
+   * @return {@code true} if the command can be queued, {@code false} if it 
+   *         has to be dropped.
+   */
+  private boolean reserve(boolean coalesce) {
+    if (!coalesce) {
+      queued.incrementAndGet();
+      return true;
+    }
+    while (true) {
+      int count = droppable.get();
+      if (count < maxPendingCommands 
+              || dropPolicy == DropPolicy.DropOldest
+              || (dropPolicy == DropPolicy.Block 
+                  && EventQueue.isDispatchThread())) {
+        if (droppable.compareAndSet(count, count + 1)) {
+          queued.incrementAndGet();
+          return true;
+        }
+        continue;
+      }
+      if (dropPolicy == DropPolicy.DropNewest || !awaitSpace()) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Waits until there is room in the queue of the commands waiting to be sent
+   * or the {@code DropPolicy} is no more {@code Block}.
+   * @return {@code true} if the command can be queued, {@code false} if the
+   *         thread has been interrupted.
+   */
+  private boolean awaitSpace() {
+    blockedProducers.incrementAndGet();
+    try {
+      synchronized (space) {
+        while (droppable.get() >= maxPendingCommands 
+                && dropPolicy == DropPolicy.Block) {
+          space.wait();
+        }
+      }
+      return true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      blockedProducers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Moves the commands added by the producer threads into the {@code pending}
+   * queue, coalescing them and applying the {@code DropOldest} 
+   * {@code DropPolicy}.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   */
+  private void takeSubmissions() {
+    Submission submission;
+    while ((submission = submissions.poll()) != null) {
+      int servo = getServo(submission.command);
+      if (submission.coalesce && servo >= 0 && coalesce(servo, submission)) {
+        droppable.decrementAndGet();
+        queued.decrementAndGet();
+        wakeUpProducers();
+        continue;
+      }
+      ArmCommand ac = new ArmCommand(submission.command, nextSequence++);
+      ac.setEnqueuedNanos(submission.enqueuedNanos);
+      ac.setDroppable(submission.coalesce);
+      pending.add(ac);
+      if (submission.coalesce && servo >= 0) {
+        coalescible[servo] = ac;
+        if (PLANAR_SERVOS[servo]) {
+          lastPlanar = ac;
+        }
+      } else {
+        /*
+         * No command can be moved across one that cannot be coalesced, nor 
+         * replace one added without coalescing.
+         */
+        Arrays.fill(coalescible, null);
+        lastPlanar = null;
+      }
+      if (submission.coalesce && dropPolicy != DropPolicy.DropNewest) {
+        while (droppable.get() > maxPendingCommands) {
+          if (!dropOldestPending()) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the oldest command added with coalescing still waiting to be sent.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @return {@code true} if a command has been dropped, {@code false} if none
+   *         can be dropped.
+   */
+  private boolean dropOldestPending() {
+    ArmCommand oldest = pending.peekOldest();
+    if (oldest == null) {
+      return false;
+    }
+    long seq = Math.max(droppableSequence, oldest.getSequence());
+    long newest = pending.peekNewest().getSequence();
+    for (; seq <= newest; seq++) {
+      ArmCommand ac = pending.get(seq);
+      if (ac != null && ac.isDroppable()) {
+        pending.remove(seq);
+        forgetPending(ac);
+        droppableSequence = seq + 1;
+        armController.log(Level.WARNING, LOG_COMMAND_DROPPED, ac);
+        queued.decrementAndGet();
+        return true;
+      }
+    }
+    droppableSequence = seq;
+    return false;
+  }
+
+  /**
+   * Replaces, in its position, the command waiting to be sent for the same 
+   * servo.
+   * 
+   * The new command takes the id of the replaced one, so that the commands 
+   * are still sent in the order of their ids.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param servo
+   *        The servo moved by the command.
+   * @param submission
+   *        The new command.
+   * @return {@code true} if it has replaced an older one, {@code false} if it
+   *         has to be queued.
+   */
+  private boolean coalesce(int servo, Submission submission) {
+    ArmCommand old = coalescible[servo];
+    if (old == null || (PLANAR_SERVOS[servo] && old != lastPlanar)) {
+      return false;
+    }
+    ArmCommand ac = new ArmCommand(submission.command, old.getSequence());
+    ac.setEnqueuedNanos(submission.enqueuedNanos);
+    ac.setDroppable(true);
+    if (pending.replace(old.getSequence(), ac) != old) {
+      return false;
+    }
+    coalescible[servo] = ac;
+    if (PLANAR_SERVOS[servo]) {
+      lastPlanar = ac;
+    }
+    return true;
+  }
+
+  /**
+   * Removes the oldest command waiting to be sent.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @return The oldest command or {@code null} if there is none.
+   */
+  private ArmCommand pollPending() {
+    ArmCommand ac = pending.pollOldest();
+    if (ac != null) {
+      forgetPending(ac);
+    }
+    return ac;
+  }
+
+  /**
+   * Updates the coalescing state and the count of the commands that can be 
+   * dropped after a command has left the {@code pending} queue.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param ac
+   *        The command removed from the queue.
+   */
+  private void forgetPending(ArmCommand ac) {
+    int servo = getServo(ac.getCommand());
+    if (servo >= 0 && coalescible[servo] == ac) {
+      coalescible[servo] = null;
+    }
+    if (lastPlanar == ac) {
+      lastPlanar = null;
+    }
+    if (ac.isDroppable()) {
+      droppable.decrementAndGet();
+    }
+  }
+
+  /**
+   * Gets the servo moved by a command that can be coalesced.
+   * @param command
+   *        The command.
+   * @return The servo number or {@code -1} if the command cannot be 
+   *         coalesced.
+   */
+  private static int getServo(String command) {
+    if (command == null || command.length() < 2 
+            || (command.length() > 2 && Character.isLetter(command.charAt(2)))
+    ) {
+      return -1;
+    }
+    for (int i = 0; i < COALESCED_ACTIONS.length; i++) {
+      if (command.startsWith(COALESCED_ACTIONS[i])) {
+        return COALESCED_SERVOS[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Starts the sender thread, unless it is already running.
+   */
+  private synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    sender = new Thread(this::send, "Pierin-oh! dispatcher");
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  /**
+   * Stops the sender thread and waits for it to terminate.  The commands 
+   * waiting to be sent are discarded.
+   */
+  public synchronized void stop() {
+    Thread thread = sender;
+    running = false;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      try {
+        thread.join(STOP_TIMEOUT);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      sender = null;
+    }
+  }
+
+  /**
+   * Checks whether the commands are actually sent to the robotic arm.
+   * @param comm
+   *        The serial communicator in use.
+   * @return {@code true} if sent, {@code false} if simulated.
+   */
+  private boolean isTransmitting(SerialCommunicator comm) {
+    return !simulation && comm != null && comm.isConnected();
+  }
+
+  /**
+   * The sender thread body.
+   * 
+   * Takes the commands from the {@code pending} queue in the issuing order and
+   * sends them, making sure that at least {@code timeBetweenCommands} 
+   * milliseconds pass between two of them or, with the {@code Acknowledged}
+   * {@code FlowControl}, that no more than {@code ackWindow} of them are 
+   * waiting for an acknowledge.
+   */
+  private void send() {
+    while (running) {
+      try {
+        if (clearRequested) {
+          clearRequested = false;
+          discardInFlight();
+          restartSequence(NO_COMMANDS);
+        }
+        String[] preamble = resumePreamble;
+        if (preamble != null) {
+          resumePreamble = null;
+          resumeWith(preamble);
+        }
+        if (simulationResetRequested) {
+          simulatedSendNanos = 0L;
+          simulatedNanos = 0L;
+          simulationResetRequested = false;
+        }
+        takeWritten();
+        takeResponses();
+        takeSubmissions();
+        checkTimeouts();
+        if (suspended || pending.isEmpty()) {
+          await(0L);
+          continue;
+        }
+        if (barrier != null) {
+          if (inFlight.get(barrier.getSequence()) == barrier) {
+            await(0L);
+            continue;
+          }
+          barrier = null;
+        }
+        if (isTransmitting(comm)) {
+          if (flowControl == FlowControl.Acknowledged) {
+            if (inFlightCount >= ackWindow) {
+              await(0L);
+              continue;
+            }
+          } else {
+            long delay = nextSendNanos - System.nanoTime();
+            if (delay > 0L) {
+              await(delay);
+              continue;
+            }
+          }
+        }
+        ArmCommand ac = pollPending();
+        try {
+          transmit(ac);
+        } finally {
+          // Only now, so that awaitSent() returns once the command is sent.
+          queued.decrementAndGet();
+          wakeUpProducers();
+        }
+      } catch (RuntimeException ex) {
+        Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex);
+      }
+    }
+    discardPending();
+  }
+
+  /**
+   * Parks the sender thread until it is woken up by {@code wakeUpSender()}.  
+   * While there are deadlines to be checked, the wait does not last more than
+   * a tick of the {@code TimingWheel}.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param delay
+   *        The maximum time to wait in nanoseconds, or zero to wait until 
+   *        woken up.
+   */
+  private void await(long delay) {
+    if (ackTimeout > 0 && inFlightCount > 0) {
+      long tick = timeouts.getTickNanos();
+      if (delay <= 0L || delay > tick) {
+        delay = tick;
+      }
+    }
+    if (delay > 0L) {
+      LockSupport.parkNanos(this, delay);
+    } else {
+      LockSupport.park(this);
+    }
+  }
+
+  /**
+   * Discards the commands waiting to be sent, without logging them.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   */
+  private void discardPending() {
+    Submission submission;
+    while ((submission = submissions.poll()) != null) {
+      if (submission.coalesce) {
+        droppable.decrementAndGet();
+      }
+      queued.decrementAndGet();
+    }
+    while (pollPending() != null) {
+      queued.decrementAndGet();
+    }
+    Arrays.fill(coalescible, null);
+    lastPlanar = null;
+    wakeUpProducers();
+  }
+
+  /**
+   * Handles the acknowledges and the errors coming from the robotic arm.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   */
+  private void takeResponses() {
+    long response;
+    while ((response = responses.poll()) != LongRingBuffer.EMPTY) {
+      if (response >= 0L) {
+        removeAcknowledged(response);
+      } else {
+        refuseOldest(FIRMWARE_ERRORS[(int)(-1L - response)]);
+      }
+      inFlightCount = inFlight.size();
+    }
+  }
+
+  /**
+   * Handles the completions of the writes of the commands, so that their 
+   * round-trip time is measured from when they have actually been written.
+   * The completions of the commands no longer in flight are ignored.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   */
+  private void takeWritten() {
+    while (written.size() >= 2) {
+      ArmCommand ac = inFlight.get(written.poll());
+      long nanos = written.poll();
+      if (ac != null) {
+        latencies[Latency.Written.ordinal()].record(nanos - ac.getSentNanos());
+        ac.setSentNanos(nanos);
+      }
+    }
+  }
+
+  /**
+   * Gets the time waited for the acknowledge of a command.
+   * @param attempts
+   *        The number of times the command has already been sent again.
+   * @return The time in nanoseconds.
+   */
+  private long getTimeoutNanos(int attempts) {
+    long timeout = TimeUnit.MILLISECONDS.toNanos(ackTimeout);
+    if (retryBackoff == RetryBackoff.Exponential) {
+      timeout <<= Math.min(attempts, MAX_BACKOFF_SHIFT);
+    }
+    return timeout;
+  }
+
+  /**
+   * Advances the {@code TimingWheel} and handles the expired deadlines.
+   */
+  private void checkTimeouts() {
+    if (inFlight.isEmpty() || ackTimeout == 0) {
+      timeouts.clear();
+      return;
+    }
+    TimingWheel.Timeout<ArmCommand> expired = 
+            timeouts.expire(System.nanoTime());
+    for (; expired != null; expired = expired.getNext()) {
+      try {
+        handleTimeout(expired);
+      } catch (RuntimeException ex) {
+        Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex);
+      }
+    }
+  }
+
+  /**
+   * Sends again a command whose deadline has expired or, when the 
+   * retransmissions are over or a newer command in flight supersedes it, 
+   * gives it up and applies the {@code Escalation}.  Nothing is done if the
+   * command has been acknowledged in the meantime.
+   * @param timeout
+   *        The expired deadline.
+   */
+  private void handleTimeout(TimingWheel.Timeout<ArmCommand> timeout) {
+    ArmCommand ac = timeout.getItem();
+    int attempts = timeout.getAttempts() + 1;
+    if (inFlight.get(ac.getSequence()) != ac) {
+      return;
+    }
+    SerialCommunicator comm = this.comm;
+    if (attempts <= maxRetries 
+            && isTransmitting(comm) 
+            && !isSuperseded(ac)) {
+      long now = System.nanoTime();
+      ac.setSentNanos(now);
+      timeouts.schedule(ac, attempts, getTimeoutNanos(attempts), now);
+      armController.log(
+              Level.WARNING, LOG_COMMAND_RETRANSMITTED, ac, attempts
+      );
+      write(ac, comm);
+    } else {
+      inFlight.remove(ac.getSequence());
+      inFlightCount = inFlight.size();
+      armController.log(Level.SEVERE, LOG_COMMAND_GIVEN_UP, ac, escalation);
+      escalate();
+    }
+  }
+
+  /**
+   * Checks whether a command in flight is followed by a newer one in flight 
+   * for the same joint, or by any newer one if either of them cannot be 
+   * coalesced, so that sending it again would replay an old motion.
+   * @param ac
+   *        The command in flight.
+   * @return {@code true} if superseded, {@code false} otherwise.
+   */
+  private boolean isSuperseded(ArmCommand ac) {
+    int servo = getServo(ac.getCommand());
+    long newest = inFlight.peekNewest().getSequence();
+    for (long seq = ac.getSequence() + 1; seq <= newest; seq++) {
+      ArmCommand item = inFlight.get(seq);
+      if (item != null) {
+        int other = getServo(item.getCommand());
+        if (servo < 0 || other < 0 || other == servo) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Applies the {@code Escalation} after a command has been given up.
+   */
+  private void escalate() {
+    SerialCommunicator comm = this.comm;
+    switch (escalation) {
+      case Disconnect:
+        flushPending();
+        discardInFlight();
+        if (comm != null) {
+          comm.close();
+        }
+        break;
+      case Reconnect:
+        if (comm != null) {
+          comm.connectionLost();
+        }
+        break;
+      case FlushPending:
+        flushPending();
+        break;
+      case None:
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Discards the commands waiting to be sent, logging them as not executed.
+   */
+  private void flushPending() {
+    takeSubmissions();
+    ArmCommand item;
+    while ((item = pollPending()) != null) {
+      armController.log(Level.SEVERE, LOG_COMMAND_NOT_EXECUTED, item);
+      queued.decrementAndGet();
+    }
+    Arrays.fill(coalescible, null);
+    lastPlanar = null;
+    wakeUpProducers();
+  }
+
+  /**
+   * Writes a command to the serial port, encoding it into {@code outBuffer}
+   * with the framing in use.
+   * @param ac
+   *        The command to be written.
+   * @param comm
+   *        The serial communicator connected to the robotic arm.
+   * @return {@code true} if written, {@code false} if it cannot be encoded 
+   *         with the binary framing.
+   */
+  private boolean write(ArmCommand ac, SerialCommunicator comm) {
+    if (ac.getMaxEncodedLength() > outBuffer.length) {
+      outBuffer = new byte[ac.getMaxEncodedLength()];
+    }
+    if (comm.getFraming() == SerialCommunicator.Framing.Binary) {
+      int length = ac.encodeBinary(outBuffer, 0);
+      if (length < 0) {
+        return false;
+      }
+      comm.writeFrameToPort(outBuffer, length, ac.getSequence());
+    } else {
+      comm.writeToPort(outBuffer, ac.encode(outBuffer, 0), ac.getSequence());
+    }
+    return true;
+  }
+
+  /**
+   * Sends a command to the robotic arm or, if simulating, simulates it; 
+   * without a port, it just prints it.
+   * @param ac
+   *        The command to be sent.
+   */
+  private void transmit(ArmCommand ac) {
+//    System.out.println("Sending command: "+ac.getMessage());
+    SerialCommunicator comm = this.comm;
+    if (simulation) {
+      simulate(ac);
+    } else if (isTransmitting(comm)) {
+      long now = System.nanoTime();
+      ac.setSentNanos(now);
       /*
-       * If it wasn't the first in the list, it means that we did not receive a
-       * number of acknowledges and hence we suppose that those commands have 
+       * The acknowledges are handled by this same thread, so the command can 
+       * be written before being added to the in-flight table.
+       */
+      if (!write(ac, comm)) {
+        armController.log(Level.SEVERE, LOG_COMMAND_NOT_ENCODABLE, ac);
+        return;
+      }
+      latencies[Latency.Queued.ordinal()].record(now - ac.getEnqueuedNanos());
+      ArmCommand oldest;
+      while ((oldest = inFlight.peekOldest()) != null && ac.getSequence()
+              - oldest.getSequence() >= MAX_IN_FLIGHT_COMMANDS) {
+        inFlight.pollOldest();
+        armController.log(Level.SEVERE, LOG_COMMAND_NOT_EXECUTED, oldest);
+      }
+      inFlight.add(ac);
+      inFlightCount = inFlight.size();
+      if (ackTimeout > 0) {
+        timeouts.schedule(ac, 0, getTimeoutNanos(0), now);
+      }
+      if (ac.getCommand().startsWith(ACTION_TR)) {
+        barrier = ac;
+      }
+      nextSendNanos = System.nanoTime()
+              +TimeUnit.MILLISECONDS.toNanos(timeBetweenCommands);
+      armController.log(Level.INFO, LOG_COMMAND_SENT, ac.getMessage());
+    } else {
+      System.out.println(
+              String.format(armController.getExistingLabel(
+                      SYS_SIMULATING_COMMAND
+              ), 
+              ac.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Simulates the execution of a command on a virtual clock: the command
+   * starts when it would be sent and the arm has finished the previous ones,
+   * and lasts as long as its movement takes on the {@code simulatedArm}.  
+   * The command is then acknowledged at once.
+   * 
+   * The command is parsed through its binary encoding, as the firmware would
+   * receive it.
+   * 
+   * @param ac
+   *        The command to be simulated.
+   */
+  private void simulate(ArmCommand ac) {
+    if (ac.getMaxEncodedLength() > outBuffer.length) {
+      outBuffer = new byte[ac.getMaxEncodedLength()];
+    }
+    int opcode = ArmCommand.decodeBinary(
+            outBuffer, 0, ac.encodeBinary(outBuffer, 0), simulatedValues
+    );
+    if (opcode < 0) {
+      armController.log(Level.SEVERE, LOG_COMMAND_NOT_ENCODABLE, ac);
+      return;
+    }
+    long millis = simulatedArm.execute(
+            ArmCommand.getBinaryAction(opcode), simulatedValues
+    );
+    simulatedNanos = Math.max(simulatedNanos, simulatedSendNanos)
+            +TimeUnit.MILLISECONDS.toNanos(millis);
+    if (flowControl == FlowControl.Timed) {
+      simulatedSendNanos += TimeUnit.MILLISECONDS.toNanos(timeBetweenCommands);
+    }
+    armController.log(Level.FINE, LOG_COMMAND_EXECUTED, ac);
+  }
+
+  /**
+   * Receives the notification of an error from the {@code SerialCommunicator}.
+   * The error is reported to the user by the arm controller, which listens to
+   * the {@code SerialCommunicator} as well; the commands not written are 
+   * handled by the acknowledge timeout.
+   * @param error
+   *        The error message.
+   */
+  @Override
+  public void notifyError(String error) {
+  }
+
+  /**
+   * Receives the notification of a message from the {@code SerialCommunicator}.
+   * 
+   * <strong>Note</strong>
+   * <p>As the {@code ResponseParser} is not thread-safe, the data has to be 
+   * notified by a single thread, i.e. the one of the 
+   * {@code SerialCommunicator}.</p>
+   * 
+   * @param message
+   *        The message.
+   */
+  @Override
+  public void notifyMessage(String message) {
+//    System.out.println("notifyMessage() >"+message+"<");
+    parser.parse(ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /**
+   * Receives the data from the {@code SerialCommunicator} and passes it to the
+   * parser, without copying it.
+   * @param data
+   *        The data, from the position to the limit of the buffer.
+   */
+  @Override
+  public void notifyData(ByteBuffer data) {
+    parser.parse(data);
+  }
+
+  /**
+   * Receives a binary frame from the {@code SerialCommunicator} and passes it
+   * to the parser, without copying it.
+   * @param payload
+   *        The buffer containing the payload of the frame.
+   * @param length
+   *        The length of the payload.
+   */
+  @Override
+  public void notifyFrame(byte[] payload, int length) {
+    parser.parseFrame(payload, length);
+  }
+
+  /**
+   * Receives the notification of a corrupted binary frame.  The command it 
+   * acknowledged, if any, is handled by the following acknowledge or by its
+   * timeout.
+   * @param length
+   *        The number of bytes received for the frame.
+   */
+  @Override
+  public void notifyCorruptedFrame(int length) {
+    armController.log(Level.WARNING, LOG_CORRUPTED_FRAME, length);
+  }
+
+  /**
+   * Receives an acknowledge from the robotic arm and passes it to the sender
+   * thread.
+   * @param id
+   *        The id of the executed command.
+   */
+  @Override
+  public void ackReceived(long id) {
+    postResponse(id);
+  }
+
+  /**
+   * Receives an error from the robotic arm.
+   * 
+   * The firmware executes the commands in the issuing order and refuses a 
+   * command before starting it, hence the refused command is the oldest one 
+   * not yet acknowledged.
+   * 
+   * @param error
+   *        The error returned by the robotic arm.
+   */
+  @Override
+  public void errorReceived(ResponseParser.FirmwareError error) {
+    postResponse(-1L - error.ordinal());
+  }
+
+  /**
+   * Receives the notification that a command has been written to the serial 
+   * port, from the writer thread of the {@code SerialCommunicator}.  If the 
+   * queue of the completions is full, the notification is dropped, losing 
+   * just a latency sample.
+   * @param tag
+   *        The sequence number of the command.
+   * @param nanos
+   *        The {@code System.nanoTime()} when the write has completed.
+   */
+  @Override
+  public void notifyWritten(long tag, long nanos) {
+    if (written.size() <= WRITTEN_CAPACITY - 2) {
+      written.offer(tag);
+      written.offer(nanos);
+    }
+  }
+
+  /**
+   * Passes a response to the sender thread.  If the queue of the responses is
+   * full, waits for the sender thread to make room.
+   * @param response
+   *        The acknowledged id or the encoded error.
+   */
+  private void postResponse(long response) {
+    while (!responses.offer(response)) {
+      if (!running) {
+        armController.log(Level.SEVERE, LOG_WRONG_DATA, response);
+        return;
+      }
+      wakeUpSender();
+      Thread.yield();
+    }
+    wakeUpSender();
+  }
+
+  /**
+   * Removes the oldest command from the in-flight table as refused by the 
+   * robotic arm.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param error
+   *        The error returned by the robotic arm.
+   */
+  private void refuseOldest(ResponseParser.FirmwareError error) {
+    ArmCommand refused = inFlight.pollOldest();
+    if (refused != null) {
+      armController.log(
+              Level.SEVERE, 
+              LOG_COMMAND_REFUSED, 
+              refused, 
+              error.getMessage()
+      );
+    } else {
+      armController.log(Level.SEVERE, LOG_WRONG_DATA, error.getMessage());
+    }
+  }
+
+  /**
+   * Receives the echo of the action of a command, sent by the robotic arm 
+   * when it starts executing it.
+   * @param line
+   *        The buffer containing the action.
+   * @param length
+   *        The length of the action.
+   */
+  @Override
+  public void echoReceived(byte[] line, int length) {
+  }
+
+  /**
+   * Receives the announcement that the robotic arm switches to the binary 
+   * framing after acknowledging the test-response command.  The switch is 
+   * made by the sender thread when it handles the acknowledge, before sending
+   * any other command.
+   */
+  @Override
+  public void binaryFramingOffered() {
+    binaryFramingOffered = true;
+  }
+
+  /**
+   * Receives a line from the robotic arm which is not an answer to a command.
+   * @param line
+   *        The buffer containing the line.
+   * @param length
+   *        The length of the line.
+   */
+  @Override
+  public void otherReceived(byte[] line, int length) {
+    armController.log(
+            Level.INFO, 
+            INFO_IGNORED_DATA_FROM_ARM, 
+            new String(line, 0, length, StandardCharsets.US_ASCII)
+    );
+  }
+
+  /**
+   * Removes the acknowledged command and the ones skipped before it from the 
+   * in-flight table.
+   * 
+   * As the robotic arm executes the commands in the issuing order, all the 
+   * commands older than the acknowledged one are considered as not executed 
+   * and removed as well.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called by the sender thread.</p>
+   * 
+   * @param id 
+   *        The id of the command to be removed.
+   */
+  private void removeAcknowledged(long id) {
+    ArmCommand item = inFlight.get(id);
+    
+    if (item != null) {
+      if (item == barrier) {
+        barrier = null;
+        SerialCommunicator comm = this.comm;
+        if (binaryFramingOffered && comm != null) {
+          binaryFramingOffered = false;
+          comm.setFraming(SerialCommunicator.Framing.Binary);
+          armController.log(
+                  Level.INFO, armController.getExistingLabel(LOG_BINARY_FRAMING)
+          );
+        }
+      }
+      long now = System.nanoTime();
+      latencies[Latency.RoundTrip.ordinal()].record(now - item.getSentNanos());
+      latencies[Latency.Total.ordinal()].record(now - item.getEnqueuedNanos());
+      armController.log(Level.INFO, LOG_COMMAND_EXECUTED, item);
+      /*
+       * If it wasn't the oldest in the table, it means that we did not receive
+       * a number of acknowledges and hence we suppose that those commands have 
        * not been executed. 
        */
-      if (!first) {
+      if (inFlight.peekOldest() != item) {
         armController.log(
                 Level.SEVERE, armController.getExistingLabel(LOG_CORRUPTED_DATA)
         );
-        /*
-         * Proceed removing from the FIFO queue all skipped items.
-         */
-        iter = skipped.listIterator();
-        while(iter.hasNext()) {
-          item = iter.next();
-          armController.log(
-                  Level.SEVERE,
-                  LOG_COMMAND_NOT_EXECUTED, 
-                  item
-          );
-          queue.remove(item);
-        }
-      } else {
+      }
+      /*
+       * Proceed removing from the table all skipped items.
+       */
+      ArmCommand skipped;
+      while ((skipped = inFlight.pollOldest()) != item) {
+        armController.log(
+                Level.SEVERE,
+                LOG_COMMAND_NOT_EXECUTED, 
+                skipped
+        );
       }
     } else {
       armController.log(Level.INFO, LOG_COMMAND_NOT_FOUND, id);
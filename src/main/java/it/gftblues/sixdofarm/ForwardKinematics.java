@@ -0,0 +1,369 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Computes where the links of the robotic arm are in space from the angles
+ * of its joints.
+ *
+ * <p>The origin is the centre of the plane where the arm lies on, the
+ * {@code z} axis points up and the {@code x} axis points in front of the arm
+ * when the shoulder is horizontally at 0 degrees.  The horizontal shoulder
+ * turns the plane of the arm around the {@code z} axis, the vertical
+ * shoulder, the elbow and the wrist bend the arm in that plane, from the
+ * vertical, as in the {@code CollisionDetector}, and the wrist rotation turns
+ * the clamp around its own axis.  The angles are those kept by the
+ * controller, in integer degrees.</p>
+ *
+ * <p>The methods fill arrays given by the caller, so that computing a pose
+ * allocates nothing, and the sines and cosines come from the tables of the
+ * {@code CollisionDetector}, so that both agree on every distance.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class ForwardKinematics {
+
+  /**
+   * The index of the shoulder joint, on top of the base, among the frames.
+   */
+  public static final int SHOULDER = 0;
+
+  /**
+   * The index of the elbow joint among the frames.
+   */
+  public static final int ELBOW = 1;
+
+  /**
+   * The index of the wrist joint among the frames.
+   */
+  public static final int WRIST = 2;
+
+  /**
+   * The index of the clamp's tip among the frames.
+   */
+  public static final int TIP = 3;
+
+  /**
+   * The number of frames.
+   */
+  public static final int FRAMES = 4;
+
+  /**
+   * The number of values of a position: {@code x}, {@code y} and {@code z}.
+   */
+  public static final int POSITION_SIZE = 3;
+
+  /**
+   * The number of values of a pose in a batch, in the order of the
+   * multi-joint command: horizontal shoulder, vertical shoulder, elbow,
+   * vertical wrist, wrist rotation and clamp.
+   */
+  public static final int POSE_SIZE = 6;
+
+  /**
+   * The height of the base.
+   */
+  private final double baseHeight;
+
+  /**
+   * The length of the shoulder.
+   */
+  private final double shoulderLength;
+
+  /**
+   * The length of the elbow.
+   */
+  private final double elbowLength;
+
+  /**
+   * The length of the clamp.
+   */
+  private final double clampLength;
+
+  /**
+   * Constructor.
+   * @param baseHeight
+   *        The height of the base.
+   * @param shoulderLength
+   *        The length of the shoulder.
+   * @param elbowLength
+   *        The length of the elbow.
+   * @param clampLength
+   *        The length of the clamp.
+   */
+  public ForwardKinematics(
+          double baseHeight,
+          double shoulderLength,
+          double elbowLength,
+          double clampLength
+  ) {
+    this.baseHeight = baseHeight;
+    this.shoulderLength = shoulderLength;
+    this.elbowLength = elbowLength;
+    this.clampLength = clampLength;
+  }
+
+  /**
+   * Constructor, with the geometry of a {@code CollisionDetector}.
+   * @param cd
+   *        The {@code CollisionDetector}.
+   */
+  public ForwardKinematics(CollisionDetector cd) {
+    this(
+            cd.getBaseHeight(),
+            cd.getShoulderLength(),
+            cd.getElbowLength(),
+            cd.getClampLength()
+    );
+  }
+
+  /**
+   * Constructor, with the geometry of a configuration.
+   * @param config
+   *        The configuration.
+   */
+  public ForwardKinematics(SixDOFArmConfiguration config) {
+    this(
+            config.getBaseHeight(),
+            config.getShoulderLength(),
+            config.getElbowLength(),
+            config.getClampLength()
+    );
+  }
+
+  /**
+   * Returns the height of the base.
+   * @return The height of the base.
+   */
+  public double getBaseHeight() {
+    return baseHeight;
+  }
+
+  /**
+   * Returns the length of the shoulder.
+   * @return The length of the shoulder.
+   */
+  public double getShoulderLength() {
+    return shoulderLength;
+  }
+
+  /**
+   * Returns the length of the elbow.
+   * @return The length of the elbow.
+   */
+  public double getElbowLength() {
+    return elbowLength;
+  }
+
+  /**
+   * Returns the length of the clamp.
+   * @return The length of the clamp.
+   */
+  public double getClampLength() {
+    return clampLength;
+  }
+
+  /**
+   * Computes the positions of all the frames.
+   * @param shHorDeg
+   *        The horizontal angle of the shoulder.
+   * @param shVerDeg
+   *        The vertical angle of the shoulder.
+   * @param elDeg
+   *        The angle of the elbow.
+   * @param wrDeg
+   *        The vertical angle of the wrist.
+   * @param positions
+   *        The array receiving {@code FRAMES} positions of
+   *        {@code POSITION_SIZE} values, indexed by frame, e.g.
+   *        {@code ELBOW}.
+   */
+  public void positions(
+          int shHorDeg,
+          int shVerDeg,
+          int elDeg,
+          int wrDeg,
+          double[] positions
+  ) {
+    double yawCos = CollisionDetector.cos(shHorDeg);
+    double yawSin = CollisionDetector.sin(shHorDeg);
+    int el = shVerDeg+elDeg;
+    int wr = el+wrDeg;
+    double reach = 0.0d;
+    double z = baseHeight;
+    set(positions, SHOULDER, reach, z, yawCos, yawSin);
+    reach += shoulderLength*CollisionDetector.sin(shVerDeg);
+    z += shoulderLength*CollisionDetector.cos(shVerDeg);
+    set(positions, ELBOW, reach, z, yawCos, yawSin);
+    reach += elbowLength*CollisionDetector.sin(el);
+    z += elbowLength*CollisionDetector.cos(el);
+    set(positions, WRIST, reach, z, yawCos, yawSin);
+    reach += clampLength*CollisionDetector.sin(wr);
+    z += clampLength*CollisionDetector.cos(wr);
+    set(positions, TIP, reach, z, yawCos, yawSin);
+  }
+
+  /**
+   * Computes the position of the clamp's tip.
+   * @param shHorDeg
+   *        The horizontal angle of the shoulder.
+   * @param shVerDeg
+   *        The vertical angle of the shoulder.
+   * @param elDeg
+   *        The angle of the elbow.
+   * @param wrDeg
+   *        The vertical angle of the wrist.
+   * @param tip
+   *        The array receiving the position at {@code offset}.
+   * @param offset
+   *        The index of the {@code x} value in {@code tip}.
+   */
+  public void tip(
+          int shHorDeg,
+          int shVerDeg,
+          int elDeg,
+          int wrDeg,
+          double[] tip,
+          int offset
+  ) {
+    int el = shVerDeg+elDeg;
+    int wr = el+wrDeg;
+    double reach =   shoulderLength*CollisionDetector.sin(shVerDeg)
+                    +elbowLength*CollisionDetector.sin(el)
+                    +clampLength*CollisionDetector.sin(wr);
+    tip[offset] = reach*CollisionDetector.cos(shHorDeg);
+    tip[offset+1] = reach*CollisionDetector.sin(shHorDeg);
+    tip[offset+2] =   baseHeight
+                     +shoulderLength*CollisionDetector.cos(shVerDeg)
+                     +elbowLength*CollisionDetector.cos(el)
+                     +clampLength*CollisionDetector.cos(wr);
+  }
+
+  /**
+   * Computes the positions of the clamp's tip of many poses.
+   * @param poses
+   *        The poses, {@code POSE_SIZE} values each, in the order of the
+   *        multi-joint command.
+   * @param count
+   *        The number of poses.
+   * @param tips
+   *        The array receiving {@code count} positions of
+   *        {@code POSITION_SIZE} values.
+   */
+  public void tips(int[] poses, int count, double[] tips) {
+    for (int i = 0, p = 0, t = 0; i < count; i++) {
+      tip(poses[p], poses[p+1], poses[p+2], poses[p+3], tips, t);
+      p += POSE_SIZE;
+      t += POSITION_SIZE;
+    }
+  }
+
+  /**
+   * Computes the orientation of the clamp: its axes in the coordinates of
+   * the plane where the arm lies on.
+   * @param shHorDeg
+   *        The horizontal angle of the shoulder.
+   * @param shVerDeg
+   *        The vertical angle of the shoulder.
+   * @param elDeg
+   *        The angle of the elbow.
+   * @param wrDeg
+   *        The vertical angle of the wrist.
+   * @param wrRotDeg
+   *        The rotation of the wrist.
+   * @param rotation
+   *        The array receiving the rotation matrix, nine values by row,
+   *        whose columns are the axes of the clamp: {@code z} along the
+   *        clamp, towards the tip, {@code x} across it, in the plane of the
+   *        arm when the wrist is not rotated, and {@code y} completing the
+   *        frame.
+   */
+  public void orientation(
+          int shHorDeg,
+          int shVerDeg,
+          int elDeg,
+          int wrDeg,
+          int wrRotDeg,
+          double[] rotation
+  ) {
+    double yawCos = CollisionDetector.cos(shHorDeg);
+    double yawSin = CollisionDetector.sin(shHorDeg);
+    int pitch = shVerDeg+elDeg+wrDeg;
+    double pitchCos = CollisionDetector.cos(pitch);
+    double pitchSin = CollisionDetector.sin(pitch);
+    double rollCos = CollisionDetector.cos(wrRotDeg);
+    double rollSin = CollisionDetector.sin(wrRotDeg);
+    // The axis of the clamp.
+    double zx = pitchSin*yawCos;
+    double zy = pitchSin*yawSin;
+    double zz = pitchCos;
+    // Across the clamp in the plane of the arm, and across that plane.
+    double ux = pitchCos*yawCos;
+    double uy = pitchCos*yawSin;
+    double uz = -pitchSin;
+    double vx = -yawSin;
+    double vy = yawCos;
+    double xx = rollCos*ux+rollSin*vx;
+    double xy = rollCos*uy+rollSin*vy;
+    double xz = rollCos*uz;
+    rotation[0] = xx;
+    rotation[3] = xy;
+    rotation[6] = xz;
+    // y = z cross x.
+    rotation[1] = zy*xz-zz*xy;
+    rotation[4] = zz*xx-zx*xz;
+    rotation[7] = zx*xy-zy*xx;
+    rotation[2] = zx;
+    rotation[5] = zy;
+    rotation[8] = zz;
+  }
+
+  /**
+   * Sets a position from its distance from the axis of the base and its
+   * height.
+   * @param positions
+   *        The positions.
+   * @param frame
+   *        The frame.
+   * @param reach
+   *        The distance from the axis of the base, in the plane of the arm.
+   * @param z
+   *        The height.
+   * @param yawCos
+   *        The cosine of the horizontal angle of the shoulder.
+   * @param yawSin
+   *        The sine of the horizontal angle of the shoulder.
+   */
+  private static void set(
+          double[] positions,
+          int frame,
+          double reach,
+          double z,
+          double yawCos,
+          double yawSin
+  ) {
+    int offset = frame*POSITION_SIZE;
+    positions[offset] = reach*yawCos;
+    positions[offset+1] = reach*yawSin;
+    positions[offset+2] = z;
+  }
+}
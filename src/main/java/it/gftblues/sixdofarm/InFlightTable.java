@@ -0,0 +1,253 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The table of the commands sent to the robotic arm and not yet acknowledged.
+ *
+ * <p>The commands are stored in a ring buffer indexed by their sequence
+ * number, so that both the lookup of an acknowledged command and the removal
+ * of the oldest one take constant time and do not allocate any memory.</p>
+ *
+ * <p>The sequence numbers have to be added in increasing order but they do not
+ * need to be contiguous: missing sequence numbers are just empty slots.  When
+ * the distance between the oldest and the newest sequence number exceeds the
+ * capacity of the buffer, the buffer is doubled.</p>
+ *
+ * <p>The {@code Dispatcher} also uses it for the commands waiting to be sent,
+ * where a command can be replaced by a newer one keeping its position in the
+ * queue.</p>
+ *
+ * <strong>Note</strong>
+ * <p>The class is not thread-safe.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class InFlightTable {
+
+  /**
+   * The default initial capacity.  It must be a power of two.
+   */
+  public static final int DEFAULT_CAPACITY = 64;
+
+  /**
+   * The slots of the ring buffer.
+   */
+  private ArmCommand[] slots;
+
+  /**
+   * The mask used to compute the slot of a sequence number.
+   */
+  private int mask;
+
+  /**
+   * The sequence number of the oldest slot in use.
+   */
+  private long head = 0L;
+
+  /**
+   * The sequence number following the newest slot in use.
+   */
+  private long tail = 0L;
+
+  /**
+   * The number of commands stored.
+   */
+  private int size = 0;
+
+  /**
+   * Default constructor.
+   */
+  public InFlightTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   * @param capacity
+   *        The initial capacity, rounded up to the next power of two.
+   */
+  public InFlightTable(int capacity) {
+    int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    slots = new ArmCommand[cap];
+    mask = cap - 1;
+  }
+
+  /**
+   * Adds a command.
+   * @param command
+   *        The command to be added.  Its sequence number has to be greater
+   *        than the one of any other command already added.
+   * @throws IllegalArgumentException
+   *         If the sequence number is not greater than the newest one.
+   */
+  public void add(ArmCommand command) {
+    long seq = command.getSequence();
+    if (size == 0) {
+      head = seq;
+      tail = seq;
+    } else if (seq < tail) {
+      throw new IllegalArgumentException(
+              String.format("Sequence %d is not after %d", seq, tail - 1)
+      );
+    }
+    while (seq - head >= slots.length) {
+      grow();
+    }
+    slots[(int)(seq & mask)] = command;
+    tail = seq + 1;
+    size++;
+  }
+
+  /**
+   * Gets the command with the given sequence number.
+   * @param seq
+   *        The sequence number.
+   * @return The command or {@code null} if not present.
+   */
+  public ArmCommand get(long seq) {
+    if (seq < head || seq >= tail) {
+      return null;
+    }
+    return slots[(int)(seq & mask)];
+  }
+
+  /**
+   * Replaces the command stored with the given sequence number, keeping its
+   * position.
+   * @param seq
+   *        The sequence number of the command to be replaced.
+   * @param command
+   *        The new command.
+   * @return The replaced command or {@code null} if there was no command with
+   *         the given sequence number (in that case nothing is stored).
+   */
+  public ArmCommand replace(long seq, ArmCommand command) {
+    ArmCommand old = get(seq);
+    if (old != null) {
+      slots[(int)(seq & mask)] = command;
+    }
+    return old;
+  }
+
+  /**
+   * Removes the command stored with the given sequence number.
+   * @param seq
+   *        The sequence number of the command to be removed.
+   * @return The removed command or {@code null} if not present.
+   */
+  public ArmCommand remove(long seq) {
+    ArmCommand old = get(seq);
+    if (old != null) {
+      slots[(int)(seq & mask)] = null;
+      size--;
+      while (head < tail && slots[(int)(head & mask)] == null) {
+        head++;
+      }
+    }
+    return old;
+  }
+
+  /**
+   * Gets the newest command without removing it.
+   * @return The newest command or {@code null} if the table is empty.
+   */
+  public ArmCommand peekNewest() {
+    for (long seq = tail - 1; seq >= head; seq--) {
+      ArmCommand item = slots[(int)(seq & mask)];
+      if (item != null) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the oldest command without removing it.
+   * @return The oldest command or {@code null} if the table is empty.
+   */
+  public ArmCommand peekOldest() {
+    for (long seq = head; seq < tail; seq++) {
+      ArmCommand item = slots[(int)(seq & mask)];
+      if (item != null) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes and returns the oldest command.
+   * @return The oldest command or {@code null} if the table is empty.
+   */
+  public ArmCommand pollOldest() {
+    while (head < tail) {
+      int slot = (int)(head & mask);
+      ArmCommand item = slots[slot];
+      slots[slot] = null;
+      head++;
+      if (item != null) {
+        size--;
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the number of commands stored.
+   * @return The number of commands.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the table is empty.
+   * @return {@code true} if empty, {@code false} otherwise.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all commands.
+   */
+  public void clear() {
+    while (pollOldest() != null) {
+    }
+    head = tail;
+  }
+
+  /**
+   * Doubles the capacity of the ring buffer keeping the stored commands.
+   */
+  private void grow() {
+    ArmCommand[] old = slots;
+    int oldMask = mask;
+    slots = new ArmCommand[old.length << 1];
+    mask = slots.length - 1;
+    for (long seq = head; seq < tail; seq++) {
+      slots[(int)(seq & mask)] = old[(int)(seq & oldMask)];
+    }
+  }
+}
@@ -0,0 +1,402 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Computes the angles of the horizontal shoulder, the vertical shoulder, the
+ * elbow and the vertical wrist bringing the clamp's tip to a point in space,
+ * with the clamp at a given pitch, in the coordinates of the
+ * {@code ForwardKinematics}.
+ *
+ * <p>The solution is analytic: the horizontal shoulder points the plane of
+ * the arm towards the point, either facing it or turned by 180 degrees with
+ * the arm leaning back, the pitch gives the position of the wrist and the
+ * shoulder and the elbow reach it with the elbow on either side, so there
+ * are up to four branches.  Their angles are rounded to integer degrees and
+ * the branches out of the range of the joints, or whose tip is farther than
+ * the tolerance from the point, are discarded.  The branch closest to the
+ * current pose of the arm is chosen; above the axis of the base the
+ * horizontal shoulder is left where it is.</p>
+ *
+ * <p>The branches are cached by voxel of {@code voxelSize} and pitch, in an
+ * open-addressing hash table of primitives, so that solving again for the
+ * same place costs a lookup.  Every point of a voxel is solved as its centre,
+ * so the answer does not depend on the order of the requests.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class InverseKinematics {
+
+  /**
+   * The default size of the side of a voxel: a millimetre.
+   */
+  public static final double DEFAULT_VOXEL_SIZE = 0.001d;
+
+  /**
+   * The default distance allowed between the tip and the point, covering the
+   * rounding of the angles to integer degrees.
+   */
+  public static final double DEFAULT_TOLERANCE = 0.005d;
+
+  /**
+   * The number of entries of the cache, a power of two.
+   */
+  public static final int CACHE_CAPACITY = 4096;
+
+  /**
+   * The maximum number of branches of a point.
+   */
+  public static final int BRANCHES = 4;
+
+  /**
+   * The number of joints of a pose: the horizontal shoulder, the vertical
+   * shoulder, the elbow and the vertical wrist.
+   */
+  public static final int JOINTS = 4;
+
+  /**
+   * The smallest angle of a joint.
+   */
+  public static final int MIN_ANGLE = -90;
+
+  /**
+   * The largest angle of a joint.
+   */
+  public static final int MAX_ANGLE = 90;
+
+  /**
+   * The key of an empty entry of the cache.
+   */
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  /**
+   * The packed value of a missing branch: no joint can be at -128 degrees.
+   */
+  private static final int NONE = 0;
+
+  /**
+   * The number of bits of a coordinate of a voxel in a key.
+   */
+  private static final int VOXEL_BITS = 18;
+
+  /**
+   * The mask of a coordinate of a voxel in a key.
+   */
+  private static final long VOXEL_MASK = (1L << VOXEL_BITS)-1L;
+
+  /**
+   * The engine checking the branches.
+   */
+  private final ForwardKinematics fk;
+
+  /**
+   * The size of the side of a voxel.
+   */
+  private final double voxelSize;
+
+  /**
+   * The distance allowed between the tip and the point.
+   */
+  private final double tolerance;
+
+  /**
+   * The keys of the cache.
+   */
+  private final long[] keys = new long[CACHE_CAPACITY];
+
+  /**
+   * The branches of the cache, {@code BRANCHES} packed poses per entry.
+   */
+  private final int[] branches = new int[CACHE_CAPACITY*BRANCHES];
+
+  /**
+   * The number of entries used in the cache.
+   */
+  private int size = 0;
+
+  /**
+   * The number of requests answered by the cache.
+   */
+  private long hits = 0L;
+
+  /**
+   * The tip computed while checking a branch, reused.
+   */
+  private final double[] tip = new double[ForwardKinematics.POSITION_SIZE];
+
+  /**
+   * Constructor with the default voxel size and tolerance.
+   * @param fk
+   *        The engine with the geometry of the arm.
+   */
+  public InverseKinematics(ForwardKinematics fk) {
+    this(fk, DEFAULT_VOXEL_SIZE, DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Constructor.
+   * @param fk
+   *        The engine with the geometry of the arm.
+   * @param voxelSize
+   *        The size of the side of a voxel.
+   * @param tolerance
+   *        The distance allowed between the tip and the point.
+   */
+  public InverseKinematics(
+          ForwardKinematics fk, double voxelSize, double tolerance
+  ) {
+    this.fk = fk;
+    this.voxelSize = voxelSize;
+    this.tolerance = tolerance;
+    clear();
+  }
+
+  /**
+   * Empties the cache.
+   */
+  public synchronized void clear() {
+    Arrays.fill(keys, EMPTY);
+    size = 0;
+  }
+
+  /**
+   * Gets the number of requests answered by the cache.
+   * @return The number of hits.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Computes the pose bringing the clamp's tip to a point, closest to the
+   * current pose.
+   * @param x
+   *        The {@code x} coordinate of the point.
+   * @param y
+   *        The {@code y} coordinate of the point.
+   * @param z
+   *        The height of the point.
+   * @param pitch
+   *        The angle of the clamp from the vertical, i.e. the sum of the
+   *        angles of the vertical shoulder, the elbow and the wrist.
+   * @param current
+   *        The current angles of the horizontal shoulder, the vertical
+   *        shoulder, the elbow and the vertical wrist.
+   * @param pose
+   *        The array receiving the angles, in the same order.
+   * @return {@code true} if the point can be reached, {@code false}
+   *         otherwise, leaving {@code pose} unchanged.
+   */
+  public synchronized boolean solve(
+          double x, double y, double z, int pitch, int[] current, int[] pose
+  ) {
+    long vx = Math.round(x/voxelSize);
+    long vy = Math.round(y/voxelSize);
+    long vz = Math.round(z/voxelSize);
+    int entry = lookup(vx, vy, vz, pitch);
+    // Above the axis of the base, any horizontal shoulder reaches the point.
+    boolean anyYaw = vx == 0L && vy == 0L && valid(current[0]);
+    int first = anyYaw ? 1 : 0;
+    int best = NONE;
+    int bestDistance = Integer.MAX_VALUE;
+    for (int i = entry*BRANCHES; i < (entry+1)*BRANCHES; i++) {
+      int packed = branches[i];
+      if (packed == NONE) {
+        break;
+      }
+      int distance = 0;
+      for (int joint = first; joint < JOINTS; joint++) {
+        distance += Math.abs(unpack(packed, joint)-current[joint]);
+      }
+      if (distance < bestDistance) {
+        best = packed;
+        bestDistance = distance;
+      }
+    }
+    if (best == NONE) {
+      return false;
+    }
+    for (int joint = 0; joint < JOINTS; joint++) {
+      pose[joint] = unpack(best, joint);
+    }
+    if (anyYaw) {
+      pose[0] = current[0];
+    }
+    return true;
+  }
+
+  /**
+   * Finds the entry of a voxel and pitch in the cache, solving them if not
+   * cached yet.
+   * @param vx
+   *        The {@code x} coordinate of the voxel.
+   * @param vy
+   *        The {@code y} coordinate of the voxel.
+   * @param vz
+   *        The {@code z} coordinate of the voxel.
+   * @param pitch
+   *        The pitch of the clamp.
+   * @return The index of the entry.
+   */
+  private int lookup(long vx, long vy, long vz, int pitch) {
+    long key = ((vx & VOXEL_MASK) << (2*VOXEL_BITS+10))
+            | ((vy & VOXEL_MASK) << (VOXEL_BITS+10))
+            | ((vz & VOXEL_MASK) << 10)
+            | (pitch & 0x3ffL);
+    int mask = CACHE_CAPACITY-1;
+    int entry = (int)(mix(key) & mask);
+    while (keys[entry] != EMPTY) {
+      if (keys[entry] == key) {
+        hits++;
+        return entry;
+      }
+      entry = (entry+1) & mask;
+    }
+    // Kept at most three quarters full, so that probing stays short.
+    if (size >= CACHE_CAPACITY*3/4) {
+      clear();
+      entry = (int)(mix(key) & mask);
+    }
+    keys[entry] = key;
+    size++;
+    compute(vx*voxelSize, vy*voxelSize, vz*voxelSize, pitch, entry);
+    return entry;
+  }
+
+  /**
+   * Spreads the bits of a key over the index of its entry.
+   * @param key
+   *        The key.
+   * @return The hash of the key.
+   */
+  private static long mix(long key) {
+    key *= 0x9e3779b97f4a7c15L;
+    return key ^ (key >>> 32);
+  }
+
+  /**
+   * Computes the branches reaching a point and stores them in an entry.
+   * @param x
+   *        The {@code x} coordinate of the point.
+   * @param y
+   *        The {@code y} coordinate of the point.
+   * @param z
+   *        The height of the point.
+   * @param pitch
+   *        The pitch of the clamp.
+   * @param entry
+   *        The index of the entry.
+   */
+  private void compute(double x, double y, double z, int pitch, int entry) {
+    int count = 0;
+    int offset = entry*BRANCHES;
+    double reach = Math.hypot(x, y);
+    int yaw = (int)Math.round(Math.toDegrees(Math.atan2(y, x)));
+    for (int side = 0; side < 2; side++) {
+      // Facing the point, or turned by 180 degrees leaning back.
+      int sh = side == 0 ? yaw : (yaw > 0 ? yaw-180 : yaw+180);
+      double r = side == 0 ? reach : -reach;
+      if (!valid(sh)) {
+        continue;
+      }
+      double wr = r-fk.getClampLength()*CollisionDetector.sin(pitch);
+      double wz = z-fk.getBaseHeight()
+              -fk.getClampLength()*CollisionDetector.cos(pitch);
+      double s = fk.getShoulderLength();
+      double e = fk.getElbowLength();
+      double c = (wr*wr+wz*wz-s*s-e*e)/(2.0d*s*e);
+      // Out of reach, the arm is stretched towards the point and the
+      // tolerance decides, e.g. when rounded to a voxel at full stretch.
+      double elbow = Math.acos(Math.max(-1.0d, Math.min(1.0d, c)));
+      for (int bend = 0; bend < 2; bend++) {
+        double el = bend == 0 ? elbow : -elbow;
+        double sv = Math.atan2(wr, wz)
+                -Math.atan2(e*Math.sin(el), s+e*Math.cos(el));
+        int svDeg = (int)Math.round(Math.toDegrees(sv));
+        int elDeg = (int)Math.round(Math.toDegrees(el));
+        int wvDeg = pitch-svDeg-elDeg;
+        if (!valid(svDeg) || !valid(elDeg) || !valid(wvDeg)) {
+          continue;
+        }
+        fk.tip(sh, svDeg, elDeg, wvDeg, tip, 0);
+        double dx = tip[0]-x;
+        double dy = tip[1]-y;
+        double dz = tip[2]-z;
+        if (dx*dx+dy*dy+dz*dz > tolerance*tolerance) {
+          continue;
+        }
+        int packed = pack(sh, svDeg, elDeg, wvDeg);
+        boolean found = false;
+        for (int i = offset; i < offset+count; i++) {
+          found |= branches[i] == packed;
+        }
+        // The two bends are the same when the elbow is straight.
+        if (!found) {
+          branches[offset+count++] = packed;
+        }
+      }
+    }
+    for (int i = offset+count; i < offset+BRANCHES; i++) {
+      branches[i] = NONE;
+    }
+  }
+
+  /**
+   * Checks whether an angle is in the range of the joints.
+   * @param deg
+   *        The angle.
+   * @return {@code true} if in range, {@code false} otherwise.
+   */
+  private static boolean valid(int deg) {
+    return deg >= MIN_ANGLE && deg <= MAX_ANGLE;
+  }
+
+  /**
+   * Packs a pose in an {@code int}, one byte per joint.
+   * @param sh
+   *        The horizontal angle of the shoulder.
+   * @param sv
+   *        The vertical angle of the shoulder.
+   * @param el
+   *        The angle of the elbow.
+   * @param wr
+   *        The vertical angle of the wrist.
+   * @return The packed pose, never {@code NONE}.
+   */
+  private static int pack(int sh, int sv, int el, int wr) {
+    return ((sh+128) << 24) | ((sv+128) << 16) | ((el+128) << 8) | (wr+128);
+  }
+
+  /**
+   * Gets the angle of a joint from a packed pose.
+   * @param packed
+   *        The packed pose.
+   * @param joint
+   *        The joint, from 0, the horizontal shoulder, to 3, the wrist.
+   * @return The angle.
+   */
+  private static int unpack(int packed, int joint) {
+    return ((packed >>> (24-8*joint)) & 0xff)-128;
+  }
+}
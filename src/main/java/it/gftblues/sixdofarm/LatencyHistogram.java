@@ -0,0 +1,195 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, with a fixed memory footprint.
+ *
+ * <p>The values are counted in logarithmic buckets, each one split in
+ * {@code SUB_BUCKETS} linear sub-buckets, so that every value is recorded
+ * with a relative error lower than {@code 1/SUB_BUCKETS}, from a nanosecond
+ * up to {@code Long.MAX_VALUE}.</p>
+ *
+ * <p>Recording is lock-free and does not allocate memory, so it can be done
+ * from any thread; the percentiles read while values are being recorded are
+ * approximated.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of bits of the sub-bucket index.
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /**
+   * The number of sub-buckets in every logarithmic bucket.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The counters of the sub-buckets.
+   */
+  private final AtomicLongArray counts =
+          new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+  /**
+   * The number of values recorded.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * The sum of the values recorded.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The maximum value recorded.
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value.  Negative values are recorded as zero.
+   * @param nanos
+   *        The value in nanoseconds.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts.incrementAndGet(getIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long prev;
+    while ((prev = max.get()) < value && !max.compareAndSet(prev, value)) {
+    }
+  }
+
+  /**
+   * Gets the number of values recorded.
+   * @return The number of values.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Gets the maximum value recorded.
+   * @return The maximum value in nanoseconds, or zero if none is recorded.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the mean of the values recorded.
+   * @return The mean in nanoseconds, or zero if none is recorded.
+   */
+  public double getMean() {
+    long n = count.get();
+    return n == 0L ? 0.0 : (double)sum.get() / n;
+  }
+
+  /**
+   * Gets the value below which fall the given percentage of the values
+   * recorded.
+   * @param percentile
+   *        The percentile, between 0 and 100.
+   * @return The highest value of the sub-bucket containing the percentile, in
+   *         nanoseconds, or zero if none is recorded.
+   */
+  public long getPercentile(double percentile) {
+    long total = count.get();
+    if (total == 0L) {
+      return 0L;
+    }
+    double p = Math.min(100.0, Math.max(0.0, percentile));
+    long rank = Math.max(1L, (long)Math.ceil(p / 100.0 * total));
+    long seen = 0L;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(getHighestValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Removes all the values recorded.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0L);
+    }
+    count.set(0L);
+    sum.set(0L);
+    max.set(0L);
+  }
+
+  /**
+   * Gets the index of the sub-bucket of a value.
+   * @param value
+   *        The value, not negative.
+   * @return The index.
+   */
+  private static int getIndex(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int)value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int)(value >>> shift);
+  }
+
+  /**
+   * Gets the highest value counted in a sub-bucket.
+   * @param index
+   *        The index of the sub-bucket.
+   * @return The value.
+   */
+  private static long getHighestValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Returns a summary of the histogram in milliseconds.
+   * @return The summary.
+   */
+  @Override
+  public String toString() {
+    return String.format(
+            "count:%d p50:%.1fms p90:%.1fms p99:%.1fms max:%.1fms",
+            getCount(),
+            getPercentile(50.0) / 1e6,
+            getPercentile(90.0) / 1e6,
+            getPercentile(99.0) / 1e6,
+            getMax() / 1e6
+    );
+  }
+}
@@ -0,0 +1,496 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import it.gftblues.sixdofarm.controllers.SerialCommunicator;
+import it.gftblues.sixdofarm.controllers.SerialCommunicatorListener;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Negotiates with the robotic arm the highest data-rate at which the serial
+ * link is reliable, and measures its round-trip time.
+ *
+ * <p>The firmware always starts at {@code BOOT_DATA_RATE}.  The tuner pings
+ * it with the test-response command, then asks it to move to the next
+ * data-rate with the {@code BR} command, whose value is the index of the
+ * data-rate in {@code SerialCommunicator.PORT_SPEEDS}.  After acknowledging
+ * it, the firmware switches and waits for a command at the new data-rate: if
+ * none comes within {@code CONFIRM_TIMEOUT} milliseconds, it goes back to
+ * the previous one.  At every data-rate a burst of pings measures the error
+ * rate and the round-trip time, and the tuner settles on the fastest one
+ * without errors.</p>
+ *
+ * <p>The tuner talks to the robotic arm directly, with the text lines: it
+ * has to run right after connecting, while no other listener of the
+ * {@code SerialCommunicator} sends commands.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class LinkTuner implements SerialCommunicatorListener, ResponseListener {
+
+  /**
+   * The result of the tuning.
+   */
+  public static class Result {
+
+    /**
+     * The data-rate.
+     */
+    private final int dataRate;
+
+    /**
+     * The mean round-trip time in nanoseconds.
+     */
+    private final long roundTripNanos;
+
+    /**
+     * Constructor.
+     * @param dataRate
+     *        The data-rate.
+     * @param roundTripNanos
+     *        The mean round-trip time in nanoseconds.
+     */
+    public Result(int dataRate, long roundTripNanos) {
+      this.dataRate = dataRate;
+      this.roundTripNanos = roundTripNanos;
+    }
+
+    /**
+     * Gets the data-rate.
+     * @return The data-rate.
+     */
+    public int getDataRate() {
+      return dataRate;
+    }
+
+    /**
+     * Gets the mean round-trip time of a ping.
+     * @return The time in nanoseconds.
+     */
+    public long getRoundTripNanos() {
+      return roundTripNanos;
+    }
+  }
+
+  /**
+   * The action changing the data-rate of the firmware.
+   */
+  public static final String ACTION_BR = "BR";
+
+  /**
+   * The data-rate the firmware starts with.
+   */
+  public static final int BOOT_DATA_RATE = 9600;
+
+  /**
+   * The default highest data-rate tried.
+   */
+  public static final int DEFAULT_MAX_DATA_RATE = 115200;
+
+  /**
+   * The time in milliseconds the firmware waits for a command at a new
+   * data-rate before going back to the previous one.
+   */
+  public static final int CONFIRM_TIMEOUT = 2000;
+
+  /**
+   * Default number of pings sent at every data-rate.
+   */
+  public static final int DEFAULT_PROBE_PINGS = 16;
+
+  /**
+   * Default time in milliseconds waited for the acknowledge of a ping.
+   */
+  public static final int DEFAULT_PING_TIMEOUT = 500;
+
+  /**
+   * The time in milliseconds waited for the firmware to start, e.g. after
+   * the reset caused by opening the serial port.
+   */
+  private static final int BOOT_TIMEOUT = 4000;
+
+  /**
+   * The time in milliseconds waited after switching the data-rate, before
+   * sending anything.
+   */
+  private static final long SETTLE_TIME = 50L;
+
+  /**
+   * The number of times a {@code BR} command is sent before giving up.
+   */
+  private static final int BR_ATTEMPTS = 3;
+
+  /**
+   * The serial communicator connected to the robotic arm.
+   */
+  private final SerialCommunicator comm;
+
+  /**
+   * The parser of the data coming from the robotic arm.
+   */
+  private final ResponseParser parser = new ResponseParser(this);
+
+  /**
+   * The acknowledged ids, received by the thread of the
+   * {@code SerialCommunicator}.
+   */
+  private final BlockingQueue<Long> acks = new LinkedBlockingQueue<>();
+
+  /**
+   * The number of pings sent at every data-rate.
+   */
+  private int probePings = DEFAULT_PROBE_PINGS;
+
+  /**
+   * The time in milliseconds waited for the acknowledge of a ping.
+   */
+  private int pingTimeout = DEFAULT_PING_TIMEOUT;
+
+  /**
+   * The id of the next command sent.
+   */
+  private long nextId = System.currentTimeMillis();
+
+  /**
+   * Constructor.
+   * @param comm
+   *        The serial communicator, already connected to the robotic arm.
+   */
+  public LinkTuner(SerialCommunicator comm) {
+    this.comm = comm;
+  }
+
+  /**
+   * Gets the number of pings sent at every data-rate.
+   * @return The number of pings.
+   */
+  public int getProbePings() {
+    return probePings;
+  }
+
+  /**
+   * Sets the number of pings sent at every data-rate.
+   * @param probePings
+   *        The number of pings.
+   */
+  public void setProbePings(int probePings) {
+    this.probePings = Math.max(1, probePings);
+  }
+
+  /**
+   * Gets the time waited for the acknowledge of a ping.
+   * @return The time in milliseconds.
+   */
+  public int getPingTimeout() {
+    return pingTimeout;
+  }
+
+  /**
+   * Sets the time waited for the acknowledge of a ping.
+   * @param pingTimeout
+   *        The time in milliseconds.
+   */
+  public void setPingTimeout(int pingTimeout) {
+    this.pingTimeout = pingTimeout;
+  }
+
+  /**
+   * Probes the data-rates above the current one, up to {@code maxDataRate},
+   * and leaves both sides at the fastest reliable one.
+   * @param maxDataRate
+   *        The highest data-rate tried.
+   * @return The result, or {@code null} if the robotic arm does not answer
+   *         at the current data-rate.
+   * @throws InterruptedException
+   *         If interrupted while waiting for the robotic arm.
+   */
+  public Result tune(int maxDataRate) throws InterruptedException {
+    comm.addListener(this);
+    try {
+      if (!awaitBoot()) {
+        return null;
+      }
+      Result best = probe();
+      if (best == null) {
+        return null;
+      }
+      for (int speed : SerialCommunicator.PORT_SPEEDS) {
+        if (speed <= best.getDataRate() || speed > maxDataRate) {
+          continue;
+        }
+        Result result = switchTo(speed) ? probe() : null;
+        if (result == null) {
+          restore(best.getDataRate());
+          break;
+        }
+        best = result;
+      }
+      return best;
+    } finally {
+      comm.removeListener(this);
+    }
+  }
+
+  /**
+   * Moves both sides to a data-rate already known to be reliable, without
+   * probing the other ones.
+   * @param dataRate
+   *        The data-rate.
+   * @return The result at the new data-rate or, if it fails, at the current
+   *         one; {@code null} if the robotic arm does not answer at all.
+   * @throws InterruptedException
+   *         If interrupted while waiting for the robotic arm.
+   */
+  public Result apply(int dataRate) throws InterruptedException {
+    comm.addListener(this);
+    try {
+      if (!awaitBoot()) {
+        return null;
+      }
+      int previous = comm.getDataRate();
+      if (dataRate != previous) {
+        Result result = switchTo(dataRate) ? probe() : null;
+        if (result != null) {
+          return result;
+        }
+        restore(previous);
+      }
+      return probe();
+    } finally {
+      comm.removeListener(this);
+    }
+  }
+
+  /**
+   * Waits until the firmware answers a ping at the current data-rate.
+   * @return {@code true} if it answers, {@code false} otherwise.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private boolean awaitBoot() throws InterruptedException {
+    long deadline = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(BOOT_TIMEOUT);
+    while (System.nanoTime() < deadline) {
+      if (ping() >= 0L) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sends a burst of pings at the current data-rate.
+   * @return The result, or {@code null} if any ping is lost.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private Result probe() throws InterruptedException {
+    long total = 0L;
+    for (int i = 0; i < probePings; i++) {
+      long rtt = ping();
+      if (rtt < 0L) {
+        return null;
+      }
+      total += rtt;
+    }
+    return new Result(comm.getDataRate(), total / probePings);
+  }
+
+  /**
+   * Asks the firmware to move to a data-rate and moves the serial port too.
+   * @param dataRate
+   *        The data-rate.
+   * @return {@code true} if the firmware has acknowledged the request,
+   *         {@code false} otherwise.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private boolean switchTo(int dataRate) throws InterruptedException {
+    int index = indexOf(dataRate);
+    if (index < 0) {
+      return false;
+    }
+    for (int i = 0; i < BR_ATTEMPTS; i++) {
+      if (request(ACTION_BR+index) >= 0L) {
+        comm.changeDataRate(dataRate);
+        Thread.sleep(SETTLE_TIME);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Brings both sides back to a data-rate after a failed probe.
+   *
+   * If the firmware has not received any command at the new data-rate, it
+   * goes back by itself after {@code CONFIRM_TIMEOUT}; otherwise it is asked
+   * to.  Either way, it is pinged at the restored data-rate, which confirms
+   * the data-rate to the firmware.
+   *
+   * @param dataRate
+   *        The data-rate.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private void restore(int dataRate) throws InterruptedException {
+    if (comm.getDataRate() != dataRate && !switchTo(dataRate)) {
+      comm.changeDataRate(dataRate);
+      Thread.sleep(CONFIRM_TIMEOUT+SETTLE_TIME);
+    }
+    acks.clear();
+    awaitBoot();
+  }
+
+  /**
+   * Sends a ping, i.e. a test-response command.
+   * @return The round-trip time in nanoseconds, or {@code -1} if not
+   *         acknowledged in time.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private long ping() throws InterruptedException {
+    return request(Dispatcher.ACTION_TR);
+  }
+
+  /**
+   * Sends a command and waits for its acknowledge.
+   * @param command
+   *        The command.
+   * @return The round-trip time in nanoseconds, or {@code -1} if not
+   *         acknowledged in time.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  private long request(String command) throws InterruptedException {
+    long id = nextId++;
+    long start = System.nanoTime();
+    long deadline = start+TimeUnit.MILLISECONDS.toNanos(pingTimeout);
+    comm.writeToPort(new ArmCommand(command, id).getMessage()+"\n");
+    long now;
+    while ((now = System.nanoTime()) < deadline) {
+      Long ack = acks.poll(deadline - now, TimeUnit.NANOSECONDS);
+      if (ack != null && ack == id) {
+        return System.nanoTime() - start;
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * Gets the index of a data-rate in {@code SerialCommunicator.PORT_SPEEDS}.
+   * @param dataRate
+   *        The data-rate.
+   * @return The index or {@code -1} if not found.
+   */
+  private static int indexOf(int dataRate) {
+    for (int i = 0; i < SerialCommunicator.PORT_SPEEDS.length; i++) {
+      if (SerialCommunicator.PORT_SPEEDS[i] == dataRate) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Receives the notification of an error from the {@code SerialCommunicator}.
+   * @param error
+   *        The error message.
+   */
+  @Override
+  public void notifyError(String error) {
+  }
+
+  /**
+   * Receives the notification of a message from the {@code SerialCommunicator}.
+   * @param message
+   *        The message.
+   */
+  @Override
+  public void notifyMessage(String message) {
+    parser.parse(ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /**
+   * Receives the data from the {@code SerialCommunicator}.
+   * @param data
+   *        The data, from the position to the limit of the buffer.
+   */
+  @Override
+  public void notifyData(ByteBuffer data) {
+    parser.parse(data);
+  }
+
+  /**
+   * Receives an acknowledge from the robotic arm.
+   * @param id
+   *        The id of the executed command.
+   */
+  @Override
+  public void ackReceived(long id) {
+    acks.offer(id);
+  }
+
+  /**
+   * Receives an error from the robotic arm: the command is lost, as far as
+   * the tuning is concerned.
+   * @param error
+   *        The error returned by the robotic arm.
+   */
+  @Override
+  public void errorReceived(ResponseParser.FirmwareError error) {
+  }
+
+  /**
+   * Receives the echo of the action of a command.
+   * @param line
+   *        The buffer containing the action.
+   * @param length
+   *        The length of the action.
+   */
+  @Override
+  public void echoReceived(byte[] line, int length) {
+  }
+
+  /**
+   * Receives the announcement of the binary framing, which is not requested
+   * by the tuner.
+   */
+  @Override
+  public void binaryFramingOffered() {
+  }
+
+  /**
+   * Receives a line which is not an answer to a command, e.g. the greeting
+   * of the firmware or garbage read at a wrong data-rate.
+   * @param line
+   *        The buffer containing the line.
+   * @param length
+   *        The length of the line.
+   */
+  @Override
+  public void otherReceived(byte[] line, int length) {
+  }
+}
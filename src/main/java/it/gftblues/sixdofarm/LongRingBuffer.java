@@ -0,0 +1,115 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free, single-producer single-consumer FIFO queue of
+ * {@code long} values.
+ *
+ * <p>The values are stored in a fixed array, so neither the producer nor the
+ * consumer allocates memory.  Each side writes only its own counter, which is
+ * published to the other side with an ordered write.</p>
+ *
+ * <strong>Note</strong>
+ * <p>{@code offer()} has to be called by a single producer thread and
+ * {@code poll()} by a single consumer thread.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class LongRingBuffer {
+
+  /**
+   * The value returned by {@code poll()} when the queue is empty.
+   */
+  public static final long EMPTY = Long.MIN_VALUE;
+
+  /**
+   * The stored values.
+   */
+  private final long[] values;
+
+  /**
+   * The mask used to compute the slot of a position.
+   */
+  private final int mask;
+
+  /**
+   * The position of the next value to be read.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * The position of the next value to be written.
+   */
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param capacity
+   *        The capacity, rounded up to the next power of two.
+   */
+  public LongRingBuffer(int capacity) {
+    int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    values = new long[cap];
+    mask = cap - 1;
+  }
+
+  /**
+   * Appends a value.
+   * @param value
+   *        The value, other than {@code EMPTY}.
+   * @return {@code true} if appended, {@code false} if the queue is full.
+   */
+  public boolean offer(long value) {
+    long t = tail.get();
+    if (t - head.get() >= values.length) {
+      return false;
+    }
+    values[(int)(t & mask)] = value;
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Removes the oldest value.
+   * @return The value or {@code EMPTY} if the queue is empty.
+   */
+  public long poll() {
+    long h = head.get();
+    if (h >= tail.get()) {
+      return EMPTY;
+    }
+    long value = values[(int)(h & mask)];
+    head.lazySet(h + 1);
+    return value;
+  }
+
+  /**
+   * Gets the number of values stored.
+   * @return The number of values.
+   */
+  public int size() {
+    return (int)(tail.get() - head.get());
+  }
+}
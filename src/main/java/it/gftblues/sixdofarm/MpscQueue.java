@@ -0,0 +1,113 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free, unbounded, multi-producer single-consumer FIFO queue.
+ *
+ * <p>The queue is intrusive: the elements are themselves the nodes of the
+ * linked list, so that offering an element does not allocate any memory.
+ * Every producer appends its element with a single atomic exchange on the
+ * tail, hence {@code offer()} never waits for another thread; the consumer
+ * follows the links from the head without any atomic operation.</p>
+ *
+ * <strong>Note</strong>
+ * <p>{@code offer()} can be called by any thread, while {@code poll()} and
+ * {@code isEmpty()} have to be called by a single consumer thread.  An element
+ * can be offered only once.</p>
+ *
+ * @param <E> The type of the elements.
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class MpscQueue<E extends MpscQueue.Node> {
+
+  /**
+   * The base class of the elements of the queue.
+   */
+  public static class Node {
+
+    /**
+     * The next node in the queue.
+     */
+    private volatile Node next;
+  }
+
+  /**
+   * The last node consumed, or the initial stub.
+   */
+  private Node head;
+
+  /**
+   * The last node offered.
+   */
+  private final AtomicReference<Node> tail;
+
+  /**
+   * Constructor.
+   */
+  public MpscQueue() {
+    head = new Node();
+    tail = new AtomicReference<>(head);
+  }
+
+  /**
+   * Appends an element to the queue.
+   * @param element
+   *        The element.
+   */
+  public void offer(E element) {
+    Node node = element;
+    node.next = null;
+    Node prev = tail.getAndSet(node);
+    /*
+     * Until the following assignment, the consumer sees the queue ending at
+     * prev: the node is not lost, it is just not visible yet.
+     */
+    prev.next = node;
+  }
+
+  /**
+   * Removes the oldest element from the queue.
+   * @return The element or {@code null} if the queue is empty, or the oldest
+   *         element has not been completely appended yet.
+   */
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Node next = head.next;
+    if (next == null) {
+      return null;
+    }
+    head = next;
+    return (E) next;
+  }
+
+  /**
+   * Checks whether the queue is empty.
+   * @return {@code true} if empty, {@code false} otherwise.
+   */
+  public boolean isEmpty() {
+    return head.next == null;
+  }
+}
@@ -0,0 +1,78 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Receives the lines recognised by a {@code ResponseParser}.
+ *
+ * <strong>Note</strong>
+ * <p>The {@code line} arrays passed to the methods belong to the parser and
+ * are overwritten by the following line: they must not be kept after the
+ * method returns.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public interface ResponseListener {
+  /**
+   * Notifies that the robotic arm has executed a command.
+   *
+   * @param id
+   *        The id of the executed command.
+   */
+  public void ackReceived(long id);
+
+  /**
+   * Notifies that the robotic arm has refused a command.
+   *
+   * @param error
+   *        The error returned by the robotic arm.
+   */
+  public void errorReceived(ResponseParser.FirmwareError error);
+
+  /**
+   * Notifies that the robotic arm has started executing a command, echoing
+   * its action.
+   *
+   * @param line
+   *        The buffer containing the action.
+   * @param length
+   *        The length of the action.
+   */
+  public void echoReceived(byte[] line, int length);
+
+  /**
+   * Notifies that the robotic arm is going to use the binary framing after
+   * the acknowledge of the pending test-response command.
+   */
+  public void binaryFramingOffered();
+
+  /**
+   * Notifies a line which is neither an acknowledge, nor an error, nor an
+   * echo.
+   *
+   * @param line
+   *        The buffer containing the line, without the line terminator.
+   * @param length
+   *        The length of the line.
+   */
+  public void otherReceived(byte[] line, int length);
+}
@@ -0,0 +1,314 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import it.gftblues.sixdofarm.controllers.FrameCodec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of the data coming from the robotic arm.
+ *
+ * <p>The data flows in in chunks, which do not necessarily end with a whole
+ * line.  The bytes are copied into a line buffer, allocated once, until a
+ * line-feed is found; then the line is classified and passed to the
+ * {@code ResponseListener}.  The lines written by the firmware are:</p>
+ * <ul>
+ *   <li>the acknowledge of an executed command: {@code ACK [id]};</li>
+ *   <li>the error strings of a refused command, see {@code FirmwareError};
+ *   </li>
+ *   <li>the echo of the action of a command about to be executed, like
+ *       {@code SV};</li>
+ *   <li>the announcement that the binary framing is going to be used after
+ *       the acknowledge of the test-response command:
+ *       {@code FRAMING BINARY};</li>
+ *   <li>any other message, like the greeting at the start-up.</li>
+ * </ul>
+ *
+ * <p>With the binary framing, the payloads of the frames are passed to
+ * {@code parseFrame()} instead: an opcode followed by the varint id of an
+ * acknowledged command, or by the ordinal of a {@code FirmwareError}.</p>
+ *
+ * <p>No object is created while parsing.</p>
+ *
+ * <strong>Note</strong>
+ * <p>The class is not thread-safe.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class ResponseParser {
+
+  /**
+   * The errors written by the firmware when a command is refused.
+   */
+  public static enum FirmwareError {
+    NoCommandFound("No command found."),
+    InvalidDegrees("Invalid degrees."),
+    SpaceOrOpenBracketMissing("Space or open braket missing."),
+    NoIdFound("No id found."),
+    NoClosingBracket("No closing braket."),
+    CorruptedFrame("Corrupted frame.");
+
+    /**
+     * The message as written by the firmware.
+     */
+    private final byte[] message;
+
+    /**
+     * Constructor.
+     * @param message
+     *        The message as written by the firmware.
+     */
+    private FirmwareError(String message) {
+      this.message = message.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the message as written by the firmware.
+     * @return The message.
+     */
+    public String getMessage() {
+      return new String(message, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Checks whether the line is this error message.
+     * @param line
+     *        The buffer containing the line.
+     * @param length
+     *        The length of the line.
+     * @return {@code true} if the line is this error message, {@code false}
+     *         otherwise.
+     */
+    private boolean matches(byte[] line, int length) {
+      return length == message.length && startsWith(line, length, message);
+    }
+  };
+
+  /**
+   * The maximum length of a line.  Longer lines are truncated.
+   */
+  public static final int MAX_LINE_LENGTH = 256;
+
+  /**
+   * The maximum number of digits of an id.
+   */
+  public static final int MAX_ID_DIGITS = 18;
+
+  /**
+   * The prefix of an acknowledge line.
+   */
+  private static final byte[] ACK_PREFIX =
+          "ACK [".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The line announcing the binary framing.
+   */
+  private static final byte[] FRAMING_BINARY =
+          "FRAMING BINARY".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The opcode of an acknowledge frame.
+   */
+  public static final int FRAME_ACK = 0x80;
+
+  /**
+   * The opcode of an error frame.
+   */
+  public static final int FRAME_ERROR = 0x81;
+
+  /**
+   * The errors, indexed by the ordinal.
+   */
+  private static final FirmwareError[] FIRMWARE_ERRORS = FirmwareError.values();
+
+  /**
+   * Closing bracket character.
+   */
+  private static final byte ID_CLOSING_CHAR = ']';
+
+  /**
+   * Line feed character.
+   */
+  private static final byte LF = '\n';
+
+  /**
+   * Carriage Return character.
+   */
+  private static final byte CR = '\r';
+
+  /**
+   * The listener receiving the parsed lines.
+   */
+  private final ResponseListener listener;
+
+  /**
+   * The line being received.
+   */
+  private final byte[] line = new byte[MAX_LINE_LENGTH];
+
+  /**
+   * The number of bytes in {@code line}.
+   */
+  private int length = 0;
+
+  /**
+   * Constructor.
+   * @param listener
+   *        The listener receiving the parsed lines.
+   */
+  public ResponseParser(ResponseListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Parses the data, from the position to the limit of the buffer, which is
+   * left with the position set to its limit.
+   * @param data
+   *        The data coming from the robotic arm.
+   */
+  public void parse(ByteBuffer data) {
+    while (data.hasRemaining()) {
+      byte curr = data.get();
+      if (curr == LF) {
+        if (length > 0 && line[length - 1] == CR) {
+          length--;
+        }
+        dispatchLine();
+        length = 0;
+      } else if (length < line.length) {
+        line[length++] = curr;
+      }
+    }
+  }
+
+  /**
+   * Parses the payload of a binary frame.
+   * @param payload
+   *        The buffer containing the payload.
+   * @param length
+   *        The length of the payload.
+   */
+  public void parseFrame(byte[] payload, int length) {
+    if (length > 1) {
+      int opcode = payload[0] & 0xFF;
+      if (opcode == FRAME_ACK) {
+        long id = FrameCodec.getVarint(payload, 1, length);
+        if (id >= 0L) {
+          listener.ackReceived(id);
+          return;
+        }
+      } else if (opcode == FRAME_ERROR && length == 2) {
+        int error = payload[1] & 0xFF;
+        if (error < FIRMWARE_ERRORS.length) {
+          listener.errorReceived(FIRMWARE_ERRORS[error]);
+          return;
+        }
+      }
+    }
+    listener.otherReceived(payload, length);
+  }
+
+  /**
+   * Discards any partial line received so far.
+   */
+  public void reset() {
+    length = 0;
+  }
+
+  /**
+   * Classifies the line received and notifies it to the listener.
+   */
+  private void dispatchLine() {
+    if (length == 0) {
+      return;
+    }
+    if (startsWith(line, length, ACK_PREFIX)) {
+      long id = 0L;
+      int pos = ACK_PREFIX.length;
+      int end = Math.min(length - 1, pos + MAX_ID_DIGITS);
+      for (; pos < end && line[pos] >= '0' && line[pos] <= '9'; pos++) {
+        id = id*10L + (line[pos]-'0');
+      }
+      if (pos > ACK_PREFIX.length
+              && pos == length - 1
+              && line[pos] == ID_CLOSING_CHAR) {
+        listener.ackReceived(id);
+        return;
+      }
+    } else {
+      for (FirmwareError error : FIRMWARE_ERRORS) {
+        if (error.matches(line, length)) {
+          listener.errorReceived(error);
+          return;
+        }
+      }
+      if (isAction()) {
+        listener.echoReceived(line, length);
+        return;
+      }
+      if (length == FRAMING_BINARY.length 
+              && startsWith(line, length, FRAMING_BINARY)) {
+        listener.binaryFramingOffered();
+        return;
+      }
+    }
+    listener.otherReceived(line, length);
+  }
+
+  /**
+   * Checks whether the line contains just the action of a command, as
+   * echoed by the firmware.
+   * @return {@code true} if it is an action, {@code false} otherwise.
+   */
+  private boolean isAction() {
+    for (int i = 0; i < length; i++) {
+      if (line[i] < 'A' || line[i] > 'Z') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the line starts with the given prefix.
+   * @param line
+   *        The buffer containing the line.
+   * @param length
+   *        The length of the line.
+   * @param prefix
+   *        The prefix.
+   * @return {@code true} if the line starts with {@code prefix}, {@code false}
+   *         otherwise.
+   */
+  private static boolean startsWith(byte[] line, int length, byte[] prefix) {
+    if (length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (line[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
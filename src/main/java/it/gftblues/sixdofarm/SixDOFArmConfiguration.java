@@ -19,6 +19,8 @@ package it.gftblues.sixdofarm;
  *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import it.gftblues.sixdofarm.controllers.Transport;
+
 /**
  * Data configuration for the robotic arm handling.
  *
@@ -119,12 +121,116 @@ public class SixDOFArmConfiguration {
    * Minimum time that has to pass between to commands
    */
   private int timeBetweenCommands = DEFAULT_TIME_BETWEEN_COMMANDS;
+
+  /**
+   * Maximum number of commands added with coalescing waiting to be sent to the
+   * robotic arm.
+   */
+  private int maxPendingCommands = Dispatcher.DEFAULT_MAX_PENDING_COMMANDS;
+
+  /**
+   * What to do with a new command when there are already 
+   * {@code maxPendingCommands} waiting to be sent.
+   */
+  private Dispatcher.DropPolicy dropPolicy = 
+          Dispatcher.DropPolicy.DropOldest;
+
+  /**
+   * How the dispatcher establishes when the next command can be sent.
+   */
+  private Dispatcher.FlowControl flowControl = Dispatcher.FlowControl.Timed;
+
+  /**
+   * Maximum number of commands not yet acknowledged by the robotic arm, when 
+   * the {@code flowControl} is {@code Acknowledged}.
+   */
+  private int ackWindow = Dispatcher.DEFAULT_ACK_WINDOW;
+
+  /**
+   * If {@code true}, the commands coming from the controls, the game 
+   * controllers and the face recognition replace the ones for the same joint 
+   * still waiting to be sent.
+   */
+  private boolean coalesceCommands = true;
+
+  /**
+   * Time in milliseconds waited for the acknowledge of a command before 
+   * sending it again.  Zero disables the retransmissions.
+   */
+  private int ackTimeout = Dispatcher.DEFAULT_ACK_TIMEOUT;
+
+  /**
+   * Number of times a command not acknowledged is sent again.
+   */
+  private int maxRetries = Dispatcher.DEFAULT_MAX_RETRIES;
+
+  /**
+   * How the time waited for an acknowledge grows at every retransmission.
+   */
+  private Dispatcher.RetryBackoff retryBackoff = 
+          Dispatcher.RetryBackoff.Exponential;
+
+  /**
+   * What the dispatcher does when a command is never acknowledged.  The 
+   * {@code Reconnect} {@code Escalation} becomes {@code FlushPending} when 
+   * {@code autoReconnect} is {@code false}, as nobody would reconnect.
+   */
+  private Dispatcher.Escalation escalation = 
+          Dispatcher.Escalation.Reconnect;
   
+  /**
+   * If {@code true}, the binary framing is negotiated with the robotic arm 
+   * when connecting.
+   */
+  private boolean binaryFraming = false;
+
+  /**
+   * If {@code true}, the fastest reliable data-rate of the serial link is 
+   * negotiated with the robotic arm when connecting.
+   */
+  private boolean autoTuneLink = false;
+
+  /**
+   * If {@code true}, the connection with the robotic arm is restored when 
+   * lost, together with the last pose of the arm.
+   */
+  private boolean autoReconnect = true;
+
+  /**
+   * The highest data-rate tried when tuning the serial link.
+   */
+  private int maxDataRate = LinkTuner.DEFAULT_MAX_DATA_RATE;
+
+  /**
+   * The data-rate found by the last tuning of the serial link, used straight
+   * away by the following connections; zero if never tuned.
+   */
+  private int tunedDataRate = 0;
+
+  /**
+   * The round-trip time of the serial link in microseconds, as measured by 
+   * the last tuning.
+   */
+  private int linkRoundTrip = 0;
+
+  /**
+   * The link to the robotic arm: the serial port or, to exercise the host 
+   * without the arm, an in-memory pipe, a pseudo-terminal or a TCP 
+   * connection.
+   */
+  private Transport.Type transport = Transport.Type.Serial;
+
   /**
    * Log file pathname.
    */
   private String logFilePathname = null;
 
+  /**
+   * The pathname of the file recording the serial traffic of every session, 
+   * or {@code null} not to record it.
+   */
+  private String recordingPathname = null;
+
   /**
    * Default constructor.
    */
@@ -157,6 +263,24 @@ public class SixDOFArmConfiguration {
     mathWristMass = rhs.mathWristMass;
     mathWristLength = rhs.mathWristLength;
     mathWristTorque = rhs.mathWristTorque;
+
+    maxPendingCommands = rhs.maxPendingCommands;
+    dropPolicy = rhs.dropPolicy;
+    flowControl = rhs.flowControl;
+    ackWindow = rhs.ackWindow;
+    coalesceCommands = rhs.coalesceCommands;
+    ackTimeout = rhs.ackTimeout;
+    maxRetries = rhs.maxRetries;
+    retryBackoff = rhs.retryBackoff;
+    escalation = rhs.escalation;
+    binaryFraming = rhs.binaryFraming;
+    autoTuneLink = rhs.autoTuneLink;
+    autoReconnect = rhs.autoReconnect;
+    maxDataRate = rhs.maxDataRate;
+    tunedDataRate = rhs.tunedDataRate;
+    linkRoundTrip = rhs.linkRoundTrip;
+    transport = rhs.transport;
+    recordingPathname = rhs.recordingPathname;
   }
 
   /**
@@ -425,6 +549,298 @@ public class SixDOFArmConfiguration {
     this.timeBetweenCommands = timeBetweenCommands;
   }
 
+  /**
+   * Gets the maximum number of commands waiting to be sent to the robotic arm.
+   * @return The maximum number of commands.
+   */
+  public int getMaxPendingCommands() {
+    return maxPendingCommands;
+  }
+
+  /**
+   * Sets the maximum number of commands waiting to be sent to the robotic arm.
+   * @param maxPendingCommands
+   *        The maximum number of commands.
+   */
+  public void setMaxPendingCommands(int maxPendingCommands) {
+    this.maxPendingCommands = maxPendingCommands;
+  }
+
+  /**
+   * Gets what is done with a new command when the queue of the commands 
+   * waiting to be sent is full.
+   * @return The {@code DropPolicy}.
+   */
+  public Dispatcher.DropPolicy getDropPolicy() {
+    return dropPolicy;
+  }
+
+  /**
+   * Sets what is done with a new command when the queue of the commands 
+   * waiting to be sent is full.
+   * @param dropPolicy
+   *        The {@code DropPolicy}.
+   */
+  public void setDropPolicy(Dispatcher.DropPolicy dropPolicy) {
+    this.dropPolicy = dropPolicy;
+  }
+
+  /**
+   * Gets how the dispatcher establishes when the next command can be sent.
+   * @return The {@code FlowControl}.
+   */
+  public Dispatcher.FlowControl getFlowControl() {
+    return flowControl;
+  }
+
+  /**
+   * Sets how the dispatcher establishes when the next command can be sent.
+   * @param flowControl
+   *        The {@code FlowControl}.
+   */
+  public void setFlowControl(Dispatcher.FlowControl flowControl) {
+    this.flowControl = flowControl;
+  }
+
+  /**
+   * Gets the maximum number of commands not yet acknowledged by the robotic 
+   * arm, when the {@code FlowControl} is {@code Acknowledged}.
+   * @return The number of commands.
+   */
+  public int getAckWindow() {
+    return ackWindow;
+  }
+
+  /**
+   * Sets the maximum number of commands not yet acknowledged by the robotic 
+   * arm, when the {@code FlowControl} is {@code Acknowledged}.
+   * @param ackWindow
+   *        The number of commands.
+   */
+  public void setAckWindow(int ackWindow) {
+    this.ackWindow = ackWindow;
+  }
+
+  /**
+   * Checks whether the commands coming from the controls, the game controllers
+   * and the face recognition replace the ones for the same joint still waiting
+   * to be sent.
+   * @return {@code true} if replaced, {@code false} otherwise.
+   */
+  public boolean isCoalesceCommands() {
+    return coalesceCommands;
+  }
+
+  /**
+   * Sets whether the commands coming from the controls, the game controllers
+   * and the face recognition replace the ones for the same joint still waiting
+   * to be sent.
+   * @param coalesceCommands
+   *        {@code true} if replaced, {@code false} otherwise.
+   */
+  public void setCoalesceCommands(boolean coalesceCommands) {
+    this.coalesceCommands = coalesceCommands;
+  }
+
+  /**
+   * Gets the time waited for the acknowledge of a command before sending it 
+   * again.
+   * @return The time in milliseconds; zero if the retransmissions are 
+   *         disabled.
+   */
+  public int getAckTimeout() {
+    return ackTimeout;
+  }
+
+  /**
+   * Sets the time waited for the acknowledge of a command before sending it 
+   * again.
+   * @param ackTimeout
+   *        The time in milliseconds; zero disables the retransmissions.
+   */
+  public void setAckTimeout(int ackTimeout) {
+    this.ackTimeout = ackTimeout;
+  }
+
+  /**
+   * Gets the number of times a command not acknowledged is sent again.
+   * @return The number of retransmissions.
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Sets the number of times a command not acknowledged is sent again.
+   * @param maxRetries
+   *        The number of retransmissions.
+   */
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * Gets how the time waited for an acknowledge grows at every 
+   * retransmission.
+   * @return The {@code RetryBackoff}.
+   */
+  public Dispatcher.RetryBackoff getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  /**
+   * Sets how the time waited for an acknowledge grows at every 
+   * retransmission.
+   * @param retryBackoff
+   *        The {@code RetryBackoff}.
+   */
+  public void setRetryBackoff(Dispatcher.RetryBackoff retryBackoff) {
+    this.retryBackoff = retryBackoff;
+  }
+
+  /**
+   * Gets what the dispatcher does when a command is never acknowledged.
+   * @return The {@code Escalation}.
+   */
+  public Dispatcher.Escalation getEscalation() {
+    return escalation;
+  }
+
+  /**
+   * Sets what the dispatcher does when a command is never acknowledged.
+   * @param escalation
+   *        The {@code Escalation}.
+   */
+  public void setEscalation(Dispatcher.Escalation escalation) {
+    this.escalation = escalation;
+  }
+
+  /**
+   * Checks whether the binary framing is negotiated with the robotic arm when
+   * connecting.
+   * @return {@code true} if negotiated, {@code false} otherwise.
+   */
+  public boolean isBinaryFraming() {
+    return binaryFraming;
+  }
+
+  /**
+   * Sets whether the binary framing is negotiated with the robotic arm when
+   * connecting.  The text lines are used anyway if the firmware does not 
+   * support it.
+   * @param binaryFraming
+   *        {@code true} if negotiated, {@code false} otherwise.
+   */
+  public void setBinaryFraming(boolean binaryFraming) {
+    this.binaryFraming = binaryFraming;
+  }
+
+  /**
+   * Checks whether the fastest reliable data-rate of the serial link is 
+   * negotiated with the robotic arm when connecting.
+   * @return {@code true} if negotiated, {@code false} otherwise.
+   */
+  public boolean isAutoTuneLink() {
+    return autoTuneLink;
+  }
+
+  /**
+   * Sets whether the fastest reliable data-rate of the serial link is 
+   * negotiated with the robotic arm when connecting.
+   * @param autoTuneLink
+   *        {@code true} if negotiated, {@code false} otherwise.
+   */
+  public void setAutoTuneLink(boolean autoTuneLink) {
+    this.autoTuneLink = autoTuneLink;
+  }
+
+  /**
+   * Checks whether the connection with the robotic arm is restored when 
+   * lost.
+   * @return {@code true} if restored, {@code false} otherwise.
+   */
+  public boolean isAutoReconnect() {
+    return autoReconnect;
+  }
+
+  /**
+   * Sets whether the connection with the robotic arm is restored when lost.
+   * @param autoReconnect
+   *        {@code true} if restored, {@code false} otherwise.
+   */
+  public void setAutoReconnect(boolean autoReconnect) {
+    this.autoReconnect = autoReconnect;
+  }
+
+  /**
+   * Gets the highest data-rate tried when tuning the serial link.
+   * @return The data-rate.
+   */
+  public int getMaxDataRate() {
+    return maxDataRate;
+  }
+
+  /**
+   * Sets the highest data-rate tried when tuning the serial link.
+   * @param maxDataRate
+   *        The data-rate.
+   */
+  public void setMaxDataRate(int maxDataRate) {
+    this.maxDataRate = maxDataRate;
+  }
+
+  /**
+   * Gets the data-rate found by the last tuning of the serial link.
+   * @return The data-rate, or zero if never tuned.
+   */
+  public int getTunedDataRate() {
+    return tunedDataRate;
+  }
+
+  /**
+   * Sets the data-rate found by the last tuning of the serial link.  Zero 
+   * makes the next connection probe the data-rates again.
+   * @param tunedDataRate
+   *        The data-rate, or zero.
+   */
+  public void setTunedDataRate(int tunedDataRate) {
+    this.tunedDataRate = tunedDataRate;
+  }
+
+  /**
+   * Gets the round-trip time of the serial link measured by the last tuning.
+   * @return The time in microseconds.
+   */
+  public int getLinkRoundTrip() {
+    return linkRoundTrip;
+  }
+
+  /**
+   * Sets the round-trip time of the serial link measured by the last tuning.
+   * @param linkRoundTrip
+   *        The time in microseconds.
+   */
+  public void setLinkRoundTrip(int linkRoundTrip) {
+    this.linkRoundTrip = linkRoundTrip;
+  }
+
+  /**
+   * Gets the link to the robotic arm.
+   * @return The {@code Transport.Type}.
+   */
+  public Transport.Type getTransport() {
+    return transport;
+  }
+
+  /**
+   * Sets the link to the robotic arm, used from the next start.
+   * @param transport
+   *        The {@code Transport.Type}.
+   */
+  public void setTransport(Transport.Type transport) {
+    this.transport = transport;
+  }
+
   /**
    * Gets the full log file pathname.
    * @return The log file pathname.
@@ -440,4 +856,22 @@ public class SixDOFArmConfiguration {
   public void setLogFilePathname(String pathname) {
     this.logFilePathname = pathname;
   }
+
+  /**
+   * Gets the pathname of the file recording the serial traffic.
+   * @return The pathname, or {@code null} if not recording.
+   */
+  public String getRecordingPathname() {
+    return recordingPathname;
+  }
+
+  /**
+   * Sets the pathname of the file recording the serial traffic of every 
+   * session, overwritten when connecting.
+   * @param pathname
+   *        The pathname, or {@code null} not to record.
+   */
+  public void setRecordingPathname(String pathname) {
+    this.recordingPathname = pathname;
+  }
 }
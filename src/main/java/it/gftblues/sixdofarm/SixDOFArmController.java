@@ -19,6 +19,7 @@ package it.gftblues.sixdofarm;
  * Copyright 2020 Gabriele Tafuro
  */
 
+import it.gftblues.sixdofarm.controllers.AsyncListener;
 import it.gftblues.sixdofarm.controllers.FaceRecognitionDevice;
 import it.gftblues.sixdofarm.controllers.FaceRecognitionDeviceListener;
 import it.gftblues.sixdofarm.controllers.GameController;
@@ -26,6 +27,8 @@ import it.gftblues.sixdofarm.controllers.GameControllerListener;
 import it.gftblues.sixdofarm.controllers.PointerDevice;
 import it.gftblues.sixdofarm.controllers.SerialCommunicator;
 import it.gftblues.sixdofarm.controllers.SerialCommunicatorListener;
+import it.gftblues.sixdofarm.controllers.SessionRecorder;
+import it.gftblues.sixdofarm.controllers.Transport;
 import it.gftblues.sixdofarm.joints.Clamp;
 import it.gftblues.sixdofarm.joints.Elbow;
 import it.gftblues.sixdofarm.joints.Joint;
@@ -44,6 +47,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -67,6 +73,7 @@ import java.util.logging.SimpleFormatter;
  */
 public class SixDOFArmController
         implements SixDOFArmControllerInterface,
+                   Dispatcher.Log,
                    SerialCommunicatorListener,
                    GameControllerListener,
                    FaceRecognitionDeviceListener {
@@ -85,6 +92,11 @@ public class SixDOFArmController
    * Line feed.
    */
   private static final String LF = "\n";
+
+  /**
+   * The time in milliseconds waited for a simulated program to be simulated.
+   */
+  private static final long SIMULATION_TIMEOUT = 60000L;
   
   /**
    * The reference to a {@code SixDOFArmControllerUI} user interface.
@@ -145,6 +157,15 @@ public class SixDOFArmController
    */
   private boolean useFaceRecognition = false;
 
+  /**
+   * If {@code true}, the commands sent to the arm replace the ones for the 
+   * same joint still waiting to be sent.
+   * 
+   * Implementation note: It is disabled while moving to the start position and
+   * running a program, where every single command matters.
+   */
+  private boolean coalesceCommands = false;
+
   /**
    * Last horizontal shoulder position.
    */
@@ -165,11 +186,26 @@ public class SixDOFArmController
    */
   private int lastWristVerPos;
 
+  /**
+   * Last wrist rotation.
+   */
+  private int lastWristRotation;
+
+  /**
+   * Last clamp aperture.  The firmware starts with the clamp open.
+   */
+  private int lastClampPos = Clamp.MIN;
+
   /**
    * Collision detector.
    */
   private CollisionDetector collisionDetector;
 
+  /**
+   * Computes the joints reaching a point.
+   */
+  private InverseKinematics inverseKinematics;
+
   /**
    * {@code SixDOFArmConfiguration} configuration.
    */
@@ -180,6 +216,23 @@ public class SixDOFArmController
    */
   private Dispatcher dispatcher = null;
 
+  /**
+   * Restores the connection with the arm when lost.
+   */
+  private ConnectionSupervisor supervisor = null;
+
+  /**
+   * Passes the notifications of the serial communicator to this controller 
+   * on a thread of its own, while connected, so that the feedback to the 
+   * user interface does not stall the serial reads.
+   */
+  private AsyncListener asyncListener = null;
+
+  /**
+   * The data-rate the arm was connected at, the one the firmware starts at.
+   */
+  private volatile int connectDataRate;
+
   /**
    * Robotic arm's joints.
    */
@@ -226,8 +279,14 @@ public class SixDOFArmController
       useGameControllers = true;
     }
     gameController.addListener(this);
-    comm = new SerialCommunicator();
-    comm.addListener(this);
+    comm = new SerialCommunicator(Transport.create(config.getTransport()));
+    comm.addPortListener((ports, added, removed) -> {
+      java.awt.EventQueue.invokeLater(() -> {
+        if (ui != null) {
+          ui.setSerialPortNames(getCachedSerialPortNames());
+        }
+      });
+    });
     initialize();
     recognizer = new FaceRecognitionDevice(
             config.getOpencvClassifierPathname()
@@ -268,9 +327,26 @@ public class SixDOFArmController
     collisionDetector.setClampLength(config.getClampLength());
     collisionDetector.setElbowLength(config.getElbowLength());
     collisionDetector.setShoulderLength(config.getShoulderLength());
+    loadCollisionMap();
+    inverseKinematics = new InverseKinematics(new ForwardKinematics(config));
     dispatcher = new Dispatcher(this);
     dispatcher.setTimeBetweenCommands(config.getTimeBetweenCommands());
+    dispatcher.setMaxPendingCommands(config.getMaxPendingCommands());
+    dispatcher.setDropPolicy(config.getDropPolicy());
+    dispatcher.setFlowControl(config.getFlowControl());
+    dispatcher.setAckWindow(config.getAckWindow());
+    dispatcher.setAckTimeout(config.getAckTimeout());
+    dispatcher.setMaxRetries(config.getMaxRetries());
+    dispatcher.setRetryBackoff(config.getRetryBackoff());
+    if (config.isAutoReconnect() 
+            || config.getEscalation() != Dispatcher.Escalation.Reconnect) {
+      dispatcher.setEscalation(config.getEscalation());
+    } else {
+      dispatcher.setEscalation(Dispatcher.Escalation.FlushPending);
+    }
+    coalesceCommands = config.isCoalesceCommands();
     dispatcher.setComm(comm);
+    supervisor = new ConnectionSupervisor(comm, dispatcher, this::reconnectArm);
   }
 
   /**
@@ -281,7 +357,7 @@ public class SixDOFArmController
    */
   private void sendToPort(String command) {
     checkCommand(command);
-    dispatcher.addCommand(command);
+    dispatcher.addCommand(command, coalesceCommands);
 //    comm.writeToPort(command);
   }
 
@@ -303,11 +379,22 @@ public class SixDOFArmController
   }
 
   /**
-   * Gets an array with all available serial ports' names.
+   * Gets an array with all available serial ports' names, as discovered so
+   * far, and requests them to be discovered again in the background.  The
+   * user interface is updated if they change.
    * @return An array of {@code String} with the serial ports' names.
    */
   @Override
   public String[] getSerialPortNames() {
+    comm.refreshPortList();
+    return getCachedSerialPortNames();
+  }
+
+  /**
+   * Gets an array with the serial ports' names discovered so far.
+   * @return An array of {@code String} with the serial ports' names.
+   */
+  private String[] getCachedSerialPortNames() {
     List<String> ports = comm.getPortList();
     if (ports != null && !ports.isEmpty()) {
       return ports.toArray(new String[0]);
@@ -333,7 +420,7 @@ public class SixDOFArmController
   @Override
   public void setUI(SixDOFArmControllerUI ui) {
     this.ui = ui;
-    ui.setSerialPortNames(getSerialPortNames());
+    ui.setSerialPortNames(getCachedSerialPortNames());
     ui.setSerialDataRates(Arrays.stream(SerialCommunicator.PORT_SPEEDS)
               .mapToObj(String::valueOf)
               .toArray(String[]::new)
@@ -375,8 +462,24 @@ public class SixDOFArmController
       comm.setParity(ui.getSerialParity());
       comm.setStopBit(ui.getSerialStopBit());
       comm.setTimeOut(ui.getSerialTimeout());
+      connectDataRate = comm.getDataRate();
+      startRecording();
+      if (asyncListener == null) {
+        asyncListener = new AsyncListener(this);
+        comm.addListener(asyncListener);
+      }
       comm.connect();
+      dispatcher.clearInFlight();
+      if (config.isAutoTuneLink()) {
+        startLinkTuner();
+      }
+      if (config.isBinaryFraming()) {
+        dispatcher.negotiateBinaryFraming();
+      }
       moveToStartPosition();
+      if (config.isAutoReconnect()) {
+        supervisor.start();
+      }
     } catch (Exception ex) {
       notifyError(
               String.format(
@@ -387,6 +490,96 @@ public class SixDOFArmController
     }
   }
   
+  /**
+   * Connects again after the connection has been lost, on the same port if 
+   * still there, and restores the last pose of the arm with a single 
+   * multi-joint command, sent before the commands held meanwhile.  It is 
+   * called by the {@code ConnectionSupervisor}.
+   * @return {@code true} if connected, {@code false} otherwise.
+   */
+  private boolean reconnectArm() {
+    log(Level.WARNING, "LOG_RECONNECTING", comm.getComPortName());
+    try {
+      comm.getPortList();
+      comm.setDataRate(connectDataRate);
+      comm.connect();
+    } catch (Exception ex) {
+      return false;
+    }
+    if (config.isAutoTuneLink()) {
+      tuneLink();
+    }
+    dispatcher.resume(
+            config.isBinaryFraming(),
+            Dispatcher.encodeMultiJoint(
+                    -lastShoulderHorPos, -lastShoulderVerPos, lastElbowVerPos,
+                    lastWristVerPos, lastWristRotation, lastClampPos
+            )
+    );
+    log(Level.INFO, "LOG_RECONNECTED", comm.getComPortName());
+    return true;
+  }
+
+  /**
+   * Tunes the serial link on a thread of its own, not to stall the user 
+   * interface.  The dispatcher holds the commands meanwhile, and sends them
+   * once the link is tuned, unless the connection is being restored.
+   */
+  private void startLinkTuner() {
+    dispatcher.suspend();
+    Thread tuner = new Thread(() -> {
+      tuneLink();
+      if (!supervisor.isReconnecting()) {
+        dispatcher.resume(false);
+      }
+    }, "link-tuner");
+    tuner.setDaemon(true);
+    tuner.start();
+  }
+
+  /**
+   * Moves the serial link to the fastest reliable data-rate: the one found by
+   * a previous tuning if it still works, otherwise the one found probing all
+   * of them, which is saved in the configuration.
+   * 
+   * <strong>Note</strong>
+   * <p>It has to be called with the dispatcher suspended, so that no command
+   * is sent to the arm while the tuner talks to it, and not by the Event 
+   * Dispatch Thread, as it can take several seconds.</p>
+   */
+  private void tuneLink() {
+    LinkTuner tuner = new LinkTuner(comm);
+    try {
+      int tuned = config.getTunedDataRate();
+      LinkTuner.Result result = null;
+      if (tuned > 0) {
+        result = tuner.apply(tuned);
+        if (result == null) {
+          return;
+        }
+      }
+      if (result == null || result.getDataRate() != tuned) {
+        result = tuner.tune(config.getMaxDataRate());
+        if (result == null) {
+          return;
+        }
+        config.setTunedDataRate(result.getDataRate());
+        config.setLinkRoundTrip(
+                (int)TimeUnit.NANOSECONDS.toMicros(result.getRoundTripNanos())
+        );
+        saveConfiguration();
+      }
+      log(
+              Level.INFO, 
+              "LOG_LINK_TUNED", 
+              result.getDataRate(), 
+              TimeUnit.NANOSECONDS.toMicros(result.getRoundTripNanos())
+      );
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * Gets the {@code String} associated to the given label.
    * 
@@ -397,6 +590,7 @@ public class SixDOFArmController
    *        The label of the required string.
    * @return The string associated to the {@code label}.
    */
+  @Override
   public String getExistingLabel(String label) {
     if (ui != null) {
       return SixDOFArmResources.getString(label);
@@ -410,12 +604,94 @@ public class SixDOFArmController
    */
   @Override
   public void disconnectArm() {
+    supervisor.stop();
+    if (dispatcher.isSuspended()) {
+      dispatcher.resume(false);
+    }
     this.useGameControllers = false;
     ui.setGameCOntrollerEnabled(false);
     this.useFaceRecognition = false;
     ui.setUseFaceRecognition(false);
     moveToOffPosition();
     comm.close();
+    closeAsyncListener();
+    stopRecording();
+  }
+
+  /**
+   * Stops passing the notifications of the serial communicator to this 
+   * controller, e.g. when disconnected.
+   */
+  private void closeAsyncListener() {
+    if (asyncListener != null) {
+      comm.removeListener(asyncListener);
+      asyncListener.close();
+      asyncListener = null;
+    }
+  }
+
+  /**
+   * Loads the map of the collisions for the geometry of the arm from the 
+   * user's home, building and saving it if not found, in the background.  
+   * Until then, the {@code CollisionDetector} computes every answer.
+   */
+  private void loadCollisionMap() {
+    CollisionDetector cd = collisionDetector;
+    Thread loader = new Thread(() -> {
+      Path path = CollisionMap.getPath(
+              Paths.get(System.getProperty("user.home")), cd
+      );
+      CollisionMap map = CollisionMap.load(path, cd);
+      if (map == null) {
+        map = CollisionMap.build(cd);
+        try {
+          map.save(path);
+        } catch (IOException ex) {
+          // Used anyway, and built again next time.
+          log(Level.WARNING, "ERROR_COLLISION_MAP_NOT_SAVED", path);
+        }
+      }
+      cd.setCollisionMap(map);
+      log(Level.INFO, "LOG_COLLISION_MAP", path);
+    }, "collision-map");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  /**
+   * Starts recording the serial traffic, if a recording file is configured.
+   */
+  private void startRecording() {
+    stopRecording();
+    String pathname = config.getRecordingPathname();
+    if (pathname == null || pathname.isEmpty()) {
+      return;
+    }
+    try {
+      comm.setRecorder(new SessionRecorder(Paths.get(pathname)));
+      log(Level.INFO, "LOG_RECORDING_SESSION", pathname);
+    } catch (IOException ex) {
+      log(Level.SEVERE, "ERROR_RECORDING_FAILED", pathname);
+    }
+  }
+
+  /**
+   * Stops recording the serial traffic, if recording.
+   */
+  private void stopRecording() {
+    SessionRecorder recorder = comm.getRecorder();
+    if (recorder != null) {
+      comm.setRecorder(null);
+      try {
+        recorder.close();
+      } catch (IOException ex) {
+        log(
+                Level.SEVERE, 
+                "ERROR_RECORDING_FAILED", 
+                config.getRecordingPathname()
+        );
+      }
+    }
   }
 
   /**
@@ -437,6 +713,8 @@ public class SixDOFArmController
   public void moveToStartPosition() {
     boolean useGameCtrlrs = this.useGameControllers;
     this.useGameControllers = false;
+    boolean coalesce = this.coalesceCommands;
+    this.coalesceCommands = false;
     int deg;
 
     /**
@@ -492,6 +770,7 @@ public class SixDOFArmController
     deg = (pc.getMax()+pc.getMin())/2;
     setClamp(deg);
     
+    this.coalesceCommands = coalesce;
     this.useGameControllers = useGameCtrlrs;
   }
 
@@ -521,7 +800,7 @@ public class SixDOFArmController
   @Override
   public boolean moveShoulderVertically(int deg) {
 //    System.out.println("Trying SV"+deg);
-    if (collisionDetector.collision(
+    if (collisionDetector.sweptCollision(
             lastShoulderVerPos, lastElbowVerPos, lastWristVerPos,
             deg, lastElbowVerPos, lastWristVerPos)
     ) {
@@ -556,7 +835,7 @@ public class SixDOFArmController
   @Override
   public boolean moveElbowVertically(int deg) {
 //    System.out.println("Trying EV"+deg);
-    if (collisionDetector.collision(
+    if (collisionDetector.sweptCollision(
             lastShoulderVerPos, lastElbowVerPos, lastWristVerPos,
             lastShoulderVerPos, deg, lastWristVerPos)
     ) {
@@ -586,7 +865,7 @@ public class SixDOFArmController
   @Override
   public boolean moveWristVertically(int deg) {
 //    System.out.println("Trying WV"+deg);
-    if (collisionDetector.collision(
+    if (collisionDetector.sweptCollision(
             lastShoulderVerPos, lastElbowVerPos, lastWristVerPos,
             lastShoulderVerPos, lastElbowVerPos, deg)
     ) {
@@ -608,6 +887,92 @@ public class SixDOFArmController
     return true;
   }
 
+  /**
+   * Moves all the arm's joints together, with a single command.
+   * @param shoulderHor
+   *        The horizontal shoulder position in degrees.
+   * @param shoulderVer
+   *        The vertical shoulder position in degrees.
+   * @param elbowVer
+   *        The vertical elbow position in degrees.
+   * @param wristVer
+   *        The vertical wrist position in degrees.
+   * @param wristRotation
+   *        The wrist rotation in degrees.
+   * @param clamp
+   *        The clamp aperture in degrees.
+   */
+  @Override
+  public boolean moveJoints(
+          int shoulderHor, int shoulderVer, int elbowVer, int wristVer, 
+          int wristRotation, int clamp
+  ) {
+    if (collisionDetector.sweptCollision(
+            lastShoulderVerPos, lastElbowVerPos, lastWristVerPos,
+            shoulderVer, elbowVer, wristVer)
+    ) {
+      double pos = collisionDetector.verticalDistance(
+              shoulderVer, 
+              elbowVer, 
+              wristVer
+      );
+      ui.showError(String.format(
+              SixDOFArmResources.getString("ERROR_DANGEROUS_MOVE"),
+              pos
+      ));
+      return false;
+    }
+    lastShoulderHorPos = shoulderHor;
+    lastShoulderVerPos = shoulderVer;
+    lastElbowVerPos = elbowVer;
+    lastWristVerPos = wristVer;
+    lastWristRotation = wristRotation;
+    lastClampPos = clamp;
+    sendToPort(Dispatcher.encodeMultiJoint(
+            -shoulderHor, -shoulderVer, elbowVer, wristVer, wristRotation, clamp
+    ));
+    ui.setShoulderHorizontalPosition(shoulderHor);
+    ui.setShoulderVerticalPosition(shoulderVer);
+    ui.setElbowVerticalPosition(elbowVer);
+    ui.setWristVerticalPosition(wristVer);
+    ui.setWristRotationalPosition(wristRotation);
+    ui.setClampAperturelPosition(clamp);
+    return true;
+  }
+
+  /**
+   * Moves the clamp's tip to a point in space.
+   * @param x
+   *        The {@code x} coordinate of the point.
+   * @param y
+   *        The {@code y} coordinate of the point.
+   * @param z
+   *        The height of the point.
+   * @param pitch
+   *        The angle of the clamp from the vertical.
+   */
+  @Override
+  public boolean moveTo(double x, double y, double z, int pitch) {
+    int[] pose = new int[4];
+    if (!inverseKinematics.solve(
+            x, y, z, pitch,
+            new int[] {
+              lastShoulderHorPos, lastShoulderVerPos, 
+              lastElbowVerPos, lastWristVerPos
+            },
+            pose)
+    ) {
+      ui.showError(String.format(
+              SixDOFArmResources.getString("ERROR_UNREACHABLE_POINT"),
+              x, y, z
+      ));
+      return false;
+    }
+    return moveJoints(
+            pose[0], pose[1], pose[2], pose[3], lastWristRotation, lastClampPos
+    );
+  }
+
   /**
    * Moves the arm to the off position.
    */
@@ -620,6 +985,7 @@ public class SixDOFArmController
    */
   @Override
   public void closeClamp() {
+    lastClampPos = Clamp.MAX;
     sendToPort(Clamp.ACTION_CC);
 //    Joint clamp = joints.get("clamp");
     ui.setClampAperturelPosition(Clamp.MAX);
@@ -630,6 +996,7 @@ public class SixDOFArmController
    */
   @Override
   public void openClamp() {
+    lastClampPos = Clamp.MIN;
     sendToPort(Clamp.ACTION_CO);
     ui.setClampAperturelPosition(Clamp.MIN);
   }
@@ -641,6 +1008,7 @@ public class SixDOFArmController
    */
   @Override
   public void setClamp(int degrees) {
+    lastClampPos = degrees;
     sendToPort(Clamp.ACTION_CS+degrees);
     ui.setClampAperturelPosition(degrees);
 }
@@ -652,6 +1020,7 @@ public class SixDOFArmController
    */
   @Override
   public void rotateWrist(int rotation) {
+    lastWristRotation = rotation;
     sendToPort(Wrist.ACTION_WR+rotation);
     ui.setWristRotationalPosition(rotation);
   }
@@ -742,9 +1111,11 @@ public class SixDOFArmController
 
   @Override
   public void shutdown() {
+    dispatcher.stop();
     if (comm.isConnected()) {
       comm.writeToPort('O');
     }
+    closeAsyncListener();
     logger.log(
             Level.INFO, 
             SixDOFArmResources.getString("LOG_MESSAGE_PIERINHO_STOPPED")
@@ -756,6 +1127,11 @@ public class SixDOFArmController
     ui.showError(message);
   }
 
+  @Override
+  public void notifyConnectionLost() {
+    log(Level.SEVERE, "LOG_CONNECTION_LOST", comm.getComPortName());
+  }
+
   @Override
   public void notifyMessage(String message) {
 //    System.out.println(message);
@@ -1188,6 +1564,11 @@ public class SixDOFArmController
     dispatcher.setTimeBetweenCommands(timeBetweenCommands);
   }
 
+  @Override
+  public LatencyHistogram getCommandLatency(Dispatcher.Latency latency) {
+    return dispatcher.getLatency(latency);
+  }
+
   @Override
   public void setLogFilePathname(String pathname) {
     config.setLogFilePathname(pathname);
@@ -1221,23 +1602,74 @@ public class SixDOFArmController
    * @param   level   One of the message level identifiers, e.g., SEVERE
    * @param   msg     The string message (or a key in the message catalog)
    */
+  @Override
   public void log(Level level, String msg) {
     logger.log(level, msg);
   }
   
+  @Override
   public void log(Level level, String msg, Object param1) {
     logger.log(level, SixDOFArmResources.getString(msg), param1);
   }
+  
+  @Override
+  public void log(Level level, String msg, Object param1, Object param2) {
+    logger.log(
+            level, 
+            SixDOFArmResources.getString(msg), 
+            new Object[] {param1, param2}
+    );
+  }
+
+  /**
+   * Waits, on a separate thread not to freeze the UI, for the commands of a 
+   * simulated program to be simulated, then reports the time the program 
+   * would take on the arm.
+   * @param pathname
+   *        The pathname of the program.
+   */
+  private void reportSimulatedProgram(String pathname) {
+    Thread reporter = new Thread(() -> {
+      try {
+        if (!dispatcher.awaitSent(SIMULATION_TIMEOUT)) {
+          return;
+        }
+      } catch (InterruptedException ex) {
+        return;
+      }
+      double seconds = dispatcher.getSimulatedNanos() / 1e9;
+      logger.log(
+              Level.INFO, 
+              SixDOFArmResources.getString("LOG_SIMULATED_PROGRAM"),
+              new Object[] {pathname, seconds}
+      );
+      java.awt.EventQueue.invokeLater(() -> {
+        ui.notifyProgramMessage(
+                Level.INFO,
+                MessageFormat.format(
+                        SixDOFArmResources.getString("LOG_SIMULATED_PROGRAM"),
+                        pathname, seconds
+                )
+        );
+      });
+    }, "simulation-reporter");
+    reporter.setDaemon(true);
+    reporter.start();
+  }
 
   /**
    * 
    * @param program
    *        Text of a Pierin-oh! program to be executed.
    *        Every command has to terminate with a LINE-FEED (\n)
+   *        If simulating, the program is executed on the virtual clock of the
+   *        {@code Dispatcher}, even without the arm, and the time it would
+   *        take on the arm is reported.
    */
   @Override
   public void runProgram(String program) {
-    if (isArmConnected()) {
+    boolean simulating = dispatcher != null && dispatcher.isSimulation();
+    if (isArmConnected() || simulating) {
       String[] lines = program.split(LF);
       PierinhoLanguage lang = new PierinhoLanguage(this);
       String pathname = ui.getProgramPathname();
@@ -1253,8 +1685,13 @@ public class SixDOFArmController
               Level.INFO,
               SixDOFArmResources.getString("LOG_EXECUTING_PROGRAM")
       );
+      if (simulating) {
+        dispatcher.resetSimulation();
+      }
       int len = lines.length;
       boolean aborted = false;
+      boolean coalesce = this.coalesceCommands;
+      this.coalesceCommands = false;
       for (int i = 0; i < len; i++) {
         if (!lines[i].matches("^\\s*$")) {
           if (!PierinhoLanguage.isComment(lines[i])) {
@@ -1265,6 +1702,7 @@ public class SixDOFArmController
           }
         }
       }
+      this.coalesceCommands = coalesce;
       if (aborted) {
         logger.log(
                 Level.SEVERE, 
@@ -1288,6 +1726,9 @@ public class SixDOFArmController
                 pathname
         );
       }
+      if (simulating) {
+        reportSimulatedProgram(pathname);
+      }
     } else {
       ui.showError(program);
     }
@@ -234,6 +234,48 @@ public interface SixDOFArmControllerInterface {
    */
   public boolean moveWristVertically(int deg);
 
+  /**
+   * Commands the robotic arm to move all its joints together, with a single
+   * command.
+   * 
+   * @param shoulderHor
+   *        The angle of the new horizontal shoulder position.
+   * @param shoulderVer
+   *        The angle of the new vertical shoulder position.
+   * @param elbowVer
+   *        The angle of the new vertical elbow position.
+   * @param wristVer
+   *        The angle of the new vertical wrist position.
+   * @param wristRotation
+   *        The angle of the new wrist rotation.
+   * @param clamp
+   *        The new clamp aperture.
+   * @return {@code true} if the collision detection system allows the movement,
+   *         {@code false} otherwise.
+   */
+  public boolean moveJoints(
+          int shoulderHor, int shoulderVer, int elbowVer, int wristVer, 
+          int wristRotation, int clamp
+  );
+
+  /**
+   * Commands the robotic arm to bring the clamp's tip to a point in space, 
+   * with the joints closest to their present position.  The wrist rotation 
+   * and the clamp aperture are left unchanged.
+   * 
+   * @param x
+   *        The {@code x} coordinate of the point, in front of the arm.
+   * @param y
+   *        The {@code y} coordinate of the point, on the left of the arm.
+   * @param z
+   *        The height of the point from the plane where the arm lies on.
+   * @param pitch
+   *        The angle of the clamp from the vertical.
+   * @return {@code true} if the point can be reached and the collision 
+   *         detection system allows the movement, {@code false} otherwise.
+   */
+  public boolean moveTo(double x, double y, double z, int pitch);
+
   /**
    * Sets the mass (weight) that the shoulder has to lift along with its length 
    * (in meters) and the servo motor torque (in kg). 
@@ -313,6 +355,15 @@ public interface SixDOFArmControllerInterface {
    */
   public void setTimeBetweenCommands(int timeBetweenCommands);
 
+  /**
+   * Gets the histogram of the latency of an interval of the life of the 
+   * commands sent to the robotic arm.
+   * @param latency
+   *        The interval.
+   * @return The histogram.
+   */
+  public LatencyHistogram getCommandLatency(Dispatcher.Latency latency);
+
   /**
    * Sets the full log file pathname.
    * @param pathname The log file pathname.
@@ -0,0 +1,282 @@
+package it.gftblues.sixdofarm;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A hashed timing wheel, keeping the deadlines of the commands waiting for an
+ * acknowledge.
+ *
+ * <p>The time is divided in ticks and every deadline is stored, as a linked
+ * list, in the slot of its tick modulo the number of slots.  Scheduling a
+ * timeout takes constant time; advancing the wheel visits only the slots of
+ * the ticks elapsed since the previous call, and the timeouts further than
+ * one turn of the wheel are simply left in their slot until their tick comes.
+ * </p>
+ *
+ * <p>The timeouts are not cancelled: whoever receives an expired timeout has
+ * to check whether it is still meaningful, e.g. whether the command has not
+ * been acknowledged in the meantime.</p>
+ *
+ * <strong>Note</strong>
+ * <p>The class is not thread-safe.</p>
+ *
+ * @param <T> The type of the items the timeouts refer to.
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class TimingWheel<T> {
+
+  /**
+   * A timeout stored in the wheel.
+   *
+   * @param <T> The type of the item the timeout refers to.
+   */
+  public static class Timeout<T> {
+
+    /**
+     * The item the timeout refers to.
+     */
+    private final T item;
+
+    /**
+     * The number of times the timeout has already expired for the same item.
+     */
+    private final int attempts;
+
+    /**
+     * The tick when the timeout expires.
+     */
+    private final long deadline;
+
+    /**
+     * The next timeout in the same slot or in the list of the expired ones.
+     */
+    private Timeout<T> next;
+
+    /**
+     * Constructor.
+     * @param item
+     *        The item the timeout refers to.
+     * @param attempts
+     *        The number of times the timeout has already expired for the same
+     *        item.
+     * @param deadline
+     *        The tick when the timeout expires.
+     */
+    private Timeout(T item, int attempts, long deadline) {
+      this.item = item;
+      this.attempts = attempts;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Gets the item the timeout refers to.
+     * @return The item.
+     */
+    public T getItem() {
+      return item;
+    }
+
+    /**
+     * Gets the number of times the timeout has already expired for the same
+     * item, as passed to {@code schedule()}.
+     * @return The number of attempts.
+     */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /**
+     * Gets the next expired timeout, in the list returned by
+     * {@code expire()}.
+     * @return The next expired timeout or {@code null} if it is the last one.
+     */
+    public Timeout<T> getNext() {
+      return next;
+    }
+  }
+
+  /**
+   * The default duration of a tick in milliseconds.
+   */
+  public static final int DEFAULT_TICK_MILLIS = 10;
+
+  /**
+   * The default number of slots.  It must be a power of two.
+   */
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  /**
+   * The slots of the wheel.
+   */
+  private final Timeout<T>[] slots;
+
+  /**
+   * The mask used to compute the slot of a tick.
+   */
+  private final int mask;
+
+  /**
+   * The duration of a tick in nanoseconds.
+   */
+  private final long tickNanos;
+
+  /**
+   * The {@code System.nanoTime()} of the tick 0.
+   */
+  private final long startNanos;
+
+  /**
+   * The last tick whose slot has been visited.
+   */
+  private long currentTick = 0L;
+
+  /**
+   * The number of timeouts stored.
+   */
+  private int size = 0;
+
+  /**
+   * Constructor using the default tick and number of slots.
+   * @param nowNanos
+   *        The current {@code System.nanoTime()}.
+   */
+  public TimingWheel(long nowNanos) {
+    this(DEFAULT_TICK_MILLIS * 1000000L, DEFAULT_WHEEL_SIZE, nowNanos);
+  }
+
+  /**
+   * Constructor.
+   * @param tickNanos
+   *        The duration of a tick in nanoseconds.
+   * @param wheelSize
+   *        The number of slots, rounded up to the next power of two.
+   * @param nowNanos
+   *        The current {@code System.nanoTime()}.
+   */
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickNanos, int wheelSize, long nowNanos) {
+    int cap = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+    slots = (Timeout<T>[]) new Timeout<?>[cap];
+    mask = cap - 1;
+    this.tickNanos = tickNanos;
+    startNanos = nowNanos;
+  }
+
+  /**
+   * Gets the duration of a tick.
+   * @return The duration in nanoseconds.
+   */
+  public long getTickNanos() {
+    return tickNanos;
+  }
+
+  /**
+   * Schedules a timeout.  It expires at the first tick not earlier than
+   * {@code nowNanos+delayNanos}.
+   * @param item
+   *        The item the timeout refers to.
+   * @param attempts
+   *        The number of times the timeout has already expired for the same
+   *        item.
+   * @param delayNanos
+   *        The delay in nanoseconds.
+   * @param nowNanos
+   *        The current {@code System.nanoTime()}.
+   */
+  public void schedule(T item, int attempts, long delayNanos, long nowNanos) {
+    long deadline = (nowNanos + delayNanos - startNanos + tickNanos - 1)
+            / tickNanos;
+    if (deadline <= currentTick) {
+      deadline = currentTick + 1;
+    }
+    Timeout<T> timeout = new Timeout<>(item, attempts, deadline);
+    int slot = (int)(deadline & mask);
+    timeout.next = slots[slot];
+    slots[slot] = timeout;
+    size++;
+  }
+
+  /**
+   * Removes the timeouts expired up to {@code nowNanos}.
+   * @param nowNanos
+   *        The current {@code System.nanoTime()}.
+   * @return The first of the expired timeouts, linked through
+   *         {@code getNext()}, or {@code null} if none is expired.
+   */
+  public Timeout<T> expire(long nowNanos) {
+    long nowTick = (nowNanos - startNanos) / tickNanos;
+    Timeout<T> expired = null;
+    long last = Math.min(nowTick, currentTick + slots.length);
+    for (long tick = currentTick + 1; tick <= last && size > 0; tick++) {
+      int slot = (int)(tick & mask);
+      Timeout<T> prev = null;
+      Timeout<T> timeout = slots[slot];
+      while (timeout != null) {
+        Timeout<T> next = timeout.next;
+        if (timeout.deadline <= nowTick) {
+          if (prev == null) {
+            slots[slot] = next;
+          } else {
+            prev.next = next;
+          }
+          timeout.next = expired;
+          expired = timeout;
+          size--;
+        } else {
+          prev = timeout;
+        }
+        timeout = next;
+      }
+    }
+    if (nowTick > currentTick) {
+      currentTick = nowTick;
+    }
+    return expired;
+  }
+
+  /**
+   * Gets the number of timeouts stored.
+   * @return The number of timeouts.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the wheel is empty.
+   * @return {@code true} if empty, {@code false} otherwise.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all timeouts.
+   */
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = null;
+    }
+    size = 0;
+  }
+}
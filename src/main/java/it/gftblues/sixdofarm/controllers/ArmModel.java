@@ -0,0 +1,306 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The model of the servos driven by the firmware, {@code ROT3U}: their
+ * angles and how long every movement takes.
+ *
+ * <p>The methods do not wait: they update the angles at once and return the
+ * time the real arm would take, so that the caller can either wait for it, as
+ * the {@code VirtualArm} does, or just add it to a virtual clock.</p>
+ *
+ * <p>The time is the one of {@code ROT3U}: a servo moves one degree every
+ * {@code DEFAULT_MOVE_DELAY} milliseconds, one servo at a time, while
+ * {@code moveAll()} moves all of them together; the predefined movements of
+ * the firmware pause {@code PAUSE} milliseconds between two servos.  As in
+ * {@code ROT3U}, an angle out of range is recorded even if the servo does not
+ * move, and then no servo moves from it.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class ArmModel {
+
+  /**
+   * The number of servos.
+   */
+  public static final int NUM_OF_SERVOS = 6;
+
+  /**
+   * The channel of the horizontal shoulder servo.
+   */
+  public static final int SERVO_SHOULDER_X = 0;
+
+  /**
+   * The channel of the vertical shoulder servo.
+   */
+  public static final int SERVO_SHOULDER_Y = 1;
+
+  /**
+   * The channel of the elbow servo.
+   */
+  public static final int SERVO_ELBOW = 2;
+
+  /**
+   * The channel of the vertical wrist servo.
+   */
+  public static final int SERVO_WRIST_Y = 3;
+
+  /**
+   * The channel of the wrist rotation servo.
+   */
+  public static final int SERVO_WRIST_X = 4;
+
+  /**
+   * The channel of the clamp servo.
+   */
+  public static final int SERVO_CLAMP = 5;
+
+  /**
+   * The angle of the closed clamp.
+   */
+  public static final float CLAMP_CLOSE = 90.0f;
+
+  /**
+   * The minimum angle of the clamp, i.e. the open clamp.
+   */
+  public static final float CLAMP_MIN = 20.0f;
+
+  /**
+   * The time in milliseconds a servo takes to move by one degree.
+   */
+  public static final int DEFAULT_MOVE_DELAY = 10;
+
+  /**
+   * The time in milliseconds between two servos in the predefined movements.
+   */
+  public static final int PAUSE = 500;
+
+  /**
+   * The channels of the values of the multi-joint command, in order.
+   */
+  private static final int[] MJ_CHANNELS = {
+    SERVO_SHOULDER_X, SERVO_SHOULDER_Y, SERVO_ELBOW,
+    SERVO_WRIST_Y, SERVO_WRIST_X, SERVO_CLAMP
+  };
+
+  /**
+   * The angles of the servos, indexed by channel.
+   */
+  private final float[] pLastServoAngles = new float[NUM_OF_SERVOS];
+
+  /**
+   * The target of {@code moveAll()}, reused.
+   */
+  private final float[] target = new float[NUM_OF_SERVOS];
+
+  /**
+   * Constructor, with the servos where the firmware puts them at boot.
+   */
+  public ArmModel() {
+    reset();
+  }
+
+  /**
+   * Puts the servos where the firmware puts them at boot.
+   */
+  public synchronized void reset() {
+    for (int i = 0; i < NUM_OF_SERVOS; i++) {
+      pLastServoAngles[i] = 0.0f;
+    }
+    pLastServoAngles[SERVO_CLAMP] = CLAMP_MIN;
+  }
+
+  /**
+   * Gets the angles of the servos.
+   * @return A copy of the angles, indexed by channel, e.g.
+   *         {@code SERVO_ELBOW}.
+   */
+  public synchronized float[] getServoAngles() {
+    return pLastServoAngles.clone();
+  }
+
+  /**
+   * Gets the angle of a servo.
+   * @param channel
+   *        The channel, e.g. {@code SERVO_ELBOW}.
+   * @return The angle.
+   */
+  public synchronized float getServoAngle(int channel) {
+    return pLastServoAngles[channel];
+  }
+
+  /**
+   * Checks whether an angle is valid, as {@code ROT3U::isValid()} does.
+   * @param degrees
+   *        The angle.
+   * @return {@code true} if between -90 and 90 degrees.
+   */
+  public static boolean isValid(float degrees) {
+    return degrees >= -90.0f && degrees <= 90.0f;
+  }
+
+  /**
+   * Executes the movement of a command of the firmware.
+   * @param action
+   *        The action, e.g. {@code SH} or {@code MJ}.
+   * @param values
+   *        The values of the command: one for the single servos and
+   *        {@code CS}, six for {@code MJ}.
+   * @return The time in milliseconds, zero for the actions not moving the
+   *         arm.
+   */
+  public synchronized long execute(String action, float[] values) {
+    switch (action) {
+      case "SH":
+        return move(SERVO_SHOULDER_X, values[0]);
+      case "SV":
+        return move(SERVO_SHOULDER_Y, values[0]);
+      case "EV":
+        return move(SERVO_ELBOW, values[0]);
+      case "WV":
+        return move(SERVO_WRIST_Y, values[0]);
+      case "WR":
+        return move(SERVO_WRIST_X, values[0]);
+      case "CO":
+        return move(SERVO_CLAMP, CLAMP_MIN);
+      case "CC":
+        return move(SERVO_CLAMP, CLAMP_CLOSE);
+      case "CS":
+        return setClamp(values[0]);
+      case "MY":
+        return moveJar(45.0f, 70.0f);
+      case "MQ":
+        return moveJar(32.0f, 90.0f);
+      case "DP":
+        return moveToDefaultPosition();
+      case "MJ":
+        for (int i = 0; i < NUM_OF_SERVOS; i++) {
+          target[MJ_CHANNELS[i]] = values[i];
+        }
+        return moveAll(target);
+      default:
+        return 0L;
+    }
+  }
+
+  /**
+   * Moves a servo from its last angle, one degree at a time, as
+   * {@code ROT3U::move()} and its callers do.
+   * @param channel
+   *        The channel of the servo.
+   * @param degrees
+   *        The angle, recorded even if out of range.
+   * @return The time in milliseconds.
+   */
+  public synchronized long move(int channel, float degrees) {
+    float from = pLastServoAngles[channel];
+    long millis = 0L;
+    if (isValid(from) && isValid(degrees)) {
+      if (channel == SERVO_CLAMP && from < CLAMP_MIN) {
+        from = CLAMP_MIN;
+      }
+      long steps = (long)Math.floor(Math.abs(degrees-from))+1L;
+      millis = steps * DEFAULT_MOVE_DELAY;
+    }
+    pLastServoAngles[channel] = degrees;
+    return millis;
+  }
+
+  /**
+   * Sets the clamp, within {@code CLAMP_MIN} and {@code CLAMP_CLOSE}.
+   * @param degrees
+   *        The angle.
+   * @return The time in milliseconds.
+   */
+  public synchronized long setClamp(float degrees) {
+    return move(
+            SERVO_CLAMP, Math.min(Math.max(degrees, CLAMP_MIN), CLAMP_CLOSE)
+    );
+  }
+
+  /**
+   * Moves all the servos together, one degree per servo at every step, as
+   * {@code ROT3U::moveAll()} does.
+   * @param degrees
+   *        The angles, indexed by channel; an invalid one leaves its servo
+   *        where it is.
+   * @return The time in milliseconds.
+   */
+  public synchronized long moveAll(float[] degrees) {
+    long steps = 0L;
+    for (int channel = 0; channel < NUM_OF_SERVOS; channel++) {
+      float from = pLastServoAngles[channel];
+      float to = isValid(degrees[channel]) ? degrees[channel] : from;
+      if (channel == SERVO_CLAMP) {
+        from = Math.max(from, CLAMP_MIN);
+        to = Math.max(to, CLAMP_MIN);
+      }
+      steps = Math.max(steps, (long)Math.ceil(Math.abs(to-from)));
+      pLastServoAngles[channel] = to;
+    }
+    // The last round finds all the servos in place, after its delay.
+    return (steps+1L) * DEFAULT_MOVE_DELAY;
+  }
+
+  /**
+   * Moves the arm to its default position, as {@code moveToDefaultPosition()}
+   * does.
+   * @return The time in milliseconds.
+   */
+  public synchronized long moveToDefaultPosition() {
+    return move(SERVO_SHOULDER_X, 0.0f)+PAUSE
+            +move(SERVO_SHOULDER_Y, 0.0f)+PAUSE
+            +move(SERVO_ELBOW, 0.0f)+PAUSE
+            +move(SERVO_WRIST_X, -90.0f)+PAUSE
+            +move(SERVO_WRIST_Y, 0.0f)+PAUSE
+            +setClamp(0.0f)+PAUSE
+            +move(SERVO_WRIST_Y, -90.0f)+PAUSE
+            +move(SERVO_ELBOW, -90.0f)+PAUSE
+            +move(SERVO_SHOULDER_Y, -90.0f)+PAUSE
+            +move(SERVO_ELBOW, 85.0f);
+  }
+
+  /**
+   * Moves a jar, as {@code moveYakult()} and {@code moveQueen()} do.
+   * @param wrist
+   *        The vertical wrist angle reaching the jar.
+   * @param clamp
+   *        The clamp angle gripping the jar.
+   * @return The time in milliseconds.
+   */
+  public synchronized long moveJar(float wrist, float clamp) {
+    return move(SERVO_CLAMP, CLAMP_MIN)
+            +move(SERVO_WRIST_X, -90.0f)
+            +move(SERVO_SHOULDER_Y, 0.0f)+PAUSE
+            +move(SERVO_SHOULDER_X, 0.0f)+PAUSE
+            +move(SERVO_SHOULDER_Y, -90.0f)+PAUSE
+            +move(SERVO_ELBOW, 0.0f)+PAUSE
+            +move(SERVO_WRIST_Y, wrist)+PAUSE
+            +setClamp(clamp)+PAUSE
+            +move(SERVO_WRIST_Y, 0.0f)+PAUSE
+            +move(SERVO_SHOULDER_X, -45.0f)+PAUSE
+            +move(SERVO_WRIST_Y, 45.0f)+PAUSE
+            +move(SERVO_CLAMP, CLAMP_MIN)
+            +move(SERVO_SHOULDER_Y, 0.0f);
+  }
+}
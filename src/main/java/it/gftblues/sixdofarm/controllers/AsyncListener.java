@@ -0,0 +1,347 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Passes the data received from the robotic arm to a slow listener, e.g. one
+ * updating the user interface, on a thread of its own, so that the thread
+ * reading the serial port never waits for it.
+ *
+ * <p>The data is copied into a lock-free, single-producer single-consumer
+ * ring of bytes, written by the reader thread and read by the thread of the
+ * {@code AsyncListener}.  Once woken up, the consumer waits
+ * {@code batchInterval} milliseconds for more data and then passes all of it
+ * to the listener with a single {@code notifyData()}.  When the ring is full
+ * the new chunks are dropped, and counted, rather than waiting for the
+ * listener.</p>
+ *
+ * <p>The other notifications are appended to a lock-free queue of events,
+ * the frames being copied, and passed to the listener by the same thread,
+ * before the data collected meanwhile.  A failure of the listener is logged
+ * and does not stop the following notifications.</p>
+ *
+ * <strong>Note</strong>
+ * <p>{@code notifyData()} has to be called by a single thread, as the
+ * {@code SerialCommunicator} does.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class AsyncListener implements SerialCommunicatorListener {
+
+  /**
+   * The default capacity of the ring in bytes.
+   */
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  /**
+   * The default time in milliseconds the data is collected before being
+   * passed to the listener.
+   */
+  public static final long DEFAULT_BATCH_INTERVAL = 50L;
+
+  /**
+   * The slow listener.
+   */
+  private final SerialCommunicatorListener listener;
+
+  /**
+   * The ring of the bytes received.
+   */
+  private final byte[] ring;
+
+  /**
+   * The mask used to compute the index of a position in the ring.
+   */
+  private final int mask;
+
+  /**
+   * The position of the next byte to be read.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * The position of the next byte to be written.
+   */
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * The notifications other than the data, waiting to be passed to the 
+   * listener.
+   */
+  private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The number of bytes dropped because the ring was full.
+   */
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * The time in nanoseconds the data is collected before being passed.
+   */
+  private final long batchNanos;
+
+  /**
+   * The batch passed to the listener, owned by the consumer thread.
+   */
+  private final ByteBuffer batch;
+
+  /**
+   * {@code true} while the consumer thread is parked waiting for data.
+   */
+  private volatile boolean waiting = false;
+
+  /**
+   * {@code false} once closed.
+   */
+  private volatile boolean running = true;
+
+  /**
+   * The consumer thread.
+   */
+  private final Thread consumer;
+
+  /**
+   * Constructor with the default capacity and batch interval, starting the
+   * consumer thread.
+   * @param listener
+   *        The slow listener.
+   */
+  public AsyncListener(SerialCommunicatorListener listener) {
+    this(listener, DEFAULT_CAPACITY, DEFAULT_BATCH_INTERVAL);
+  }
+
+  /**
+   * Constructor, starting the consumer thread.
+   * @param listener
+   *        The slow listener.
+   * @param capacity
+   *        The capacity of the ring in bytes, rounded up to the next power of
+   *        two.
+   * @param batchInterval
+   *        The time in milliseconds the data is collected before being
+   *        passed, or zero to pass it as soon as possible.
+   */
+  public AsyncListener(
+          SerialCommunicatorListener listener, int capacity, long batchInterval
+  ) {
+    this.listener = listener;
+    int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    ring = new byte[cap];
+    mask = cap - 1;
+    batch = ByteBuffer.allocate(cap);
+    batchNanos = TimeUnit.MILLISECONDS.toNanos(batchInterval);
+    consumer = new Thread(this::consume, "async-listener");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  /**
+   * Gets the slow listener.
+   * @return The {@code SerialCommunicatorListener}.
+   */
+  public SerialCommunicatorListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Gets the number of bytes dropped because the listener was too slow.
+   * @return The number of bytes.
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Stops the consumer thread.  The data and the events not yet passed are
+   * discarded.
+   */
+  public void close() {
+    running = false;
+    LockSupport.unpark(consumer);
+  }
+
+  /**
+   * Copies the data into the ring and wakes up the consumer thread, if
+   * waiting.  A chunk not fitting in the ring is dropped whole.
+   * @param data
+   *        The data, from the position to the limit of the buffer, which is
+   *        left unchanged.
+   */
+  @Override
+  public void notifyData(ByteBuffer data) {
+    int length = data.remaining();
+    long t = tail.get();
+    if (length > ring.length - (t - head.get())) {
+      dropped.addAndGet(length);
+      return;
+    }
+    int position = data.position();
+    int index = (int)(t & mask);
+    int first = Math.min(length, ring.length - index);
+    data.get(ring, index, first);
+    data.get(ring, 0, length - first);
+    data.position(position);
+    // A volatile write, so that waiting is read after it.
+    tail.set(t + length);
+    if (waiting) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Appends an event to the queue and wakes up the consumer thread, if 
+   * waiting.
+   * @param event
+   *        The event, which passes a notification to the listener.
+   */
+  private void post(Runnable event) {
+    events.offer(event);
+    if (waiting) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Passes a notification to the listener, logging its failure, which must
+   * not stop the following ones.
+   * @param event
+   *        The event.
+   */
+  private void deliver(Runnable event) {
+    try {
+      event.run();
+    } catch (RuntimeException ex) {
+      Logger.getLogger(AsyncListener.class.getName()).log(Level.SEVERE, null, ex);
+    }
+  }
+
+  /**
+   * The consumer thread body: waits for the data or the events, passes the
+   * events to the listener, collects the data for the batch interval and 
+   * passes it too.
+   */
+  private void consume() {
+    while (running) {
+      Runnable event;
+      while ((event = events.poll()) != null) {
+        deliver(event);
+      }
+      long h = head.get();
+      if (tail.get() == h) {
+        waiting = true;
+        if (tail.get() == h && events.isEmpty()) {
+          LockSupport.park(this);
+        }
+        waiting = false;
+        continue;
+      }
+      if (batchNanos > 0L) {
+        LockSupport.parkNanos(this, batchNanos);
+      }
+      long t = tail.get();
+      int length = (int)(t - h);
+      int index = (int)(h & mask);
+      int first = Math.min(length, ring.length - index);
+      batch.clear();
+      batch.put(ring, index, first);
+      batch.put(ring, 0, length - first);
+      head.lazySet(t);
+      batch.flip();
+      deliver(() -> listener.notifyData(batch));
+    }
+  }
+
+  /**
+   * Passes the error to the listener, on the consumer thread.
+   * @param error
+   *        The error.
+   */
+  @Override
+  public void notifyError(String error) {
+    post(() -> listener.notifyError(error));
+  }
+
+  /**
+   * Passes the message to the listener, on the consumer thread.
+   * @param message
+   *        The message.
+   */
+  @Override
+  public void notifyMessage(String message) {
+    post(() -> listener.notifyMessage(message));
+  }
+
+  /**
+   * Passes a copy of the frame to the listener, on the consumer thread.
+   * @param payload
+   *        The buffer containing the payload of the frame.
+   * @param length
+   *        The length of the payload.
+   */
+  @Override
+  public void notifyFrame(byte[] payload, int length) {
+    byte[] copy = Arrays.copyOf(payload, length);
+    post(() -> listener.notifyFrame(copy, length));
+  }
+
+  /**
+   * Passes the corrupted frame to the listener, on the consumer thread.
+   * @param length
+   *        The number of bytes received for the frame.
+   */
+  @Override
+  public void notifyCorruptedFrame(int length) {
+    post(() -> listener.notifyCorruptedFrame(length));
+  }
+
+  /**
+   * Passes the completion of a write to the listener, on the consumer 
+   * thread.
+   * @param tag
+   *        The tag given when writing.
+   * @param nanos
+   *        The {@code System.nanoTime()} when the write has completed.
+   */
+  @Override
+  public void notifyWritten(long tag, long nanos) {
+    post(() -> listener.notifyWritten(tag, nanos));
+  }
+
+  /**
+   * Passes the loss of the connection to the listener, on the consumer 
+   * thread.
+   */
+  @Override
+  public void notifyConnectionLost() {
+    post(listener::notifyConnectionLost);
+  }
+}
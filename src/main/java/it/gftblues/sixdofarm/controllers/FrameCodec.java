@@ -0,0 +1,299 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of the binary frames exchanged with the robotic arm.
+ *
+ * <p>A frame carries a payload followed by its CRC-8 (polynomial 0x07),
+ * encoded with COBS (Consistent Overhead Byte Stuffing), so that it never
+ * contains a zero byte, and terminated by a zero byte.  A receiver can
+ * therefore always find the start of the next frame, whatever was lost or
+ * corrupted before it, and detect the corrupted ones through the CRC.</p>
+ *
+ * <p>The numbers in the payloads are written as unsigned LEB128 varints:
+ * 7 bits per byte, least significant group first, the most significant bit
+ * set on every byte but the last one.</p>
+ *
+ * <p>Neither encoding nor decoding allocates memory.</p>
+ *
+ * <strong>Note</strong>
+ * <p>The class is not thread-safe: the decoder keeps the frame being
+ * received.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class FrameCodec {
+
+  /**
+   * The receiver of the frames decoded by {@code decode()}.
+   */
+  public static interface Receiver {
+
+    /**
+     * Receives a valid frame.
+     * @param payload
+     *        The buffer containing the payload, without the CRC.  It is
+     *        reused for the following frames.
+     * @param length
+     *        The length of the payload.
+     */
+    public void frameDecoded(byte[] payload, int length);
+
+    /**
+     * Receives the notification of a corrupted frame, which is discarded.
+     * @param length
+     *        The number of bytes received for the frame.
+     */
+    public void frameCorrupted(int length);
+  }
+
+  /**
+   * The byte terminating every frame.
+   */
+  public static final byte DELIMITER = 0;
+
+  /**
+   * The maximum length of a payload.
+   */
+  public static final int MAX_PAYLOAD_LENGTH = 64;
+
+  /**
+   * The maximum number of bytes of a varint.
+   */
+  public static final int MAX_VARINT_LENGTH = 10;
+
+  /**
+   * The CRC-8 polynomial, x^8+x^2+x+1.
+   */
+  private static final int CRC8_POLYNOMIAL = 0x07;
+
+  /**
+   * The CRC-8 of every byte value.
+   */
+  private static final byte[] CRC8_TABLE = new byte[256];
+
+  static {
+    for (int i = 0; i < CRC8_TABLE.length; i++) {
+      int crc = i;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x80) != 0 ? (crc << 1) ^ CRC8_POLYNOMIAL : crc << 1;
+      }
+      CRC8_TABLE[i] = (byte)crc;
+    }
+  }
+
+  /**
+   * The frame being received: the COBS encoded bytes, then decoded in place.
+   */
+  private final byte[] frame = new byte[getMaxEncodedLength(MAX_PAYLOAD_LENGTH)];
+
+  /**
+   * The number of bytes of the frame being received, including the ones 
+   * discarded by an overflow.
+   */
+  private int length = 0;
+
+  /**
+   * Whether the frame being received is longer than any valid one.
+   */
+  private boolean overflow = false;
+
+  /**
+   * Computes the CRC-8 of a sequence of bytes.
+   * @param data
+   *        The buffer containing the bytes.
+   * @param offset
+   *        The position of the first byte.
+   * @param length
+   *        The number of bytes.
+   * @return The CRC, between 0 and 255.
+   */
+  public static int crc8(byte[] data, int offset, int length) {
+    int crc = 0;
+    for (int i = offset; i < offset+length; i++) {
+      crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF] & 0xFF;
+    }
+    return crc;
+  }
+
+  /**
+   * Writes a non negative number as a varint.
+   * @param value
+   *        The number.
+   * @param buffer
+   *        The buffer where the varint is written.
+   * @param offset
+   *        The position of the first byte.
+   * @return The position following the last byte written.
+   */
+  public static int putVarint(long value, byte[] buffer, int offset) {
+    int pos = offset;
+    long v = value;
+    while ((v & ~0x7FL) != 0L) {
+      buffer[pos++] = (byte)((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buffer[pos++] = (byte)v;
+    return pos;
+  }
+
+  /**
+   * Reads a varint.
+   * @param buffer
+   *        The buffer containing the varint.
+   * @param offset
+   *        The position of the first byte.
+   * @param limit
+   *        The position following the last byte that can be read.
+   * @return The number, or {@code -1} if the varint is truncated or does not
+   *         fit in a non negative {@code long}.
+   */
+  public static long getVarint(byte[] buffer, int offset, int limit) {
+    long value = 0L;
+    for (int pos = offset, shift = 0; pos < limit && shift < 63; shift += 7) {
+      int b = buffer[pos++];
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * Gets the maximum length of the frame of a payload.
+   * @param payloadLength
+   *        The length of the payload.
+   * @return The number of bytes, including the CRC, the COBS overhead and the
+   *         delimiter.
+   */
+  public static int getMaxEncodedLength(int payloadLength) {
+    return payloadLength+1+(payloadLength+1)/254+2;
+  }
+
+  /**
+   * Encodes a payload into a frame.
+   * @param payload
+   *        The buffer containing the payload.
+   * @param length
+   *        The length of the payload.
+   * @param buffer
+   *        The buffer where the frame is written.  It must have room for at
+   *        least {@code getMaxEncodedLength(length)} bytes after
+   *        {@code offset}.
+   * @param offset
+   *        The position of the first byte written.
+   * @return The position following the delimiter.
+   */
+  public static int encode(byte[] payload, int length, byte[] buffer, int offset) {
+    byte crc = (byte)crc8(payload, 0, length);
+    int codePos = offset;
+    int pos = offset+1;
+    int code = 1;
+    for (int i = 0; i <= length; i++) {
+      byte b = i < length ? payload[i] : crc;
+      if (b == DELIMITER) {
+        buffer[codePos] = (byte)code;
+        codePos = pos++;
+        code = 1;
+      } else {
+        buffer[pos++] = b;
+        if (++code == 0xFF) {
+          buffer[codePos] = (byte)code;
+          codePos = pos++;
+          code = 1;
+        }
+      }
+    }
+    buffer[codePos] = (byte)code;
+    buffer[pos++] = DELIMITER;
+    return pos;
+  }
+
+  /**
+   * Decodes the frames contained in a chunk of data, passing them to the
+   * receiver.  A frame can span several chunks.
+   * @param data
+   *        The data, from the position to the limit of the buffer, which is
+   *        consumed.
+   * @param receiver
+   *        The receiver of the frames.
+   */
+  public void decode(ByteBuffer data, Receiver receiver) {
+    while (data.hasRemaining()) {
+      byte b = data.get();
+      if (b != DELIMITER) {
+        if (length < frame.length) {
+          frame[length] = b;
+        } else {
+          overflow = true;
+        }
+        length++;
+        continue;
+      }
+      if (length > 0) {
+        int decoded = overflow ? -1 : unstuff();
+        if (decoded < 2
+                || (crc8(frame, 0, decoded-1) != (frame[decoded-1] & 0xFF))
+        ) {
+          receiver.frameCorrupted(length);
+        } else {
+          receiver.frameDecoded(frame, decoded-1);
+        }
+      }
+      reset();
+    }
+  }
+
+  /**
+   * Discards the frame being received.
+   */
+  public void reset() {
+    length = 0;
+    overflow = false;
+  }
+
+  /**
+   * Removes the COBS encoding from the frame being received, in place.
+   * @return The decoded length, or {@code -1} if the encoding is invalid.
+   */
+  private int unstuff() {
+    int read = 0;
+    int write = 0;
+    while (read < length) {
+      int code = frame[read++] & 0xFF;
+      if (read+code-1 > length) {
+        return -1;
+      }
+      for (int i = 1; i < code; i++) {
+        frame[write++] = frame[read++];
+      }
+      if (code < 0xFF && read < length) {
+        frame[write++] = DELIMITER;
+      }
+    }
+    return write;
+  }
+}
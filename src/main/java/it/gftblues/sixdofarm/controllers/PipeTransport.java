@@ -0,0 +1,343 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The transport through an in-memory pipe to a peer running in the same
+ * process, e.g. an emulated robotic arm.
+ *
+ * <p>Every time the transport is opened, a new pair of pipes is created and
+ * handed to the peer; without a peer, the data written is sent back as it is
+ * (loopback).  Closing the transport closes the pipes, so the peer reads the
+ * end of the stream.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class PipeTransport extends StreamTransport {
+
+  /**
+   * The name of the only port.
+   */
+  public static final String PORT_NAME = "pipe";
+
+  /**
+   * The capacity in bytes of each pipe.
+   */
+  public static final int PIPE_CAPACITY = 4096;
+
+  /**
+   * The other end of the pipes.
+   */
+  public static interface Peer {
+
+    /**
+     * Attaches the peer to the pipes of a new connection.
+     * @param fromHost
+     *        The stream of the data written by the host.
+     * @param toHost
+     *        The stream of the data to be read by the host.
+     */
+    public void attach(InputStream fromHost, OutputStream toHost);
+  }
+
+  /**
+   * A bounded byte pipe, whose ends can be used by two different threads.
+   */
+  public static class Pipe {
+
+    /**
+     * The bytes in the pipe.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The position of the next byte to be read.
+     */
+    private long head = 0L;
+
+    /**
+     * The position of the next byte to be written.
+     */
+    private long tail = 0L;
+
+    /**
+     * Whether the pipe has been closed, by either end.
+     */
+    private boolean closed = false;
+
+    /**
+     * The end the bytes are read from.
+     */
+    private final InputStream input = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return Pipe.this.read(b, off, len);
+      }
+
+      @Override
+      public int available() {
+        synchronized (Pipe.this) {
+          return (int)(tail - head);
+        }
+      }
+
+      @Override
+      public void close() {
+        Pipe.this.close();
+      }
+    };
+
+    /**
+     * The end the bytes are written to.
+     */
+    private final OutputStream output = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte)b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        Pipe.this.write(b, off, len);
+      }
+
+      @Override
+      public void close() {
+        Pipe.this.close();
+      }
+    };
+
+    /**
+     * Constructor.
+     * @param capacity
+     *        The capacity in bytes.
+     */
+    public Pipe(int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    /**
+     * Gets the end the bytes are read from.
+     * @return The {@code InputStream}.
+     */
+    public InputStream getInputStream() {
+      return input;
+    }
+
+    /**
+     * Gets the end the bytes are written to.
+     * @return The {@code OutputStream}.
+     */
+    public OutputStream getOutputStream() {
+      return output;
+    }
+
+    /**
+     * Reads the bytes available, waiting for at least one.
+     * @param b
+     *        The destination buffer.
+     * @param off
+     *        The position of the first byte read.
+     * @param len
+     *        The maximum number of bytes.
+     * @return The number of bytes read, or {@code -1} if the pipe is closed
+     *         and empty.
+     * @throws IOException
+     *         If interrupted.
+     */
+    private synchronized int read(byte[] b, int off, int len)
+            throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (head == tail) {
+        if (closed) {
+          return -1;
+        }
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new IOException(ex);
+        }
+      }
+      int n = (int)Math.min(len, tail - head);
+      for (int i = 0; i < n; i++) {
+        b[off+i] = buffer[(int)(head++ % buffer.length)];
+      }
+      notifyAll();
+      return n;
+    }
+
+    /**
+     * Writes bytes, waiting for room when the pipe is full.
+     * @param b
+     *        The source buffer.
+     * @param off
+     *        The position of the first byte.
+     * @param len
+     *        The number of bytes.
+     * @throws IOException
+     *         If the pipe is closed or the thread is interrupted.
+     */
+    private synchronized void write(byte[] b, int off, int len)
+            throws IOException {
+      for (int i = 0; i < len; i++) {
+        while (tail - head == buffer.length) {
+          if (closed) {
+            break;
+          }
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+          }
+        }
+        if (closed) {
+          throw new IOException("Pipe closed");
+        }
+        buffer[(int)(tail++ % buffer.length)] = b[off+i];
+        if (tail - head == 1) {
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Closes the pipe.  The bytes already written can still be read.
+     */
+    public synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+  }
+
+  /**
+   * The other end of the pipes, or {@code null} for the loopback.
+   */
+  private Peer peer = null;
+
+  /**
+   * Constructor of the loopback.
+   */
+  public PipeTransport() {
+  }
+
+  /**
+   * Constructor.
+   * @param peer
+   *        The other end of the pipes.
+   */
+  public PipeTransport(Peer peer) {
+    this.peer = peer;
+  }
+
+  /**
+   * Sets the other end of the pipes, used from the next connection.
+   * @param peer
+   *        The peer, or {@code null} for the loopback.
+   */
+  public void setPeer(Peer peer) {
+    this.peer = peer;
+  }
+
+  /**
+   * Gets the name of the only port.
+   * @return The list containing {@code PORT_NAME}.
+   */
+  @Override
+  public List<String> getPortNames() {
+    return List.of(PORT_NAME);
+  }
+
+  /**
+   * Creates the pipes and attaches the peer to them.
+   * @param portName
+   *        Ignored.
+   * @param dataRate
+   *        Ignored.
+   * @param dataBits
+   *        Ignored.
+   * @param stopBits
+   *        Ignored.
+   * @param parity
+   *        Ignored.
+   */
+  @Override
+  protected void connect(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity
+  ) {
+    Pipe toArm = new Pipe(PIPE_CAPACITY);
+    Pipe toHost = new Pipe(PIPE_CAPACITY);
+    setStreams(toHost.getInputStream(), toArm.getOutputStream());
+    if (peer != null) {
+      peer.attach(toArm.getInputStream(), toHost.getOutputStream());
+    } else {
+      loopback(toArm.getInputStream(), toHost.getOutputStream());
+    }
+  }
+
+  /**
+   * Sends back the data written by the host, from a thread of its own, until
+   * the pipes are closed.
+   * @param fromHost
+   *        The stream of the data written by the host.
+   * @param toHost
+   *        The stream of the data to be read by the host.
+   */
+  private static void loopback(InputStream fromHost, OutputStream toHost) {
+    Thread t = new Thread(() -> {
+      byte[] data = new byte[PIPE_CAPACITY];
+      try {
+        int n;
+        while ((n = fromHost.read(data, 0, data.length)) >= 0) {
+          toHost.write(data, 0, n);
+        }
+      } catch (IOException ex) {
+        // Closed.
+      }
+      try {
+        toHost.close();
+      } catch (IOException ex) {
+        // Already closed.
+      }
+    }, "Pierin-oh! pipe loopback");
+    t.setDaemon(true);
+    t.start();
+  }
+}
@@ -0,0 +1,318 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discovers the ports of a {@code Transport} in the background and caches
+ * them, so that getting them costs nothing.
+ *
+ * <p>The ports are enumerated once when started, then again only when the
+ * directory where they appear as files, e.g. {@code /dev}, changes, as
+ * reported by a {@code WatchService}, or when a refresh is requested.  The
+ * listeners are notified of the ports added and removed.</p>
+ *
+ * <p>The events of a device come in bursts, e.g. {@code ttyUSB0} and its
+ * links in {@code /dev/serial}, so they are collected for
+ * {@code SETTLE_TIME} milliseconds before enumerating the ports again.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class PortDiscovery {
+
+  /**
+   * The listener of the changes of the ports.
+   */
+  public static interface Listener {
+
+    /**
+     * Notifies that the ports have changed.  It is called by the thread of
+     * the {@code PortDiscovery}.
+     * @param ports
+     *        The ports now available.
+     * @param added
+     *        The ports added.
+     * @param removed
+     *        The ports removed.
+     */
+    public void portsChanged(
+            List<String> ports, List<String> added, List<String> removed
+    );
+  }
+
+  /**
+   * The time in milliseconds the events of the directory are collected
+   * before enumerating the ports.
+   */
+  public static final long SETTLE_TIME = 200L;
+
+  /**
+   * The time in milliseconds between two checks of the refresh requests,
+   * while watching the directory.
+   */
+  private static final long REFRESH_CHECK = 250L;
+
+  /**
+   * The transport whose ports are discovered.
+   */
+  private final Transport transport;
+
+  /**
+   * The ports found by the last enumeration.
+   */
+  private volatile List<String> ports = List.of();
+
+  /**
+   * {@code true} once the ports have been enumerated.
+   */
+  private boolean scanned = false;
+
+  /**
+   * {@code true} if a refresh has been requested.
+   */
+  private boolean refreshRequested = false;
+
+  /**
+   * The listeners of the changes of the ports.
+   */
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Guards {@code scanned} and {@code refreshRequested}.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The thread discovering the ports, {@code null} if stopped.
+   */
+  private Thread thread = null;
+
+  /**
+   * The watcher of the directory of the ports, {@code null} if not watched.
+   */
+  private WatchService watcher = null;
+
+  /**
+   * Constructor.
+   * @param transport
+   *        The transport whose ports are discovered.
+   */
+  public PortDiscovery(Transport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Adds a {@code Listener}.
+   * @param listener
+   *        The {@code Listener}.
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a {@code Listener}.
+   * @param listener
+   *        The {@code Listener}.
+   */
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Starts discovering the ports, if not yet started.
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    Path directory = transport.getPortDirectory();
+    if (directory != null) {
+      try {
+        watcher = FileSystems.getDefault().newWatchService();
+        directory.register(
+                watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE
+        );
+      } catch (IOException ex) {
+        // The ports are enumerated again only when refreshed.
+        closeWatcher();
+      }
+    }
+    thread = new Thread(this::discover, "port-discovery");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops discovering the ports.  The ports found so far are kept.
+   */
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    closeWatcher();
+    thread = null;
+  }
+
+  /**
+   * Gets the ports found so far, without waiting.
+   * @return The names of the ports.
+   */
+  public List<String> getPorts() {
+    return ports;
+  }
+
+  /**
+   * Gets the ports, waiting for them to be enumerated the first time.
+   * @param timeout
+   *        The maximum time to wait in milliseconds.
+   * @return The names of the ports found so far.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  public List<String> awaitPorts(long timeout) throws InterruptedException {
+    long deadline = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(timeout);
+    synchronized (lock) {
+      long wait;
+      while (!scanned
+              && (wait = deadline-System.nanoTime()) > 0L) {
+        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+      }
+    }
+    return ports;
+  }
+
+  /**
+   * Requests the ports to be enumerated again, in the background.
+   */
+  public void refresh() {
+    synchronized (lock) {
+      refreshRequested = true;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Closes the watcher of the directory, if any.
+   */
+  private void closeWatcher() {
+    if (watcher != null) {
+      try {
+        watcher.close();
+      } catch (IOException ex) {
+        // Nothing else to release.
+      }
+      watcher = null;
+    }
+  }
+
+  /**
+   * Enumerates the ports when started and whenever they may have changed,
+   * until stopped.  It runs on the thread of the {@code PortDiscovery}.
+   */
+  private void discover() {
+    WatchService ws;
+    synchronized (this) {
+      ws = watcher;
+    }
+    try {
+      scan();
+      while (!Thread.currentThread().isInterrupted()) {
+        if (awaitChange(ws)) {
+          scan();
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ex) {
+      // Stopped.
+    }
+  }
+
+  /**
+   * Waits for the ports to possibly change.
+   * @param ws
+   *        The watcher of the directory, or {@code null}.
+   * @return {@code true} if the ports have to be enumerated again.
+   * @throws InterruptedException
+   *         If stopped.
+   */
+  private boolean awaitChange(WatchService ws) throws InterruptedException {
+    boolean changed = false;
+    if (ws == null) {
+      synchronized (lock) {
+        while (!refreshRequested) {
+          lock.wait();
+        }
+      }
+    } else {
+      WatchKey key = ws.poll(REFRESH_CHECK, TimeUnit.MILLISECONDS);
+      if (key != null) {
+        changed = true;
+        // Collects the rest of the burst.
+        do {
+          key.pollEvents();
+          key.reset();
+        } while ((key = ws.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null);
+      }
+    }
+    synchronized (lock) {
+      changed |= refreshRequested;
+      refreshRequested = false;
+    }
+    return changed;
+  }
+
+  /**
+   * Enumerates the ports, notifying the listeners if they have changed.
+   */
+  private void scan() {
+    List<String> found = List.copyOf(transport.getPortNames());
+    List<String> previous = ports;
+    ports = found;
+    synchronized (lock) {
+      scanned = true;
+      lock.notifyAll();
+    }
+    List<String> added = new ArrayList<>(found);
+    added.removeAll(previous);
+    List<String> removed = new ArrayList<>(previous);
+    removed.removeAll(found);
+    if (!added.isEmpty() || !removed.isEmpty()) {
+      for (Listener listener : listeners) {
+        listener.portsChanged(found, added, removed);
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The transport through a pseudo-terminal, e.g. one end of a pair created by
+ * {@code socat -d -d pty,raw,echo=0 pty,raw,echo=0}, whose other end is used
+ * by an emulated robotic arm.
+ *
+ * <p>The terminal is configured with {@code stty}, so the transport works on
+ * Linux and the other POSIX systems only.  It is set to return from a read
+ * after a tenth of a second without data, so that the reader thread notices
+ * when the transport is closed.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class PtyTransport extends StreamTransport {
+
+  /**
+   * The directory of the pseudo-terminals.
+   */
+  public static final String PTS_DIRECTORY = "/dev/pts";
+
+  /**
+   * The time in seconds waited for {@code stty}.
+   */
+  private static final long STTY_TIMEOUT = 5L;
+
+  /**
+   * The path of the open terminal.
+   */
+  private volatile String path = null;
+
+  /**
+   * Gets the paths of the pseudo-terminals.
+   * @return The paths.
+   */
+  @Override
+  public List<String> getPortNames() {
+    List<String> names = new ArrayList<>();
+    String[] files = new File(PTS_DIRECTORY).list();
+    if (files != null) {
+      Arrays.sort(files);
+      for (String file : files) {
+        if (!file.isEmpty() && Character.isDigit(file.charAt(0))) {
+          names.add(PTS_DIRECTORY+"/"+file);
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Gets the directory of the pseudo-terminals.
+   * @return {@code PTS_DIRECTORY}.
+   */
+  @Override
+  public Path getPortDirectory() {
+    return Paths.get(PTS_DIRECTORY);
+  }
+
+  /**
+   * Configures and opens the terminal.
+   * @param portName
+   *        The path of the terminal.
+   * @param dataRate
+   *        The data-rate.
+   * @param dataBits
+   *        The number of data bits.
+   * @param stopBits
+   *        The stop bits, 1 or 2.
+   * @param parity
+   *        The parity.
+   * @throws IOException
+   *         If the terminal cannot be configured or opened.
+   */
+  @Override
+  protected void connect(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity
+  ) throws IOException {
+    List<String> args = new ArrayList<>(List.of(
+            "raw", "-echo", "min", "0", "time", "1",
+            String.valueOf(dataRate), "cs"+dataBits,
+            stopBits == 1 ? "-cstopb" : "cstopb"
+    ));
+    switch (parity) {
+      case Even:
+        args.addAll(List.of("parenb", "-parodd", "-cmspar"));
+        break;
+      case Odd:
+        args.addAll(List.of("parenb", "parodd", "-cmspar"));
+        break;
+      case Mark:
+        args.addAll(List.of("parenb", "parodd", "cmspar"));
+        break;
+      case Space:
+        args.addAll(List.of("parenb", "-parodd", "cmspar"));
+        break;
+      case None:
+      default:
+        args.add("-parenb");
+    }
+    stty(portName, args);
+    path = portName;
+    setStreams(
+            new FileInputStream(portName), new FileOutputStream(portName)
+    );
+  }
+
+  /**
+   * A read returning no data is the timeout of the terminal, not its end.
+   * @return {@code true}.
+   */
+  @Override
+  protected boolean isEndOfStreamTransient() {
+    return true;
+  }
+
+  /**
+   * Changes the data-rate of the open terminal.
+   * @param dataRate
+   *        The data-rate.
+   */
+  @Override
+  public void setDataRate(int dataRate) {
+    String p = path;
+    if (p != null) {
+      try {
+        stty(p, List.of(String.valueOf(dataRate)));
+      } catch (IOException ex) {
+        // The terminal keeps the previous data-rate.
+      }
+    }
+  }
+
+  /**
+   * Closes the terminal.
+   */
+  @Override
+  public synchronized void close() {
+    path = null;
+    super.close();
+  }
+
+  /**
+   * Runs {@code stty} on a terminal.
+   * @param portName
+   *        The path of the terminal.
+   * @param args
+   *        The settings.
+   * @throws IOException
+   *         If {@code stty} fails.
+   */
+  private static void stty(String portName, List<String> args)
+          throws IOException {
+    List<String> command = new ArrayList<>(List.of("stty", "-F", portName));
+    command.addAll(args);
+    Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    try {
+      if (!process.waitFor(STTY_TIMEOUT, TimeUnit.SECONDS)) {
+        process.destroy();
+        throw new IOException(portName);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    }
+    if (process.exitValue() != 0) {
+      throw new IOException(portName);
+    }
+  }
+}
@@ -19,25 +19,25 @@ package it.gftblues.sixdofarm.controllers;
  *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortEvent;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Serial communicator for governing and receiving data from the robotic arm.
  * 
+ * The bytes are exchanged through a {@code Transport}, by default the serial 
+ * port.
+ * 
  * @author Gabriele Tafuro
  *
  * @since 1.0
  */
-public class SerialCommunicator implements SerialPortDataListener {
+public class SerialCommunicator implements Transport.Receiver {
 
   /**
    * Ports speeds.
@@ -60,22 +60,47 @@ public class SerialCommunicator implements SerialPortDataListener {
     Even, Mark, None, Odd, Space
   };
   
+  /**
+   * How the commands and the responses are delimited on the serial line.
+   */
+  public static enum Framing {
+    /**
+     * Text lines terminated by a line-feed.
+     */
+    Ascii,
+    /**
+     * COBS encoded frames with a CRC, see {@code FrameCodec}.
+     */
+    Binary
+  };
+
   /**
    * Stop bit.
    */
   public static final int[] STOP_BIT = {
     1, 2
   };
+
+  /**
+   * The time in milliseconds waited for the ports to be discovered, when 
+   * connecting without a port selected.
+   */
+  private static final long PORT_DISCOVERY_TIMEOUT = 5000L;
   
   /**
    * Available serial ports.
    */
-  private Map<String, SerialPort> serialPorts;
+  private List<String> serialPorts = new ArrayList<>();
+
+  /**
+   * The link to the robotic arm.
+   */
+  private Transport transport;
 
   /**
-   * Used serial port.
+   * Discovers the ports of the {@code transport} in the background.
    */
-  private SerialPort serialPort = null;
+  private PortDiscovery discovery;
   
   /**
    * Used serial port name.
@@ -105,23 +130,173 @@ public class SerialCommunicator implements SerialPortDataListener {
   /**
    * Default stop bit.
    */
-  private int stopBit = SerialPort.ONE_STOP_BIT;
+  private int stopBit = 1;
   
   /**
    * If {@code true} the serial port is connected, {@code false} otherwise.
    */
-  private boolean connected = false;
+  private volatile boolean connected = false;
+
+  /**
+   * Set when the connection is lost, until connected again.
+   */
+  private final AtomicBoolean lost = new AtomicBoolean(false);
+
+  /**
+   * Set once the listeners have been notified of the loss of the connection.
+   */
+  private final AtomicBoolean lostNotified = new AtomicBoolean(false);
   
   /**
-   * Serial communicator lister list.
+   * Serial communicator lister list.  It is iterated without locking by the 
+   * threads of the transport and of the writer, so the slow listeners should
+   * be wrapped in an {@code AsyncListener}.
    */
-  private final Set<SerialCommunicatorListener> listeners = new HashSet<>();
+  private final Set<SerialCommunicatorListener> listeners = 
+          new CopyOnWriteArraySet<>();
 
   /**
-   * Constructor.
+   * The listeners of the changes of the ports.
+   */
+  private final Set<PortDiscovery.Listener> portListeners = 
+          new CopyOnWriteArraySet<>();
+
+  /**
+   * The framing currently used.  It is always {@code Ascii} when connecting, 
+   * until a different one is negotiated with the robotic arm.
+   */
+  private volatile Framing framing = Framing.Ascii;
+
+  /**
+   * The decoder of the binary frames, used by the thread reading the data.
+   */
+  private final FrameCodec frameDecoder = new FrameCodec();
+
+  /**
+   * The recorder of the traffic, or {@code null} if not recording.
+   */
+  private volatile SessionRecorder recorder = null;
+
+  /**
+   * Writes the data to the serial port from its own thread, while connected,
+   * and passes the completion of the tagged writes to the listeners.
+   */
+  private final SerialWriter writer = new SerialWriter(
+          (buffer, length) -> {
+            int written = transport.write(buffer, length);
+            SessionRecorder r = recorder;
+            if (r != null && written > 0) {
+              r.record(SessionRecorder.Direction.Out, buffer, 0, written);
+            }
+            return written;
+          },
+          new SerialWriter.CompletionListener() {
+            @Override
+            public void written(long tag, long nanos) {
+              for (SerialCommunicatorListener listener : listeners) {
+                listener.notifyWritten(tag, nanos);
+              }
+            }
+
+            @Override
+            public void failed(int length) {
+              notifyError("ERROR_WRITE_FAILED");
+              connectionLost();
+            }
+          }
+  );
+
+  /**
+   * Passes the frames decoded by {@code frameDecoder} to the listeners.
+   */
+  private final FrameCodec.Receiver frameReceiver = new FrameCodec.Receiver() {
+    @Override
+    public void frameDecoded(byte[] payload, int length) {
+      for (SerialCommunicatorListener listener : listeners) {
+        listener.notifyFrame(payload, length);
+      }
+    }
+
+    @Override
+    public void frameCorrupted(int length) {
+      for (SerialCommunicatorListener listener : listeners) {
+        listener.notifyCorruptedFrame(length);
+      }
+    }
+  };
+
+  /**
+   * Constructor using the serial port.
    */
   public SerialCommunicator() {
-    getPortList();
+    this(new SerialPortTransport());
+  }
+
+  /**
+   * Constructor.
+   * @param transport The link to the robotic arm.
+   */
+  public SerialCommunicator(Transport transport) {
+    this.transport = transport;
+    discovery = new PortDiscovery(transport);
+    addPortListener((ports, added, removed) -> {
+      if (connected && removed.contains(usedPortName)) {
+        connectionLost();
+      }
+    });
+    discovery.start();
+  }
+
+  /**
+   * Gets the link to the robotic arm.
+   * @return The {@code Transport}.
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Sets the link to the robotic arm, closing the active connection.
+   * @param transport The {@code Transport}.
+   */
+  public synchronized void setTransport(Transport transport) {
+    close();
+    PortDiscovery previous = discovery;
+    this.transport = transport;
+    usedPortName = null;
+    discovery = new PortDiscovery(transport);
+    for (PortDiscovery.Listener listener : portListeners) {
+      discovery.addListener(listener);
+    }
+    previous.stop();
+    discovery.start();
+  }
+
+  /**
+   * Adds a listener of the changes of the ports, kept when the transport 
+   * changes.
+   * @param listener The {@code PortDiscovery.Listener}.
+   */
+  public void addPortListener(PortDiscovery.Listener listener) {
+    portListeners.add(listener);
+    discovery.addListener(listener);
+  }
+
+  /**
+   * Removes a listener of the changes of the ports.
+   * @param listener The {@code PortDiscovery.Listener}.
+   */
+  public void removePortListener(PortDiscovery.Listener listener) {
+    portListeners.remove(listener);
+    discovery.removeListener(listener);
+  }
+
+  /**
+   * Requests the ports to be enumerated again, in the background.  The port
+   * listeners are notified if they have changed.
+   */
+  public void refreshPortList() {
+    discovery.refresh();
   }
   
   /**
@@ -141,27 +316,34 @@ public class SerialCommunicator implements SerialPortDataListener {
   }
   
   /**
-   * Gets the ports' list.
+   * Gets the ports' list, as found so far by the port discovery, without
+   * enumerating them.
    * @return 
    */
   public final List<String> getPortList() {
-    SerialPort[] sports = SerialPort.getCommPorts();
-    if (sports != null) {
-      serialPorts = new HashMap<>(sports.length);
-      for (SerialPort sport : sports) {
-        serialPorts.put(sport.getSystemPortName(), sport);
-      }
-      if (usedPortName != null) {
-        if (!serialPorts.isEmpty() && !serialPorts.containsKey(usedPortName)) {
-          usedPortName = getFirstSerial();
-        }
-      } else {
+    serialPorts = discovery.getPorts();
+    if (usedPortName != null) {
+      if (!serialPorts.isEmpty() && !serialPorts.contains(usedPortName)) {
         usedPortName = getFirstSerial();
       }
     } else {
-      serialPorts = new HashMap<>();
+      usedPortName = getFirstSerial();
     }
-    return new ArrayList<>(serialPorts.keySet());
+    return new ArrayList<>(serialPorts);
+  }
+
+  /**
+   * Gets the ports' list, waiting for the ports to be discovered the first
+   * time.
+   * @param timeout
+   *        The maximum time to wait in milliseconds.
+   * @return The ports found so far.
+   * @throws InterruptedException
+   *         If interrupted while waiting.
+   */
+  public List<String> awaitPortList(long timeout) throws InterruptedException {
+    discovery.awaitPorts(timeout);
+    return getPortList();
   }
 
   /**
@@ -170,28 +352,19 @@ public class SerialCommunicator implements SerialPortDataListener {
    */
   private String getFirstSerial() {
     if (!serialPorts.isEmpty()) {
-      Map.Entry<String,SerialPort> entry = 
-              serialPorts.entrySet().iterator().next();
-      return entry.getKey();
+      return serialPorts.get(0);
     }
     return null;
   }
   
   /**
-   * Writes {@code command} to the connected port.
+   * Writes {@code command} to the connected port.  The command is queued to
+   * the writer thread, so the method returns before it is written.
    * @param command The command to write.
    */
   public void writeToPort(String command) {
-    if (connected) {
-      byte[] payload = command.getBytes();
-      serialPort.writeBytes(payload, payload.length);
-    } else {
-      if (!listeners.isEmpty()) {
-        Iterator<SerialCommunicatorListener> i = listeners.iterator();
-        while (i.hasNext()) {
-          i.next().notifyError("ERROR_NOT_YET_CONNECTED");
-        }
-      }
+    if (!connected || !writer.offer(command, SerialWriter.NO_TAG)) {
+      notifyError("ERROR_NOT_YET_CONNECTED");
     }
   }
   
@@ -200,87 +373,171 @@ public class SerialCommunicator implements SerialPortDataListener {
    * @param command The command to write.
    */
   public void writeToPort(int command) {
-    if (connected) {
-      byte[] payload = (""+(char)command).getBytes();
-      serialPort.writeBytes(payload, payload.length);
-    } else {
-      if (!listeners.isEmpty()) {
-        Iterator<SerialCommunicatorListener> i = listeners.iterator();
-        while (i.hasNext()) {
-          i.next().notifyError("ERROR_NOT_YET_CONNECTED");
-        }
-      }
+    if (!connected || !writer.offer(command, SerialWriter.NO_TAG)) {
+      notifyError("ERROR_NOT_YET_CONNECTED");
     }
   }
 
+  /**
+   * Writes the first {@code length} bytes of {@code payload} to the connected
+   * port.  The bytes are copied, so the buffer can be reused by the caller as
+   * soon as the method returns.
+   * @param payload The buffer containing the bytes to write.
+   * @param length The number of bytes to write.
+   */
+  public void writeToPort(byte[] payload, int length) {
+    writeToPort(payload, length, SerialWriter.NO_TAG);
+  }
+
+  /**
+   * Writes the first {@code length} bytes of {@code payload} to the connected
+   * port, notifying the listeners through {@code notifyWritten()} when they
+   * have been written.
+   * @param payload The buffer containing the bytes to write.
+   * @param length The number of bytes to write.
+   * @param tag The tag passed to {@code notifyWritten()}, or 
+   *        {@code SerialWriter.NO_TAG}.
+   */
+  public void writeToPort(byte[] payload, int length, long tag) {
+    if (!connected || !writer.offer(payload, length, tag)) {
+      notifyError("ERROR_NOT_YET_CONNECTED");
+    }
+  }
+
+  /**
+   * Writes a payload to the connected port as a binary frame, see 
+   * {@code FrameCodec}.
+   * @param payload The buffer containing the payload.
+   * @param length The length of the payload, up to 
+   *        {@code FrameCodec.MAX_PAYLOAD_LENGTH}.
+   */
+  public void writeFrameToPort(byte[] payload, int length) {
+    writeFrameToPort(payload, length, SerialWriter.NO_TAG);
+  }
+
+  /**
+   * Writes a payload to the connected port as a binary frame, see 
+   * {@code FrameCodec}, notifying the listeners through 
+   * {@code notifyWritten()} when it has been written.
+   * @param payload The buffer containing the payload.
+   * @param length The length of the payload, up to 
+   *        {@code FrameCodec.MAX_PAYLOAD_LENGTH}.
+   * @param tag The tag passed to {@code notifyWritten()}, or 
+   *        {@code SerialWriter.NO_TAG}.
+   */
+  public void writeFrameToPort(byte[] payload, int length, long tag) {
+    if (!connected || !writer.offerFrame(payload, length, tag)) {
+      notifyError("ERROR_NOT_YET_CONNECTED");
+    }
+  }
+
+  /**
+   * Notifies an error to all the listeners.
+   * @param error The error.
+   */
+  private void notifyError(String error) {
+    for (SerialCommunicatorListener listener : listeners) {
+      listener.notifyError(error);
+    }
+  }
+
+  /**
+   * Gets the recorder of the traffic.
+   * @return The {@code SessionRecorder}, or {@code null} if not recording.
+   */
+  public SessionRecorder getRecorder() {
+    return recorder;
+  }
+
+  /**
+   * Sets the recorder of the traffic, from now on.
+   * @param recorder
+   *        The {@code SessionRecorder}, or {@code null} to stop recording.
+   *        It is not closed when replaced.
+   */
+  public void setRecorder(SessionRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  /**
+   * Gets the framing currently used.
+   * @return The {@code Framing}.
+   */
+  public Framing getFraming() {
+    return framing;
+  }
+
+  /**
+   * Sets the framing to be used from now on, in both directions.  It has to be
+   * negotiated with the robotic arm first.
+   * @param framing The {@code Framing}.
+   */
+  public void setFraming(Framing framing) {
+    this.framing = framing;
+  }
+
   /**
    * Connects to the selected serial port.
    * @throws Exception 
    */
-  public void connect() throws Exception {
+  public synchronized void connect() throws Exception {
     close();
-    serialPort = serialPorts.get(usedPortName);
-    serialPort.openPort();
-    int db, sb, p;
-    switch (dataBit) {
-      case 5:
-        db = 5;
-        break;
-      case 6:
-        db = 6;
-        break;
-      case 7:
-        db = 7;
-        break;
-      case 8:
-      default:
-        db = 8; 
+    if (usedPortName == null) {
+      awaitPortList(PORT_DISCOVERY_TIMEOUT);
     }
-    switch (stopBit) {
-      case 1:
-        sb = SerialPort.ONE_STOP_BIT;
-        break;
-      case 3:
-        sb = SerialPort.ONE_POINT_FIVE_STOP_BITS;
-        break;
-      case 2:
-      default:
-        sb = SerialPort.TWO_STOP_BITS;
-        break;
+    framing = Framing.Ascii;
+    frameDecoder.reset();
+    lost.set(false);
+    lostNotified.set(false);
+    transport.open(usedPortName, dataRate, dataBit, stopBit, parity, this);
+    writer.start();
+
+    connected = true;
+    if (lost.get()) {
+      // Lost while opening.
+      notifyConnectionLost();
     }
+  }
 
-    switch (parity) {
-      case Even:
-        p = SerialPort.EVEN_PARITY;
-        break;
-      case Mark:
-        p = SerialPort.MARK_PARITY;
-        break;
-      case Odd:
-        p = SerialPort.ODD_PARITY;
-        break;
-      case Space:
-        p = SerialPort.SPACE_PARITY;
-        break;
-      case None:
-      default:
-        p = SerialPort.NO_PARITY;
+  /**
+   * Marks the connection as lost and notifies the listeners, once per 
+   * connection.  The port stays open until closed or connected again.
+   */
+  public void connectionLost() {
+    lost.set(true);
+    if (connected) {
+      notifyConnectionLost();
     }
+  }
 
-    serialPort.setComPortParameters(dataRate, db, sb, p);
-    serialPort.addDataListener(this);
+  /**
+   * Notifies the listeners of the loss of the connection, unless already
+   * notified.
+   */
+  private void notifyConnectionLost() {
+    if (lostNotified.compareAndSet(false, true)) {
+      for (SerialCommunicatorListener listener : listeners) {
+        listener.notifyConnectionLost();
+      }
+    }
+  }
 
-    connected = true;
+  /**
+   * Receives the notification that the link has been lost from the 
+   * transport.
+   */
+  @Override
+  public void transportLost() {
+    connectionLost();
   }
 
   /**
-   * Closes the active connection.
+   * Closes the active connection.  The data not yet written is discarded.
    */
   public synchronized void close() {
-    if (serialPort != null) {
-      serialPort.removeDataListener();
-      serialPort.closePort();
-      serialPort = null;
+    writer.stop();
+    if (connected) {
+      transport.close();
     }
     connected = false;
   }
@@ -333,6 +590,18 @@ public class SerialCommunicator implements SerialPortDataListener {
     this.dataRate = dataRate;
   }
 
+  /**
+   * Changes the data-rate of the connected port, without closing it.  The
+   * data still to be written or read at the previous data-rate may be lost.
+   * @param dataRate The data-rate.
+   */
+  public void changeDataRate(int dataRate) {
+    this.dataRate = dataRate;
+    if (connected) {
+      transport.setDataRate(dataRate);
+    }
+  }
+
   /**
    * Gets the parity.
    * @return The parity.
@@ -383,38 +652,34 @@ public class SerialCommunicator implements SerialPortDataListener {
 
   /**
    * Checks whether the serial port is connected.
-   * @return {@code true} if connected, {@code false} otherwise.
+   * @return {@code true} if connected, {@code false} otherwise or if the 
+   *         connection has been lost.
    */
   public boolean isConnected() {
-    return connected;
+    return connected && !lost.get();
   }
 
   /**
-   * Gets the number of bytes of data available.
-   * @return The number of bytes of data available.
+   * Receives the data coming from the robotic arm, recording it if needed, 
+   * and passes it to the listeners or, with the {@code Binary} framing, to
+   * the frame decoder.
+   * @param data The data, from the position to the limit of the buffer.
    */
   @Override
-  public int getListeningEvents() {
-    return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
-  }
-
-  /**
-   * Serial event.
-   * @param spe The {@code SerialPortEvent} event.
-   */
-  @Override
-  public void serialEvent(SerialPortEvent spe) {
-    if (spe.getEventType() != SerialPort.LISTENING_EVENT_DATA_AVAILABLE)
-      return;
-    int dataSize = serialPort.bytesAvailable();
-    byte[] payload = new byte[dataSize];
-    serialPort.readBytes(payload, dataSize);
-    String data = new String(payload);
-//    System.out.println("Read " + numRead + " bytes.");
-    if(!listeners.isEmpty()) {
+  public void dataReceived(ByteBuffer data) {
+    SessionRecorder r = recorder;
+    if (r != null) {
+      r.record(SessionRecorder.Direction.In, data);
+    }
+    if (framing == Framing.Binary) {
+      frameDecoder.decode(data, frameReceiver);
+    } else if(!listeners.isEmpty()) {
+      int position = data.position();
+      int limit = data.limit();
       Iterator<SerialCommunicatorListener> iter = listeners.iterator();
       while(iter.hasNext()) {
-        iter.next().notifyMessage(data);
+        data.limit(limit).position(position);
+        iter.next().notifyData(data);
       }
     }
   }
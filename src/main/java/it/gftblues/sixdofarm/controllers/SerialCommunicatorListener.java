@@ -19,6 +19,8 @@ package it.gftblues.sixdofarm.controllers;
  *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.nio.ByteBuffer;
+
 /**
  * SerialCommunicatorListener
  * 
@@ -46,4 +48,68 @@ public interface SerialCommunicatorListener {
    *        The message to be notified.
    */
   public void notifyMessage(String message);
+
+  /**
+   * Notifies to the listener that there is new data from the arm.
+   * 
+   * The buffer is reused by the {@code SerialCommunicator} for the following 
+   * data, so its content has to be consumed before the method returns.  By 
+   * default the data is decoded and passed to {@code notifyMessage()}.
+   * 
+   * @param data
+   *        The data, from the position to the limit of the buffer.
+   */
+  public default void notifyData(ByteBuffer data) {
+    byte[] payload = new byte[data.remaining()];
+    data.get(payload);
+    notifyMessage(new String(payload));
+  }
+
+  /**
+   * Notifies to the listener that a binary frame has been received from the 
+   * arm, when the {@code Framing} is {@code Binary}.
+   * 
+   * The buffer is reused by the {@code SerialCommunicator} for the following 
+   * frames, so its content has to be consumed before the method returns.
+   * 
+   * @param payload
+   *        The buffer containing the payload of the frame.
+   * @param length
+   *        The length of the payload.
+   */
+  public default void notifyFrame(byte[] payload, int length) {
+  }
+
+  /**
+   * Notifies to the listener that a corrupted binary frame has been received
+   * from the arm, and discarded.
+   * 
+   * @param length
+   *        The number of bytes received for the frame.
+   */
+  public default void notifyCorruptedFrame(int length) {
+  }
+
+  /**
+   * Notifies to the listener that data given a tag has been written to the
+   * serial port.  It is called by the writer thread of the
+   * {@code SerialCommunicator}, so it has to return quickly.
+   *
+   * @param tag
+   *        The tag given when writing.
+   * @param nanos
+   *        The {@code System.nanoTime()} when the write has completed.
+   */
+  public default void notifyWritten(long tag, long nanos) {
+  }
+
+  /**
+   * Notifies to the listener that the connection with the arm has been lost,
+   * e.g. the USB link has dropped or the board has reset.  From then on the
+   * {@code SerialCommunicator} is not connected, until connected again.  It
+   * is called once per connection, by the thread noticing the loss, so it has
+   * to return quickly.
+   */
+  public default void notifyConnectionLost() {
+  }
 }
@@ -0,0 +1,275 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The transport through a serial port, using jSerialComm.
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class SerialPortTransport implements Transport, SerialPortDataListener {
+
+  /**
+   * The size of the buffer used to read the data from the serial port.
+   */
+  private static final int READ_BUFFER_SIZE = 1024;
+
+  /**
+   * The directory of the devices, on Linux and the other POSIX systems.
+   */
+  public static final String DEVICE_DIRECTORY = "/dev";
+
+  /**
+   * Available serial ports, replaced by every enumeration.
+   */
+  private volatile Map<String, SerialPort> serialPorts = new HashMap<>();
+
+  /**
+   * Used serial port.
+   */
+  private volatile SerialPort serialPort = null;
+
+  /**
+   * The receiver of the data.
+   */
+  private Receiver receiver = null;
+
+  /**
+   * The buffer used to read the data from the serial port, reused by every
+   * serial event.
+   */
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+  /**
+   * Gets the names of the serial ports.
+   * @return The names.
+   */
+  @Override
+  public List<String> getPortNames() {
+    SerialPort[] sports = SerialPort.getCommPorts();
+    Map<String, SerialPort> found = new HashMap<>();
+    if (sports != null) {
+      for (SerialPort sport : sports) {
+        found.put(sport.getSystemPortName(), sport);
+      }
+    }
+    serialPorts = found;
+    return new ArrayList<>(found.keySet());
+  }
+
+  /**
+   * Gets the directory of the devices, where the serial ports appear.
+   * @return {@code DEVICE_DIRECTORY}, or {@code null} if it does not exist,
+   *         e.g. on Windows.
+   */
+  @Override
+  public Path getPortDirectory() {
+    Path directory = Paths.get(DEVICE_DIRECTORY);
+    return Files.isDirectory(directory) ? directory : null;
+  }
+
+  /**
+   * Opens a serial port.
+   * @param portName
+   *        The name of the port.
+   * @param dataRate
+   *        The data-rate.
+   * @param dataBits
+   *        The number of data bits.
+   * @param stopBits
+   *        The stop bits: 1, 2, or 3 for one and a half.
+   * @param parity
+   *        The parity.
+   * @param receiver
+   *        The receiver of the data coming from the robotic arm.
+   * @throws IOException
+   *         If the port cannot be opened.
+   */
+  @Override
+  public void open(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity,
+          Receiver receiver
+  ) throws IOException {
+    close();
+    SerialPort port = serialPorts.get(portName);
+    if (port == null && portName != null) {
+      // Plugged after the last enumeration.
+      try {
+        port = SerialPort.getCommPort(portName);
+      } catch (RuntimeException ex) {
+        throw new IOException(portName, ex);
+      }
+    }
+    if (port == null || !port.openPort()) {
+      throw new IOException(portName);
+    }
+    int db, sb, p;
+    switch (dataBits) {
+      case 5:
+        db = 5;
+        break;
+      case 6:
+        db = 6;
+        break;
+      case 7:
+        db = 7;
+        break;
+      case 8:
+      default:
+        db = 8;
+    }
+    switch (stopBits) {
+      case 1:
+        sb = SerialPort.ONE_STOP_BIT;
+        break;
+      case 3:
+        sb = SerialPort.ONE_POINT_FIVE_STOP_BITS;
+        break;
+      case 2:
+      default:
+        sb = SerialPort.TWO_STOP_BITS;
+        break;
+    }
+
+    switch (parity) {
+      case Even:
+        p = SerialPort.EVEN_PARITY;
+        break;
+      case Mark:
+        p = SerialPort.MARK_PARITY;
+        break;
+      case Odd:
+        p = SerialPort.ODD_PARITY;
+        break;
+      case Space:
+        p = SerialPort.SPACE_PARITY;
+        break;
+      case None:
+      default:
+        p = SerialPort.NO_PARITY;
+    }
+
+    port.setComPortParameters(dataRate, db, sb, p);
+    // Writes return once the data is sent, so their completion time is exact.
+    port.setComPortTimeouts(SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
+    this.receiver = receiver;
+    serialPort = port;
+    port.addDataListener(this);
+  }
+
+  /**
+   * Writes data to the serial port.
+   * @param buffer
+   *        The buffer containing the data.
+   * @param length
+   *        The number of bytes.
+   * @return The number of bytes written, or {@code -1} if failed.
+   */
+  @Override
+  public int write(byte[] buffer, int length) {
+    SerialPort port = serialPort;
+    return port == null ? -1 : port.writeBytes(buffer, length);
+  }
+
+  /**
+   * Changes the data-rate of the open serial port, without closing it.
+   * @param dataRate
+   *        The data-rate.
+   */
+  @Override
+  public void setDataRate(int dataRate) {
+    SerialPort port = serialPort;
+    if (port != null) {
+      port.setBaudRate(dataRate);
+    }
+  }
+
+  /**
+   * Closes the serial port.
+   */
+  @Override
+  public synchronized void close() {
+    SerialPort port = serialPort;
+    if (port != null) {
+      serialPort = null;
+      port.removeDataListener();
+      port.closePort();
+    }
+  }
+
+  /**
+   * Gets the events listened to.
+   * @return The data-available event.
+   */
+  @Override
+  public int getListeningEvents() {
+    return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+  }
+
+  /**
+   * Serial event.
+   * @param spe The {@code SerialPortEvent} event.
+   */
+  @Override
+  public void serialEvent(SerialPortEvent spe) {
+    SerialPort port = serialPort;
+    if (port == null
+            || spe.getEventType() != SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
+      return;
+    }
+    int dataSize = port.bytesAvailable();
+    if (dataSize < 0) {
+      // The device has gone.
+      receiver.transportLost();
+      return;
+    }
+    while (dataSize > 0) {
+      int numRead = port.readBytes(
+              readBuffer.array(),
+              Math.min(dataSize, readBuffer.capacity())
+      );
+      if (numRead <= 0) {
+        break;
+      }
+      dataSize -= numRead;
+      readBuffer.limit(numRead).position(0);
+      receiver.dataReceived(readBuffer);
+    }
+  }
+}
@@ -0,0 +1,478 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the data to the serial port from a dedicated thread.
+ *
+ * <p>The callers copy the already encoded data into a ring of slots, allocated
+ * once, and return without waiting for the serial port, unless the ring is
+ * full.  The writer thread takes all the slots filled so far, gathers them
+ * into a single buffer, reused, and writes it with a single call; then it
+ * reports the time the write has completed for every tagged slot.</p>
+ *
+ * <strong>Note</strong>
+ * <p>The {@code offer} methods can be called by any thread; the data offered
+ * by the same thread is written in the same order.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class SerialWriter {
+
+  /**
+   * The destination of the data.
+   */
+  public static interface Sink {
+
+    /**
+     * Writes the data, waiting until it is written.
+     * @param buffer
+     *        The buffer containing the data.
+     * @param length
+     *        The number of bytes to write.
+     * @return The number of bytes written, or {@code -1} if failed.
+     */
+    public int write(byte[] buffer, int length);
+  }
+
+  /**
+   * The receiver of the completion of the writes.
+   */
+  public static interface CompletionListener {
+
+    /**
+     * Receives the completion of the write of a tagged slot.
+     * @param tag
+     *        The tag given to {@code offer()}.
+     * @param nanos
+     *        The {@code System.nanoTime()} when the write has completed.
+     */
+    public void written(long tag, long nanos);
+
+    /**
+     * Receives the failure of a write.
+     * @param length
+     *        The number of bytes that could not be written.
+     */
+    public void failed(int length);
+  }
+
+  /**
+   * The tag of the data whose write does not have to be reported.
+   */
+  public static final long NO_TAG = -1L;
+
+  /**
+   * Default number of slots.
+   */
+  public static final int DEFAULT_SLOTS = 64;
+
+  /**
+   * Default initial size of a slot in bytes.  A slot grows if it is offered
+   * more data.
+   */
+  public static final int DEFAULT_SLOT_SIZE = 64;
+
+  /**
+   * The time in milliseconds {@code stop()} waits for the writer thread to
+   * terminate.
+   */
+  private static final long STOP_TIMEOUT = 1000L;
+
+  /**
+   * A slot of the ring.
+   */
+  private static class Slot {
+
+    /**
+     * The data.
+     */
+    private byte[] data;
+
+    /**
+     * The number of bytes of data.
+     */
+    private int length;
+
+    /**
+     * The tag.
+     */
+    private long tag;
+
+    /**
+     * Constructor.
+     * @param size
+     *        The initial size.
+     */
+    private Slot(int size) {
+      data = new byte[size];
+    }
+
+    /**
+     * Makes sure the slot can contain the given number of bytes.
+     * @param size
+     *        The number of bytes.
+     */
+    private void ensureCapacity(int size) {
+      if (data.length < size) {
+        data = new byte[size];
+      }
+    }
+  }
+
+  /**
+   * The destination of the data.
+   */
+  private final Sink sink;
+
+  /**
+   * The receiver of the completion of the writes.
+   */
+  private final CompletionListener listener;
+
+  /**
+   * The ring of slots.
+   */
+  private final Slot[] slots;
+
+  /**
+   * The mask used to compute the slot of a position.
+   */
+  private final int mask;
+
+  /**
+   * The monitor guarding {@code head}, {@code tail} and {@code running},
+   * waited on by the writer thread when the ring is empty and by the callers
+   * of the {@code offer} methods when it is full.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The position of the next slot to be written to the sink.
+   */
+  private long head = 0L;
+
+  /**
+   * The position of the next slot to be filled.
+   */
+  private long tail = 0L;
+
+  /**
+   * Whether the writer thread is running.
+   */
+  private boolean running = false;
+
+  /**
+   * The writer thread.
+   */
+  private Thread thread = null;
+
+  /**
+   * The buffer where the writer thread gathers the slots.
+   */
+  private byte[] gather;
+
+  /**
+   * The tags of the slots gathered.
+   */
+  private final long[] tags;
+
+  /**
+   * Constructor using the default number and size of the slots.
+   * @param sink
+   *        The destination of the data.
+   * @param listener
+   *        The receiver of the completion of the writes.
+   */
+  public SerialWriter(Sink sink, CompletionListener listener) {
+    this(sink, listener, DEFAULT_SLOTS, DEFAULT_SLOT_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param sink
+   *        The destination of the data.
+   * @param listener
+   *        The receiver of the completion of the writes.
+   * @param slots
+   *        The number of slots, rounded up to the next power of two.
+   * @param slotSize
+   *        The initial size of a slot in bytes.
+   */
+  public SerialWriter(
+          Sink sink, CompletionListener listener, int slots, int slotSize
+  ) {
+    this.sink = sink;
+    this.listener = listener;
+    int cap = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+    this.slots = new Slot[cap];
+    for (int i = 0; i < cap; i++) {
+      this.slots[i] = new Slot(slotSize);
+    }
+    mask = cap - 1;
+    gather = new byte[cap * slotSize];
+    tags = new long[cap];
+  }
+
+  /**
+   * Starts the writer thread, unless it is already running.
+   */
+  public void start() {
+    synchronized (lock) {
+      if (running) {
+        return;
+      }
+      running = true;
+      thread = new Thread(this::write, "Pierin-oh! serial writer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the writer thread and waits for it to terminate.  The data not yet
+   * written is discarded.
+   */
+  public void stop() {
+    Thread t;
+    synchronized (lock) {
+      running = false;
+      head = tail;
+      lock.notifyAll();
+      t = thread;
+      thread = null;
+    }
+    if (t != null && t != Thread.currentThread()) {
+      try {
+        t.join(STOP_TIMEOUT);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of slots waiting to be written.
+   * @return The number of slots.
+   */
+  public int getPending() {
+    synchronized (lock) {
+      return (int)(tail - head);
+    }
+  }
+
+  /**
+   * Offers data to be written.
+   * @param data
+   *        The buffer containing the data, which is copied.
+   * @param length
+   *        The number of bytes.
+   * @param tag
+   *        The tag whose completion is reported, or {@code NO_TAG}.
+   * @return {@code true} if offered, {@code false} if the writer is stopped.
+   */
+  public boolean offer(byte[] data, int length, long tag) {
+    synchronized (lock) {
+      Slot slot = acquire(length);
+      if (slot == null) {
+        return false;
+      }
+      System.arraycopy(data, 0, slot.data, 0, length);
+      publish(slot, length, tag);
+    }
+    return true;
+  }
+
+  /**
+   * Offers a single byte to be written.
+   * @param b
+   *        The byte, in the lowest eight bits.
+   * @param tag
+   *        The tag whose completion is reported, or {@code NO_TAG}.
+   * @return {@code true} if offered, {@code false} if the writer is stopped.
+   */
+  public boolean offer(int b, long tag) {
+    synchronized (lock) {
+      Slot slot = acquire(1);
+      if (slot == null) {
+        return false;
+      }
+      slot.data[0] = (byte)b;
+      publish(slot, 1, tag);
+    }
+    return true;
+  }
+
+  /**
+   * Offers the ASCII characters of a text to be written.
+   * @param text
+   *        The text.
+   * @param tag
+   *        The tag whose completion is reported, or {@code NO_TAG}.
+   * @return {@code true} if offered, {@code false} if the writer is stopped.
+   */
+  public boolean offer(CharSequence text, long tag) {
+    int length = text.length();
+    synchronized (lock) {
+      Slot slot = acquire(length);
+      if (slot == null) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        slot.data[i] = (byte)text.charAt(i);
+      }
+      publish(slot, length, tag);
+    }
+    return true;
+  }
+
+  /**
+   * Offers a payload to be written as a binary frame, see {@code FrameCodec}.
+   * @param payload
+   *        The buffer containing the payload, which is encoded into the slot.
+   * @param length
+   *        The length of the payload.
+   * @param tag
+   *        The tag whose completion is reported, or {@code NO_TAG}.
+   * @return {@code true} if offered, {@code false} if the writer is stopped.
+   */
+  public boolean offerFrame(byte[] payload, int length, long tag) {
+    synchronized (lock) {
+      Slot slot = acquire(FrameCodec.getMaxEncodedLength(length));
+      if (slot == null) {
+        return false;
+      }
+      publish(slot, FrameCodec.encode(payload, length, slot.data, 0), tag);
+    }
+    return true;
+  }
+
+  /**
+   * Waits for a free slot.
+   *
+   * <strong>Note</strong>
+   * <p>It has to be called holding {@code lock}.</p>
+   *
+   * @param size
+   *        The number of bytes the slot has to contain.
+   * @return The slot or {@code null} if the writer is stopped or the caller
+   *         has been interrupted.
+   */
+  private Slot acquire(int size) {
+    while (running && tail - head >= slots.length) {
+      try {
+        lock.wait();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    if (!running) {
+      return null;
+    }
+    Slot slot = slots[(int)(tail & mask)];
+    slot.ensureCapacity(size);
+    return slot;
+  }
+
+  /**
+   * Makes a slot available to the writer thread.
+   *
+   * <strong>Note</strong>
+   * <p>It has to be called holding {@code lock}.</p>
+   *
+   * @param slot
+   *        The slot.
+   * @param length
+   *        The number of bytes of data.
+   * @param tag
+   *        The tag.
+   */
+  private void publish(Slot slot, int length, long tag) {
+    slot.length = length;
+    slot.tag = tag;
+    if (tail++ == head) {
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * The writer thread body.
+   */
+  private void write() {
+    while (true) {
+      long from;
+      long to;
+      synchronized (lock) {
+        while (running && head == tail) {
+          try {
+            lock.wait();
+          } catch (InterruptedException ex) {
+            running = false;
+          }
+        }
+        if (!running) {
+          return;
+        }
+        from = head;
+        to = tail;
+      }
+      int length = 0;
+      int count = 0;
+      for (long i = from; i < to; i++) {
+        Slot slot = slots[(int)(i & mask)];
+        if (length + slot.length > gather.length) {
+          byte[] larger = new byte[Math.max(gather.length * 2, length + slot.length)];
+          System.arraycopy(gather, 0, larger, 0, length);
+          gather = larger;
+        }
+        System.arraycopy(slot.data, 0, gather, length, slot.length);
+        length += slot.length;
+        if (slot.tag != NO_TAG) {
+          tags[count++] = slot.tag;
+        }
+      }
+      int written = sink.write(gather, length);
+      long now = System.nanoTime();
+      synchronized (lock) {
+        if (running) {
+          head = to;
+        }
+        lock.notifyAll();
+      }
+      try {
+        if (written < length) {
+          listener.failed(length);
+        } else {
+          for (int i = 0; i < count; i++) {
+            listener.written(tags[i], now);
+          }
+        }
+      } catch (RuntimeException ex) {
+        Logger.getLogger(SerialWriter.class.getName()).log(Level.SEVERE, null, ex);
+      }
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the traffic of a serial session to a memory-mapped, append-only
+ * file, to be replayed by a {@code SessionReplayer}.
+ *
+ * <p>The file starts with a header of {@code HEADER_SIZE} bytes: the
+ * {@code MAGIC} number, the {@code VERSION} and the length of the recorded
+ * data, updated after every record, so that a recording survives a crash of
+ * the application.  Every record follows, in little-endian order: the time
+ * in nanoseconds since the recording started, the {@code Direction} and the
+ * length of the chunk, followed by its bytes.</p>
+ *
+ * <p>The file is mapped {@code REGION_SIZE} bytes at a time, so that
+ * recording a chunk is a copy to memory, without system calls.</p>
+ *
+ * <strong>Note</strong>
+ * <p>{@code record()} is called by both the writer thread and the reader
+ * thread of the {@code SerialCommunicator}, so it is synchronised.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class SessionRecorder implements AutoCloseable {
+
+  /**
+   * The direction of a recorded chunk.
+   */
+  public static enum Direction {
+    /**
+     * From the host to the robotic arm.
+     */
+    Out,
+    /**
+     * From the robotic arm to the host.
+     */
+    In
+  };
+
+  /**
+   * The magic number starting a recording, {@code PIER} in ASCII.
+   */
+  public static final int MAGIC = 0x52454950;
+
+  /**
+   * The version of the format of the recording.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The size in bytes of the header: the magic number, the version and the
+   * length of the recorded data.
+   */
+  public static final int HEADER_SIZE = 16;
+
+  /**
+   * The offset in the header of the length of the recorded data.
+   */
+  public static final int LENGTH_OFFSET = 8;
+
+  /**
+   * The size in bytes of the header of a record: the time, the direction and
+   * the length of the chunk.
+   */
+  public static final int RECORD_HEADER_SIZE = 13;
+
+  /**
+   * The size in bytes of the regions of the file mapped at a time.
+   */
+  public static final int REGION_SIZE = 1 << 20;
+
+  /**
+   * The file of the recording.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The mapped header of the file.
+   */
+  private final MappedByteBuffer header;
+
+  /**
+   * The mapped region of the file being written.
+   */
+  private MappedByteBuffer region;
+
+  /**
+   * The offset in the file of {@code region}.
+   */
+  private long regionOffset;
+
+  /**
+   * The {@code System.nanoTime()} when the recording started.
+   */
+  private final long startNanos;
+
+  /**
+   * {@code true} once closed, or when the file can no longer be written.
+   */
+  private boolean closed = false;
+
+  /**
+   * Constructor, creating the file or truncating it.
+   * @param path
+   *        The path of the file.
+   * @throws IOException
+   *         If the file cannot be created or mapped.
+   */
+  public SessionRecorder(Path path) throws IOException {
+    channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+    );
+    try {
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+      header.putLong(LENGTH_OFFSET, HEADER_SIZE);
+      map(HEADER_SIZE, REGION_SIZE);
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Records a chunk.
+   * @param direction
+   *        The direction of the chunk.
+   * @param buffer
+   *        The buffer containing the chunk.
+   * @param offset
+   *        The offset of the chunk.
+   * @param length
+   *        The length of the chunk.
+   */
+  public synchronized void record(
+          Direction direction, byte[] buffer, int offset, int length
+  ) {
+    if (begin(direction, length)) {
+      region.put(buffer, offset, length);
+      end();
+    }
+  }
+
+  /**
+   * Records a chunk, leaving the position of its buffer unchanged.
+   * @param direction
+   *        The direction of the chunk.
+   * @param data
+   *        The chunk, from the position to the limit of the buffer.
+   */
+  public synchronized void record(Direction direction, ByteBuffer data) {
+    int position = data.position();
+    if (begin(direction, data.remaining())) {
+      region.put(data);
+      data.position(position);
+      end();
+    }
+  }
+
+  /**
+   * Writes the header of a record, mapping a new region if needed.
+   * @param direction
+   *        The direction of the chunk.
+   * @param length
+   *        The length of the chunk.
+   * @return {@code true} if the chunk can be written, {@code false} if the
+   *         recorder is closed.
+   */
+  private boolean begin(Direction direction, int length) {
+    if (closed) {
+      return false;
+    }
+    long nanos = System.nanoTime() - startNanos;
+    int size = RECORD_HEADER_SIZE + length;
+    if (region.remaining() < size) {
+      try {
+        map(regionOffset + region.position(), Math.max(size, REGION_SIZE));
+      } catch (IOException ex) {
+        // What has been recorded so far is still valid.
+        closed = true;
+        return false;
+      }
+    }
+    region.putLong(nanos);
+    region.put((byte)direction.ordinal());
+    region.putInt(length);
+    return true;
+  }
+
+  /**
+   * Publishes the length of the recorded data, after a record.
+   */
+  private void end() {
+    header.putLong(LENGTH_OFFSET, regionOffset + region.position());
+  }
+
+  /**
+   * Maps a region of the file.
+   * @param offset
+   *        The offset of the region.
+   * @param size
+   *        The size of the region.
+   * @throws IOException
+   *         If the region cannot be mapped.
+   */
+  private void map(long offset, int size) throws IOException {
+    region = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+    region.order(ByteOrder.LITTLE_ENDIAN);
+    regionOffset = offset;
+  }
+
+  /**
+   * Gets the length of the recorded data, including the header of the file.
+   * @return The length in bytes.
+   */
+  public synchronized long getLength() {
+    return header.getLong(LENGTH_OFFSET);
+  }
+
+  /**
+   * Stops the recording, flushing it to the file and cutting the unused part
+   * of the last region.
+   * @throws IOException
+   *         If the file cannot be flushed or closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+    closed = true;
+    try {
+      region.force();
+      header.force();
+      try {
+        channel.truncate(header.getLong(LENGTH_OFFSET));
+      } catch (IOException ex) {
+        /*
+         * Some systems do not truncate a mapped file: the length in the
+         * header still tells where the recording ends.
+         */
+      }
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a session recorded by a {@code SessionRecorder}, feeding the data
+ * received from the robotic arm to a {@code Transport.Receiver}, e.g. a
+ * {@code SerialCommunicator} or directly the {@code notifyData()} of a
+ * {@code SerialCommunicatorListener}.
+ *
+ * <p>The data is fed with the timing of the recording, divided by a speed-up
+ * factor, or as fast as possible to benchmark the parsing of a real
+ * capture.  The recording is memory-mapped and every chunk is passed without
+ * copying it.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class SessionReplayer {
+
+  /**
+   * The recorded data, from the header of the first record to the end.
+   */
+  private final MappedByteBuffer recording;
+
+  /**
+   * Constructor.
+   * @param path
+   *        The path of the recording.
+   * @throws IOException
+   *         If the file cannot be read or is not a recording.
+   */
+  public SessionReplayer(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < SessionRecorder.HEADER_SIZE) {
+        throw new IOException(path.toString());
+      }
+      ByteBuffer header = ByteBuffer.allocate(SessionRecorder.HEADER_SIZE)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(header, 0L);
+      long length = header.getLong(SessionRecorder.LENGTH_OFFSET);
+      if (header.getInt(0) != SessionRecorder.MAGIC
+              || header.getInt(4) != SessionRecorder.VERSION
+              || length < SessionRecorder.HEADER_SIZE
+              || length > size
+              || length > Integer.MAX_VALUE) {
+        throw new IOException(path.toString());
+      }
+      recording = channel.map(
+              FileChannel.MapMode.READ_ONLY,
+              SessionRecorder.HEADER_SIZE,
+              length - SessionRecorder.HEADER_SIZE
+      );
+      recording.order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  /**
+   * Gets the duration of the recording.
+   * @return The time in nanoseconds of the last record since the recording
+   *         started.
+   */
+  public long getDurationNanos() {
+    long nanos = 0L;
+    for (int pos = 0; pos < recording.limit(); pos += recordSize(pos)) {
+      nanos = recording.getLong(pos);
+    }
+    return nanos;
+  }
+
+  /**
+   * Counts the records of a direction.
+   * @param direction
+   *        The direction.
+   * @return The number of chunks recorded in that direction.
+   */
+  public int getCount(SessionRecorder.Direction direction) {
+    int count = 0;
+    for (int pos = 0; pos < recording.limit(); pos += recordSize(pos)) {
+      if (recording.get(pos+8) == direction.ordinal()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Feeds the data received from the robotic arm to a receiver.
+   * @param receiver
+   *        The receiver.
+   * @param speedUp
+   *        The factor dividing the times of the recording, e.g. {@code 1.0}
+   *        for the original timing, or {@code 0.0} to feed the data as fast
+   *        as possible.
+   * @return The number of chunks fed.
+   * @throws InterruptedException
+   *         If interrupted while waiting for the time of a chunk.
+   */
+  public int replay(Transport.Receiver receiver, double speedUp)
+          throws InterruptedException {
+    ByteBuffer chunk = recording.duplicate();
+    long startNanos = System.nanoTime();
+    int count = 0;
+    for (int pos = 0; pos < recording.limit(); pos += recordSize(pos)) {
+      if (recording.get(pos+8) != SessionRecorder.Direction.In.ordinal()) {
+        continue;
+      }
+      if (speedUp > 0.0) {
+        long due = startNanos + (long)(recording.getLong(pos) / speedUp);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0L) {
+          LockSupport.parkNanos(wait);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      }
+      int start = pos + SessionRecorder.RECORD_HEADER_SIZE;
+      chunk.limit(start + recording.getInt(pos+9)).position(start);
+      receiver.dataReceived(chunk);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the size of a record.
+   * @param pos
+   *        The position of the record.
+   * @return The size in bytes, including its header.
+   */
+  private int recordSize(int pos) {
+    return SessionRecorder.RECORD_HEADER_SIZE + recording.getInt(pos+9);
+  }
+}
@@ -0,0 +1,252 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A transport over a pair of streams, read by a thread of its own.
+ *
+ * <p>The subclasses open the streams in {@code connect()}; this class reads
+ * the input stream, passing the data to the receiver, and writes to the
+ * output stream.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public abstract class StreamTransport implements Transport {
+
+  /**
+   * The size of the buffer used to read the data.
+   */
+  private static final int READ_BUFFER_SIZE = 1024;
+
+  /**
+   * The time in milliseconds {@code close()} waits for the reader thread to
+   * terminate.
+   */
+  private static final long CLOSE_TIMEOUT = 1000L;
+
+  /**
+   * The stream the data coming from the robotic arm is read from.
+   */
+  private InputStream in = null;
+
+  /**
+   * The stream the data going to the robotic arm is written to.
+   */
+  private volatile OutputStream out = null;
+
+  /**
+   * The thread reading {@code in}.
+   */
+  private Thread reader = null;
+
+  /**
+   * Whether the transport is open.
+   */
+  private volatile boolean open = false;
+
+  /**
+   * The buffer used to read the data, reused by every read.
+   */
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+  /**
+   * Opens the streams, calling {@code setStreams()}.
+   * @param portName
+   *        The name of the port.
+   * @param dataRate
+   *        The data-rate.
+   * @param dataBits
+   *        The number of data bits.
+   * @param stopBits
+   *        The stop bits.
+   * @param parity
+   *        The parity.
+   * @throws IOException
+   *         If the streams cannot be opened.
+   */
+  protected abstract void connect(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity
+  ) throws IOException;
+
+  /**
+   * Sets the streams opened by {@code connect()}.
+   * @param in
+   *        The stream the data coming from the robotic arm is read from.
+   * @param out
+   *        The stream the data going to the robotic arm is written to.
+   */
+  protected void setStreams(InputStream in, OutputStream out) {
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * Checks whether the reader thread has to go on reading when the input
+   * stream returns no data.
+   * @return {@code false}, i.e. the end of the stream ends the connection.
+   */
+  protected boolean isEndOfStreamTransient() {
+    return false;
+  }
+
+  /**
+   * Opens the transport and starts the reader thread.
+   * @param portName
+   *        The name of the port.
+   * @param dataRate
+   *        The data-rate.
+   * @param dataBits
+   *        The number of data bits.
+   * @param stopBits
+   *        The stop bits.
+   * @param parity
+   *        The parity.
+   * @param receiver
+   *        The receiver of the data coming from the robotic arm.
+   * @throws IOException
+   *         If the transport cannot be opened.
+   */
+  @Override
+  public synchronized void open(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity,
+          Receiver receiver
+  ) throws IOException {
+    close();
+    if (portName == null) {
+      throw new IOException();
+    }
+    connect(portName, dataRate, dataBits, stopBits, parity);
+    open = true;
+    InputStream input = in;
+    reader = new Thread(
+            () -> read(input, receiver),
+            "Pierin-oh! "+getClass().getSimpleName()+" reader"
+    );
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * The reader thread body.
+   * @param input
+   *        The stream to read.
+   * @param receiver
+   *        The receiver of the data.
+   */
+  private void read(InputStream input, Receiver receiver) {
+    try {
+      while (open) {
+        int numRead = input.read(readBuffer.array());
+        if (numRead < 0) {
+          if (isEndOfStreamTransient()) {
+            continue;
+          }
+          break;
+        }
+        if (numRead > 0) {
+          readBuffer.limit(numRead).position(0);
+          receiver.dataReceived(readBuffer);
+        }
+      }
+    } catch (IOException ex) {
+      // Closed, or lost if still open.
+    }
+    if (open) {
+      receiver.transportLost();
+    }
+  }
+
+  /**
+   * Writes data to the output stream.
+   * @param buffer
+   *        The buffer containing the data.
+   * @param length
+   *        The number of bytes.
+   * @return The number of bytes written, or {@code -1} if failed.
+   */
+  @Override
+  public int write(byte[] buffer, int length) {
+    OutputStream output = out;
+    if (output == null) {
+      return -1;
+    }
+    try {
+      output.write(buffer, 0, length);
+      output.flush();
+      return length;
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Changes the data-rate, which does not matter to a stream.
+   * @param dataRate
+   *        The data-rate.
+   */
+  @Override
+  public void setDataRate(int dataRate) {
+  }
+
+  /**
+   * Closes the streams and waits for the reader thread to terminate.
+   */
+  @Override
+  public synchronized void close() {
+    open = false;
+    InputStream input = in;
+    OutputStream output = out;
+    in = null;
+    out = null;
+    try {
+      if (output != null) {
+        output.close();
+      }
+      if (input != null) {
+        input.close();
+      }
+    } catch (IOException ex) {
+      // Already closed.
+    }
+    if (reader != null && reader != Thread.currentThread()) {
+      try {
+        reader.join(CLOSE_TIMEOUT);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    reader = null;
+  }
+}
@@ -0,0 +1,113 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * The transport through a TCP connection, e.g. to an emulated robotic arm or
+ * to a serial-to-TCP bridge such as {@code socat} or {@code ser2net}.
+ *
+ * <p>The name of the port is {@code host:port}; the data-rate, the data bits,
+ * the stop bits and the parity do not matter.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class TcpTransport extends StreamTransport {
+
+  /**
+   * The default TCP port.
+   */
+  public static final int DEFAULT_PORT = 5331;
+
+  /**
+   * The name of the default port, on the local host.
+   */
+  public static final String DEFAULT_PORT_NAME = "localhost:"+DEFAULT_PORT;
+
+  /**
+   * The time in milliseconds waited for the connection.
+   */
+  private static final int CONNECT_TIMEOUT = 2000;
+
+  /**
+   * Gets the name of the default port.
+   * @return The list containing {@code DEFAULT_PORT_NAME}.
+   */
+  @Override
+  public List<String> getPortNames() {
+    return List.of(DEFAULT_PORT_NAME);
+  }
+
+  /**
+   * Connects to {@code host:port}.
+   * @param portName
+   *        The address, {@code host:port} or {@code host} for the
+   *        {@code DEFAULT_PORT}.
+   * @param dataRate
+   *        Ignored.
+   * @param dataBits
+   *        Ignored.
+   * @param stopBits
+   *        Ignored.
+   * @param parity
+   *        Ignored.
+   * @throws IOException
+   *         If the connection fails.
+   */
+  @Override
+  protected void connect(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity
+  ) throws IOException {
+    String host = portName;
+    int port = DEFAULT_PORT;
+    int colon = portName.lastIndexOf(':');
+    if (colon >= 0) {
+      host = portName.substring(0, colon);
+      try {
+        port = Integer.parseInt(portName.substring(colon+1));
+      } catch (NumberFormatException ex) {
+        throw new IOException(portName, ex);
+      }
+    }
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+      InputStream in = socket.getInputStream();
+      OutputStream out = socket.getOutputStream();
+      setStreams(in, out);
+    } catch (IOException ex) {
+      socket.close();
+      throw ex;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The byte link between the {@code SerialCommunicator} and the robotic arm.
+ *
+ * <p>Besides the real serial port, the link can be an in-memory pipe, a
+ * pseudo-terminal or a local TCP connection, so that the whole host stack can
+ * be exercised without the arm.</p>
+ *
+ * <strong>Note</strong>
+ * <p>{@code write()} is called by the single writer thread of the
+ * {@code SerialCommunicator}, while the {@code Receiver} is called by a
+ * single thread of the transport.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public interface Transport {
+
+  /**
+   * The available transports.
+   */
+  public static enum Type {
+    /**
+     * A serial port, through jSerialComm.
+     */
+    Serial,
+    /**
+     * An in-memory pipe to a {@code VirtualArm}, emulating the firmware in the
+     * same process.
+     */
+    Pipe,
+    /**
+     * A pseudo-terminal, e.g. created by {@code socat}.
+     */
+    Pty,
+    /**
+     * A TCP connection, {@code host:port}.
+     */
+    Tcp
+  };
+
+  /**
+   * The receiver of the data coming from the robotic arm.
+   */
+  public static interface Receiver {
+
+    /**
+     * Receives a chunk of data.
+     * @param data
+     *        The data, from the position to the limit of the buffer.  The
+     *        buffer is reused for the following data.
+     */
+    public void dataReceived(ByteBuffer data);
+
+    /**
+     * Notifies that the link has been lost, e.g. the device has gone or the
+     * other end has closed the connection.  It is not called when the
+     * transport is closed.
+     */
+    public default void transportLost() {
+    }
+  }
+
+  /**
+   * Creates a transport.
+   * @param type
+   *        The type of the transport.
+   * @return The {@code Transport}.
+   */
+  public static Transport create(Type type) {
+    switch (type) {
+      case Pipe:
+        return new PipeTransport(new VirtualArm());
+      case Pty:
+        return new PtyTransport();
+      case Tcp:
+        return new TcpTransport();
+      case Serial:
+      default:
+        return new SerialPortTransport();
+    }
+  }
+
+  /**
+   * Gets the names of the ports that can be opened.
+   * @return The names.
+   */
+  public List<String> getPortNames();
+
+  /**
+   * Gets the directory where the ports appear as files, watched by the 
+   * {@code PortDiscovery} to find them again when it changes.
+   * @return The directory, or {@code null} if the ports are not files.
+   */
+  public default Path getPortDirectory() {
+    return null;
+  }
+
+  /**
+   * Opens a port.
+   * @param portName
+   *        The name of the port.
+   * @param dataRate
+   *        The data-rate.
+   * @param dataBits
+   *        The number of data bits.
+   * @param stopBits
+   *        The stop bits: 1, 2, or 3 for one and a half.
+   * @param parity
+   *        The parity.
+   * @param receiver
+   *        The receiver of the data coming from the robotic arm.
+   * @throws IOException
+   *         If the port cannot be opened.
+   */
+  public void open(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity,
+          Receiver receiver
+  ) throws IOException;
+
+  /**
+   * Writes data, waiting until it is written.
+   * @param buffer
+   *        The buffer containing the data.
+   * @param length
+   *        The number of bytes.
+   * @return The number of bytes written, or {@code -1} if failed.
+   */
+  public int write(byte[] buffer, int length);
+
+  /**
+   * Changes the data-rate of the open port.
+   * @param dataRate
+   *        The data-rate.
+   */
+  public void setDataRate(int dataRate);
+
+  /**
+   * Closes the port, if open.
+   */
+  public void close();
+}
@@ -0,0 +1,834 @@
+package it.gftblues.sixdofarm.controllers;
+
+/**
+ * Copyright 2020 Gabriele Tafuro
+ *
+ * This file is part of Pierin-oh!.
+ *
+ * Pierin-oh! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  Pierin-oh! is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An emulation of the firmware of the robotic arm, {@code mg996r.ino} and
+ * {@code ROT3U}, running in the same process at the other end of a
+ * {@code PipeTransport}.
+ *
+ * <p>It parses the same text commands and binary frames, echoes, acknowledges
+ * and refuses them with the same lines and frames.  The servos are the ones
+ * of an {@code ArmModel}, and the firmware waits for the time of every 
+ * movement; every byte takes ten bits at the data-rate to cross the line, in
+ * both directions, and the firmware waits for its output to be sent.</p>
+ *
+ * <p>Every connection resets the emulated board, as opening the serial port
+ * resets the Arduino, but without its boot time.  The data written by the
+ * host is never lost, since the pipe blocks the host when full, while the
+ * Arduino would discard it.</p>
+ *
+ * @author Gabriele Tafuro
+ *
+ * @since 1.0
+ */
+public class VirtualArm implements PipeTransport.Peer {
+
+  /**
+   * The data-rate at boot.
+   */
+  public static final int DEFAULT_BAUD_RATE = 9600;
+
+  /**
+   * The time in milliseconds waited for a command at a new data-rate before
+   * going back to the previous one.
+   */
+  public static final int BAUD_CONFIRM_TIMEOUT = 2000;
+
+  /**
+   * The line printed at boot.
+   */
+  public static final String BANNER = "Starting the arm. Please stand away to "
+          +"a safe position while the arm moves to its default position.";
+
+  private static final String CMD_TEST_RESPONSE = "TR";
+  private static final String CMD_SHOULDER_MOVE_HORIZONTALLY = "SH";
+  private static final String CMD_SHOULDER_MOVE_VERTICALLY = "SV";
+  private static final String CMD_ELBOW_MOVE_VERTICALLY = "EV";
+  private static final String CMD_WRIST_ROTATE = "WR";
+  private static final String CMD_WRIST_MOVE_VERTICALLY = "WV";
+  private static final String CMD_CLAMP_OPEN = "CO";
+  private static final String CMD_CLAMP_CLOSE = "CC";
+  private static final String CMD_CLAMP_SET = "CS";
+  private static final String CMD_MOVE_TO_DEFAULT_POSITION = "DP";
+  private static final String CMD_MOVE_YAKULT = "MY";
+  private static final String CMD_MOVE_QUEEN = "MQ";
+  private static final String CMD_MOVE_JOINTS = "MJ";
+  private static final String CMD_BAUD_RATE = "BR";
+
+  private static final String ACKNOWLEDGE = "ACK";
+  private static final String FRAMING_BINARY = "FRAMING BINARY";
+
+  private static final String ERROR_NO_COMMAND_FOUND = "No command found.";
+  private static final String ERROR_INVALID_DEGREES = "Invalid degrees.";
+  private static final String ERROR_SPACE_OR_OPEN_BRAKET_MISSING =
+          "Space or open braket missing.";
+  private static final String ERROR_NO_ID_FOUND = "No id found.";
+  private static final String ERROR_NO_CLOSING_BRAKET = "No closing braket.";
+
+  private static final int ERROR_CODE_NO_COMMAND_FOUND = 0;
+  private static final int ERROR_CODE_INVALID_DEGREES = 1;
+  private static final int ERROR_CODE_NO_ID_FOUND = 3;
+  private static final int ERROR_CODE_CORRUPTED_FRAME = 5;
+
+  private static final int FRAME_MAX_LENGTH = 32;
+  private static final int FRAME_ACK = 0x80;
+  private static final int FRAME_ERROR = 0x81;
+  private static final float ANGLE_SCALE = 10.0f;
+
+  private static final String ACTION_VALID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+  private static final String SPACES = " \t";
+  private static final String DIGITS = "0123456789";
+  private static final char ID_OPEN = '[';
+  private static final char ID_CLOSE = ']';
+  private static final char CHAR_MINUS = '-';
+  private static final int END_COMMAND = '\n';
+
+  /**
+   * The data-rates selectable with {@code BR}.
+   */
+  private static final int[] BAUD_RATES = {
+    75, 110, 300, 1200, 2400, 4800, 9600, 19200, 38400, 57600, 115200
+  };
+
+  /**
+   * The actions of the binary opcodes, the opcode being the index plus one.
+   */
+  private static final String[] FRAME_ACTIONS = {
+    CMD_TEST_RESPONSE, CMD_SHOULDER_MOVE_HORIZONTALLY,
+    CMD_SHOULDER_MOVE_VERTICALLY, CMD_ELBOW_MOVE_VERTICALLY, CMD_WRIST_ROTATE,
+    CMD_WRIST_MOVE_VERTICALLY, CMD_CLAMP_OPEN, CMD_CLAMP_CLOSE, CMD_CLAMP_SET,
+    CMD_MOVE_TO_DEFAULT_POSITION, CMD_MOVE_YAKULT, CMD_MOVE_QUEEN,
+    CMD_MOVE_JOINTS, CMD_BAUD_RATE
+  };
+
+  /**
+   * The number of angles of the binary opcodes.
+   */
+  private static final int[] FRAME_ANGLES = {
+    1, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 6, 1
+  };
+
+  /**
+   * The number of bits sent on the line for each byte: start, eight data
+   * bits and stop.
+   */
+  private static final int BITS_PER_BYTE = 10;
+
+  /**
+   * The time in milliseconds {@code attach()} waits for the previous
+   * connection to terminate.
+   */
+  private static final long DETACH_TIMEOUT = 1000L;
+
+  /**
+   * How many times the emulation runs faster than the real arm.
+   */
+  private volatile double speedUp = 1.0;
+
+  /**
+   * The thread running the firmware of the current connection.
+   */
+  private Thread thread = null;
+
+  /**
+   * The servos.
+   */
+  private final ArmModel model = new ArmModel();
+
+  /**
+   * The number of commands executed since the last reset.
+   */
+  private long executed = 0L;
+
+  /**
+   * The stream of the data written by the host.
+   */
+  private InputStream in;
+
+  /**
+   * The stream of the data to be read by the host.
+   */
+  private OutputStream out;
+
+  /**
+   * The text command being received.
+   */
+  private final StringBuilder buffer = new StringBuilder();
+
+  /**
+   * The action of the command parsed.
+   */
+  private String command = "";
+
+  /**
+   * The id of the text command parsed.
+   */
+  private String id = "";
+
+  /**
+   * The first value of the command parsed.
+   */
+  private float deg;
+
+  /**
+   * The values of the command parsed.
+   */
+  private final float[] degs = new float[ArmModel.NUM_OF_SERVOS];
+
+  /**
+   * The number of values of the command parsed.
+   */
+  private int nDegrees;
+
+  /**
+   * Whether the binary framing is in use.
+   */
+  private boolean binaryFraming = false;
+
+  /**
+   * The current data-rate.
+   */
+  private int baudRate = DEFAULT_BAUD_RATE;
+
+  /**
+   * The data-rate restored if the current one is not confirmed.
+   */
+  private int fallbackBaudRate = DEFAULT_BAUD_RATE;
+
+  /**
+   * When the current data-rate has to be confirmed by, in
+   * {@code System.nanoTime()}.
+   */
+  private long baudDeadline = 0L;
+
+  /**
+   * Whether the current data-rate has to be confirmed.
+   */
+  private boolean baudPending = false;
+
+  /**
+   * The binary frame being received.
+   */
+  private final byte[] frame = new byte[FRAME_MAX_LENGTH];
+
+  /**
+   * The number of bytes of the binary frame being received.
+   */
+  private int frameLength = 0;
+
+  /**
+   * The id of the binary command parsed.
+   */
+  private long frameId;
+
+  /**
+   * When the last byte received from the host has crossed the line, in
+   * {@code System.nanoTime()}.
+   */
+  private long rxClock = 0L;
+
+  /**
+   * Gets how many times the emulation runs faster than the real arm.
+   * @return The factor.
+   */
+  public double getSpeedUp() {
+    return speedUp;
+  }
+
+  /**
+   * Sets how many times the emulation runs faster than the real arm, which
+   * shortens the movements, the pauses and the line times alike.
+   * @param speedUp
+   *        The factor, greater than zero.
+   */
+  public void setSpeedUp(double speedUp) {
+    this.speedUp = speedUp;
+  }
+
+  /**
+   * Gets the angles of the servos.
+   * @return A copy of the angles, indexed by channel, e.g.
+   *         {@code ArmModel.SERVO_ELBOW}.
+   */
+  public float[] getServoAngles() {
+    return model.getServoAngles();
+  }
+
+  /**
+   * Gets the number of commands executed since the last connection.
+   * @return The number of commands.
+   */
+  public synchronized long getExecuted() {
+    return executed;
+  }
+
+  /**
+   * Resets the emulated board and runs its firmware on the pipes of a new
+   * connection, from a thread of its own, until they are closed.
+   * @param fromHost
+   *        The stream of the data written by the host.
+   * @param toHost
+   *        The stream of the data to be read by the host.
+   */
+  @Override
+  public synchronized void attach(InputStream fromHost, OutputStream toHost) {
+    if (thread != null) {
+      try {
+        thread.join(DETACH_TIMEOUT);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    thread = new Thread(() -> {
+      try {
+        run(fromHost, toHost);
+      } catch (IOException ex) {
+        // Disconnected.
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }, "Pierin-oh! virtual arm");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * The firmware: {@code setup()} and then {@code loop()} until the host
+   * disconnects.
+   * @param fromHost
+   *        The stream of the data written by the host.
+   * @param toHost
+   *        The stream of the data to be read by the host.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void run(InputStream fromHost, OutputStream toHost)
+          throws IOException, InterruptedException {
+    in = fromHost;
+    out = toHost;
+    setup();
+    byte[] chunk = new byte[FRAME_MAX_LENGTH];
+    while (true) {
+      if (baudPending && System.nanoTime() - baudDeadline >= 0L) {
+        setBaudRate(fallbackBaudRate);
+        baudPending = false;
+      }
+      if (baudPending && in.available() == 0) {
+        delay(1L);
+        continue;
+      }
+      int n = in.read(chunk, 0, chunk.length);
+      if (n < 0) {
+        return;
+      }
+      receive(n);
+      for (int i = 0; i < n; i++) {
+        process(chunk[i] & 0xFF);
+      }
+    }
+  }
+
+  /**
+   * Resets the board and prints the banner.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void setup() throws IOException, InterruptedException {
+    model.reset();
+    synchronized (this) {
+      executed = 0L;
+    }
+    buffer.setLength(0);
+    command = "";
+    id = "";
+    binaryFraming = false;
+    baudRate = DEFAULT_BAUD_RATE;
+    fallbackBaudRate = DEFAULT_BAUD_RATE;
+    baudPending = false;
+    frameLength = 0;
+    rxClock = System.nanoTime();
+    println(BANNER);
+  }
+
+  /**
+   * Handles a byte received, as {@code loop()} does.
+   * @param inChar
+   *        The byte.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void process(int inChar) throws IOException, InterruptedException {
+    if (binaryFraming) {
+      if (inChar == 0) {
+        if (frameLength > 0 && parseFrame()) {
+          execute();
+        }
+        frameLength = 0;
+      } else if (frameLength <= FRAME_MAX_LENGTH) {
+        if (frameLength < FRAME_MAX_LENGTH) {
+          frame[frameLength] = (byte)inChar;
+        }
+        frameLength++;
+      }
+    } else if (inChar == END_COMMAND) {
+      if (parseCommand(buffer.toString())) {
+        execute();
+      }
+      buffer.setLength(0);
+    } else {
+      buffer.append((char)inChar);
+    }
+  }
+
+  /**
+   * Executes the command parsed, echoing its action and acknowledging it.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void execute() throws IOException, InterruptedException {
+    boolean switchFraming = false;
+    int newBaudRate = 0;
+    baudPending = false;
+    switch (command) {
+      case CMD_SHOULDER_MOVE_HORIZONTALLY:
+      case CMD_SHOULDER_MOVE_VERTICALLY:
+      case CMD_ELBOW_MOVE_VERTICALLY:
+      case CMD_WRIST_MOVE_VERTICALLY:
+      case CMD_WRIST_ROTATE:
+      case CMD_CLAMP_OPEN:
+      case CMD_CLAMP_CLOSE:
+      case CMD_CLAMP_SET:
+      case CMD_MOVE_YAKULT:
+      case CMD_MOVE_QUEEN:
+      case CMD_MOVE_TO_DEFAULT_POSITION:
+      case CMD_MOVE_JOINTS:
+        echo(command);
+        delay(model.execute(command, degs));
+        break;
+      case CMD_TEST_RESPONSE:
+        echo(command);
+        if (!binaryFraming && deg == 1.0f) {
+          println(FRAMING_BINARY);
+          switchFraming = true;
+        } else if (binaryFraming && deg == 0.0f) {
+          switchFraming = true;
+        }
+        break;
+      case CMD_BAUD_RATE:
+        echo(command);
+        if (deg >= 0.0f && deg < BAUD_RATES.length) {
+          newBaudRate = BAUD_RATES[(int)deg];
+        }
+        break;
+      default:
+        println("unknown command: "+command);
+    }
+    synchronized (this) {
+      executed++;
+    }
+    acknowledge();
+    if (switchFraming) {
+      binaryFraming = !binaryFraming;
+      frameLength = 0;
+      buffer.setLength(0);
+    }
+    if (newBaudRate > 0 && newBaudRate != baudRate) {
+      fallbackBaudRate = baudRate;
+      setBaudRate(newBaudRate);
+      baudDeadline = System.nanoTime()
+              +scale(TimeUnit.MILLISECONDS.toNanos(BAUD_CONFIRM_TIMEOUT));
+      baudPending = true;
+    }
+  }
+
+  /**
+   * Changes the data-rate.  Any partial command is discarded.
+   * @param rate
+   *        The data-rate.
+   */
+  private void setBaudRate(int rate) {
+    baudRate = rate;
+    buffer.setLength(0);
+    frameLength = 0;
+  }
+
+  /**
+   * Echoes the action of the command about to be executed, with the text
+   * framing only.
+   * @param action
+   *        The action.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void echo(String action) throws IOException, InterruptedException {
+    if (!binaryFraming) {
+      println(action);
+    }
+  }
+
+  /**
+   * Acknowledges the execution of the command.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void acknowledge() throws IOException, InterruptedException {
+    if (binaryFraming) {
+      byte[] payload = new byte[1+FrameCodec.MAX_VARINT_LENGTH];
+      payload[0] = (byte)FRAME_ACK;
+      sendFrame(payload, FrameCodec.putVarint(frameId, payload, 1));
+    } else {
+      println(ACKNOWLEDGE+" "+ID_OPEN+id+ID_CLOSE);
+    }
+  }
+
+  /**
+   * Sends the error of a refused binary frame.
+   * @param code
+   *        The error code.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void sendError(int code) throws IOException, InterruptedException {
+    sendFrame(new byte[] {(byte)FRAME_ERROR, (byte)code}, 2);
+  }
+
+  /**
+   * Sends a payload as a binary frame.
+   * @param payload
+   *        The buffer containing the payload.
+   * @param length
+   *        The length of the payload.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void sendFrame(byte[] payload, int length)
+          throws IOException, InterruptedException {
+    byte[] data = new byte[FrameCodec.getMaxEncodedLength(length)];
+    write(data, FrameCodec.encode(payload, length, data, 0));
+  }
+
+  /**
+   * Decodes the binary frame received and parses the command it carries.  The
+   * errors are sent back as error frames.
+   * @return {@code true} if valid, {@code false} otherwise.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private boolean parseFrame() throws IOException, InterruptedException {
+    int read = 0;
+    int length = 0;
+    boolean valid = frameLength <= FRAME_MAX_LENGTH;
+    while (valid && read < frameLength) {
+      int code = frame[read++] & 0xFF;
+      if (read+code-1 > frameLength) {
+        valid = false;
+        break;
+      }
+      for (int i = 1; i < code; i++) {
+        frame[length++] = frame[read++];
+      }
+      if (code < 0xFF && read < frameLength) {
+        frame[length++] = 0;
+      }
+    }
+    if (!valid || length < 3
+            || FrameCodec.crc8(frame, 0, length-1) != (frame[length-1] & 0xFF)
+    ) {
+      sendError(ERROR_CODE_CORRUPTED_FRAME);
+      return false;
+    }
+    length--;
+
+    int opcode = frame[0] & 0xFF;
+    if (opcode < 1 || opcode > FRAME_ACTIONS.length) {
+      sendError(ERROR_CODE_NO_COMMAND_FOUND);
+      return false;
+    }
+    command = FRAME_ACTIONS[opcode-1];
+
+    int pos = 1;
+    int shift = 0;
+    int b;
+    frameId = 0L;
+    do {
+      if (pos >= length || shift > 63) {
+        sendError(ERROR_CODE_NO_ID_FOUND);
+        return false;
+      }
+      b = frame[pos++] & 0xFF;
+      frameId |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+
+    nDegrees = FRAME_ANGLES[opcode-1];
+    if (pos+2*nDegrees != length) {
+      sendError(ERROR_CODE_INVALID_DEGREES);
+      return false;
+    }
+    for (int i = 0; i < nDegrees; i++, pos += 2) {
+      degs[i] = (short)((frame[pos] & 0xFF) | (frame[pos+1] << 8))
+              / ANGLE_SCALE;
+    }
+    deg = nDegrees > 0 ? degs[0] : 0.0f;
+    return true;
+  }
+
+  /**
+   * Parses a text command, {@code <action>[<value>] [<id>]} or
+   * {@code MJ <value> ... <value> [<id>]}.  The errors are printed.
+   * @param data
+   *        The line received, without the line-feed.
+   * @return {@code true} if valid, {@code false} otherwise.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private boolean parseCommand(String data)
+          throws IOException, InterruptedException {
+    boolean valid = true;
+    int len = data.length();
+    StringBuilder action = new StringBuilder();
+    StringBuilder digits = new StringBuilder();
+    int start;
+    id = "";
+
+    for (start = 0; start < len; start++) {
+      if (SPACES.indexOf(data.charAt(start)) < 0) {
+        break;
+      }
+    }
+    for (; start < len; start++) {
+      if (ACTION_VALID_CHARS.indexOf(data.charAt(start)) < 0) {
+        break;
+      }
+      action.append(data.charAt(start));
+    }
+    command = action.toString();
+
+    if (command.isEmpty()) {
+      println(ERROR_NO_COMMAND_FOUND);
+      return false;
+    }
+    nDegrees = 0;
+    boolean next = true;
+    while (next) {
+      boolean minus = false;
+      digits.setLength(0);
+      if (start < len && data.charAt(start) == CHAR_MINUS) {
+        minus = true;
+        start++;
+      }
+      for (; start < len; start++) {
+        if (DIGITS.indexOf(data.charAt(start)) < 0) {
+          break;
+        }
+        digits.append(data.charAt(start));
+      }
+      if (digits.length() > 0) {
+        if (nDegrees < ArmModel.NUM_OF_SERVOS) {
+          int value = toInt(digits);
+          degs[nDegrees] = minus ? -value : value;
+        }
+        nDegrees++;
+      } else if (minus) {
+        valid = false;
+      }
+      next = valid && start+1 < len
+              && SPACES.indexOf(data.charAt(start)) >= 0
+              && (data.charAt(start+1) == CHAR_MINUS
+                      || DIGITS.indexOf(data.charAt(start+1)) >= 0);
+      if (next) {
+        start++;
+      }
+    }
+    if (command.equals(CMD_MOVE_JOINTS)) {
+      valid = valid && nDegrees == ArmModel.NUM_OF_SERVOS;
+    } else {
+      valid = valid && nDegrees <= 1;
+    }
+    if (!valid) {
+      println(ERROR_INVALID_DEGREES);
+      return false;
+    }
+    deg = nDegrees > 0 ? degs[0] : 0.0f;
+
+    if (start+2 < len && SPACES.indexOf(data.charAt(start)) >= 0
+            && data.charAt(start+1) == ID_OPEN) {
+      StringBuilder digitsId = new StringBuilder();
+      for (start += 2; start < len; start++) {
+        if (DIGITS.indexOf(data.charAt(start)) < 0) {
+          break;
+        }
+        digitsId.append(data.charAt(start));
+      }
+      id = digitsId.toString();
+      if (id.isEmpty()) {
+        println(ERROR_NO_ID_FOUND);
+        return false;
+      }
+      if (start >= len || data.charAt(start) != ID_CLOSE) {
+        println(ERROR_NO_CLOSING_BRAKET);
+        return false;
+      }
+      return true;
+    }
+    println(ERROR_SPACE_OR_OPEN_BRAKET_MISSING);
+    return false;
+  }
+
+  /**
+   * Converts digits to a number as {@code String.toInt()} of Arduino does.
+   * @param digits
+   *        The digits.
+   * @return The number, truncated to 32 bits.
+   */
+  private static int toInt(CharSequence digits) {
+    long value = 0L;
+    for (int i = 0; i < digits.length(); i++) {
+      value = value * 10 + (digits.charAt(i) - '0');
+    }
+    return (int)value;
+  }
+
+  /**
+   * Prints a line, terminated by CR LF as {@code Serial.println()} does.
+   * @param line
+   *        The line.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void println(String line) throws IOException, InterruptedException {
+    byte[] data = new byte[line.length()+2];
+    for (int i = 0; i < line.length(); i++) {
+      data[i] = (byte)line.charAt(i);
+    }
+    data[line.length()] = '\r';
+    data[line.length()+1] = '\n';
+    write(data, data.length);
+  }
+
+  /**
+   * Sends data to the host once it would have crossed the line.
+   * @param data
+   *        The buffer containing the data.
+   * @param length
+   *        The number of bytes.
+   * @throws IOException
+   *         When disconnected.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void write(byte[] data, int length)
+          throws IOException, InterruptedException {
+    delayNanos(getLineNanos(length));
+    out.write(data, 0, length);
+    out.flush();
+  }
+
+  /**
+   * Waits until the bytes just read from the host would have crossed the
+   * line, after the previous ones.
+   * @param length
+   *        The number of bytes.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void receive(int length) throws InterruptedException {
+    long now = System.nanoTime();
+    rxClock = Math.max(rxClock, now)+getLineNanos(length);
+    if (rxClock > now) {
+      TimeUnit.NANOSECONDS.sleep(rxClock-now);
+    }
+  }
+
+  /**
+   * Gets the time some bytes take to cross the line, scaled by
+   * {@code speedUp}.
+   * @param length
+   *        The number of bytes.
+   * @return The time in nanoseconds.
+   */
+  private long getLineNanos(int length) {
+    return scale(
+            TimeUnit.SECONDS.toNanos((long)length * BITS_PER_BYTE) / baudRate
+    );
+  }
+
+  /**
+   * Scales a time by {@code speedUp}.
+   * @param nanos
+   *        The time in nanoseconds.
+   * @return The scaled time in nanoseconds.
+   */
+  private long scale(long nanos) {
+    return (long)(nanos / speedUp);
+  }
+
+  /**
+   * Waits as {@code delay()} of Arduino does, scaled by {@code speedUp}.
+   * @param millis
+   *        The time in milliseconds.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void delay(long millis) throws InterruptedException {
+    delayNanos(scale(TimeUnit.MILLISECONDS.toNanos(millis)));
+  }
+
+  /**
+   * Waits for a time.
+   * @param nanos
+   *        The time in nanoseconds.
+   * @throws InterruptedException
+   *         If interrupted.
+   */
+  private void delayNanos(long nanos) throws InterruptedException {
+    if (nanos > 0L) {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+  }
+}
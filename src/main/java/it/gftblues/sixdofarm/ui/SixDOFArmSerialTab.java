@@ -542,6 +542,14 @@ public class SixDOFArmSerialTab extends javax.swing.JPanel {
 
   public void setSerialPortNames(String[] names) {
     portNameModel = new DefaultComboBoxModel<>(names);
+    if (comPortName != null) {
+      Object selected = comPortName.getSelectedItem();
+      comPortName.setModel(portNameModel);
+      if (selected != null) {
+        comPortName.setSelectedItem(selected);
+      }
+      setPortNameComboboxEnable();
+    }
   }
 
   public void setSerialDataRates(String[] names) {
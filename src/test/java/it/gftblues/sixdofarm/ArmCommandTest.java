@@ -5,6 +5,7 @@
  */
 package it.gftblues.sixdofarm;
 
+import java.util.Arrays;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -151,4 +152,74 @@ public class ArmCommandTest {
     assertEquals(expResult, result);
   }
   
+  /**
+   * Test of encode method, of class ArmCommand.
+   */
+  @Test
+  public void testEncode() {
+    System.out.println("encode");
+    byte[] buffer = new byte[64];
+    ArmCommand instance = new ArmCommand("SV-30", 1602930000123L);
+    int end = instance.encode(buffer, 2);
+    assertTrue(end - 2 <= instance.getMaxEncodedLength());
+    String expResult = instance.getMessage()+"\n";
+    assertEquals(expResult, new String(buffer, 2, end - 2));
+    instance = new ArmCommand("CO", "id");
+    end = instance.encode(buffer, 0);
+    assertEquals("CO [id]\n", new String(buffer, 0, end));
+  }
+
+  /**
+   * Test of encodeBinary method, of class ArmCommand.
+   */
+  @Test
+  public void testEncodeBinary() {
+    System.out.println("encodeBinary");
+    byte[] buffer = new byte[64];
+    ArmCommand instance = new ArmCommand("SV-30", 300L);
+    int end = instance.encodeBinary(buffer, 1);
+    assertArrayEquals(
+            new byte[] {3, (byte)0xAC, 0x02, (byte)0xD4, (byte)0xFE}, 
+            Arrays.copyOfRange(buffer, 1, end)
+    );
+    instance = new ArmCommand("MJ 0 -20 15 0 -90 20", 1L);
+    end = instance.encodeBinary(buffer, 0);
+    assertEquals(2+6*2, end);
+    assertEquals(13, buffer[0]);
+    assertEquals(-200, (short)((buffer[4] & 0xFF) | (buffer[5] << 8)));
+    assertEquals(200, (short)((buffer[12] & 0xFF) | (buffer[13] << 8)));
+    assertEquals(2, new ArmCommand("CO", "7").encodeBinary(buffer, 0));
+    assertEquals(4, new ArmCommand("CS", 7L).encodeBinary(buffer, 0));
+    assertEquals(-1, new ArmCommand("XX10", 7L).encodeBinary(buffer, 0));
+    assertEquals(-1, new ArmCommand("MJ 0 0", 7L).encodeBinary(buffer, 0));
+    assertEquals(-1, new ArmCommand("SV-", 7L).encodeBinary(buffer, 0));
+    assertEquals(-1, new ArmCommand("CO", "id").encodeBinary(buffer, 0));
+  }
+
+  /**
+   * Test of decodeBinary method, of class ArmCommand.
+   */
+  @Test
+  public void testDecodeBinary() {
+    System.out.println("decodeBinary");
+    byte[] buffer = new byte[64];
+    float[] degrees = new float[6];
+    int end = new ArmCommand("MJ 0 -20 15 0 -90 20", 300L)
+            .encodeBinary(buffer, 1);
+    assertEquals(13, ArmCommand.decodeBinary(buffer, 1, end, degrees));
+    assertArrayEquals(
+            new float[] {0.0f, -20.0f, 15.0f, 0.0f, -90.0f, 20.0f}, 
+            degrees
+    );
+    end = new ArmCommand("SV-30", 7L).encodeBinary(buffer, 0);
+    assertEquals(3, ArmCommand.decodeBinary(buffer, 0, end, degrees));
+    assertEquals(-30.0f, degrees[0]);
+    end = new ArmCommand("CO", 7L).encodeBinary(buffer, 0);
+    assertEquals(7, ArmCommand.decodeBinary(buffer, 0, end, degrees));
+    assertEquals(-1, ArmCommand.decodeBinary(buffer, 0, end+1, degrees));
+    assertEquals(-1, ArmCommand.decodeBinary(buffer, 0, -1, degrees));
+    buffer[0] = 0;
+    assertEquals(-1, ArmCommand.decodeBinary(buffer, 0, end, degrees));
+  }
+
 }
@@ -0,0 +1,113 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code CollisionDetector}
+ * @author Gabriele Tafuro
+ */
+public class CollisionDetectorTest {
+
+  private CollisionDetector instance;
+
+  public CollisionDetectorTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    instance = new CollisionDetector();
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  private double horizontal(int sh, int el, int wr) {
+    return   instance.getShoulderLength()*Math.sin(Math.toRadians(sh))
+            +instance.getElbowLength()*Math.sin(Math.toRadians(sh+el))
+            +instance.getClampLength()*Math.sin(Math.toRadians(sh+el+wr));
+  }
+
+  private double vertical(int sh, int el, int wr) {
+    return   instance.getBaseHeight()
+            +instance.getShoulderLength()*Math.cos(Math.toRadians(sh))
+            +instance.getElbowLength()*Math.cos(Math.toRadians(sh+el))
+            +instance.getClampLength()*Math.cos(Math.toRadians(sh+el+wr));
+  }
+
+  /**
+   * Test of horizontalDistance, verticalDistance and distances methods, of
+   * class CollisionDetector.
+   */
+  @Test
+  public void testDistances() {
+    System.out.println("distances");
+    double[] distances = new double[2];
+    for (int sh = -90; sh <= 90; sh += 5) {
+      for (int el = -90; el <= 90; el += 5) {
+        for (int wr = -90; wr <= 90; wr += 5) {
+          double hor = horizontal(sh, el, wr);
+          double ver = vertical(sh, el, wr);
+          assertEquals(hor, instance.horizontalDistance(sh, el, wr));
+          assertEquals(ver, instance.verticalDistance(sh, el, wr));
+          instance.distances(sh, el, wr, distances);
+          assertEquals(hor, distances[CollisionDetector.HORIZONTAL]);
+          assertEquals(ver, distances[CollisionDetector.VERTICAL]);
+        }
+      }
+    }
+    assertEquals(
+            instance.verticalDistance(0, 0, 30),
+            instance.verticalDistance(0, 720, -690),
+            1e-12
+    );
+  }
+
+  /**
+   * Test of collision method, of class CollisionDetector.
+   */
+  @Test
+  public void testCollision() {
+    System.out.println("collision");
+    assertFalse(instance.collision(0, 0, 0, 0, 0, 90));
+    assertTrue(instance.collision(0, 0, 0, 90, 90, 90));
+    assertTrue(instance.collision(-90, 0, 0, 90, 90, 0));
+  }
+
+  /**
+   * Test of sweptCollision method, of class CollisionDetector.
+   */
+  @Test
+  public void testSweptCollision() {
+    System.out.println("sweptCollision");
+    assertFalse(instance.collision(-90, -90, -90, -90, -45, 75));
+    assertTrue(instance.sweptCollision(-90, -90, -90, -90, -45, 75));
+    assertFalse(instance.sweptCollision(0, 0, 0, 0, 0, 90));
+    assertTrue(instance.sweptCollision(0, 0, 0, 90, 90, 90));
+    assertEquals(
+            instance.collision(0, 0, 0, 0, 0, 0),
+            instance.sweptCollision(0, 0, 0, 0, 0, 0)
+    );
+    instance.setCollisionMap(CollisionMap.build(instance));
+    assertTrue(instance.sweptCollision(-90, -90, -90, -90, -45, 75));
+    assertFalse(instance.sweptCollision(0, 0, 0, 0, 0, 90));
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code CollisionMap}
+ * @author Gabriele Tafuro
+ */
+public class CollisionMapTest {
+
+  private static CollisionDetector detector;
+
+  private static CollisionMap instance;
+
+  private Path directory;
+
+  public CollisionMapTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+    detector = new CollisionDetector();
+    instance = CollisionMap.build(detector);
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("collision");
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(CollisionMap.getPath(directory, detector));
+    Files.delete(directory);
+  }
+
+  private static int angle(Random random) {
+    return CollisionMap.MIN_ANGLE+random.nextInt(CollisionMap.SIDE);
+  }
+
+  /**
+   * Test of collision method, of class CollisionMap.
+   */
+  @Test
+  public void testCollision() {
+    System.out.println("collision");
+    Random random = new Random(21L);
+    for (int i = 0; i < 200000; i++) {
+      int shFrom = angle(random);
+      int elFrom = angle(random);
+      int wrFrom = angle(random);
+      int shTo = angle(random);
+      int elTo = angle(random);
+      int wrTo = angle(random);
+      assertEquals(
+              detector.collision(shFrom, elFrom, wrFrom, shTo, elTo, wrTo),
+              instance.collision(shFrom, elFrom, wrFrom, shTo, elTo, wrTo)
+      );
+    }
+  }
+
+  /**
+   * Test of save and load methods, of class CollisionMap.
+   */
+  @Test
+  public void testSaveLoad() throws Exception {
+    System.out.println("saveLoad");
+    Path path = CollisionMap.getPath(directory, detector);
+    assertNull(CollisionMap.load(path, detector));
+    instance.save(path);
+    CollisionMap loaded = CollisionMap.load(path, detector);
+    assertNotNull(loaded);
+    assertTrue(loaded.matches(detector));
+    assertTrue(loaded.collision(0, 0, 0, 90, 90, 90));
+    assertFalse(loaded.collision(0, 0, 0, 0, 0, 90));
+    CollisionDetector other = new CollisionDetector();
+    other.setClampLength(0.2d);
+    assertNull(CollisionMap.load(path, other));
+    assertNotEquals(
+            CollisionMap.getGeometryHash(detector),
+            CollisionMap.getGeometryHash(other)
+    );
+  }
+
+  /**
+   * Test of setCollisionMap method, of class CollisionDetector.
+   */
+  @Test
+  public void testSetCollisionMap() {
+    System.out.println("setCollisionMap");
+    CollisionDetector cd = new CollisionDetector();
+    cd.setCollisionMap(instance);
+    assertSame(instance, cd.getCollisionMap());
+    cd.setBaseHeight(0.2d);
+    assertNull(cd.getCollisionMap());
+    cd.setCollisionMap(instance);
+    assertNull(cd.getCollisionMap());
+  }
+}
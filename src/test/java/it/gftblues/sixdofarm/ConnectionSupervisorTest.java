@@ -0,0 +1,166 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import it.gftblues.sixdofarm.controllers.ArmModel;
+import it.gftblues.sixdofarm.controllers.PipeTransport;
+import it.gftblues.sixdofarm.controllers.SerialCommunicator;
+import it.gftblues.sixdofarm.controllers.VirtualArm;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code ConnectionSupervisor}
+ * @author Gabriele Tafuro
+ */
+public class ConnectionSupervisorTest implements Dispatcher.Log {
+
+  private static final int FAILED_ATTEMPTS = 2;
+
+  private final List<Long> attemptNanos = new CopyOnWriteArrayList<>();
+
+  private VirtualArm arm;
+
+  private SerialCommunicator comm;
+
+  private Dispatcher dispatcher;
+
+  private ConnectionSupervisor instance;
+
+  public ConnectionSupervisorTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    arm = new VirtualArm();
+    arm.setSpeedUp(100.0);
+    comm = new SerialCommunicator(new PipeTransport(arm));
+    comm.connect();
+    dispatcher = new Dispatcher(this);
+    dispatcher.setComm(comm);
+    instance = new ConnectionSupervisor(comm, dispatcher, this::reconnect);
+    instance.start();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    instance.stop();
+    dispatcher.stop();
+    comm.close();
+  }
+
+  /**
+   * Fails the first {@code FAILED_ATTEMPTS} attempts, then connects again and
+   * restores the pose of the arm.
+   */
+  private boolean reconnect() {
+    attemptNanos.add(System.nanoTime());
+    if (attemptNanos.size() <= FAILED_ATTEMPTS) {
+      return false;
+    }
+    try {
+      comm.connect();
+    } catch (Exception ex) {
+      return false;
+    }
+    dispatcher.resume(
+            false, Dispatcher.encodeMultiJoint(10, -20, 30, -40, 50, 60)
+    );
+    return true;
+  }
+
+  @Override
+  public void log(Level level, String msg) {
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1) {
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1, Object param2) {
+  }
+
+  @Override
+  public String getExistingLabel(String label) {
+    return label;
+  }
+
+  /**
+   * Test of the reconnection, of class ConnectionSupervisor: the commands are
+   * held with an exponential backoff between the attempts, then sent after
+   * the pose of the arm.
+   */
+  @Test
+  public void testReconnect() throws InterruptedException {
+    System.out.println("reconnect");
+    long lostNanos = System.nanoTime();
+    comm.connectionLost();
+    assertTrue(dispatcher.isSuspended());
+    dispatcher.addCommand("WV-10");
+    assertEquals(1, dispatcher.getPendingCommands());
+    long deadline = System.currentTimeMillis() + 10000L;
+    while ((attemptNanos.size() <= FAILED_ATTEMPTS 
+            || instance.isReconnecting())
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertFalse(instance.isReconnecting());
+    assertEquals(FAILED_ATTEMPTS + 1, instance.getAttempts());
+    long backoff = ConnectionSupervisor.INITIAL_BACKOFF;
+    long previous = lostNanos;
+    for (long nanos : attemptNanos) {
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(nanos - previous) >= backoff);
+      previous = nanos;
+      backoff *= 2L;
+    }
+    assertFalse(dispatcher.isSuspended());
+    assertTrue(dispatcher.awaitSent(5000L));
+    float[] expected = {10.0f, -20.0f, 30.0f, -10.0f, 50.0f, 60.0f};
+    while ((arm.getExecuted() < 2
+            || arm.getServoAngles()[ArmModel.SERVO_WRIST_Y] != -10.0f)
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(2L, arm.getExecuted());
+    assertArrayEquals(expected, arm.getServoAngles());
+  }
+
+  /**
+   * Test of stop method, of class ConnectionSupervisor, while waiting to
+   * reconnect.
+   */
+  @Test
+  public void testStop() throws InterruptedException {
+    System.out.println("stop");
+    comm.connectionLost();
+    long start = System.nanoTime();
+    instance.stop();
+    assertTrue(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            < ConnectionSupervisor.INITIAL_BACKOFF
+    );
+    assertFalse(instance.isReconnecting());
+    Thread.sleep(2L * ConnectionSupervisor.INITIAL_BACKOFF);
+    assertTrue(attemptNanos.isEmpty());
+  }
+}
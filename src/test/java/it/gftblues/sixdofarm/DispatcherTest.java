@@ -0,0 +1,374 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import it.gftblues.sixdofarm.controllers.ArmModel;
+import it.gftblues.sixdofarm.controllers.PipeTransport;
+import it.gftblues.sixdofarm.controllers.SerialCommunicator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code Dispatcher}
+ * @author Gabriele Tafuro
+ */
+public class DispatcherTest implements Dispatcher.Log {
+
+  private final LinkedBlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+  private final List<String> logged = new CopyOnWriteArrayList<>();
+
+  private volatile boolean acknowledging = false;
+
+  private volatile OutputStream toHost;
+
+  private SerialCommunicator comm;
+
+  private Dispatcher instance;
+
+  public DispatcherTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    comm = new SerialCommunicator(new PipeTransport(this::attach));
+    comm.connect();
+    instance = new Dispatcher(this);
+    instance.setComm(comm);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    instance.stop();
+    comm.close();
+  }
+
+  /**
+   * The arm: it records the lines sent by the dispatcher and acknowledges
+   * them while {@code acknowledging}.
+   */
+  private void attach(InputStream in, OutputStream out) {
+    toHost = out;
+    Thread t = new Thread(() -> {
+      try {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.US_ASCII)
+        );
+        String line;
+        while ((line = reader.readLine()) != null) {
+          sent.add(line);
+          if (acknowledging) {
+            acknowledge(line.substring(
+                    line.indexOf('[')+1, line.indexOf(']')
+            ));
+          }
+        }
+      } catch (IOException ex) {
+      }
+    });
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private void acknowledge(String id) throws IOException {
+    toHost.write(("ACK ["+id+"]\n").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private String poll() throws InterruptedException {
+    return sent.poll(5, TimeUnit.SECONDS);
+  }
+
+  private int count(String msg) {
+    int count = 0;
+    for (String item : logged) {
+      if (item.equals(msg)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void log(Level level, String msg) {
+    logged.add(msg);
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1) {
+    logged.add(msg);
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1, Object param2) {
+    logged.add(msg);
+  }
+
+  @Override
+  public String getExistingLabel(String label) {
+    return label;
+  }
+
+  /**
+   * Test of the retransmission of a command never acknowledged, of class
+   * Dispatcher.
+   */
+  @Test
+  public void testRetransmit() throws InterruptedException {
+    System.out.println("retransmit");
+    instance.setFlowControl(Dispatcher.FlowControl.Acknowledged);
+    instance.setAckTimeout(50);
+    instance.setMaxRetries(2);
+    instance.setRetryBackoff(Dispatcher.RetryBackoff.Fixed);
+    instance.setEscalation(Dispatcher.Escalation.None);
+    instance.addCommand("SV10");
+    instance.addCommand("EV20");
+    assertEquals("SV10 [0]", poll());
+    assertEquals("EV20 [1]", poll());
+    // A newer command for another joint does not hold back the retries.
+    List<String> retries = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      retries.add(poll());
+    }
+    retries.sort(null);
+    assertEquals(
+            List.of("EV20 [1]", "EV20 [1]", "SV10 [0]", "SV10 [0]"), 
+            retries
+    );
+    assertNull(sent.poll(300, TimeUnit.MILLISECONDS));
+    assertEquals(2, count("LOG_COMMAND_GIVEN_UP"));
+    assertEquals(0, instance.getInFlightCommands());
+  }
+
+  /**
+   * Test of the retransmission of a command timed out after a newer one for
+   * the same joint has been sent, of class Dispatcher.
+   */
+  @Test
+  public void testRetransmitSuperseded() throws InterruptedException {
+    System.out.println("retransmitSuperseded");
+    instance.setFlowControl(Dispatcher.FlowControl.Acknowledged);
+    instance.setAckTimeout(50);
+    instance.setMaxRetries(2);
+    instance.setRetryBackoff(Dispatcher.RetryBackoff.Fixed);
+    instance.setEscalation(Dispatcher.Escalation.None);
+    instance.addCommand("SV10");
+    instance.addCommand("SV20");
+    assertEquals("SV10 [0]", poll());
+    assertEquals("SV20 [1]", poll());
+    // Sending SV10 again would move the shoulder back: only SV20 is retried.
+    assertEquals("SV20 [1]", poll());
+    assertEquals("SV20 [1]", poll());
+    assertNull(sent.poll(300, TimeUnit.MILLISECONDS));
+    assertEquals(2, count("LOG_COMMAND_GIVEN_UP"));
+    assertEquals(2, count("LOG_COMMAND_RETRANSMITTED"));
+    assertEquals(0, instance.getInFlightCommands());
+  }
+
+  /**
+   * Test of the Acknowledged flow control, of class Dispatcher: no more than
+   * ackWindow commands are ever waiting for their acknowledge.
+   */
+  @Test
+  public void testAckWindow() throws Exception {
+    System.out.println("ackWindow");
+    instance.setFlowControl(Dispatcher.FlowControl.Acknowledged);
+    instance.setAckWindow(3);
+    instance.setAckTimeout(0);
+    for (int i = 0; i < 10; i++) {
+      instance.addCommand("SH"+i);
+    }
+    for (int i = 0; i < 3; i++) {
+      assertEquals("SH"+i+" ["+i+"]", poll());
+    }
+    assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(3, instance.getInFlightCommands());
+    // Every acknowledge frees a single credit.
+    acknowledge("0");
+    assertEquals("SH3 [3]", poll());
+    assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(3, instance.getInFlightCommands());
+    acknowledging = true;
+    for (int i = 1; i < 4; i++) {
+      acknowledge(String.valueOf(i));
+    }
+    for (int i = 4; i < 10; i++) {
+      assertEquals("SH"+i+" ["+i+"]", poll());
+      assertTrue(instance.getInFlightCommands() <= 3);
+    }
+    assertTrue(instance.awaitSent(5000L));
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (instance.getInFlightCommands() > 0 
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(0, instance.getInFlightCommands());
+  }
+
+  /**
+   * Test of the coalescing of the commands waiting to be sent, of class
+   * Dispatcher: a command replaces the one for the same joint, unless a 
+   * command for another joint in the vertical plane has been queued after it.
+   */
+  @Test
+  public void testCoalesce() throws InterruptedException {
+    System.out.println("coalesce");
+    instance.setAckTimeout(0);
+    instance.suspend();
+    instance.addCommand("SV10", true);
+    instance.addCommand("SH5", true);
+    instance.addCommand("SV20", true);
+    instance.addCommand("EV30", true);
+    instance.addCommand("EV40", true);
+    instance.addCommand("WV50", true);
+    instance.addCommand("EV60", true);
+    instance.addCommand("DP");
+    instance.addCommand("SH15", true);
+    instance.resume(false);
+    assertEquals("SV20 [0]", poll());
+    assertEquals("SH5 [1]", poll());
+    assertEquals("EV40 [2]", poll());
+    assertEquals("WV50 [3]", poll());
+    assertEquals("EV60 [4]", poll());
+    assertEquals("DP [5]", poll());
+    assertEquals("SH15 [6]", poll());
+    assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    assertTrue(instance.awaitSent(5000L));
+  }
+
+  /**
+   * Test of the in-flight commands, of class Dispatcher, when the arm never
+   * acknowledges them: the oldest ones are discarded once 
+   * MAX_IN_FLIGHT_COMMANDS is reached.
+   */
+  @Test
+  public void testInFlightBounded() throws InterruptedException {
+    System.out.println("inFlightBounded");
+    int count = Dispatcher.MAX_IN_FLIGHT_COMMANDS + 50;
+    instance.setTimeBetweenCommands(0);
+    instance.setAckTimeout(0);
+    instance.setDropPolicy(Dispatcher.DropPolicy.Block);
+    for (int i = 0; i < count; i++) {
+      instance.addCommand("SH"+(i % 90));
+    }
+    for (int i = 0; i < count; i++) {
+      assertEquals("SH"+(i % 90)+" ["+i+"]", poll());
+    }
+    assertTrue(instance.awaitSent(5000L));
+    assertEquals(
+            Dispatcher.MAX_IN_FLIGHT_COMMANDS, instance.getInFlightCommands()
+    );
+    assertEquals(50, count("LOG_COMMAND_NOT_EXECUTED"));
+  }
+
+  /**
+   * Test of the commands added without coalescing, of class Dispatcher: more
+   * than maxPendingCommands are all sent, in order, whatever the DropPolicy.
+   */
+  @Test
+  public void testNoDrop() throws InterruptedException {
+    System.out.println("noDrop");
+    int count = Dispatcher.DEFAULT_MAX_PENDING_COMMANDS + 50;
+    instance.setTimeBetweenCommands(1);
+    instance.setAckTimeout(0);
+    instance.setDropPolicy(Dispatcher.DropPolicy.DropNewest);
+    for (int i = 0; i < count; i++) {
+      instance.addCommand("SH"+(i % 90));
+    }
+    for (int i = 0; i < count; i++) {
+      assertEquals("SH"+(i % 90)+" ["+i+"]", poll());
+    }
+    assertTrue(instance.awaitSent(5000L));
+    assertEquals(0, count("LOG_COMMAND_DROPPED"));
+  }
+
+  /**
+   * Test of the DropOldest DropPolicy, of class Dispatcher: only the oldest 
+   * command added with coalescing is dropped.
+   */
+  @Test
+  public void testDropOldest() throws InterruptedException {
+    System.out.println("dropOldest");
+    instance.setAckTimeout(0);
+    instance.setMaxPendingCommands(2);
+    instance.setDropPolicy(Dispatcher.DropPolicy.DropOldest);
+    instance.suspend();
+    instance.addCommand("SH1", true);
+    instance.addCommand("DP");
+    instance.addCommand("SH2", true);
+    instance.addCommand("DP");
+    instance.addCommand("SH3", true);
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (count("LOG_COMMAND_DROPPED") == 0 
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(4, instance.getPendingCommands());
+    instance.resume(false);
+    assertEquals("DP [0]", poll());
+    assertEquals("SH2 [1]", poll());
+    assertEquals("DP [2]", poll());
+    assertEquals("SH3 [3]", poll());
+    assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(1, count("LOG_COMMAND_DROPPED"));
+  }
+
+  /**
+   * Test of the simulation, of class Dispatcher: every command of a program 
+   * longer than maxPendingCommands is simulated, and the simulated time is 
+   * the one the ArmModel predicts for all of them.
+   */
+  @Test
+  public void testSimulation() throws InterruptedException {
+    System.out.println("simulation");
+    String[] actions = {"SH", "SV", "EV", "WV", "WR"};
+    int count = 3 * Dispatcher.DEFAULT_MAX_PENDING_COMMANDS;
+    ArmModel model = new ArmModel();
+    long expResult = 0L;
+    instance.setSimulation(true);
+    instance.setTimeBetweenCommands(0);
+    instance.resetSimulation();
+    for (int i = 0; i < count; i++) {
+      String action = actions[i % actions.length];
+      int degrees = 10 + (i * 37) % 150;
+      instance.addCommand(action+degrees);
+      expResult += model.execute(action, new float[] {degrees});
+    }
+    assertTrue(instance.awaitSent(5000L));
+    assertEquals(
+            TimeUnit.MILLISECONDS.toNanos(expResult), 
+            instance.getSimulatedNanos()
+    );
+    assertArrayEquals(
+            model.getServoAngles(), instance.getSimulatedArm().getServoAngles()
+    );
+    assertEquals(0, count("LOG_COMMAND_DROPPED"));
+    assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+  }
+}
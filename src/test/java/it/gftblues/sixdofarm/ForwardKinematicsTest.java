@@ -0,0 +1,158 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code ForwardKinematics}
+ * @author Gabriele Tafuro
+ */
+public class ForwardKinematicsTest {
+
+  private static final double DELTA = 1e-12;
+
+  private CollisionDetector detector;
+
+  private ForwardKinematics instance;
+
+  public ForwardKinematicsTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    detector = new CollisionDetector();
+    instance = new ForwardKinematics(detector);
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  private static double distance(double[] positions, int from, int to) {
+    double dx = positions[to*3]-positions[from*3];
+    double dy = positions[to*3+1]-positions[from*3+1];
+    double dz = positions[to*3+2]-positions[from*3+2];
+    return Math.sqrt(dx*dx+dy*dy+dz*dz);
+  }
+
+  /**
+   * Test of tip method, of class ForwardKinematics.
+   */
+  @Test
+  public void testTip() {
+    System.out.println("tip");
+    double[] tip = new double[3];
+    for (int sv = -90; sv <= 90; sv += 15) {
+      for (int ev = -90; ev <= 90; ev += 15) {
+        for (int wv = -90; wv <= 90; wv += 15) {
+          instance.tip(0, sv, ev, wv, tip, 0);
+          assertEquals(detector.horizontalDistance(sv, ev, wv), tip[0]);
+          assertEquals(0.0d, tip[1], DELTA);
+          assertEquals(detector.verticalDistance(sv, ev, wv), tip[2]);
+          instance.tip(90, sv, ev, wv, tip, 0);
+          assertEquals(0.0d, tip[0], DELTA);
+          assertEquals(detector.horizontalDistance(sv, ev, wv), tip[1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of positions method, of class ForwardKinematics.
+   */
+  @Test
+  public void testPositions() {
+    System.out.println("positions");
+    double[] positions = new double[
+            ForwardKinematics.FRAMES*ForwardKinematics.POSITION_SIZE
+    ];
+    double[] tip = new double[3];
+    instance.positions(30, -20, 45, 60, positions);
+    assertArrayEquals(
+            new double[] {0.0d, 0.0d, detector.getBaseHeight()},
+            new double[] {positions[0], positions[1], positions[2]}
+    );
+    assertEquals(
+            detector.getShoulderLength(),
+            distance(positions, ForwardKinematics.SHOULDER,
+                    ForwardKinematics.ELBOW),
+            DELTA
+    );
+    assertEquals(
+            detector.getElbowLength(),
+            distance(positions, ForwardKinematics.ELBOW,
+                    ForwardKinematics.WRIST),
+            DELTA
+    );
+    assertEquals(
+            detector.getClampLength(),
+            distance(positions, ForwardKinematics.WRIST,
+                    ForwardKinematics.TIP),
+            DELTA
+    );
+    instance.tip(30, -20, 45, 60, tip, 0);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(tip[i], positions[ForwardKinematics.TIP*3+i], DELTA);
+    }
+  }
+
+  /**
+   * Test of orientation method, of class ForwardKinematics.
+   */
+  @Test
+  public void testOrientation() {
+    System.out.println("orientation");
+    double[] positions = new double[12];
+    double[] rotation = new double[9];
+    instance.positions(-40, 25, -60, 70, positions);
+    instance.orientation(-40, 25, -60, 70, 35, rotation);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+              (positions[9+i]-positions[6+i])/detector.getClampLength(),
+              rotation[i*3+2],
+              DELTA
+      );
+    }
+    for (int a = 0; a < 3; a++) {
+      for (int b = 0; b < 3; b++) {
+        double dot = 0.0d;
+        for (int i = 0; i < 3; i++) {
+          dot += rotation[i*3+a]*rotation[i*3+b];
+        }
+        assertEquals(a == b ? 1.0d : 0.0d, dot, DELTA);
+      }
+    }
+  }
+
+  /**
+   * Test of tips method, of class ForwardKinematics.
+   */
+  @Test
+  public void testTips() {
+    System.out.println("tips");
+    int[] poses = {0, 0, 0, 0, 0, 20, 45, -30, 60, 10, -90, 90};
+    double[] tips = new double[6];
+    double[] tip = new double[3];
+    instance.tips(poses, 2, tips);
+    instance.tip(45, -30, 60, 10, tip, 0);
+    assertEquals(detector.verticalDistance(0, 0, 0), tips[2]);
+    assertArrayEquals(tip, new double[] {tips[3], tips[4], tips[5]});
+  }
+}
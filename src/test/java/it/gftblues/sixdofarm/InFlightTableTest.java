@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code InFlightTable}
+ * @author Gabriele Tafuro
+ */
+public class InFlightTableTest {
+
+  public InFlightTableTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of get method, of class InFlightTable.
+   */
+  @Test
+  public void testGet() {
+    System.out.println("get");
+    InFlightTable instance = new InFlightTable(4);
+    ArmCommand command = new ArmCommand("SV10", 1000L);
+    instance.add(command);
+    assertSame(command, instance.get(1000L));
+    assertNull(instance.get(999L));
+    assertNull(instance.get(1001L));
+  }
+
+  /**
+   * Test of pollOldest method, of class InFlightTable.
+   */
+  @Test
+  public void testPollOldest() {
+    System.out.println("pollOldest");
+    InFlightTable instance = new InFlightTable(4);
+    instance.add(new ArmCommand("SV10", 10L));
+    instance.add(new ArmCommand("SV20", 12L));
+    instance.add(new ArmCommand("SV30", 13L));
+    assertEquals(3, instance.size());
+    assertEquals(10L, instance.pollOldest().getSequence());
+    assertEquals(12L, instance.peekOldest().getSequence());
+    assertEquals(12L, instance.pollOldest().getSequence());
+    assertEquals(13L, instance.pollOldest().getSequence());
+    assertNull(instance.pollOldest());
+    assertTrue(instance.isEmpty());
+  }
+
+  /**
+   * Test of add method, of class InFlightTable, beyond the initial capacity.
+   */
+  @Test
+  public void testGrow() {
+    System.out.println("grow");
+    InFlightTable instance = new InFlightTable(2);
+    for (long seq = 100L; seq < 200L; seq++) {
+      instance.add(new ArmCommand("EV"+seq, seq));
+    }
+    assertEquals(100, instance.size());
+    for (long seq = 100L; seq < 200L; seq++) {
+      assertEquals(seq, instance.get(seq).getSequence());
+    }
+    assertThrows(
+            IllegalArgumentException.class,
+            () -> instance.add(new ArmCommand("EV0", 150L))
+    );
+  }
+
+  /**
+   * Test of remove method, of class InFlightTable.
+   */
+  @Test
+  public void testRemove() {
+    System.out.println("remove");
+    InFlightTable instance = new InFlightTable(4);
+    instance.add(new ArmCommand("SV10", 10L));
+    instance.add(new ArmCommand("SV20", 11L));
+    assertEquals(10L, instance.remove(10L).getSequence());
+    assertNull(instance.remove(10L));
+    assertEquals(1, instance.size());
+    assertEquals(11L, instance.peekOldest().getSequence());
+  }
+
+  /**
+   * Test of peekNewest method, of class InFlightTable.
+   */
+  @Test
+  public void testPeekNewest() {
+    System.out.println("peekNewest");
+    InFlightTable instance = new InFlightTable(4);
+    assertNull(instance.peekNewest());
+    instance.add(new ArmCommand("SV10", 10L));
+    instance.add(new ArmCommand("SV20", 12L));
+    assertEquals(12L, instance.peekNewest().getSequence());
+    instance.remove(12L);
+    assertEquals(10L, instance.peekNewest().getSequence());
+    instance.remove(10L);
+    assertNull(instance.peekNewest());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code InverseKinematics}
+ * @author Gabriele Tafuro
+ */
+public class InverseKinematicsTest {
+
+  private ForwardKinematics fk;
+
+  private InverseKinematics instance;
+
+  public InverseKinematicsTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    fk = new ForwardKinematics(new CollisionDetector());
+    instance = new InverseKinematics(fk);
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of solve method, of class InverseKinematics.
+   */
+  @Test
+  public void testSolve() {
+    System.out.println("solve");
+    double[] tip = new double[3];
+    double[] reached = new double[3];
+    int[] pose = new int[4];
+    for (int sh = -90; sh <= 90; sh += 30) {
+      for (int sv = -60; sv <= 60; sv += 30) {
+        for (int ev = -60; ev <= 60; ev += 30) {
+          for (int wv = -60; wv <= 60; wv += 30) {
+            int[] current = {sh, sv, ev, wv};
+            fk.tip(sh, sv, ev, wv, tip, 0);
+            assertTrue(instance.solve(
+                    tip[0], tip[1], tip[2], sv+ev+wv, current, pose
+            ));
+            fk.tip(pose[0], pose[1], pose[2], pose[3], reached, 0);
+            double dx = reached[0]-tip[0];
+            double dy = reached[1]-tip[1];
+            double dz = reached[2]-tip[2];
+            assertTrue(
+                    Math.sqrt(dx*dx+dy*dy+dz*dz)
+                    <= InverseKinematics.DEFAULT_TOLERANCE
+            );
+            assertEquals(sv+ev+wv, pose[1]+pose[2]+pose[3]);
+            int distance = 0;
+            for (int i = 0; i < 4; i++) {
+              distance += Math.abs(pose[i]-current[i]);
+            }
+            // Near a straight elbow a few degrees move the tip very little.
+            assertTrue(distance <= 12, "too far from the current pose");
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of the branch closest to the current pose, of class
+   * InverseKinematics.
+   */
+  @Test
+  public void testClosestBranch() {
+    System.out.println("closestBranch");
+    double[] tip = new double[3];
+    int[] pose = new int[4];
+    fk.tip(0, 20, 40, 0, tip, 0);
+    assertTrue(instance.solve(
+            tip[0], tip[1], tip[2], 60, new int[] {0, 20, 40, 0}, pose
+    ));
+    assertArrayEquals(new int[] {0, 20, 40, 0}, pose);
+    assertTrue(instance.solve(
+            tip[0], tip[1], tip[2], 60, new int[] {0, 60, -40, 40}, pose
+    ));
+    assertTrue(pose[2] < 0);
+    assertEquals(1L, instance.getHits());
+  }
+
+  /**
+   * Test of an unreachable point, of class InverseKinematics.
+   */
+  @Test
+  public void testUnreachable() {
+    System.out.println("unreachable");
+    int[] pose = {1, 2, 3, 4};
+    assertFalse(instance.solve(1.0d, 0.0d, 0.2d, 90, new int[4], pose));
+    assertArrayEquals(new int[] {1, 2, 3, 4}, pose);
+  }
+}
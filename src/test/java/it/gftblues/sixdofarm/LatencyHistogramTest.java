@@ -0,0 +1,77 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code LatencyHistogram}
+ * @author Gabriele Tafuro
+ */
+public class LatencyHistogramTest {
+
+  public LatencyHistogramTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of getPercentile method, of class LatencyHistogram.
+   */
+  @Test
+  public void testGetPercentile() {
+    System.out.println("getPercentile");
+    LatencyHistogram instance = new LatencyHistogram();
+    for (long ms = 1; ms <= 100; ms++) {
+      instance.record(ms * 1000000L);
+    }
+    assertEquals(100, instance.getCount());
+    assertEquals(100000000L, instance.getMax());
+    double error = 1.0 / LatencyHistogram.SUB_BUCKETS;
+    assertEquals(50e6, instance.getPercentile(50.0), 50e6 * error);
+    assertEquals(99e6, instance.getPercentile(99.0), 99e6 * error);
+    assertEquals(100e6, instance.getPercentile(100.0), 100e6 * error);
+    assertTrue(instance.getPercentile(50.0) >= 50000000L);
+  }
+
+  /**
+   * Test of record method, of class LatencyHistogram, with small and huge 
+   * values.
+   */
+  @Test
+  public void testRecordLimits() {
+    System.out.println("recordLimits");
+    LatencyHistogram instance = new LatencyHistogram();
+    instance.record(-5L);
+    instance.record(7L);
+    instance.record(Long.MAX_VALUE);
+    assertEquals(0L, instance.getPercentile(0.0));
+    assertEquals(7L, instance.getPercentile(50.0));
+    assertEquals(Long.MAX_VALUE, instance.getPercentile(100.0));
+    instance.reset();
+    assertEquals(0L, instance.getCount());
+    assertEquals(0L, instance.getPercentile(50.0));
+  }
+}
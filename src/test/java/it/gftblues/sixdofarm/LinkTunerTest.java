@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import it.gftblues.sixdofarm.controllers.ArmModel;
+import it.gftblues.sixdofarm.controllers.PipeTransport;
+import it.gftblues.sixdofarm.controllers.SerialCommunicator;
+import it.gftblues.sixdofarm.controllers.VirtualArm;
+import java.util.logging.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code LinkTuner}
+ * @author Gabriele Tafuro
+ */
+public class LinkTunerTest implements Dispatcher.Log {
+
+  private VirtualArm arm;
+
+  private SerialCommunicator comm;
+
+  private LinkTuner instance;
+
+  public LinkTunerTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    arm = new VirtualArm();
+    arm.setSpeedUp(100.0);
+    comm = new SerialCommunicator(new PipeTransport(arm));
+    comm.setDataRate(LinkTuner.BOOT_DATA_RATE);
+    comm.connect();
+    instance = new LinkTuner(comm);
+    instance.setProbePings(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    comm.close();
+  }
+
+  @Override
+  public void log(Level level, String msg) {
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1) {
+  }
+
+  @Override
+  public void log(Level level, String msg, Object param1, Object param2) {
+  }
+
+  @Override
+  public String getExistingLabel(String label) {
+    return label;
+  }
+
+  /**
+   * Test of tune method, of class LinkTuner.
+   */
+  @Test
+  public void testTune() throws InterruptedException {
+    System.out.println("tune");
+    LinkTuner.Result result = instance.tune(38400);
+    assertNotNull(result);
+    assertEquals(38400, result.getDataRate());
+    assertEquals(38400, comm.getDataRate());
+    assertTrue(result.getRoundTripNanos() > 0L);
+  }
+
+  /**
+   * Test of apply method, of class LinkTuner.
+   */
+  @Test
+  public void testApply() throws InterruptedException {
+    System.out.println("apply");
+    LinkTuner.Result result = instance.apply(57600);
+    assertNotNull(result);
+    assertEquals(57600, result.getDataRate());
+    assertEquals(57600, comm.getDataRate());
+  }
+
+  /**
+   * Test of tune method, of class LinkTuner, while a dispatcher holds the
+   * commands, as when connecting: none is sent during the tuning and none is
+   * lost.
+   */
+  @Test
+  public void testTuneSuspended() throws InterruptedException {
+    System.out.println("tuneSuspended");
+    Dispatcher dispatcher = new Dispatcher(this);
+    dispatcher.setComm(comm);
+    try {
+      dispatcher.suspend();
+      dispatcher.addCommand("EV30");
+      assertNotNull(instance.tune(115200));
+      assertEquals(115200, comm.getDataRate());
+      assertNotEquals(30.0f, arm.getServoAngles()[ArmModel.SERVO_ELBOW]);
+      assertEquals(1, dispatcher.getPendingCommands());
+      dispatcher.resume(false);
+      assertTrue(dispatcher.awaitSent(5000L));
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (arm.getServoAngles()[ArmModel.SERVO_ELBOW] != 30.0f
+              && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      assertEquals(30.0f, arm.getServoAngles()[ArmModel.SERVO_ELBOW]);
+    } finally {
+      dispatcher.stop();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code MpscQueue}
+ * @author Gabriele Tafuro
+ */
+public class MpscQueueTest {
+
+  private static final int PRODUCERS = 4;
+  private static final int ITEMS = 20000;
+
+  private static class Item extends MpscQueue.Node {
+    private final int producer;
+    private final int value;
+
+    private Item(int producer, int value) {
+      this.producer = producer;
+      this.value = value;
+    }
+  }
+
+  public MpscQueueTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of poll method, of class MpscQueue.
+   */
+  @Test
+  public void testPoll() {
+    System.out.println("poll");
+    MpscQueue<Item> instance = new MpscQueue<>();
+    assertTrue(instance.isEmpty());
+    assertNull(instance.poll());
+    instance.offer(new Item(0, 1));
+    instance.offer(new Item(0, 2));
+    assertFalse(instance.isEmpty());
+    assertEquals(1, instance.poll().value);
+    assertEquals(2, instance.poll().value);
+    assertNull(instance.poll());
+  }
+
+  /**
+   * Test of offer method, of class MpscQueue, with concurrent producers.
+   */
+  @Test
+  public void testConcurrentOffer() throws InterruptedException {
+    System.out.println("concurrentOffer");
+    MpscQueue<Item> instance = new MpscQueue<>();
+    Thread[] producers = new Thread[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++) {
+      final int producer = p;
+      producers[p] = new Thread(() -> {
+        for (int i = 0; i < ITEMS; i++) {
+          instance.offer(new Item(producer, i));
+        }
+      });
+      producers[p].start();
+    }
+    int[] next = new int[PRODUCERS];
+    int received = 0;
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (received < PRODUCERS * ITEMS 
+            && System.currentTimeMillis() < deadline) {
+      Item item = instance.poll();
+      if (item == null) {
+        Thread.yield();
+        continue;
+      }
+      assertEquals(next[item.producer]++, item.value);
+      received++;
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    assertEquals(PRODUCERS * ITEMS, received);
+    assertNull(instance.poll());
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import it.gftblues.sixdofarm.controllers.FrameCodec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code ResponseParser}
+ * @author Gabriele Tafuro
+ */
+public class ResponseParserTest implements ResponseListener {
+
+  private final List<String> received = new ArrayList<>();
+
+  public ResponseParserTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    received.clear();
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  @Override
+  public void ackReceived(long id) {
+    received.add("ack:"+id);
+  }
+
+  @Override
+  public void errorReceived(ResponseParser.FirmwareError error) {
+    received.add("error:"+error);
+  }
+
+  @Override
+  public void echoReceived(byte[] line, int length) {
+    received.add("echo:"+new String(line, 0, length));
+  }
+
+  @Override
+  public void binaryFramingOffered() {
+    received.add("framing");
+  }
+
+  @Override
+  public void otherReceived(byte[] line, int length) {
+    received.add("other:"+new String(line, 0, length));
+  }
+
+  private static ByteBuffer bytes(String data) {
+    return ByteBuffer.wrap(data.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Test of parse method, of class ResponseParser.
+   */
+  @Test
+  public void testParse() {
+    System.out.println("parse");
+    ResponseParser instance = new ResponseParser(this);
+    instance.parse(bytes("Starting the arm.\r\nSV\r\nACK [1602930000123]\r\n"));
+    instance.parse(bytes("Invalid degrees.\r\nunknown command: TR\r\n"));
+    assertEquals(
+            List.of(
+                    "other:Starting the arm.", 
+                    "echo:SV", 
+                    "ack:1602930000123", 
+                    "error:InvalidDegrees",
+                    "other:unknown command: TR"
+            ), 
+            received
+    );
+  }
+
+  /**
+   * Test of parse method, of class ResponseParser, with lines split across 
+   * chunks.
+   */
+  @Test
+  public void testParseChunks() {
+    System.out.println("parseChunks");
+    ResponseParser instance = new ResponseParser(this);
+    String data = "EV\r\nACK [42]\r\nNo closing braket.\r\n";
+    for (int i = 0; i < data.length(); i++) {
+      instance.parse(bytes(data.substring(i, i + 1)));
+    }
+    assertEquals(
+            List.of("echo:EV", "ack:42", "error:NoClosingBracket"), 
+            received
+    );
+  }
+
+  /**
+   * Test of parse method, of class ResponseParser, with malformed 
+   * acknowledges.
+   */
+  @Test
+  public void testParseMalformedAck() {
+    System.out.println("parseMalformedAck");
+    ResponseParser instance = new ResponseParser(this);
+    instance.parse(bytes("ACK []\nACK [12\nACK [1234567890123456789]\n"));
+    assertEquals(
+            List.of(
+                    "other:ACK []", 
+                    "other:ACK [12", 
+                    "other:ACK [1234567890123456789]"
+            ), 
+            received
+    );
+  }
+
+  /**
+   * Test of parseFrame method, of class ResponseParser.
+   */
+  @Test
+  public void testParseFrame() {
+    System.out.println("parseFrame");
+    ResponseParser instance = new ResponseParser(this);
+    byte[] payload = new byte[16];
+    payload[0] = (byte)ResponseParser.FRAME_ACK;
+    instance.parseFrame(payload, FrameCodec.putVarint(1602930000123L, payload, 1));
+    payload[0] = (byte)ResponseParser.FRAME_ERROR;
+    payload[1] = (byte)ResponseParser.FirmwareError.CorruptedFrame.ordinal();
+    instance.parseFrame(payload, 2);
+    payload[0] = (byte)ResponseParser.FRAME_ACK;
+    payload[1] = (byte)0x80;
+    instance.parseFrame(payload, 2);
+    instance.parse(bytes("TR\r\nFRAMING BINARY\r\n"));
+    assertEquals(
+            List.of(
+                    "ack:1602930000123", 
+                    "error:CorruptedFrame", 
+                    "other:"+new String(payload, 0, 2),
+                    "echo:TR",
+                    "framing"
+            ), 
+            received
+    );
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code TimingWheel}
+ * @author Gabriele Tafuro
+ */
+public class TimingWheelTest {
+
+  private static final long TICK = 10L;
+
+  public TimingWheelTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of expire method, of class TimingWheel.
+   */
+  @Test
+  public void testExpire() {
+    System.out.println("expire");
+    TimingWheel<String> instance = new TimingWheel<>(TICK, 8, 1000L);
+    instance.schedule("a", 0, 25L, 1000L);
+    instance.schedule("b", 1, 50L, 1000L);
+    assertEquals(2, instance.size());
+    assertNull(instance.expire(1020L));
+    TimingWheel.Timeout<String> expired = instance.expire(1030L);
+    assertEquals("a", expired.getItem());
+    assertEquals(0, expired.getAttempts());
+    assertNull(expired.getNext());
+    expired = instance.expire(1050L);
+    assertEquals("b", expired.getItem());
+    assertEquals(1, expired.getAttempts());
+    assertTrue(instance.isEmpty());
+  }
+
+  /**
+   * Test of expire method, of class TimingWheel, with deadlines further than a
+   * turn of the wheel.
+   */
+  @Test
+  public void testExpireRounds() {
+    System.out.println("expireRounds");
+    TimingWheel<String> instance = new TimingWheel<>(TICK, 4, 0L);
+    instance.schedule("near", 0, 20L, 0L);
+    instance.schedule("far", 0, 100L, 0L);
+    TimingWheel.Timeout<String> expired = instance.expire(60L);
+    assertEquals("near", expired.getItem());
+    assertNull(expired.getNext());
+    assertNull(instance.expire(90L));
+    assertEquals("far", instance.expire(500L).getItem());
+    assertTrue(instance.isEmpty());
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code ArmModel}
+ * @author Gabriele Tafuro
+ */
+public class ArmModelTest {
+
+  private ArmModel instance;
+
+  public ArmModelTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    instance = new ArmModel();
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  /**
+   * Test of move method, of class ArmModel.
+   */
+  @Test
+  public void testMove() {
+    System.out.println("move");
+    assertEquals(460L, instance.execute("SH", new float[] {45.0f}));
+    assertEquals(45.0f, instance.getServoAngle(ArmModel.SERVO_SHOULDER_X));
+    assertEquals(10L, instance.execute("SH", new float[] {45.5f}));
+    assertEquals(0L, instance.execute("SH", new float[] {120.0f}));
+    assertEquals(0L, instance.execute("SH", new float[] {0.0f}));
+    assertEquals(0L, instance.execute("TR", new float[0]));
+  }
+
+  /**
+   * Test of moveAll method, of class ArmModel.
+   */
+  @Test
+  public void testMoveAll() {
+    System.out.println("moveAll");
+    float[] values = {10.0f, -30.0f, 20.0f, 5.0f, 0.0f, 90.0f};
+    assertEquals(710L, instance.execute("MJ", values));
+    float[] angles = instance.getServoAngles();
+    assertEquals(-30.0f, angles[ArmModel.SERVO_SHOULDER_Y]);
+    assertEquals(5.0f, angles[ArmModel.SERVO_WRIST_Y]);
+    assertEquals(0.0f, angles[ArmModel.SERVO_WRIST_X]);
+    assertEquals(ArmModel.CLAMP_CLOSE, angles[ArmModel.SERVO_CLAMP]);
+  }
+
+  /**
+   * Test of setClamp method, of class ArmModel.
+   */
+  @Test
+  public void testSetClamp() {
+    System.out.println("setClamp");
+    assertEquals(10L, instance.execute("CS", new float[] {0.0f}));
+    assertEquals(ArmModel.CLAMP_MIN, instance.getServoAngle(ArmModel.SERVO_CLAMP));
+    instance.execute("CC", null);
+    assertEquals(ArmModel.CLAMP_CLOSE, instance.getServoAngle(ArmModel.SERVO_CLAMP));
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code AsyncListener}
+ * @author Gabriele Tafuro
+ */
+public class AsyncListenerTest implements SerialCommunicatorListener {
+
+  private final LinkedBlockingQueue<String> received =
+          new LinkedBlockingQueue<>();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private volatile boolean blocking = false;
+
+  private AsyncListener instance;
+
+  public AsyncListenerTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    received.clear();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    if (instance != null) {
+      instance.close();
+    }
+  }
+
+  @Override
+  public void notifyError(String error) {
+    received.add("error:"+error);
+  }
+
+  @Override
+  public void notifyMessage(String message) {
+    received.add(message);
+    if (blocking) {
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+      }
+    }
+  }
+
+  @Override
+  public void notifyFrame(byte[] payload, int length) {
+    received.add(Thread.currentThread().getName()+":"
+            +new String(payload, 0, length, StandardCharsets.US_ASCII));
+  }
+
+  @Override
+  public void notifyCorruptedFrame(int length) {
+    throw new IllegalStateException("corrupted");
+  }
+
+  @Override
+  public void notifyConnectionLost() {
+    received.add(Thread.currentThread().getName()+":lost");
+  }
+
+  private static ByteBuffer chunk(String text) {
+    return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Test of notifyData method, of class AsyncListener.
+   */
+  @Test
+  public void testBatch() throws Exception {
+    System.out.println("batch");
+    instance = new AsyncListener(this, 16, 100L);
+    ByteBuffer data = chunk("SH 1\r\n");
+    instance.notifyData(data);
+    assertEquals(0, data.position());
+    instance.notifyData(chunk("OK\r\n"));
+    assertEquals("SH 1\r\nOK\r\n", received.poll(5, TimeUnit.SECONDS));
+    instance.notifyData(chunk("0123456789\r\n"));
+    assertEquals("0123456789\r\n", received.poll(5, TimeUnit.SECONDS));
+    instance.notifyError("E");
+    assertEquals("error:E", received.poll(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test of the chunks dropped while the listener is slow, of class
+   * AsyncListener.
+   */
+  @Test
+  public void testDropped() throws Exception {
+    System.out.println("dropped");
+    instance = new AsyncListener(this, 8, 0L);
+    blocking = true;
+    instance.notifyData(chunk("first"));
+    assertEquals("first", received.poll(5, TimeUnit.SECONDS));
+    instance.notifyData(chunk("12345678"));
+    instance.notifyData(chunk("9"));
+    assertEquals(1L, instance.getDropped());
+    release.countDown();
+    assertEquals("12345678", received.poll(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test of the events other than the data, of class AsyncListener: they are
+   * passed in order on the consumer thread, and a failure of the listener
+   * does not stop the following ones.
+   */
+  @Test
+  public void testEvents() throws Exception {
+    System.out.println("events");
+    instance = new AsyncListener(this, 16, 0L);
+    byte[] payload = "TR".getBytes(StandardCharsets.US_ASCII);
+    instance.notifyFrame(payload, payload.length);
+    payload[0] = 'X';
+    instance.notifyCorruptedFrame(3);
+    instance.notifyConnectionLost();
+    assertEquals("async-listener:TR", received.poll(5, TimeUnit.SECONDS));
+    assertEquals("async-listener:lost", received.poll(5, TimeUnit.SECONDS));
+  }
+}
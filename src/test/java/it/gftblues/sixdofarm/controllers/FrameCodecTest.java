@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code FrameCodec}
+ * @author Gabriele Tafuro
+ */
+public class FrameCodecTest implements FrameCodec.Receiver {
+
+  private final List<String> received = new ArrayList<>();
+
+  public FrameCodecTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    received.clear();
+  }
+
+  @AfterEach
+  public void tearDown() {
+  }
+
+  @Override
+  public void frameDecoded(byte[] payload, int length) {
+    received.add(Arrays.toString(Arrays.copyOf(payload, length)));
+  }
+
+  @Override
+  public void frameCorrupted(int length) {
+    received.add("corrupted:"+length);
+  }
+
+  /**
+   * Test of crc8 method, of class FrameCodec.
+   */
+  @Test
+  public void testCrc8() {
+    System.out.println("crc8");
+    byte[] data = "123456789".getBytes();
+    assertEquals(0xF4, FrameCodec.crc8(data, 0, data.length));
+    assertEquals(0, FrameCodec.crc8(data, 0, 0));
+  }
+
+  /**
+   * Test of putVarint and getVarint methods, of class FrameCodec.
+   */
+  @Test
+  public void testVarint() {
+    System.out.println("varint");
+    byte[] buffer = new byte[FrameCodec.MAX_VARINT_LENGTH];
+    assertEquals(1, FrameCodec.putVarint(0L, buffer, 0));
+    assertEquals(2, FrameCodec.putVarint(300L, buffer, 0));
+    assertEquals(300L, FrameCodec.getVarint(buffer, 0, 2));
+    assertEquals(-1L, FrameCodec.getVarint(buffer, 0, 1));
+    int end = FrameCodec.putVarint(Long.MAX_VALUE, buffer, 0);
+    assertEquals(9, end);
+    assertEquals(Long.MAX_VALUE, FrameCodec.getVarint(buffer, 0, end));
+  }
+
+  /**
+   * Test of encode and decode methods, of class FrameCodec.
+   */
+  @Test
+  public void testEncodeDecode() {
+    System.out.println("encodeDecode");
+    byte[] payload = {0x03, 0x00, 0x11, 0x00, 0x00, (byte)0xFF};
+    byte[] buffer = new byte[FrameCodec.getMaxEncodedLength(payload.length)];
+    int end = FrameCodec.encode(payload, payload.length, buffer, 0);
+    assertEquals(FrameCodec.DELIMITER, buffer[end - 1]);
+    for (int i = 0; i < end - 1; i++) {
+      assertNotEquals(FrameCodec.DELIMITER, buffer[i]);
+    }
+    FrameCodec instance = new FrameCodec();
+    for (int i = 0; i < end; i++) {
+      instance.decode(ByteBuffer.wrap(buffer, i, 1), this);
+    }
+    assertEquals(List.of(Arrays.toString(payload)), received);
+  }
+
+  /**
+   * Test of decode method, of class FrameCodec, with corrupted frames.
+   */
+  @Test
+  public void testDecodeCorrupted() {
+    System.out.println("decodeCorrupted");
+    byte[] payload = new byte[254];
+    Arrays.fill(payload, (byte)7);
+    byte[] buffer = new byte[3 * FrameCodec.getMaxEncodedLength(payload.length)];
+    int end = FrameCodec.encode(payload, 4, buffer, 0);
+    buffer[2] ^= 0x10;
+    int second = end;
+    end = FrameCodec.encode(payload, payload.length, buffer, end);
+    int third = end;
+    end = FrameCodec.encode(payload, 1, buffer, end);
+    FrameCodec instance = new FrameCodec();
+    instance.decode(ByteBuffer.wrap(buffer, 0, end), this);
+    assertEquals(
+            List.of(
+                    "corrupted:"+(second - 1),
+                    "corrupted:"+(third - second - 1),
+                    "[7]"
+            ),
+            received
+    );
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code PipeTransport}
+ * @author Gabriele Tafuro
+ */
+public class PipeTransportTest implements SerialCommunicatorListener {
+
+  private final LinkedBlockingQueue<String> received = 
+          new LinkedBlockingQueue<>();
+
+  private final StringBuilder line = new StringBuilder();
+
+  private SerialCommunicator comm;
+
+  public PipeTransportTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    received.clear();
+    line.setLength(0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (comm != null) {
+      comm.close();
+    }
+  }
+
+  @Override
+  public void notifyError(String error) {
+    received.add("error:"+error);
+  }
+
+  @Override
+  public void notifyMessage(String message) {
+  }
+
+  @Override
+  public void notifyConnectionLost() {
+    received.add("lost");
+  }
+
+  @Override
+  public void notifyData(ByteBuffer data) {
+    while (data.hasRemaining()) {
+      char c = (char)data.get();
+      if (c == '\n') {
+        received.add(line.toString());
+        line.setLength(0);
+      } else {
+        line.append(c);
+      }
+    }
+  }
+
+  /**
+   * Test of the loopback, of class PipeTransport.
+   */
+  @Test
+  public void testLoopback() throws Exception {
+    System.out.println("loopback");
+    comm = new SerialCommunicator(new PipeTransport());
+    comm.awaitPortList(5000L);
+    assertEquals(PipeTransport.PORT_NAME, comm.getComPortName());
+    comm.addListener(this);
+    comm.connect();
+    comm.writeToPort("SH10 1\n");
+    comm.writeToPort("SV20 2\n".getBytes(), 7);
+    assertEquals("SH10 1", received.poll(5, TimeUnit.SECONDS));
+    assertEquals("SV20 2", received.poll(5, TimeUnit.SECONDS));
+    comm.close();
+    comm.writeToPort("TR\n");
+    assertEquals("error:ERROR_NOT_YET_CONNECTED", received.poll());
+  }
+
+  /**
+   * Test of a peer, of class PipeTransport.
+   */
+  @Test
+  public void testPeer() throws Exception {
+    System.out.println("peer");
+    LinkedBlockingQueue<Integer> fromHost = new LinkedBlockingQueue<>();
+    comm = new SerialCommunicator(new PipeTransport(
+            (InputStream in, OutputStream out) -> {
+              Thread t = new Thread(() -> {
+                try {
+                  out.write("READY\n".getBytes());
+                  int b;
+                  while ((b = in.read()) >= 0) {
+                    fromHost.add(b);
+                  }
+                  fromHost.add(-1);
+                } catch (IOException ex) {
+                  fromHost.add(-2);
+                }
+              });
+              t.setDaemon(true);
+              t.start();
+            }
+    ));
+    comm.addListener(this);
+    comm.connect();
+    assertEquals("READY", received.poll(5, TimeUnit.SECONDS));
+    comm.writeToPort('O');
+    assertEquals((int)'O', fromHost.poll(5, TimeUnit.SECONDS));
+    comm.close();
+    assertEquals(-1, fromHost.poll(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test of the loss of the connection, of class PipeTransport.
+   */
+  @Test
+  public void testConnectionLost() throws Exception {
+    System.out.println("connectionLost");
+    comm = new SerialCommunicator(new PipeTransport(
+            (InputStream in, OutputStream out) -> {
+              try {
+                out.close();
+              } catch (IOException ex) {
+              }
+            }
+    ));
+    comm.addListener(this);
+    comm.connect();
+    assertEquals("lost", received.poll(5, TimeUnit.SECONDS));
+    assertFalse(comm.isConnected());
+    comm.connectionLost();
+    assertNull(received.poll());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code PortDiscovery}
+ * @author Gabriele Tafuro
+ */
+public class PortDiscoveryTest implements Transport {
+
+  private final LinkedBlockingQueue<String> changes =
+          new LinkedBlockingQueue<>();
+
+  private Path directory;
+
+  private PortDiscovery instance;
+
+  public PortDiscoveryTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("dev");
+    Files.createFile(directory.resolve("ttyS0"));
+    changes.clear();
+    instance = new PortDiscovery(this);
+    instance.addListener((ports, added, removed) -> {
+      changes.add("+"+added+" -"+removed);
+    });
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    instance.stop();
+    for (File file : directory.toFile().listFiles()) {
+      Files.delete(file.toPath());
+    }
+    Files.delete(directory);
+  }
+
+  @Override
+  public List<String> getPortNames() {
+    String[] names = directory.toFile().list();
+    Arrays.sort(names);
+    return Arrays.asList(names);
+  }
+
+  @Override
+  public Path getPortDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void open(
+          String portName,
+          int dataRate,
+          int dataBits,
+          int stopBits,
+          SerialCommunicator.Parity parity,
+          Receiver receiver
+  ) throws IOException {
+    throw new IOException(portName);
+  }
+
+  @Override
+  public int write(byte[] buffer, int length) {
+    return -1;
+  }
+
+  @Override
+  public void setDataRate(int dataRate) {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Test of the discovery of the ports added and removed, of class
+   * PortDiscovery.
+   */
+  @Test
+  public void testWatch() throws Exception {
+    System.out.println("watch");
+    assertTrue(instance.getPorts().isEmpty());
+    instance.start();
+    assertEquals(List.of("ttyS0"), instance.awaitPorts(5000L));
+    assertEquals("+[ttyS0] -[]", changes.poll(5, TimeUnit.SECONDS));
+    Files.createFile(directory.resolve("ttyUSB0"));
+    assertEquals("+[ttyUSB0] -[]", changes.poll(5, TimeUnit.SECONDS));
+    Files.delete(directory.resolve("ttyS0"));
+    assertEquals("+[] -[ttyS0]", changes.poll(5, TimeUnit.SECONDS));
+    assertEquals(List.of("ttyUSB0"), instance.getPorts());
+  }
+
+  /**
+   * Test of refresh method, of class PortDiscovery.
+   */
+  @Test
+  public void testRefresh() throws Exception {
+    System.out.println("refresh");
+    instance.start();
+    assertEquals("+[ttyS0] -[]", changes.poll(5, TimeUnit.SECONDS));
+    instance.refresh();
+    assertNull(changes.poll(PortDiscovery.SETTLE_TIME, TimeUnit.MILLISECONDS));
+  }
+}
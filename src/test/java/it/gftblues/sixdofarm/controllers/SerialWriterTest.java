@@ -0,0 +1,159 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code SerialWriter}
+ * @author Gabriele Tafuro
+ */
+public class SerialWriterTest
+        implements SerialWriter.Sink, SerialWriter.CompletionListener {
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+  private final List<Integer> writes = new ArrayList<>();
+
+  private final List<Long> tags = new ArrayList<>();
+
+  private CountDownLatch gate;
+
+  private SerialWriter instance;
+
+  public SerialWriterTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() {
+    gate = new CountDownLatch(0);
+    instance = new SerialWriter(this, this, 4, 2);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    instance.stop();
+  }
+
+  @Override
+  public int write(byte[] buffer, int length) {
+    try {
+      gate.await();
+    } catch (InterruptedException ex) {
+      return -1;
+    }
+    synchronized (this) {
+      output.write(buffer, 0, length);
+      writes.add(length);
+      notifyAll();
+    }
+    return length;
+  }
+
+  @Override
+  public synchronized void written(long tag, long nanos) {
+    tags.add(tag);
+    notifyAll();
+  }
+
+  @Override
+  public void failed(int length) {
+    fail("failed");
+  }
+
+  private synchronized void awaitTags(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (tags.size() < count && System.currentTimeMillis() < deadline) {
+      wait(100L);
+    }
+  }
+
+  /**
+   * Test of offer methods, of class SerialWriter, gathering the pending slots.
+   */
+  @Test
+  public void testOffer() throws InterruptedException {
+    System.out.println("offer");
+    assertFalse(instance.offer("TR", 0L));
+    gate = new CountDownLatch(1);
+    instance.start();
+    assertTrue(instance.offer("A\n", SerialWriter.NO_TAG));
+    // The sink is blocked, so the following slots are gathered together.
+    assertTrue(instance.offer("SH10 7\n", 7L));
+    assertTrue(instance.offer(new byte[] {'B', '\n', 'x'}, 2, 8L));
+    byte[] payload = {3, 0};
+    assertTrue(instance.offerFrame(payload, payload.length, 9L));
+    gate.countDown();
+    awaitTags(3);
+    assertEquals(List.of(7L, 8L, 9L), tags);
+    byte[] frame = new byte[FrameCodec.getMaxEncodedLength(payload.length)];
+    int end = FrameCodec.encode(payload, payload.length, frame, 0);
+    byte[] data = output.toByteArray();
+    assertEquals("A\nSH10 7\nB\n", new String(data, 0, 11));
+    assertEquals(11 + end, data.length);
+    assertTrue(writes.size() <= 2);
+    assertEquals(0, instance.getPending());
+  }
+
+  /**
+   * Test of offer method, of class SerialWriter, with a single byte.
+   */
+  @Test
+  public void testOfferByte() throws InterruptedException {
+    System.out.println("offerByte");
+    assertFalse(instance.offer('!', 0L));
+    instance.start();
+    assertTrue(instance.offer('!', 5L));
+    assertTrue(instance.offer(0x1F4, 6L));
+    awaitTags(2);
+    assertEquals(List.of(5L, 6L), tags);
+    assertArrayEquals(new byte[] {'!', (byte)0xF4}, output.toByteArray());
+  }
+
+  /**
+   * Test of stop method, of class SerialWriter, releasing a blocked producer.
+   */
+  @Test
+  public void testStop() throws InterruptedException {
+    System.out.println("stop");
+    gate = new CountDownLatch(1);
+    instance.start();
+    boolean[] offered = new boolean[1];
+    Thread producer = new Thread(() -> {
+      boolean all = true;
+      for (int i = 0; i < 10; i++) {
+        all &= instance.offer("TR", i);
+      }
+      offered[0] = all;
+    });
+    producer.start();
+    producer.join(200L);
+    assertTrue(producer.isAlive());
+    instance.stop();
+    gate.countDown();
+    producer.join(5000L);
+    assertFalse(producer.isAlive());
+    assertFalse(offered[0]);
+  }
+}
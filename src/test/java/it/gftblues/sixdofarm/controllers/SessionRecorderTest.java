@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code SessionRecorder} and {@code SessionReplayer}
+ * @author Gabriele Tafuro
+ */
+public class SessionRecorderTest {
+
+  private Path path;
+
+  public SessionRecorderTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    path = Files.createTempFile("session", ".rec");
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  /**
+   * Test of record method, of class SessionRecorder, replayed by
+   * SessionReplayer.
+   */
+  @Test
+  public void testRecordAndReplay() throws Exception {
+    System.out.println("recordAndReplay");
+    byte[] command = "SH 10.0\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] big = new byte[SessionRecorder.REGION_SIZE];
+    try (SessionRecorder instance = new SessionRecorder(path)) {
+      instance.record(SessionRecorder.Direction.Out, command, 0, command.length);
+      instance.record(
+              SessionRecorder.Direction.In,
+              ByteBuffer.wrap("SH 10.0\r\nOK\r\n".getBytes(
+                      StandardCharsets.US_ASCII
+              ))
+      );
+      instance.record(SessionRecorder.Direction.In, big, 0, big.length);
+    }
+    SessionReplayer replayer = new SessionReplayer(path);
+    assertEquals(1, replayer.getCount(SessionRecorder.Direction.Out));
+    assertEquals(2, replayer.getCount(SessionRecorder.Direction.In));
+    StringBuilder text = new StringBuilder();
+    int[] total = {0};
+    int count = replayer.replay(data -> {
+      total[0] += data.remaining();
+      if (text.length() == 0) {
+        byte[] chunk = new byte[data.remaining()];
+        data.get(chunk);
+        text.append(new String(chunk, StandardCharsets.US_ASCII));
+      }
+    }, 0.0);
+    assertEquals(2, count);
+    assertEquals("SH 10.0\r\nOK\r\n", text.toString());
+    assertEquals(13 + big.length, total[0]);
+  }
+
+  /**
+   * Test of the constructor of class SessionReplayer, with a file that is
+   * not a recording.
+   */
+  @Test
+  public void testNotARecording() throws Exception {
+    System.out.println("notARecording");
+    Files.write(path, new byte[32]);
+    assertThrows(IOException.class, () -> new SessionReplayer(path));
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.gftblues.sixdofarm.controllers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit Test for {@code VirtualArm}
+ * @author Gabriele Tafuro
+ */
+public class VirtualArmTest {
+
+  private VirtualArm instance;
+
+  private PipeTransport.Pipe toArm;
+
+  private PipeTransport.Pipe toHost;
+
+  private InputStream in;
+
+  private OutputStream out;
+
+  public VirtualArmTest() {
+  }
+
+  @BeforeAll
+  public static void setUpClass() {
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    instance = new VirtualArm();
+    instance.setSpeedUp(100.0);
+    toArm = new PipeTransport.Pipe(PipeTransport.PIPE_CAPACITY);
+    toHost = new PipeTransport.Pipe(PipeTransport.PIPE_CAPACITY);
+    instance.attach(toArm.getInputStream(), toHost.getOutputStream());
+    in = toHost.getInputStream();
+    out = toArm.getOutputStream();
+    assertEquals(VirtualArm.BANNER, readLine());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    toArm.close();
+    toHost.close();
+  }
+
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) >= 0 && b != '\n') {
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return line.toString();
+  }
+
+  private byte[] readFrame() throws IOException {
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) > 0) {
+      frame.write(b);
+    }
+    frame.write(0);
+    return frame.toByteArray();
+  }
+
+  private void send(String line) throws IOException {
+    out.write((line+"\n").getBytes());
+  }
+
+  /**
+   * Test of the text commands, of class VirtualArm.
+   */
+  @Test
+  public void testTextCommands() throws IOException {
+    System.out.println("textCommands");
+    send("SH-30 [1]");
+    assertEquals("SH", readLine());
+    assertEquals("ACK [1]", readLine());
+    send("MJ 10 -20 30 -40 50 60 [2]");
+    assertEquals("MJ", readLine());
+    assertEquals("ACK [2]", readLine());
+    assertArrayEquals(
+            new float[] {10f, -20f, 30f, -40f, 50f, 60f},
+            instance.getServoAngles()
+    );
+    send("CO [3]");
+    assertEquals("CO", readLine());
+    assertEquals("ACK [3]", readLine());
+    assertEquals(ArmModel.CLAMP_MIN, 
+            instance.getServoAngles()[ArmModel.SERVO_CLAMP]);
+    send("SV-20 [4");
+    assertEquals("No closing braket.", readLine());
+    send("SV-20");
+    assertEquals("Space or open braket missing.", readLine());
+    send("MJ 1 2 [5]");
+    assertEquals("Invalid degrees.", readLine());
+    send("12 [6]");
+    assertEquals("No command found.", readLine());
+    send("XY [7]");
+    assertEquals("unknown command: XY", readLine());
+    assertEquals("ACK [7]", readLine());
+    assertEquals(4L, instance.getExecuted());
+  }
+
+  /**
+   * Test of the binary framing, of class VirtualArm.
+   */
+  @Test
+  public void testBinaryFraming() throws IOException {
+    System.out.println("binaryFraming");
+    send("TR1 [1]");
+    assertEquals("TR", readLine());
+    assertEquals("FRAMING BINARY", readLine());
+    assertEquals("ACK [1]", readLine());
+    // EV -12.5 with id 300: opcode 4, varint id, int16 LE tenths of degree
+    byte[] payload = {4, (byte)0xAC, 0x02, (byte)0x83, (byte)0xFF};
+    byte[] frame = new byte[FrameCodec.getMaxEncodedLength(payload.length)];
+    out.write(frame, 0, FrameCodec.encode(payload, payload.length, frame, 0));
+    byte[] ack = {(byte)0x80, (byte)0xAC, 0x02};
+    byte[] expected = new byte[FrameCodec.getMaxEncodedLength(ack.length)];
+    int end = FrameCodec.encode(ack, ack.length, expected, 0);
+    assertArrayEquals(Arrays.copyOf(expected, end), readFrame());
+    assertEquals(-12.5f, instance.getServoAngles()[ArmModel.SERVO_ELBOW]);
+    frame[1] ^= 0x01;
+    out.write(frame, 0, end + 2);
+    byte[] error = {(byte)0x81, 5};
+    end = FrameCodec.encode(error, error.length, expected, 0);
+    assertArrayEquals(Arrays.copyOf(expected, end), readFrame());
+  }
+}